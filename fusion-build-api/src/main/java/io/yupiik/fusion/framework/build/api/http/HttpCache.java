@@ -0,0 +1,48 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.framework.build.api.http;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Caches the responses of a {@link HttpMatcher} or {@link HttpJavaMatcher} endpoint in memory
+ * (see {@code io.yupiik.fusion.http.server.cache.ResponseCache}).
+ * <p>
+ * Only {@code GET}/{@code HEAD} requests are cached, the responses get a strong {@code ETag} and
+ * {@code If-None-Match} requests are answered with a HTTP 304 without calling the endpoint.
+ */
+@Target(METHOD)
+@Retention(SOURCE)
+public @interface HttpCache {
+    /**
+     * @return how long (in seconds) a response is served from the cache.
+     */
+    long ttl() default 60;
+
+    /**
+     * @return the maximum size (bytes) of the cached bodies of this endpoint, least recently used ones are evicted first.
+     */
+    long maxBytes() default 1024 * 1024;
+
+    /**
+     * @return the request headers selecting the response in addition to the method, path and query ({@code Accept} for example).
+     */
+    String[] varyHeaders() default {};
+}
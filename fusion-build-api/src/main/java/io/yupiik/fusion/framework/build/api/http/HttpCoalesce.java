@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.framework.build.api.http;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Coalesces identical concurrent requests of a {@link HttpMatcher} or {@link HttpJavaMatcher} endpoint
+ * (see {@code io.yupiik.fusion.http.server.cache.RequestCoalescer}).
+ * <p>
+ * Only {@code GET}/{@code HEAD} requests are coalesced: while the endpoint computes a response, the requests with the
+ * same method, path, query and {@link #varyHeaders()} values wait for it and get the same serialized response.
+ * It can be combined with {@link HttpCache} to protect the endpoint when an entry expires.
+ */
+@Target(METHOD)
+@Retention(SOURCE)
+public @interface HttpCoalesce {
+    /**
+     * @return the request headers selecting the response in addition to the method, path and query ({@code Accept} for example).
+     */
+    String[] varyHeaders() default {};
+}
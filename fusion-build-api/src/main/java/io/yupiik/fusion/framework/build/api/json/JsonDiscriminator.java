@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.framework.build.api.json;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.SOURCE;
+
+/**
+ * Customizes the discriminator of a polymorphic model - a sealed interface marked with @{@link JsonModel}.
+ * Permitted subtypes must be records, the discriminator attribute is written first by their codec
+ * and its value is the record simple name or the one set with @{@link JsonDiscriminatorValue}.
+ * <p>
+ * Without this annotation the discriminator attribute is {@code type} and it can be anywhere in the JSON object.
+ */
+@Retention(SOURCE)
+@Target(TYPE)
+public @interface JsonDiscriminator {
+    /**
+     * @return the name of the JSON attribute holding the subtype identifier.
+     */
+    String value() default "type";
+
+    /**
+     * @return {@code true} to fail when the discriminator is not the first attribute of the JSON object
+     * instead of buffering the attributes preceding it (fast mode).
+     */
+    boolean requireFirst() default false;
+}
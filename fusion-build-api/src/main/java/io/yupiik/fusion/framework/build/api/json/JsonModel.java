@@ -23,6 +23,9 @@ import static java.lang.annotation.RetentionPolicy.SOURCE;
 
 /**
  * Mark a record as a JSON model (optional if it contains any @{@link JsonProperty} else required to handle the marked type).
+ * <p>
+ * It can also mark a sealed interface, its permitted records are then (de)serialized polymorphically
+ * using a discriminator attribute, see @{@link JsonDiscriminator}.
  */
 @Retention(SOURCE)
 @Target(TYPE)
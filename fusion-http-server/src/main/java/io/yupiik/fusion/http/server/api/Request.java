@@ -16,12 +16,20 @@
 package io.yupiik.fusion.http.server.api;
 
 import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Flow;
 import java.util.stream.Stream;
 
 public interface Request extends Unwrappable {
+    /**
+     * Request attribute holding the deadline ({@link Instant}) of the request when its endpoint has a timeout.
+     */
+    String DEADLINE_ATTRIBUTE = "fusion.http-server.deadline";
+
     String scheme();
 
     String method();
@@ -54,4 +62,14 @@ public interface Request extends Unwrappable {
     <T> T attribute(String key, Class<T> type);
 
     <T> void setAttribute(String key, T value);
+
+    /**
+     * Enables to propagate the request deadline to downstream calls (HTTP client timeout, JDBC query timeout, ...).
+     *
+     * @return the time left before the request times out (can be negative), empty if the endpoint has no timeout.
+     */
+    default Optional<Duration> remainingTime() {
+        final var deadline = attribute(DEADLINE_ATTRIBUTE, Instant.class);
+        return deadline == null ? Optional.empty() : Optional.of(Duration.between(Instant.now(), deadline));
+    }
 }
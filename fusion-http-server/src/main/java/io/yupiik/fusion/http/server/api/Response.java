@@ -17,11 +17,13 @@ package io.yupiik.fusion.http.server.api;
 
 import io.yupiik.fusion.http.server.impl.FusionResponse;
 import io.yupiik.fusion.http.server.impl.HttpDates;
+import io.yupiik.fusion.http.server.impl.flow.FilePublisher;
 import io.yupiik.fusion.http.server.impl.flow.OutputStreamPublisher;
 
 import java.io.OutputStream;
 import java.io.Writer;
 import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.time.ZonedDateTime;
 import java.util.List;
 import java.util.Map;
@@ -88,6 +90,19 @@ public interface Response {
             return body(new OutputStreamPublisher(bodyHandler));
         }
 
+        /**
+         * Serves a file: the server streams it from its channel without loading it in memory,
+         * handles {@code Range}/{@code If-Range} requests, sets {@code ETag}/{@code Last-Modified} (conditional requests get a HTTP 304)
+         * and serves the precompressed {@code <file>.gz} sibling if it exists and the client accepts gzip.
+         * The {@code content-type} is deduced from the file name if not set.
+         *
+         * @param file the file to send.
+         * @return this.
+         */
+        default Builder file(final Path file) {
+            return body(new FilePublisher(file));
+        }
+
         Response build();
     }
 
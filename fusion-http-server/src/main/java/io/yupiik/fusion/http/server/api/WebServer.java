@@ -93,6 +93,27 @@ public interface WebServer extends AutoCloseable, Unwrappable {
          */
         Configuration accessLogPattern(String accessLogPattern);
 
+        /**
+         * @param enabled if endpoints should run on virtual threads instead of the container threads (default false).
+         *                It requires Java 21, the container threads are kept on older versions.
+         * @return this.
+         */
+        default Configuration virtualThreads(final boolean enabled) {
+            unwrap(TomcatWebServerConfiguration.class).setVirtualThreads(enabled);
+            return this;
+        }
+
+        /**
+         * @param max the maximum number of requests the endpoints handle concurrently, exceeding requests get a HTTP 503.
+         *            {@code 0} (default) means no limit, it is generally set with {@link #virtualThreads(boolean)}
+         *            since nothing else bounds the concurrency then.
+         * @return this.
+         */
+        default Configuration maxInFlightRequests(final int max) {
+            unwrap(TomcatWebServerConfiguration.class).setMaxInFlightRequests(max);
+            return this;
+        }
+
         /**
          * @return the runtime host.
          */
@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.cache;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.api.Response;
+import io.yupiik.fusion.http.server.spi.Endpoint;
+import io.yupiik.fusion.http.server.spi.Route;
+
+import java.time.Duration;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Decorates an {@link Endpoint} with a {@link RequestCoalescer}, the matching (route, priority, name) is the delegate one.
+ */
+public class CoalescingEndpoint implements Endpoint {
+    private final Endpoint delegate;
+    private final RequestCoalescer coalescer;
+
+    public CoalescingEndpoint(final Endpoint delegate, final RequestCoalescer coalescer) {
+        this.delegate = delegate;
+        this.coalescer = coalescer;
+    }
+
+    public RequestCoalescer coalescer() {
+        return coalescer;
+    }
+
+    @Override
+    public int priority() {
+        return delegate.priority();
+    }
+
+    @Override
+    public Route route() {
+        return delegate.route();
+    }
+
+    @Override
+    public String name() {
+        return delegate.name();
+    }
+
+    @Override
+    public Duration timeout() {
+        return delegate.timeout();
+    }
+
+    @Override
+    public boolean matches(final Request request) {
+        return delegate.matches(request);
+    }
+
+    @Override
+    public CompletionStage<Response> handle(final Request request) {
+        return coalescer.handle(request, delegate::handle);
+    }
+}
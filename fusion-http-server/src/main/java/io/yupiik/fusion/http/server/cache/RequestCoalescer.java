@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.cache;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.api.Response;
+import io.yupiik.fusion.http.server.impl.flow.BytesPublisher;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * Single-flight execution of identical concurrent {@code GET}/{@code HEAD} requests: while a request is handled,
+ * the requests with the same key (method, path, query and configured headers) wait for it instead of calling the handler
+ * and all get the same serialized response.
+ * <p>
+ * Nothing is kept once the response is computed (it is not a cache), it protects the backend during stampedes,
+ * typically when a popular resource expires from downstream caches.
+ * Responses setting cookies are considered specific to a client and file or streamed (custom publisher) bodies are not
+ * loaded in memory: waiting requests then call the handler themselves.
+ * Requests with an {@code Authorization} or {@code Cookie} header are never coalesced.
+ * A failure is propagated to all the waiting requests.
+ */
+public class RequestCoalescer {
+    private final List<String> varyHeaders;
+    private final ConcurrentHashMap<String, CompletableFuture<Shared>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param varyHeaders the request headers selecting the response (in addition to the method, path and query), {@code Accept} for example.
+     */
+    public RequestCoalescer(final List<String> varyHeaders) {
+        this.varyHeaders = varyHeaders == null ? List.of() : List.copyOf(varyHeaders);
+    }
+
+    /**
+     * @param handler the endpoint implementation.
+     * @return the same handler with concurrent identical requests coalesced.
+     */
+    public Function<Request, CompletionStage<Response>> wrap(final Function<Request, CompletionStage<Response>> handler) {
+        return request -> handle(request, handler);
+    }
+
+    /**
+     * @return the number of keys currently being computed.
+     */
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    public CompletionStage<Response> handle(final Request request, final Function<Request, CompletionStage<Response>> handler) {
+        final var method = request.method();
+        if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method) || ResponseCache.isPersonalized(request)) {
+            return handler.apply(request);
+        }
+
+        final var key = ResponseCache.key(request, varyHeaders);
+        final var leader = new CompletableFuture<Shared>();
+        final var existing = inFlight.putIfAbsent(key, leader);
+        if (existing != null) {
+            return existing.thenCompose(shared -> shared == null ? handler.apply(request) : completedFuture(shared.toResponse()));
+        }
+
+        final CompletionStage<Response> stage;
+        try {
+            stage = handler.apply(request);
+        } catch (final RuntimeException re) {
+            release(key, leader);
+            leader.completeExceptionally(re);
+            throw re;
+        }
+        return stage
+                .thenCompose(response -> {
+                    if (!response.cookies().isEmpty() || !ResponseBodies.isBounded(response.body())) {
+                        release(key, leader);
+                        leader.complete(null);
+                        return completedFuture(response);
+                    }
+                    return ResponseBodies.bytesOf(response.body()).thenApply(body -> {
+                        final var shared = new Shared(response.status(), copy(response.headers()), body);
+                        release(key, leader);
+                        leader.complete(shared);
+                        return shared.toResponse();
+                    });
+                })
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        release(key, leader);
+                        leader.completeExceptionally(error);
+                    }
+                });
+    }
+
+    // the key is released before the waiters are notified so a request arriving after the response executes the handler
+    private void release(final String key, final CompletableFuture<Shared> leader) {
+        inFlight.remove(key, leader);
+    }
+
+    private static Map<String, List<String>> copy(final Map<String, List<String>> headers) {
+        final var copy = new LinkedHashMap<String, List<String>>();
+        headers.forEach((name, values) -> copy.put(name, List.copyOf(values)));
+        return copy;
+    }
+
+    private record Shared(int status, Map<String, List<String>> headers, byte[] body) {
+        private Response toResponse() {
+            final var response = Response.of().status(status);
+            headers.forEach((name, values) -> values.forEach(value -> response.header(name, value)));
+            return response.body(new BytesPublisher(body)).build();
+        }
+    }
+}
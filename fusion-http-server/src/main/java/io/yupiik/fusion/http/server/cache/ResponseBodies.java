@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.cache;
+
+import io.yupiik.fusion.http.server.impl.flow.BytesPublisher;
+import io.yupiik.fusion.http.server.impl.flow.OutputStreamPublisher;
+import io.yupiik.fusion.http.server.impl.flow.WriterPublisher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+// serializes a response body to share it between requests (cache, coalescing)
+final class ResponseBodies {
+    private ResponseBodies() {
+        // no-op
+    }
+
+    // in memory or written by a callback which ends, a file can be big and a custom publisher can be a stream (SSE)
+    static boolean isBounded(final Flow.Publisher<ByteBuffer> body) {
+        return body == null || body instanceof BytesPublisher || body instanceof OutputStreamPublisher || body instanceof WriterPublisher;
+    }
+
+    static CompletionStage<byte[]> bytesOf(final Flow.Publisher<ByteBuffer> body) {
+        if (body == null) {
+            return completedFuture(new byte[0]);
+        }
+        try {
+            if (body instanceof OutputStreamPublisher osp) { // same optimized paths than the servlet
+                final var out = new ByteArrayOutputStream();
+                osp.getDelegate().accept(out);
+                return completedFuture(out.toByteArray());
+            }
+            if (body instanceof WriterPublisher wp) {
+                final var out = new ByteArrayOutputStream();
+                try (final var writer = new OutputStreamWriter(out, UTF_8)) {
+                    wp.getDelegate().accept(writer);
+                }
+                return completedFuture(out.toByteArray());
+            }
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+
+        final var result = new CompletableFuture<byte[]>();
+        body.subscribe(new Flow.Subscriber<>() {
+            private final List<ByteBuffer> buffers = new ArrayList<>();
+
+            @Override
+            public void onSubscribe(final Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public synchronized void onNext(final ByteBuffer item) {
+                buffers.add(item);
+            }
+
+            @Override
+            public void onError(final Throwable throwable) {
+                result.completeExceptionally(throwable);
+            }
+
+            @Override
+            public synchronized void onComplete() {
+                final var out = new byte[buffers.stream().mapToInt(ByteBuffer::remaining).sum()];
+                int start = 0;
+                for (final var buffer : buffers) {
+                    final int remaining = buffer.remaining();
+                    buffer.get(out, start, remaining);
+                    start += remaining;
+                }
+                result.complete(out);
+            }
+        });
+        return result;
+    }
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.cache;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.api.Response;
+import io.yupiik.fusion.http.server.impl.flow.BytesPublisher;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+import static java.util.Locale.ROOT;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+
+/**
+ * In memory cache of serialized {@code GET}/{@code HEAD} responses: the body is stored as bytes, a strong {@code ETag}
+ * is generated (if the response does not have one) and conditional requests ({@code If-None-Match}) get a HTTP 304
+ * without calling the handler.
+ * <p>
+ * The cache is bounded by the size of the stored bodies (least recently used entries are evicted first) and entries
+ * expire after a TTL. Only HTTP 200 responses without cookie and without {@code Cache-Control: no-store/private}
+ * are cached, file and streamed (custom publisher) bodies are passed through.
+ * Requests with an {@code Authorization} or {@code Cookie} header bypass the cache since their response can be specific
+ * to the caller.
+ */
+public class ResponseCache {
+    private final long maxBytes;
+    private final long ttl;
+    private final List<String> varyHeaders;
+    private final Clock clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, .75f, true); // access order = LRU
+    private long bytes;
+
+    /**
+     * @param maxBytes    the maximum size of the cached bodies.
+     * @param ttl         how long an entry is served once cached.
+     * @param varyHeaders the request headers selecting the response (in addition to the method, path and query), {@code Accept} for example.
+     */
+    public ResponseCache(final long maxBytes, final Duration ttl, final List<String> varyHeaders) {
+        this(maxBytes, ttl, varyHeaders, Clock.systemUTC());
+    }
+
+    protected ResponseCache(final long maxBytes, final Duration ttl, final List<String> varyHeaders, final Clock clock) {
+        this.maxBytes = maxBytes;
+        this.ttl = ttl.toMillis();
+        this.varyHeaders = varyHeaders == null ? List.of() : List.copyOf(varyHeaders);
+        this.clock = clock;
+    }
+
+    /**
+     * @param handler the endpoint implementation.
+     * @return the same handler backed by this cache.
+     */
+    public Function<Request, CompletionStage<Response>> wrap(final Function<Request, CompletionStage<Response>> handler) {
+        return request -> handle(request, handler);
+    }
+
+    public CompletionStage<Response> handle(final Request request, final Function<Request, CompletionStage<Response>> handler) {
+        final var method = request.method();
+        if (!"GET".equalsIgnoreCase(method) && !"HEAD".equalsIgnoreCase(method) || isPersonalized(request)) {
+            return handler.apply(request);
+        }
+
+        final var key = key(request, varyHeaders);
+        final var now = clock.millis();
+        final var cached = get(key, now);
+        if (cached != null) {
+            return completedFuture(cached.toResponse(request));
+        }
+        return handler.apply(request).thenCompose(response -> {
+            if (!isCacheable(response)) {
+                return completedFuture(response);
+            }
+            return ResponseBodies.bytesOf(response.body()).thenApply(body -> {
+                final var entry = new Entry(response.status(), headersOf(response, body), body, now + ttl);
+                put(key, entry);
+                return entry.toResponse(request);
+            });
+        });
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            entries.clear();
+            bytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry get(final String key, final long now) {
+        lock.lock();
+        try {
+            final var entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt() <= now) {
+                entries.remove(key);
+                bytes -= entry.body().length;
+                return null;
+            }
+            return entry;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(final String key, final Entry entry) {
+        if (entry.body().length > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            final var previous = entries.put(key, entry);
+            if (previous != null) {
+                bytes -= previous.body().length;
+            }
+            bytes += entry.body().length;
+            final var it = entries.values().iterator();
+            while (bytes > maxBytes && it.hasNext()) {
+                bytes -= it.next().body().length;
+                it.remove();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // RFC 9111 section 3.5: a response to an authenticated request is not shared, a cookie identifies the client the same way
+    static boolean isPersonalized(final Request request) {
+        return request.header("Authorization") != null || request.header("Cookie") != null;
+    }
+
+    static String key(final Request request, final List<String> varyHeaders) {
+        final var query = request.query();
+        final var key = new StringBuilder(request.method().toUpperCase(ROOT)).append(' ').append(request.path());
+        if (query != null && !query.isBlank()) {
+            key.append('?').append(query);
+        }
+        for (final var header : varyHeaders) {
+            final var value = request.header(header);
+            key.append('\n').append(value == null ? "" : value);
+        }
+        return key.toString();
+    }
+
+    private boolean isCacheable(final Response response) {
+        if (response.status() != 200 || !response.cookies().isEmpty() || !ResponseBodies.isBounded(response.body())) {
+            return false;
+        }
+        return response.headers().entrySet().stream()
+                .filter(e -> "cache-control".equalsIgnoreCase(e.getKey()))
+                .flatMap(e -> e.getValue().stream())
+                .map(v -> v.toLowerCase(ROOT))
+                .noneMatch(v -> v.contains("no-store") || v.contains("private"));
+    }
+
+    private Map<String, List<String>> headersOf(final Response response, final byte[] body) {
+        final var headers = new LinkedHashMap<String, List<String>>();
+        String etag = null;
+        for (final var header : response.headers().entrySet()) {
+            if ("etag".equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                etag = header.getValue().get(0);
+            }
+            headers.put(header.getKey(), List.copyOf(header.getValue()));
+        }
+        if (etag == null) {
+            headers.put("ETag", List.of(etag(body)));
+        }
+        return headers;
+    }
+
+    private String etag(final byte[] body) {
+        try {
+            final var digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(digest) + '"';
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // RFC 9110: weak comparison for If-None-Match
+    private static boolean matches(final String ifNoneMatch, final String etag) {
+        if ("*".equals(ifNoneMatch.strip())) {
+            return true;
+        }
+        final var expected = etag.startsWith("W/") ? etag.substring(2) : etag;
+        for (final var candidate : ifNoneMatch.split(",")) {
+            final var value = candidate.strip();
+            if (expected.equals(value.startsWith("W/") ? value.substring(2) : value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record Entry(int status, Map<String, List<String>> headers, byte[] body, long expiresAt) {
+        private String etag() {
+            return headers.entrySet().stream()
+                    .filter(e -> "etag".equalsIgnoreCase(e.getKey()))
+                    .map(e -> e.getValue().get(0))
+                    .findFirst()
+                    .orElseThrow();
+        }
+
+        private Response toResponse(final Request request) {
+            final var etag = etag();
+            final var ifNoneMatch = request.header("If-None-Match");
+            if (ifNoneMatch != null && matches(ifNoneMatch, etag)) {
+                return Response.of().status(304).header("ETag", etag).build();
+            }
+
+            final var response = Response.of().status(status);
+            headers.forEach((name, values) -> values.forEach(value -> response.header(name, value)));
+            return response.body(new BytesPublisher(body)).build();
+        }
+    }
+}
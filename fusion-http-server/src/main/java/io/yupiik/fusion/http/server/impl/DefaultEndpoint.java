@@ -18,27 +18,58 @@ package io.yupiik.fusion.http.server.impl;
 import io.yupiik.fusion.http.server.api.Request;
 import io.yupiik.fusion.http.server.api.Response;
 import io.yupiik.fusion.http.server.spi.Endpoint;
+import io.yupiik.fusion.http.server.spi.Route;
 
+import java.util.TreeSet;
 import java.util.concurrent.CompletionStage;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
 public class DefaultEndpoint implements Endpoint {
     private final int priority;
+    private final Route route;
     private final Predicate<Request> matcher;
     private final Function<Request, CompletionStage<Response>> handler;
 
     public DefaultEndpoint(final int priority, final Predicate<Request> matcher, final Function<Request, CompletionStage<Response>> handler) {
         this.priority = priority;
+        this.route = null;
         this.matcher = matcher;
         this.handler = handler;
     }
 
+    public DefaultEndpoint(final int priority, final Route route, final Function<Request, CompletionStage<Response>> handler) {
+        this.priority = priority;
+        this.route = route;
+        this.matcher = route::matches;
+        this.handler = handler;
+    }
+
     @Override
     public int priority() {
         return priority;
     }
 
+    @Override
+    public Route route() {
+        return route;
+    }
+
+    @Override
+    public String name() { // lambda based endpoints share the same class so the route is more meaningful when there is one
+        if (route == null) {
+            return Endpoint.super.name();
+        }
+        final var methods = route.methods().isEmpty() ? "*" : String.join(",", new TreeSet<>(route.methods()));
+        return switch (route.matching()) {
+            case IGNORED -> methods + " *";
+            case EXACT -> methods + ' ' + route.path();
+            case STARTS_WITH -> methods + ' ' + route.path() + '*';
+            case ENDS_WITH -> methods + " *" + route.path();
+            case REGEX -> methods + " ~" + route.path();
+        };
+    }
+
     @Override
     public boolean matches(final Request request) {
         return matcher.test(request);
@@ -22,13 +22,25 @@ import io.yupiik.fusion.framework.api.container.bean.BaseBean;
 import io.yupiik.fusion.framework.api.event.Emitter;
 import io.yupiik.fusion.framework.api.scope.ApplicationScoped;
 import io.yupiik.fusion.http.server.api.WebServer;
+import io.yupiik.fusion.http.server.impl.servlet.PooledByteBufferPool;
+import io.yupiik.fusion.http.server.impl.tomcat.AsyncAccessLogConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.ConcurrencyLimitConfiguration;
 import io.yupiik.fusion.http.server.impl.tomcat.MonitoringServerConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.RateLimitConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.RequestTimeoutConfiguration;
 import io.yupiik.fusion.http.server.impl.tomcat.TomcatWebServerConfiguration;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
 import io.yupiik.fusion.http.server.spi.Endpoint;
 import io.yupiik.fusion.http.server.spi.MonitoringEndpoint;
+import io.yupiik.fusion.http.server.spi.RouteTable;
+import io.yupiik.fusion.http.server.websocket.WebSocketEndpoint;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
+
+import static java.util.stream.Collectors.toMap;
 
 // configuration as a bean to ensure it can be injected - at least to get the port
 public class FusionServerConfigurationBean extends BaseBean<WebServer.Configuration> {
@@ -48,6 +60,98 @@ public class FusionServerConfigurationBean extends BaseBean<WebServer.Configurat
             confAccessor.get("fusion.http-server.base").ifPresent(configuration::base);
             confAccessor.get("fusion.http-server.fusionServletMapping").ifPresent(configuration::fusionServletMapping);
             confAccessor.get("fusion.http-server.utf8Setup").map(Boolean::parseBoolean).ifPresent(configuration::utf8Setup);
+            confAccessor.get("fusion.http-server.virtualThreads").map(Boolean::parseBoolean).ifPresent(configuration::virtualThreads);
+            confAccessor.get("fusion.http-server.virtualThreadsConnector").map(Boolean::parseBoolean).ifPresent(unwrapped::setVirtualThreadsConnector);
+            confAccessor.get("fusion.http-server.unixDomainSocket.path").ifPresent(unwrapped::setUnixDomainSocketPath);
+            confAccessor.get("fusion.http-server.unixDomainSocket.permissions").ifPresent(unwrapped::setUnixDomainSocketPermissions);
+            confAccessor.get("fusion.http-server.unixDomainSocket.only").map(Boolean::parseBoolean).ifPresent(unwrapped::setUnixDomainSocketOnly);
+            confAccessor.get("fusion.http-server.maxInFlightRequests").map(Integer::parseInt).ifPresent(configuration::maxInFlightRequests);
+            if (confAccessor.get("fusion.http-server.instrumentation.enabled").map(Boolean::parseBoolean).orElse(false)) {
+                unwrapped.setEndpointMetrics(lookup(container, MetricsRegistry.class, dependents));
+            }
+            if (!confAccessor.get("fusion.http-server.requestBufferPool.enabled").map(Boolean::parseBoolean).orElse(true)) {
+                unwrapped.setRequestBufferPool(null);
+            } else {
+                final var bufferSize = confAccessor.get("fusion.http-server.requestBufferPool.bufferSize").map(Integer::parseInt);
+                final var maxPerClass = confAccessor.get("fusion.http-server.requestBufferPool.maxPerClass").map(Integer::parseInt);
+                final var direct = confAccessor.get("fusion.http-server.requestBufferPool.direct").map(Boolean::parseBoolean);
+                if (bufferSize.isPresent() || maxPerClass.isPresent() || direct.isPresent()) {
+                    unwrapped.setRequestBufferPool(new PooledByteBufferPool(
+                            bufferSize.orElse(8 * 1_024), maxPerClass.orElse(64), direct.orElse(false)));
+                }
+            }
+            final var requestTimeout = confAccessor.get("fusion.http-server.requestTimeout.timeout").map(Long::parseLong);
+            final var requestTimeoutStatus = confAccessor.get("fusion.http-server.requestTimeout.status").map(Integer::parseInt);
+            final var endpointTimeouts = confAccessor.get("fusion.http-server.requestTimeout.endpoints")
+                    .map(e -> Stream.of(e.split(","))
+                            .map(String::strip)
+                            .filter(it -> !it.isBlank())
+                            .map(it -> {
+                                final int sep = it.lastIndexOf('=');
+                                if (sep < 0) {
+                                    throw new IllegalArgumentException("Invalid endpoint timeout '" + it + "', expected <endpoint name>=<timeout in ms>");
+                                }
+                                return Map.entry(it.substring(0, sep).strip(), Long.parseLong(it.substring(sep + 1).strip()));
+                            })
+                            .collect(toMap(Map.Entry::getKey, Map.Entry::getValue)));
+            if (requestTimeout.isPresent() || requestTimeoutStatus.isPresent() || endpointTimeouts.isPresent()) {
+                unwrapped.setRequestTimeout(new RequestTimeoutConfiguration()
+                        .setTimeout(requestTimeout.orElse(0L))
+                        .setStatus(requestTimeoutStatus.orElse(504))
+                        .setEndpoints(endpointTimeouts.orElse(Map.of())));
+            }
+            if (confAccessor.get("fusion.http-server.asyncAccessLog.enabled").map(Boolean::parseBoolean).orElse(false)) {
+                final var asyncAccessLog = new AsyncAccessLogConfiguration();
+                confAccessor.get("fusion.http-server.asyncAccessLog.bufferSize").map(Integer::parseInt).ifPresent(asyncAccessLog::setBufferSize);
+                confAccessor.get("fusion.http-server.asyncAccessLog.batchSize").map(Integer::parseInt).ifPresent(asyncAccessLog::setBatchSize);
+                confAccessor.get("fusion.http-server.asyncAccessLog.flushInterval").map(Long::parseLong).ifPresent(asyncAccessLog::setFlushInterval);
+                confAccessor.get("fusion.http-server.asyncAccessLog.file").map(Path::of).ifPresent(asyncAccessLog::setFile);
+                confAccessor.get("fusion.http-server.asyncAccessLog.maxFileSize").map(Long::parseLong).ifPresent(asyncAccessLog::setMaxFileSize);
+                confAccessor.get("fusion.http-server.asyncAccessLog.maxFiles").map(Integer::parseInt).ifPresent(asyncAccessLog::setMaxFiles);
+                confAccessor.get("fusion.http-server.asyncAccessLog.headers")
+                        .map(h -> Stream.of(h.split(",")).map(String::strip).filter(it -> !it.isBlank()).toList())
+                        .ifPresent(asyncAccessLog::setHeaders);
+                asyncAccessLog.setMetricsRegistry(unwrapped.getEndpointMetrics());
+                unwrapped.setAsyncAccessLog(asyncAccessLog);
+            }
+            if (confAccessor.get("fusion.http-server.concurrencyLimit.enabled").map(Boolean::parseBoolean).orElse(false)) {
+                final var concurrencyLimit = new ConcurrencyLimitConfiguration();
+                confAccessor.get("fusion.http-server.concurrencyLimit.perEndpoint").map(Boolean::parseBoolean).ifPresent(concurrencyLimit::setPerEndpoint);
+                confAccessor.get("fusion.http-server.concurrencyLimit.initialLimit").map(Integer::parseInt).ifPresent(concurrencyLimit::setInitialLimit);
+                confAccessor.get("fusion.http-server.concurrencyLimit.minLimit").map(Integer::parseInt).ifPresent(concurrencyLimit::setMinLimit);
+                confAccessor.get("fusion.http-server.concurrencyLimit.maxLimit").map(Integer::parseInt).ifPresent(concurrencyLimit::setMaxLimit);
+                confAccessor.get("fusion.http-server.concurrencyLimit.latencyThreshold").map(Long::parseLong).ifPresent(concurrencyLimit::setLatencyThreshold);
+                confAccessor.get("fusion.http-server.concurrencyLimit.backoffRatio").map(Double::parseDouble).ifPresent(concurrencyLimit::setBackoffRatio);
+                confAccessor.get("fusion.http-server.concurrencyLimit.retryAfter").map(Integer::parseInt).ifPresent(concurrencyLimit::setRetryAfter);
+                concurrencyLimit.setMetricsRegistry(unwrapped.getEndpointMetrics()); // exposed with the endpoint metrics if enabled
+                unwrapped.setConcurrencyLimit(concurrencyLimit);
+            }
+            if (confAccessor.get("fusion.http-server.rateLimit.enabled").map(Boolean::parseBoolean).orElse(false)) {
+                final var rateLimit = new RateLimitConfiguration();
+                confAccessor.get("fusion.http-server.rateLimit.permits").map(Integer::parseInt).ifPresent(rateLimit::setPermits);
+                confAccessor.get("fusion.http-server.rateLimit.period").map(Long::parseLong).ifPresent(rateLimit::setPeriod);
+                confAccessor.get("fusion.http-server.rateLimit.burst").map(Integer::parseInt).ifPresent(rateLimit::setBurst);
+                confAccessor.get("fusion.http-server.rateLimit.maxKeys").map(Integer::parseInt).ifPresent(rateLimit::setMaxKeys);
+                confAccessor.get("fusion.http-server.rateLimit.status").map(Integer::parseInt).ifPresent(rateLimit::setStatus);
+                confAccessor.get("fusion.http-server.rateLimit.key").map(String::strip).map(key -> {
+                    if ("remote-address".equals(key)) {
+                        return RateLimitConfiguration.remoteAddress();
+                    }
+                    if ("jwt-subject".equals(key)) {
+                        return RateLimitConfiguration.jwtSubject();
+                    }
+                    if (key.startsWith("header:")) {
+                        return RateLimitConfiguration.header(key.substring("header:".length()));
+                    }
+                    if (key.startsWith("attribute:")) {
+                        return RateLimitConfiguration.attribute(key.substring("attribute:".length()));
+                    }
+                    throw new IllegalArgumentException("Unknown rate limit key '" + key + "', " +
+                            "use remote-address, jwt-subject, header:<name> or attribute:<name>");
+                }).ifPresent(rateLimit::setKeyExtractor);
+                rateLimit.setMetricsRegistry(unwrapped.getEndpointMetrics()); // exposed with the endpoint metrics if enabled
+                unwrapped.setRateLimit(rateLimit);
+            }
             confAccessor.get("fusion.http-server.monitoring.enabled")
                     .map(Boolean::parseBoolean)
                     .filter(i -> i)
@@ -56,6 +160,10 @@ public class FusionServerConfigurationBean extends BaseBean<WebServer.Configurat
                         confAccessor.get("fusion.http-server.monitoring.port")
                                 .map(Integer::parseInt)
                                 .ifPresent(monitoringServerConfiguration::setPort);
+                        confAccessor.get("fusion.http-server.monitoring.unixDomainSocket.path")
+                                .ifPresent(monitoringServerConfiguration::setUnixDomainSocketPath);
+                        confAccessor.get("fusion.http-server.monitoring.unixDomainSocket.permissions")
+                                .ifPresent(monitoringServerConfiguration::setUnixDomainSocketPermissions);
 
                         final var endpoints = lookups(container, MonitoringEndpoint.class, l -> l.stream().map(Instance::instance).toList(), dependents);
                         monitoringServerConfiguration.setEndpoints(endpoints);
@@ -67,6 +175,14 @@ public class FusionServerConfigurationBean extends BaseBean<WebServer.Configurat
                 container, Endpoint.class,
                 l -> l.stream().map(Instance::instance).toList(),
                 dependents));
+        unwrapped.setWebSocketEndpoints(lookups(
+                container, WebSocketEndpoint.class,
+                l -> l.stream().map(Instance::instance).toList(),
+                dependents));
+        unwrapped.setRouteTables(lookups(
+                container, RouteTable.class,
+                l -> l.stream().map(Instance::instance).toList(),
+                dependents));
 
         try (final var instance = container.lookup(Emitter.class)) { // enable a listener to customize the configuration
             instance.instance().emit(configuration);
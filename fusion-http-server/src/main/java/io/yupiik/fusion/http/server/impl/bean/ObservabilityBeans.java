@@ -45,10 +45,17 @@ public final class ObservabilityBeans {
 
         @Override
         public HealthRegistry create(final RuntimeContainer container, final List<Instance<?>> dependents) {
-            return new HealthRegistry(lookups(
-                    container, HealthCheck.class,
-                    l -> l.stream().map(Instance::instance).toList(),
-                    dependents));
+            return new HealthRegistry(
+                    lookups(
+                            container, HealthCheck.class,
+                            l -> l.stream().map(Instance::instance).toList(),
+                            dependents),
+                    lookup(container, MetricsRegistry.class, dependents));
+        }
+
+        @Override
+        public void destroy(final RuntimeContainer container, final HealthRegistry instance) {
+            instance.close(); // stops the background refreshes
         }
     }
 
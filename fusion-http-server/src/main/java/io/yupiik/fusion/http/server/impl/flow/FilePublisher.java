@@ -0,0 +1,59 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.flow;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Flow;
+
+// the servlet serves it without loading it in the JVM (sendfile or channel transfer) and handles ranges/conditional requests
+public class FilePublisher implements Flow.Publisher<ByteBuffer> {
+    private final Path path;
+
+    public FilePublisher(final Path path) {
+        this.path = path;
+    }
+
+    // optimization path
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) { // shouldn't be used but impl for compat
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (final IOException e) {
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(final long n) {
+                    // no-op
+                }
+
+                @Override
+                public void cancel() {
+                    // no-op
+                }
+            });
+            subscriber.onError(e);
+            return;
+        }
+        new BytesPublisher(content).subscribe(subscriber);
+    }
+}
@@ -35,6 +35,8 @@ public class ServletInputStreamSubscription implements Flow.Subscription, ReadLi
     private final ServletInputStream inputStream;
     private final Flow.Subscriber<? super ByteBuffer> downstream;
     private final ByteBufferPool pool;
+    private final boolean copyingDownstream;
+    private long remaining; // -1 when unknown
 
     private volatile boolean cancelled = false;
     private volatile boolean ready = false;
@@ -45,7 +47,20 @@ public class ServletInputStreamSubscription implements Flow.Subscription, ReadLi
             final ByteBufferPool pool,
             final ServletInputStream inputStream,
             final Flow.Subscriber<? super ByteBuffer> downstream) {
+        this(pool, inputStream, downstream, -1);
+    }
+
+    /**
+     * @param contentLength the request body length if known, else {@code -1}, it enables to read small bodies in small buffers.
+     */
+    public ServletInputStreamSubscription(
+            final ByteBufferPool pool,
+            final ServletInputStream inputStream,
+            final Flow.Subscriber<? super ByteBuffer> downstream,
+            final long contentLength) {
         this.pool = pool;
+        this.copyingDownstream = downstream instanceof ByteBufferPool.CopyingSubscriber;
+        this.remaining = contentLength;
         this.inputStream = inputStream;
         this.downstream = downstream;
         inputStream.setReadListener(this);
@@ -73,16 +88,36 @@ public class ServletInputStreamSubscription implements Flow.Subscription, ReadLi
                     break;
                 }
 
-                final var buffer = pool.get();
-                final var read = inputStream.read(buffer);
+                final var buffer = remaining > 0 ? pool.get((int) Math.min(remaining, Integer.MAX_VALUE)) : pool.get();
+                final int read;
+                try {
+                    read = inputStream.read(buffer);
+                } catch (final IOException | RuntimeException e) {
+                    if (pool.needsRelease()) {
+                        pool.release(buffer);
+                    }
+                    throw e;
+                }
                 if (read <= 0) {
+                    if (pool.needsRelease()) {
+                        pool.release(buffer);
+                    }
                     break;
                 }
+                if (remaining > 0) {
+                    remaining -= read;
+                }
 
                 if (!pool.needsRelease()) {
                     downstream.onNext(buffer);
+                } else if (copyingDownstream) { // the subscriber copied the bytes when onNext returns so the buffer can be reused
+                    try {
+                        downstream.onNext(buffer);
+                    } finally {
+                        pool.release(buffer);
+                    }
                 } else {
-                    try { // copy cause we return early the buffer, fixme: enhance it by using reference counting instead of this simple pattern?
+                    try { // copy cause we return early the buffer
                         downstream.onNext(ByteBuffer.allocate(buffer.remaining()).put(buffer).flip());
                     } finally {
                         pool.release(buffer); // note that we assume release calls flip()
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.io;
+
+import io.yupiik.fusion.http.server.impl.servlet.ByteBufferPool;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Aggregates a body in a byte array, the buffers are copied when received so pooled buffers can be recycled immediately.
+ */
+public class BytesAggregator implements Flow.Subscriber<ByteBuffer>, ByteBufferPool.CopyingSubscriber {
+    private static final int MAX_PREALLOCATION = 64 * 1024;
+
+    private final CompletableFuture<byte[]> future = new CompletableFuture<>();
+    private final Lock lock = new ReentrantLock();
+    private byte[] bytes;
+    private int length;
+
+    /**
+     * @param sizeHint the expected size (content length) or a negative value if unknown.
+     */
+    public BytesAggregator(final long sizeHint) {
+        // the hint comes from the client (Content-Length) so it only presizes up to a bound, then the array grows as bytes come
+        this.bytes = new byte[sizeHint > 0 ? (int) Math.min(sizeHint, MAX_PREALLOCATION) : 1024];
+    }
+
+    public CompletionStage<byte[]> promise() {
+        return future;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final ByteBuffer item) {
+        lock.lock();
+        try {
+            final int remaining = item.remaining();
+            if (length + remaining > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(length + remaining, bytes.length * 2));
+            }
+            item.get(bytes, length, remaining);
+            length += remaining;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        future.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        final byte[] result;
+        lock.lock();
+        try {
+            result = length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+        } finally {
+            lock.unlock();
+        }
+        future.complete(result);
+    }
+}
@@ -15,24 +15,18 @@
  */
 package io.yupiik.fusion.http.server.impl.io;
 
+import io.yupiik.fusion.http.server.impl.servlet.ByteBufferPool;
+
 import java.nio.ByteBuffer;
-import java.nio.CharBuffer;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Flow;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
-public class RequestBodyAggregator implements Flow.Subscriber<ByteBuffer> {
-    private final List<ByteBuffer> aggregated = new ArrayList<>();
-    private final CompletableFuture<char[]> future = new CompletableFuture<>();
-    private final Charset charset;
-    private final Lock lock = new ReentrantLock();
+public class RequestBodyAggregator implements Flow.Subscriber<ByteBuffer>, ByteBufferPool.CopyingSubscriber {
+    private final BytesAggregator bytes = new BytesAggregator(-1);
+    private final CompletionStage<char[]> future;
 
     public RequestBodyAggregator(final Flow.Publisher<ByteBuffer> publisher) { // backward compatibility
         this(publisher, UTF_8);
@@ -40,7 +34,12 @@ public class RequestBodyAggregator implements Flow.Subscriber<ByteBuffer> {
 
     public RequestBodyAggregator(final Flow.Publisher<ByteBuffer> publisher,
                                  final Charset charset) {
-        this.charset = charset;
+        this.future = bytes.promise().thenApply(res -> {
+            final var decoded = charset.decode(ByteBuffer.wrap(res));
+            final var chars = new char[decoded.limit()];
+            decoded.get(chars);
+            return chars;
+        });
         publisher.subscribe(this);
     }
 
@@ -50,42 +49,21 @@ public class RequestBodyAggregator implements Flow.Subscriber<ByteBuffer> {
 
     @Override
     public void onSubscribe(final Flow.Subscription subscription) {
-        subscription.request(Long.MAX_VALUE);
+        bytes.onSubscribe(subscription);
     }
 
     @Override
     public void onNext(final ByteBuffer item) {
-        lock.lock();
-        try {
-            aggregated.add(item);
-        } finally {
-            lock.unlock();
-        }
+        bytes.onNext(item);
     }
 
     @Override
     public void onError(final Throwable throwable) {
-        future.completeExceptionally(throwable);
+        bytes.onError(throwable);
     }
 
     @Override
     public void onComplete() {
-        final byte[] res;
-        lock.lock();
-        try {
-            res = new byte[aggregated.stream().mapToInt(ByteBuffer::remaining).sum()];
-            int start = 0;
-            for (final var array : aggregated) {
-                final int remaining = array.remaining();
-                array.get(res, start, remaining);
-                start += remaining;
-            }
-        } finally {
-            lock.unlock();
-        }
-        var decoded = charset.decode(ByteBuffer.wrap(res));
-        var chars = new char[decoded.limit()];
-        decoded.get(chars);
-        future.complete(chars);
+        bytes.onComplete();
     }
 }
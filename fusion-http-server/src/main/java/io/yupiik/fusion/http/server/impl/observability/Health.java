@@ -60,7 +60,7 @@ public class Health implements MonitoringEndpoint {
             healthCheckStream = healthCheckStream.filter(c -> Objects.equals(c.type(), filter));
         }
         final var checks = healthCheckStream
-                .collect(toMap(identity(), c -> c.check().toCompletableFuture()));
+                .collect(toMap(identity(), c -> healthChecks.check(c).toCompletableFuture()));
         return allOf(checks.values().toArray(new CompletableFuture<?>[0]))
                 .thenApply(success -> success(checks, request))
                 .exceptionally(failed -> failure(checks));
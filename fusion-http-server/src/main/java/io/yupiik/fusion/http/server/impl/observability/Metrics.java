@@ -47,7 +47,7 @@ public class Metrics implements MonitoringEndpoint {
         return completedFuture(Response.of()
                 .status(200)
                 .header("content-type", "text/plain")
-                .body(formatter.apply(registry.entries()))
+                .bytesBody(out -> formatter.write(registry, out))
                 .build());
     }
 }
\ No newline at end of file
@@ -23,6 +23,14 @@ public interface ByteBufferPool {
      */
     ByteBuffer get();
 
+    /**
+     * @param sizeHint the expected number of bytes to read (remaining request body length for example).
+     * @return a buffer usable by the request processing, pools with size classes can return a smaller buffer than {@link #get()}.
+     */
+    default ByteBuffer get(final int sizeHint) {
+        return get();
+    }
+
     /**
      * get back the buffer in the pool if needed.
      * important: this is where you call flip() or whatever reset logic you need
@@ -38,4 +46,12 @@ public interface ByteBufferPool {
     default boolean needsRelease() {
         return false;
     }
+
+    /**
+     * Marks a subscriber which consumes (copies) the buffers in {@code onNext} and does not keep any reference to them
+     * so a recycling pool can pass its buffers directly and release them once {@code onNext} returned.
+     * Other subscribers get a copy of the pooled buffers.
+     */
+    interface CopyingSubscriber {
+    }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// AIMD: +1 per fast request while the limit is actually used, *backoffRatio per slow (or timed out) request
+final class ConcurrencyLimiter {
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong limitBits; // double stored as raw bits to be updated with a CAS
+    private final double minLimit;
+    private final double maxLimit;
+    private final long latencyThreshold;
+    private final double backoffRatio;
+
+    ConcurrencyLimiter(final int initialLimit, final int minLimit, final int maxLimit,
+                       final long latencyThresholdMs, final double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limit bounds: [" + minLimit + ", " + maxLimit + "]");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Invalid backoff ratio, it must be in ]0, 1[: " + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThreshold = TimeUnit.MILLISECONDS.toNanos(latencyThresholdMs);
+        this.backoffRatio = backoffRatio;
+        this.limitBits = new AtomicLong(Double.doubleToRawLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+    }
+
+    int limit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    boolean tryAcquire() {
+        final int limit = limit();
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Releases a permit without adjusting the limit, used when the request was not handled.
+     */
+    void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * @param durationNanos the time the request took.
+     * @param dropped       if the request failed because of the load (timeout), it is an overload signal whatever its duration.
+     */
+    void release(final long durationNanos, final boolean dropped) {
+        final int concurrency = inFlight.getAndDecrement();
+        final boolean overloaded = dropped || durationNanos > latencyThreshold;
+        long currentBits;
+        double next;
+        do {
+            currentBits = limitBits.get();
+            final double current = Double.longBitsToDouble(currentBits);
+            if (overloaded) {
+                next = Math.max(minLimit, current * backoffRatio);
+            } else if (concurrency * 2 >= current) { // do not grow a limit the traffic does not even reach
+                next = Math.min(maxLimit, current + 1);
+            } else {
+                return;
+            }
+            if (next == current) {
+                return;
+            }
+        } while (!limitBits.compareAndSet(currentBits, Double.doubleToRawLongBits(next)));
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import io.yupiik.fusion.http.server.impl.tomcat.ConcurrencyLimitConfiguration;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
+import io.yupiik.fusion.http.server.spi.BaseEndpoint;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.yupiik.fusion.http.server.observability.MetricsRegistry.escapeLabelValue;
+
+// limiters are resolved once per endpoint (same order than the endpoint list), a global limit shares a single one
+final class ConcurrencyLimits {
+    private final ConcurrencyLimiter[] limiters;
+    private final LongAdder[] rejected;
+    private final String retryAfter;
+
+    ConcurrencyLimits(final ConcurrencyLimitConfiguration configuration, final BaseEndpoint[] endpoints) {
+        this.retryAfter = Integer.toString(configuration.getRetryAfter());
+        this.limiters = new ConcurrencyLimiter[endpoints.length];
+        this.rejected = new LongAdder[endpoints.length];
+
+        final var registry = configuration.getMetricsRegistry();
+        if (configuration.isPerEndpoint()) {
+            final var byName = new HashMap<String, ConcurrencyLimiter>(); // same keys than the endpoint metrics
+            final var rejectedByName = new HashMap<String, LongAdder>();
+            for (int i = 0; i < endpoints.length; i++) {
+                final var name = endpoints[i].name();
+                limiters[i] = byName.computeIfAbsent(name, n -> {
+                    final var limiter = newLimiter(configuration);
+                    registerGauge(registry, "{endpoint=\"" + escapeLabelValue(n) + "\"}", limiter);
+                    return limiter;
+                });
+                rejected[i] = rejectedByName.computeIfAbsent(name, n -> newRejectedCounter(registry, "{endpoint=\"" + escapeLabelValue(n) + "\"}"));
+            }
+        } else {
+            final var limiter = newLimiter(configuration);
+            registerGauge(registry, "", limiter);
+            final var counter = newRejectedCounter(registry, "");
+            for (int i = 0; i < endpoints.length; i++) {
+                limiters[i] = limiter;
+                rejected[i] = counter;
+            }
+        }
+    }
+
+    String retryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @param endpoint the index of the endpoint handling the request.
+     * @return {@code null} if the request must be rejected else the permit to release with {@link Permit#cancel()}
+     * or to register on the request async context.
+     */
+    Permit tryAcquire(final int endpoint) {
+        final var limiter = limiters[endpoint];
+        if (!limiter.tryAcquire()) {
+            rejected[endpoint].increment();
+            return null;
+        }
+        return new Permit(limiter, System.nanoTime());
+    }
+
+    private static ConcurrencyLimiter newLimiter(final ConcurrencyLimitConfiguration configuration) {
+        return new ConcurrencyLimiter(
+                configuration.getInitialLimit(), configuration.getMinLimit(), configuration.getMaxLimit(),
+                configuration.getLatencyThreshold(), configuration.getBackoffRatio());
+    }
+
+    private static void registerGauge(final MetricsRegistry registry, final String labels, final ConcurrencyLimiter limiter) {
+        if (registry != null) {
+            final var name = "fusion_http_server_concurrency_limit" + labels;
+            registry.unregisterGauge(name); // the servlet can be recreated (server restart), the gauge then tracks the new limiter
+            registry.registerReadOnlyGauge(name, null, limiter::limit);
+        }
+    }
+
+    private static LongAdder newRejectedCounter(final MetricsRegistry registry, final String labels) {
+        return registry == null ? new LongAdder() : registry.getOrCreateCounter("fusion_http_server_requests_rejected_total" + labels, null);
+    }
+
+    static final class Permit implements AsyncListener {
+        static final String ATTRIBUTE = Permit.class.getName();
+
+        private final ConcurrencyLimiter limiter;
+        private final long start;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile boolean timedOut;
+
+        private Permit(final ConcurrencyLimiter limiter, final long start) {
+            this.limiter = limiter;
+            this.start = start;
+        }
+
+        /**
+         * Releases the permit without feeding the limiter, used when the request is rejected or when its response becomes
+         * a stream (SSE for example): it lasts as long as the client listens so it is neither load nor latency.
+         */
+        void cancel() {
+            if (released.compareAndSet(false, true)) {
+                limiter.cancel();
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            if (released.compareAndSet(false, true)) {
+                limiter.release(System.nanoTime() - start, timedOut);
+            }
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            timedOut = true; // onComplete follows
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            // no-op, onComplete follows
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // no-op
+        }
+    }
+}
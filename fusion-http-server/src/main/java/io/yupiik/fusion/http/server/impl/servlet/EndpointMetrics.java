@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import io.yupiik.fusion.http.server.observability.Histogram;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
+import io.yupiik.fusion.http.server.spi.BaseEndpoint;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.util.HashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static io.yupiik.fusion.http.server.observability.MetricsRegistry.escapeLabelValue;
+
+// metric handles are resolved once per endpoint (same order than the endpoint list) so a request only touches adders
+final class EndpointMetrics {
+    private static final String[] STATUS_CLASSES = {"1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final Handles[] handles;
+
+    EndpointMetrics(final MetricsRegistry registry, final BaseEndpoint[] endpoints) {
+        final var byName = new HashMap<String, Handles>(); // endpoints with the same name share their metrics
+        this.handles = new Handles[endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            handles[i] = byName.computeIfAbsent(endpoints[i].name(), name -> handles(registry, name));
+        }
+    }
+
+    /**
+     * @param endpoint the index of the endpoint handling the request.
+     * @return the listener to register on the request async context, it records the request when it completes.
+     */
+    AsyncListener start(final int endpoint) {
+        final var metrics = handles[endpoint];
+        metrics.active().increment();
+        return new Recording(metrics, System.nanoTime());
+    }
+
+    private static Handles handles(final MetricsRegistry registry, final String name) {
+        final var label = "endpoint=\"" + escapeLabelValue(name) + '"';
+        final var statuses = new LongAdder[STATUS_CLASSES.length];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = registry.getOrCreateCounter(
+                    "fusion_http_server_responses_total{" + label + ",status=\"" + STATUS_CLASSES[i] + "\"}", null);
+        }
+        return new Handles(
+                registry.getOrCreateMovingGauge("fusion_http_server_requests_active{" + label + '}', null),
+                statuses,
+                registry.getOrCreateTimer("fusion_http_server_request_duration_seconds{" + label + '}'));
+    }
+
+    private record Handles(LongAdder active, LongAdder[] statuses, Histogram duration) {
+    }
+
+    private record Recording(Handles handles, long start) implements AsyncListener {
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            handles.duration().recordNanosSince(start);
+            handles.active().decrement();
+            if (event.getSuppliedResponse() instanceof HttpServletResponse response) {
+                final int statusClass = response.getStatus() / 100 - 1;
+                if (statusClass >= 0 && statusClass < STATUS_CLASSES.length) {
+                    handles.statuses()[statusClass].increment();
+                }
+            }
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            // no-op, onComplete follows
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            // no-op, onComplete follows
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // no-op
+        }
+    }
+}
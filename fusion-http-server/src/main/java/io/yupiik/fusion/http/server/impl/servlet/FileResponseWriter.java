@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.ZonedDateTime;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static java.time.format.DateTimeFormatter.RFC_1123_DATE_TIME;
+
+// serves Response.Builder#file bodies: conditional requests, single ranges, precompressed variant and channel transfer
+final class FileResponseWriter {
+    private static final long METADATA_TTL = TimeUnit.SECONDS.toNanos(1);
+    private static final int MAX_CACHED_METADATA = 1_024;
+
+    private final Map<Path, Metadata> metadata = new ConcurrentHashMap<>();
+
+    void write(final HttpServletRequest request, final HttpServletResponse response, final Path file) throws IOException {
+        final var entry = metadata(file.toAbsolutePath());
+        if (entry == null) {
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        final var served = entry.gzip() != null && request != null && acceptsGzip(request) ? entry.gzip() : entry;
+        if (served != entry) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        if (entry.gzip() != null) {
+            response.addHeader("Vary", "Accept-Encoding");
+        }
+        if (!response.containsHeader("content-type")) {
+            final var mime = mimeType(request, file);
+            if (mime != null) {
+                response.setContentType(mime);
+            }
+        }
+        response.setHeader("ETag", served.etag());
+        response.setDateHeader("Last-Modified", served.lastModified());
+        response.setHeader("Accept-Ranges", "bytes");
+
+        long start = 0;
+        long end = served.length();
+        if (request != null && response.getStatus() == HttpServletResponse.SC_OK) {
+            if (notModified(request, served)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+
+            final var range = request.getHeader("Range");
+            if (range != null && ifRange(request.getHeader("If-Range"), served)) {
+                final var bounds = parseRange(range, served.length());
+                if (bounds == null) {
+                    response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    response.setHeader("Content-Range", "bytes */" + served.length());
+                    return;
+                }
+                if (bounds.length == 2) {
+                    start = bounds[0];
+                    end = bounds[1];
+                    response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                    response.setHeader("Content-Range", "bytes " + start + '-' + (end - 1) + '/' + served.length());
+                }
+            }
+        }
+
+        final long length = end - start;
+        response.setContentLengthLong(length);
+        if (length == 0 || (request != null && "HEAD".equalsIgnoreCase(request.getMethod()))) {
+            return;
+        }
+
+        final var out = response.getOutputStream();
+        // note: Tomcat sendfile is only processed for synchronous requests and fusion ones are asynchronous,
+        //       the transfer still streams the file through small reused buffers instead of loading it
+        final var target = Channels.newChannel(out); // not closed, it would close the response stream
+        try (final var channel = FileChannel.open(served.file(), StandardOpenOption.READ)) {
+            long position = start;
+            while (position < end) {
+                final long written = channel.transferTo(position, end - position, target);
+                if (written <= 0) {
+                    break;
+                }
+                position += written;
+            }
+        }
+        out.flush();
+    }
+
+    private boolean notModified(final HttpServletRequest request, final Metadata served) {
+        final var ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            if ("*".equals(ifNoneMatch.strip())) {
+                return true;
+            }
+            for (final var candidate : ifNoneMatch.split(",")) {
+                final var value = candidate.strip();
+                if (served.etag().equals(value.startsWith("W/") ? value.substring(2) : value)) {
+                    return true;
+                }
+            }
+            return false; // If-Modified-Since is ignored when If-None-Match is present
+        }
+        try {
+            final long ifModifiedSince = request.getDateHeader("If-Modified-Since");
+            return ifModifiedSince >= 0 && served.lastModified() / 1000 <= ifModifiedSince / 1000; // second precision
+        } catch (final IllegalArgumentException iae) { // invalid date, ignore it
+            return false;
+        }
+    }
+
+    // a range is only honored if the file did not change since the client got its first part (strong comparison)
+    private boolean ifRange(final String ifRange, final Metadata served) {
+        if (ifRange == null) {
+            return true;
+        }
+        final var value = ifRange.strip();
+        if (value.startsWith("\"")) {
+            return served.etag().equals(value);
+        }
+        try {
+            return served.lastModified() / 1000 == ZonedDateTime.parse(value, RFC_1123_DATE_TIME).toEpochSecond();
+        } catch (final RuntimeException re) {
+            return false;
+        }
+    }
+
+    // null = unsatisfiable, empty = ignored (multiple ranges, invalid syntax like bytes=5-3), else [start, end[
+    private long[] parseRange(final String header, final long length) {
+        final var value = header.strip();
+        if (!value.regionMatches(true, 0, "bytes=", 0, "bytes=".length()) || value.indexOf(',') >= 0) {
+            return new long[0];
+        }
+        final var spec = value.substring("bytes=".length()).strip();
+        final int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            final var first = spec.substring(0, dash).strip();
+            final var last = spec.substring(dash + 1).strip();
+            if (first.isEmpty()) { // suffix: last N bytes
+                if (last.isEmpty()) {
+                    return new long[0];
+                }
+                final long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                return new long[]{Math.max(0, length - suffix), length};
+            }
+            final long start = Long.parseLong(first);
+            if (start < 0) {
+                return new long[0];
+            }
+            final long end;
+            if (last.isEmpty()) {
+                end = length;
+            } else {
+                final long lastPosition = Long.parseLong(last);
+                if (lastPosition < start) { // invalid, not unsatisfiable
+                    return new long[0];
+                }
+                end = Math.min(length, lastPosition + 1);
+            }
+            if (start >= length) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (final NumberFormatException nfe) {
+            return new long[0];
+        }
+    }
+
+    // the context mappings if any (web.xml, customizers) else the JVM ones
+    private String mimeType(final HttpServletRequest request, final Path file) {
+        final var name = file.getFileName().toString();
+        if (request != null) {
+            final var mime = request.getServletContext().getMimeType(name);
+            if (mime != null) {
+                return mime;
+            }
+        }
+        return URLConnection.getFileNameMap().getContentTypeFor(name);
+    }
+
+    // gzip (or *) must be listed without a zero quality (gzip;q=0 refuses it), an explicit gzip entry wins over *
+    private boolean acceptsGzip(final HttpServletRequest request) {
+        final var acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (final var coding : acceptEncoding.split(",")) {
+            final var parameters = coding.split(";");
+            final var name = parameters[0].strip().toLowerCase(Locale.ROOT);
+            if ("gzip".equals(name) || "x-gzip".equals(name)) {
+                return quality(parameters) > 0;
+            }
+            if ("*".equals(name)) {
+                wildcard = quality(parameters) > 0;
+            }
+        }
+        return wildcard;
+    }
+
+    private double quality(final String[] parameters) {
+        for (int i = 1; i < parameters.length; i++) {
+            final var parameter = parameters[i].strip();
+            if (parameter.length() > 2 && (parameter.charAt(0) == 'q' || parameter.charAt(0) == 'Q') && parameter.charAt(1) == '=') {
+                try {
+                    return Double.parseDouble(parameter.substring(2).strip());
+                } catch (final NumberFormatException nfe) {
+                    return 1; // invalid weight, ignore it
+                }
+            }
+        }
+        return 1;
+    }
+
+    // the file attributes are revalidated at most once per second, the strings (etag) are computed once per file version
+    private Metadata metadata(final Path file) throws IOException {
+        final long now = System.nanoTime();
+        final var cached = metadata.get(file);
+        if (cached != null && now - cached.checkedAt() < METADATA_TTL) {
+            return cached;
+        }
+
+        final var loaded = load(file, now, true);
+        if (loaded == null) {
+            metadata.remove(file);
+            return null;
+        }
+        if (metadata.size() >= MAX_CACHED_METADATA) {
+            metadata.clear(); // simple bound, the cache is an optimization
+        }
+        final var value = cached != null && cached.sameVersion(loaded) ? cached.revalidated(now) : loaded;
+        metadata.put(file, value); // return the local value, a concurrent clear() or remove() can run meanwhile
+        return value;
+    }
+
+    private Metadata load(final Path file, final long now, final boolean withGzip) throws IOException {
+        final BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (final NoSuchFileException nsfe) {
+            return null;
+        }
+        if (!attributes.isRegularFile()) {
+            return null;
+        }
+        final long lastModified = attributes.lastModifiedTime().toMillis();
+        final var gzip = withGzip ? load(file.resolveSibling(file.getFileName() + ".gz"), now, false) : null;
+        return new Metadata(
+                file, attributes.size(), lastModified,
+                '"' + Long.toHexString(attributes.size()) + '-' + Long.toHexString(lastModified) + (withGzip ? "" : "-gz") + '"',
+                gzip != null && gzip.lastModified() >= lastModified ? gzip : null, // a stale precompressed file is ignored
+                now);
+    }
+
+    private record Metadata(Path file, long length, long lastModified, String etag, Metadata gzip, long checkedAt) {
+        private boolean sameVersion(final Metadata other) {
+            return length == other.length && lastModified == other.lastModified &&
+                    (gzip == null ? other.gzip == null : other.gzip != null && gzip.sameVersion(other.gzip));
+        }
+
+        private Metadata revalidated(final long now) {
+            return new Metadata(file, length, lastModified, etag, gzip, now);
+        }
+    }
+}
@@ -18,34 +18,63 @@ package io.yupiik.fusion.http.server.impl.servlet;
 import io.yupiik.fusion.http.server.api.HttpException;
 import io.yupiik.fusion.http.server.api.Request;
 import io.yupiik.fusion.http.server.api.Response;
-import io.yupiik.fusion.http.server.impl.flow.WriterPublisher;
+import io.yupiik.fusion.http.server.impl.flow.BytesPublisher;
+import io.yupiik.fusion.http.server.impl.flow.FilePublisher;
 import io.yupiik.fusion.http.server.impl.flow.OutputStreamPublisher;
+import io.yupiik.fusion.http.server.impl.flow.WriterPublisher;
 import io.yupiik.fusion.http.server.impl.io.CloseOnceOutputStream;
 import io.yupiik.fusion.http.server.impl.io.CloseOnceWriter;
+import io.yupiik.fusion.http.server.impl.tomcat.ConcurrencyLimitConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.RateLimitConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.RequestTimeoutConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.TomcatWebServerConfiguration;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
 import io.yupiik.fusion.http.server.spi.BaseEndpoint;
+import io.yupiik.fusion.http.server.spi.RouteTable;
 import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.logging.Logger;
 
 import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.logging.Level.SEVERE;
+import static java.util.logging.Level.WARNING;
 
 public class FusionServlet extends HttpServlet {
     private static final Logger logger = Logger.getLogger(FusionServlet.class.getName());
+    private static final Response DEADLINE_EXCEEDED = Response.of().build(); // identity matters, never written
 
     private final List<? extends BaseEndpoint> endpoints;
+    private final RouteIndex routes;
+    private final Executor executor;
+    private final Semaphore inFlight;
+    private final EndpointMetrics metrics;
+    private final ConcurrencyLimits concurrencyLimits;
+    private final Map<BaseEndpoint, Long> timeouts; // nanoseconds, null when no endpoint has a timeout
+    private final int timeoutStatus;
+    private final RateLimits rateLimits;
     private final Set<FusionWriteListener> activeStreams = ConcurrentHashMap.newKeySet();
+    private final FileResponseWriter files = new FileResponseWriter();
 
     /**
      * Set once the shutdown started, it stops accepting requests so no new streaming response can be registered
@@ -54,7 +83,54 @@ public class FusionServlet extends HttpServlet {
     private volatile boolean stopped;
 
     public FusionServlet(final List<? extends BaseEndpoint> endpoints) {
+        this(endpoints, List.of(), null, 0, null, null, null, null);
+    }
+
+    /**
+     * @param configuration the server configuration: its endpoints are served in priority order (resolved with its route tables)
+     *                      with the in flight, concurrency, timeout and rate limits and the endpoint metrics it defines.
+     * @param executor      the executor running the endpoints (virtual threads for example), {@code null} to use the container threads.
+     */
+    public FusionServlet(final TomcatWebServerConfiguration configuration, final Executor executor) {
+        this(configuration.getEndpoints(), configuration.getRouteTables(), executor, configuration.getMaxInFlightRequests(), configuration.getEndpointMetrics(),
+                configuration.getConcurrencyLimit(), configuration.getRequestTimeout(), configuration.getRateLimit());
+    }
+
+    private FusionServlet(final List<? extends BaseEndpoint> endpoints, final List<? extends RouteTable> routeTables,
+                          final Executor executor, final int maxInFlightRequests, final MetricsRegistry metricsRegistry,
+                          final ConcurrencyLimitConfiguration concurrencyLimit, final RequestTimeoutConfiguration requestTimeout,
+                          final RateLimitConfiguration rateLimit) {
         this.endpoints = endpoints;
+        this.routes = new RouteIndex(endpoints, routeTables);
+        this.executor = executor;
+        this.inFlight = maxInFlightRequests > 0 ? new Semaphore(maxInFlightRequests) : null;
+        this.metrics = metricsRegistry == null ? null : new EndpointMetrics(metricsRegistry, endpoints.toArray(BaseEndpoint[]::new));
+        this.concurrencyLimits = concurrencyLimit == null ? null : new ConcurrencyLimits(concurrencyLimit, endpoints.toArray(BaseEndpoint[]::new));
+        this.timeouts = timeouts(endpoints, requestTimeout);
+        this.timeoutStatus = requestTimeout == null ? HttpServletResponse.SC_GATEWAY_TIMEOUT : requestTimeout.getStatus();
+        this.rateLimits = rateLimit == null ? null : new RateLimits(rateLimit);
+    }
+
+    // resolved once, the configuration overrides the endpoint value which overrides the default one
+    private static Map<BaseEndpoint, Long> timeouts(final List<? extends BaseEndpoint> endpoints,
+                                                    final RequestTimeoutConfiguration configuration) {
+        final var timeouts = new IdentityHashMap<BaseEndpoint, Long>();
+        for (final var endpoint : endpoints) {
+            long timeout = configuration == null ? 0 : MILLISECONDS.toNanos(configuration.getTimeout());
+            if (endpoint.timeout() != null) {
+                timeout = endpoint.timeout().toNanos();
+            }
+            if (configuration != null && configuration.getEndpoints() != null) {
+                final var configured = configuration.getEndpoints().get(endpoint.name());
+                if (configured != null) {
+                    timeout = MILLISECONDS.toNanos(configured);
+                }
+            }
+            if (timeout > 0) {
+                timeouts.put(endpoint, timeout);
+            }
+        }
+        return timeouts.isEmpty() ? null : timeouts;
     }
 
     /**
@@ -73,6 +149,13 @@ public class FusionServlet extends HttpServlet {
         pending.forEach(FusionWriteListener::cancel);
     }
 
+    /**
+     * @return the number of responses currently streaming their body.
+     */
+    public int activeStreams() {
+        return activeStreams.size();
+    }
+
     @Override
     public void destroy() {
         cancelActiveStreams(); // safety net, a container stopping properly cancelled them before awaiting them
@@ -92,36 +175,104 @@ public class FusionServlet extends HttpServlet {
         }
 
         final var request = new ServletRequest(req);
-        final var matched = endpoints.stream()
-                .filter(e -> e.matches(request))
-                .findFirst();
-        if (matched.isEmpty()) {
+        if (rateLimits != null) { // before the routing: it protects the server from a client, not an endpoint
+            final var retryAfter = rateLimits.tryAcquire(request);
+            if (retryAfter != null) {
+                resp.setStatus(rateLimits.status());
+                resp.setHeader("Retry-After", retryAfter);
+                return;
+            }
+        }
+
+        final int index = routes.findIndex(request);
+        if (index < 0) {
             resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
             return;
         }
+        final BaseEndpoint matched = endpoints.get(index);
+
+        final ConcurrencyLimits.Permit permit;
+        if (concurrencyLimits != null) {
+            permit = concurrencyLimits.tryAcquire(index);
+            if (permit == null) { // shed the load early, the client is told when retrying makes sense
+                resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                resp.setHeader("Retry-After", concurrencyLimits.retryAfter());
+                return;
+            }
+        } else {
+            permit = null;
+        }
+
+        // reject instead of queueing: the point is to bound the memory and downstream load, not to delay the requests
+        if (inFlight != null && !inFlight.tryAcquire()) {
+            if (permit != null) {
+                permit.cancel();
+            }
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            return;
+        }
+
+        final AsyncContext asyncContext;
+        try {
+            asyncContext = req.startAsync();
+            if (inFlight != null) {
+                asyncContext.addListener(new InFlightRelease(inFlight));
+            }
+            if (permit != null) {
+                asyncContext.addListener(permit);
+                req.setAttribute(ConcurrencyLimits.Permit.ATTRIBUTE, permit);
+            }
+            if (metrics != null) {
+                asyncContext.addListener(metrics.start(index), req, resp);
+            }
+        } catch (final RuntimeException re) {
+            if (inFlight != null) {
+                inFlight.release();
+            }
+            if (permit != null) {
+                permit.cancel();
+            }
+            throw re;
+        }
 
-        final var asyncContext = req.startAsync();
-        final Runnable task = () -> execute(resp, request, matched.orElseThrow(), asyncContext);
-        doExecute(asyncContext, task);
+        final Runnable task = () -> execute(resp, request, matched, asyncContext);
+        try {
+            doExecute(asyncContext, task);
+        } catch (final RejectedExecutionException ree) { // executor shut down
+            resp.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            asyncContext.complete();
+        }
     }
 
     protected void doExecute(final AsyncContext asyncContext, final Runnable task) {
-        asyncContext.start(task);
+        if (executor == null) {
+            asyncContext.start(task);
+        } else { // the container bound its context to the dispatching thread, asyncContext.start() would do the same
+            executor.execute(new ContextualTask(Thread.currentThread().getContextClassLoader(), task));
+        }
     }
 
     protected void execute(final HttpServletResponse resp, final Request request,
                            final BaseEndpoint matched, final AsyncContext asyncContext) {
         try {
-            matched
-                    .handle(request)
+            final var timeout = timeouts == null ? null : timeouts.get(matched);
+            if (timeout != null) { // let the endpoint propagate it to its downstream calls
+                request.setAttribute(Request.DEADLINE_ATTRIBUTE, Instant.now().plusNanos(timeout));
+            }
+            final var stage = matched.handle(request);
+            (timeout == null ? stage : withTimeout(stage, timeout))
                     // important: when whenComplete ends we can still process the response payload (completedPromise)
                     .whenComplete((response, ex) -> {
                         CompletionStage<Void> completedPromise = null;
                         try {
-                            if (ex != null) {
+                            if (response == DEADLINE_EXCEEDED) { // an endpoint TimeoutException is a plain error
+                                logger.log(WARNING, () -> "Endpoint '" + matched.name() + "' timed out after " +
+                                        NANOSECONDS.toMillis(timeout) + "ms");
+                                resp.setStatus(timeoutStatus);
+                            } else if (ex != null) {
                                 onError(resp, ex);
                             } else {
-                                completedPromise = writeResponse(resp, response);
+                                completedPromise = writeResponse(request.unwrapOrNull(HttpServletRequest.class), resp, response);
                             }
                         } catch (final RuntimeException re) {
                             if (!resp.isCommitted()) {
@@ -147,6 +298,22 @@ public class FusionServlet extends HttpServlet {
         }
     }
 
+    // the deadline applies to a copy so only the timeout status is written, the endpoint stage is cancelled to release its resources,
+    // it completes the copy with a sentinel so a TimeoutException raised by the endpoint itself is not mistaken for it
+    private CompletionStage<Response> withTimeout(final CompletionStage<Response> stage, final long timeout) {
+        final var future = stage.toCompletableFuture();
+        if (future.isDone()) {
+            return future;
+        }
+        return future.copy()
+                .completeOnTimeout(DEADLINE_EXCEEDED, timeout, NANOSECONDS)
+                .whenComplete((response, ex) -> {
+                    if (response == DEADLINE_EXCEEDED && !future.isDone()) {
+                        future.cancel(true);
+                    }
+                });
+    }
+
     private void onError(final HttpServletResponse resp, final Throwable ex) {
         logger.log(SEVERE, ex, ex::getMessage);
         if (unwrap(ex) instanceof HttpException he) {
@@ -164,6 +331,16 @@ public class FusionServlet extends HttpServlet {
     }
 
     protected CompletionStage<Void> writeResponse(final HttpServletResponse resp, final Response response) {
+        return writeResponse(null, resp, response);
+    }
+
+    /**
+     * @param req      the request if available, it enables conditional and range requests for file bodies.
+     * @param resp     the servlet response.
+     * @param response the endpoint response.
+     * @return {@code null} if the response is written else a promise completed once written (streaming).
+     */
+    protected CompletionStage<Void> writeResponse(final HttpServletRequest req, final HttpServletResponse resp, final Response response) {
         resp.setStatus(response.status());
         if (!response.headers().isEmpty()) {
             response.headers().forEach((k, v) -> {
@@ -202,6 +379,10 @@ public class FusionServlet extends HttpServlet {
             return null;
         }
         try {
+            if (body instanceof FilePublisher fp) { // never loaded in memory, see FileResponseWriter
+                files.write(req, resp, fp.getPath());
+                return null;
+            }
             if (body instanceof OutputStreamPublisher osp) { // optimize this path, skips the container char conversion
                 try (final var stream = new CloseOnceOutputStream(resp.getOutputStream())) {
                     osp.getDelegate().accept(stream);
@@ -215,6 +396,15 @@ public class FusionServlet extends HttpServlet {
                 return null;
             }
 
+            if (!(body instanceof BytesPublisher) && req != null) { // a publisher can be a long-lived stream (SSE)
+                if (req.isAsyncStarted()) { // it ends when the client or the server closes it, not at the async timeout
+                    req.getAsyncContext().setTimeout(0);
+                }
+                if (req.getAttribute(ConcurrencyLimits.Permit.ATTRIBUTE) instanceof ConcurrencyLimits.Permit permit) {
+                    permit.cancel(); // the endpoint is done, the stream must not hold a permit nor look like latency
+                }
+            }
+
             final var stream = resp.getOutputStream();
             final var result = new CompletableFuture<Void>();
             final var listener = new FusionWriteListener(body, resp, stream, result);
@@ -231,4 +421,41 @@ public class FusionServlet extends HttpServlet {
             throw new IllegalStateException(e);
         }
     }
+
+    // complete is always called, even after a timeout or an error, so it is the single place to release the permit
+    private record InFlightRelease(Semaphore semaphore) implements AsyncListener {
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            semaphore.release();
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) {
+            // no-op
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) {
+            // no-op
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            // no-op
+        }
+    }
+
+    private record ContextualTask(ClassLoader loader, Runnable delegate) implements Runnable {
+        @Override
+        public void run() {
+            final var thread = Thread.currentThread();
+            final var previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader);
+            try {
+                delegate.run();
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+        }
+    }
 }
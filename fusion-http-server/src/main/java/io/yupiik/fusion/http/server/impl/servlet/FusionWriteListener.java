@@ -84,14 +84,7 @@ public class FusionWriteListener implements WriteListener {
      * It is idempotent and can be called from any thread.
      */
     public void cancel() {
-        final var current = subscription;
-        if (current != null) {
-            try {
-                current.cancel();
-            } catch (final RuntimeException re) { // a publisher refusing to be cancelled must not block the shutdown
-                LOGGER.log(FINEST, re, re::getMessage);
-            }
-        }
+        cancelSubscription(); // a publisher refusing to be cancelled must not block the shutdown
         doClose();
     }
 
@@ -179,6 +172,18 @@ public class FusionWriteListener implements WriteListener {
             }
             lock.unlock();
         }
+        cancelSubscription(); // the client is gone (broken pipe), a long living publisher must stop producing
+    }
+
+    private void cancelSubscription() {
+        final var current = subscription;
+        if (current != null) {
+            try {
+                current.cancel();
+            } catch (final RuntimeException re) {
+                LOGGER.log(FINEST, re, re::getMessage);
+            }
+        }
     }
 
     private class Subscriber implements Flow.Subscriber<ByteBuffer> {
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import io.yupiik.fusion.http.server.impl.VirtualThreads;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Bounded buffer pool with power of two size classes (from {@code 512} bytes to the configured buffer size):
+ * small request bodies use small buffers.
+ * <p>
+ * Each size class has a shared queue and (for platform threads only, virtual threads are not reused)
+ * a one buffer per thread cache avoiding any contention in the common read-release loop.
+ */
+public class PooledByteBufferPool implements ByteBufferPool {
+    private static final int MIN_SIZE = 512;
+
+    private final SizeClass[] classes;
+    private final boolean direct;
+    private final ThreadLocal<ByteBuffer[]> threadCache;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    public PooledByteBufferPool() {
+        this(8 * 1_024, 64, false); // org.apache.catalina.connector.InputBuffer.DEFAULT_BUFFER_SIZE
+    }
+
+    /**
+     * @param bufferSize   the size of the largest buffers, rounded to a power of two.
+     * @param maxPerClass  the maximum number of buffers kept by size class (shared queue, the thread caches are not counted).
+     * @param direct       if buffers are allocated off heap.
+     */
+    public PooledByteBufferPool(final int bufferSize, final int maxPerClass, final boolean direct) {
+        if (bufferSize < MIN_SIZE) {
+            throw new IllegalArgumentException("Buffer size must be >= " + MIN_SIZE + ": " + bufferSize);
+        }
+        final int max = Integer.highestOneBit(bufferSize - 1) << 1;
+        this.classes = new SizeClass[Integer.numberOfTrailingZeros(max) - Integer.numberOfTrailingZeros(MIN_SIZE) + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass(MIN_SIZE << i, maxPerClass);
+        }
+        this.direct = direct;
+        this.threadCache = ThreadLocal.withInitial(() -> new ByteBuffer[classes.length]);
+    }
+
+    @Override
+    public ByteBuffer get() {
+        return get(Integer.MAX_VALUE);
+    }
+
+    @Override
+    public ByteBuffer get(final int sizeHint) {
+        final int index = indexOf(sizeHint);
+        if (!VirtualThreads.isVirtual(Thread.currentThread())) {
+            final var cache = threadCache.get();
+            final var cached = cache[index];
+            if (cached != null) {
+                cache[index] = null;
+                hits.increment();
+                return cached;
+            }
+        }
+
+        final var sizeClass = classes[index];
+        final var pooled = sizeClass.buffers.poll();
+        if (pooled != null) {
+            sizeClass.size.decrementAndGet();
+            hits.increment();
+            return pooled;
+        }
+
+        misses.increment();
+        return direct ? ByteBuffer.allocateDirect(sizeClass.bufferSize) : ByteBuffer.allocate(sizeClass.bufferSize);
+    }
+
+    @Override
+    public void release(final ByteBuffer buffer) {
+        final int index = Integer.numberOfTrailingZeros(buffer.capacity()) - Integer.numberOfTrailingZeros(MIN_SIZE);
+        if (buffer.isDirect() != direct || index < 0 || index >= classes.length || classes[index].bufferSize != buffer.capacity()) {
+            dropped.increment(); // not a buffer of this pool
+            return;
+        }
+
+        buffer.clear();
+        if (!VirtualThreads.isVirtual(Thread.currentThread())) {
+            final var cache = threadCache.get();
+            if (cache[index] == null) {
+                cache[index] = buffer;
+                return;
+            }
+        }
+
+        final var sizeClass = classes[index];
+        if (sizeClass.size.incrementAndGet() > sizeClass.maxSize) {
+            sizeClass.size.decrementAndGet();
+            dropped.increment();
+            return;
+        }
+        sizeClass.buffers.offer(buffer);
+    }
+
+    @Override
+    public boolean needsRelease() {
+        return true;
+    }
+
+    /**
+     * Registers the pool metrics: buffers served from the pool ({@code hits}), allocated ({@code misses}),
+     * not pooled back since the pool was full ({@code dropped}) and the bytes held by the shared queues.
+     *
+     * @param registry the registry to register the metrics into.
+     */
+    public void registerMetrics(final MetricsRegistry registry) {
+        register(registry, "fusion_http_server_buffer_pool_hits", hits::sum);
+        register(registry, "fusion_http_server_buffer_pool_misses", misses::sum);
+        register(registry, "fusion_http_server_buffer_pool_dropped", dropped::sum);
+        register(registry, "fusion_http_server_buffer_pool_pooled_bytes", this::pooledBytes);
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long pooledBytes() {
+        long total = 0;
+        for (final var sizeClass : classes) {
+            total += (long) sizeClass.size.get() * sizeClass.bufferSize;
+        }
+        return total;
+    }
+
+    private int indexOf(final int sizeHint) {
+        if (sizeHint <= MIN_SIZE) {
+            return 0;
+        }
+        final int index = 32 - Integer.numberOfLeadingZeros(sizeHint - 1) - Integer.numberOfTrailingZeros(MIN_SIZE);
+        return Math.min(index, classes.length - 1);
+    }
+
+    private static void register(final MetricsRegistry registry, final String name, final LongSupplier value) {
+        registry.unregisterGauge(name); // the server can be restarted with the same registry
+        registry.registerReadOnlyGauge(name, null, value);
+    }
+
+    private static final class SizeClass {
+        private final int bufferSize;
+        private final int maxSize;
+        private final AtomicInteger size = new AtomicInteger();
+        private final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+
+        private SizeClass(final int bufferSize, final int maxSize) {
+            this.bufferSize = bufferSize;
+            this.maxSize = maxSize;
+        }
+    }
+}
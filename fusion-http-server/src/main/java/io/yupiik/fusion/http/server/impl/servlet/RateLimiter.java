@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Token buckets per key in the GCRA form: a bucket is a single {@code long} - the time it is full again - updated
+ * with a CAS so an existing key costs a map lookup and a CAS, without allocation nor lock.
+ * <p>
+ * Keys are spread over stripes bounding the number of buckets, only the creation of a bucket locks its stripe.
+ * A bucket which refilled completely is equivalent to a missing one so it is evicted without losing anything,
+ * when a stripe is full of active buckets the new keys share an overflow bucket.
+ */
+final class RateLimiter {
+    private final long interval; // ns per token
+    private final long tolerance; // ns, (burst - 1) tokens
+    private final LongSupplier clock;
+    private final Stripe[] stripes;
+    private final int shift;
+    private final Bucket overflow;
+
+    RateLimiter(final int permits, final long periodNanos, final int burst, final int maxKeys, final LongSupplier clock) {
+        if (permits <= 0 || periodNanos <= 0 || burst <= 0 || maxKeys <= 0) {
+            throw new IllegalArgumentException("Invalid rate limit: permits=" + permits + ", period=" + periodNanos + "ns, burst=" + burst + ", maxKeys=" + maxKeys);
+        }
+        this.interval = Math.max(1, periodNanos / permits);
+        this.tolerance = (burst - 1) * interval;
+        this.clock = clock;
+
+        final int stripeCount = Math.min(64, Integer.highestOneBit(maxKeys)); // power of two
+        this.stripes = new Stripe[stripeCount];
+        this.shift = 32 - Integer.numberOfTrailingZeros(stripeCount);
+        final int perStripe = Math.max(1, maxKeys / stripeCount);
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new Stripe(perStripe);
+        }
+        this.overflow = new Bucket(clock.getAsLong());
+    }
+
+    /**
+     * @param key the client key.
+     * @return {@code 0} if the request is accepted else the nanoseconds before a token is available.
+     */
+    long tryAcquire(final String key) {
+        final long now = clock.getAsLong();
+        // the high bits select the stripe, the map uses the low ones
+        final var stripe = stripes[stripes.length == 1 ? 0 : (key.hashCode() * 0x9E3779B9) >>> shift];
+        var bucket = stripe.buckets.get(key);
+        if (bucket == null) {
+            bucket = stripe.create(key, now, overflow);
+        }
+        return bucket.tryAcquire(now, interval, tolerance);
+    }
+
+    int size() {
+        int size = 0;
+        for (final var stripe : stripes) {
+            size += stripe.buckets.size();
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+        private final ConcurrentHashMap<String, Bucket> buckets = new ConcurrentHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        private final int maxKeys;
+        private int size; // guarded by lock, buckets are only added/removed under it
+
+        private Stripe(final int maxKeys) {
+            this.maxKeys = maxKeys;
+        }
+
+        private Bucket create(final String key, final long now, final Bucket overflow) {
+            lock.lock();
+            try {
+                final var existing = buckets.get(key);
+                if (existing != null) {
+                    return existing;
+                }
+                if (size >= maxKeys) {
+                    evictFull(now);
+                    if (size >= maxKeys) {
+                        return overflow;
+                    }
+                }
+                final var bucket = new Bucket(now);
+                buckets.put(key, bucket);
+                size++;
+                return bucket;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // a request racing with the eviction can consume a token of the evicted bucket, it only costs a token
+        private void evictFull(final long now) {
+            final var it = buckets.values().iterator();
+            while (it.hasNext()) {
+                if (it.next().isFull(now)) {
+                    it.remove();
+                    size--;
+                }
+            }
+        }
+    }
+
+    private static final class Bucket extends AtomicLong {
+        private Bucket(final long now) {
+            super(now);
+        }
+
+        private boolean isFull(final long now) {
+            return get() - now <= 0;
+        }
+
+        private long tryAcquire(final long now, final long interval, final long tolerance) {
+            while (true) {
+                final long full = get();
+                final long start = full - now > 0 ? full : now; // nanoTime can overflow, compare differences
+                final long wait = start - tolerance - now;
+                if (wait > 0) {
+                    return wait;
+                }
+                if (compareAndSet(full, start + interval)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.impl.tomcat.RateLimitConfiguration;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// binds the rate limiter to the servlet: key extraction, rejection status and metrics
+final class RateLimits {
+    private static final String[] RETRY_AFTER = new String[61]; // avoids to format the common values
+
+    static {
+        for (int i = 0; i < RETRY_AFTER.length; i++) {
+            RETRY_AFTER[i] = Integer.toString(i);
+        }
+    }
+
+    private final RateLimiter limiter;
+    private final Function<Request, String> keyExtractor;
+    private final int status;
+    private final LongAdder rejected;
+
+    RateLimits(final RateLimitConfiguration configuration) {
+        this.limiter = new RateLimiter(
+                configuration.getPermits(), TimeUnit.MILLISECONDS.toNanos(configuration.getPeriod()),
+                configuration.getBurst() <= 0 ? configuration.getPermits() : configuration.getBurst(),
+                configuration.getMaxKeys(), System::nanoTime);
+        this.keyExtractor = configuration.getKeyExtractor();
+        this.status = configuration.getStatus();
+
+        final var registry = configuration.getMetricsRegistry();
+        if (registry != null) {
+            this.rejected = registry.getOrCreateCounter("fusion_http_server_rate_limited_total", null);
+            final var name = "fusion_http_server_rate_limit_keys";
+            registry.unregisterGauge(name); // the servlet can be recreated (server restart), the gauge then tracks the new limiter
+            registry.registerReadOnlyGauge(name, null, limiter::size);
+        } else {
+            this.rejected = new LongAdder();
+        }
+    }
+
+    int status() {
+        return status;
+    }
+
+    /**
+     * @param request the incoming request.
+     * @return {@code null} if the request is accepted else the {@code Retry-After} value.
+     */
+    String tryAcquire(final Request request) {
+        final var key = keyExtractor.apply(request);
+        if (key == null) {
+            return null;
+        }
+        final long wait = limiter.tryAcquire(key);
+        if (wait == 0) {
+            return null;
+        }
+        rejected.increment();
+        final long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999_999_999L)); // ceil
+        return seconds < RETRY_AFTER.length ? RETRY_AFTER[(int) seconds] : Long.toString(seconds);
+    }
+}
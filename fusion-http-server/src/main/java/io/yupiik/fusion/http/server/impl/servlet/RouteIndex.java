@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.spi.BaseEndpoint;
+import io.yupiik.fusion.http.server.spi.Route;
+import io.yupiik.fusion.http.server.spi.RouteTable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// selects the same endpoint than testing the endpoints in order and keeping the first matching one (list order is the
+// priority) but endpoints exposing a Route are indexed: exact paths are a hash lookup, prefixes a char tree walked once
+// and only opaque/regex/suffix endpoints are still tested one by one - and only while they can beat an indexed match.
+// exact routes generated at build time come with a RouteTable (compiled switch) so they are resolved by the table instead.
+final class RouteIndex {
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final BaseEndpoint[] endpoints;
+    private final Map<String, MethodIndex> exact = new HashMap<>();
+    private final MethodIndex anyPath = new MethodIndex();
+    private final PrefixNode prefixes = new PrefixNode();
+    private final int[] others; // ascending indices
+    private final BoundTable[] tables;
+
+    RouteIndex(final List<? extends BaseEndpoint> endpoints) {
+        this(endpoints, List.of());
+    }
+
+    RouteIndex(final List<? extends BaseEndpoint> endpoints, final List<? extends RouteTable> routeTables) {
+        this.endpoints = endpoints.toArray(BaseEndpoint[]::new);
+
+        final var covered = new boolean[this.endpoints.length];
+        this.tables = bind(routeTables, covered);
+
+        final var opaque = new int[this.endpoints.length];
+        int opaqueCount = 0;
+        for (int i = 0; i < this.endpoints.length; i++) {
+            final var route = this.endpoints[i].route();
+            if (route == null) {
+                opaque[opaqueCount++] = i;
+                continue;
+            }
+            switch (route.matching()) {
+                case IGNORED -> anyPath.add(route, i);
+                case EXACT -> {
+                    if (!covered[i]) {
+                        exact.computeIfAbsent(route.path(), k -> new MethodIndex()).add(route, i);
+                    }
+                }
+                case STARTS_WITH -> prefixes.add(route, i);
+                default -> opaque[opaqueCount++] = i;
+            }
+        }
+        this.others = Arrays.copyOf(opaque, opaqueCount);
+    }
+
+    BaseEndpoint find(final Request request) {
+        final int index = findIndex(request);
+        return index < 0 ? null : endpoints[index];
+    }
+
+    /**
+     * @param request the incoming request.
+     * @return the index of the matching endpoint in the endpoint list or {@code -1} if none matches.
+     */
+    int findIndex(final Request request) {
+        final var method = request.method();
+        final var upperMethod = method == null ? null : method.toUpperCase(Locale.ROOT); // generally a no-op, methods are uppercase
+        int best = anyPath.first(upperMethod);
+
+        final var path = request.path();
+        if (path != null) {
+            final var byMethod = exact.get(path);
+            if (byMethod != null) {
+                best = Math.min(best, byMethod.first(upperMethod));
+            }
+            if (upperMethod != null) {
+                for (final var table : tables) {
+                    best = table.first(upperMethod, path, best);
+                }
+            }
+            best = prefixes.first(path, upperMethod, best);
+        }
+
+        for (final int index : others) {
+            if (index >= best) {
+                break;
+            }
+            if (endpoints[index].matches(request)) {
+                return index;
+            }
+        }
+        return best == NONE ? -1 : best;
+    }
+
+    // maps the table identifiers to endpoint indices through the endpoint name() so decorated endpoints (caching,
+    // coalescing) are still resolved by the table. A name shared by several exact endpoints or a table route which does
+    // not match the endpoint route (stale table) is not bound, the endpoint is then indexed like the others.
+    private BoundTable[] bind(final List<? extends RouteTable> routeTables, final boolean[] covered) {
+        if (routeTables.isEmpty()) {
+            return new BoundTable[0];
+        }
+
+        final var byName = new HashMap<String, Integer>();
+        for (int i = 0; i < endpoints.length; i++) {
+            final var route = endpoints[i].route();
+            if (route != null && route.matching() == Route.PathMatching.EXACT) {
+                byName.merge(endpoints[i].name(), i, (previous, ignored) -> -1);
+            }
+        }
+
+        final var bound = new ArrayList<BoundTable>(routeTables.size());
+        for (final var table : routeTables) {
+            final var names = table.endpoints();
+            final var indices = new int[names.size()];
+            boolean used = false;
+            for (int id = 0; id < indices.length; id++) {
+                final var index = byName.get(names.get(id));
+                if (index != null && index >= 0 && !covered[index] && isRouteOf(table, id, endpoints[index].route())) {
+                    indices[id] = index;
+                    covered[index] = true;
+                    used = true;
+                } else {
+                    indices[id] = -1;
+                }
+            }
+            if (used) {
+                bound.add(new BoundTable(table, indices));
+            }
+        }
+        return bound.toArray(BoundTable[]::new);
+    }
+
+    private static boolean isRouteOf(final RouteTable table, final int id, final Route route) {
+        final var method = route.methods().isEmpty() ? "GET" : route.methods().iterator().next().toUpperCase(Locale.ROOT);
+        for (final int candidate : table.match(method, route.path())) {
+            if (candidate == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private record BoundTable(RouteTable table, int[] indices) {
+        private int first(final String upperMethod, final String path, final int best) {
+            int result = best;
+            for (final int id : table.match(upperMethod, path)) {
+                final int index = id < indices.length ? indices[id] : -1;
+                if (index >= 0 && index < result) {
+                    result = index;
+                }
+            }
+            return result;
+        }
+    }
+
+    // lowest endpoint index per method for a given path (or prefix)
+    private static final class MethodIndex {
+        private final Map<String, Integer> byMethod = new HashMap<>();
+        private int anyMethod = NONE;
+
+        private void add(final Route route, final int index) { // indices are added in ascending order so first one wins
+            if (route.methods().isEmpty()) {
+                if (anyMethod == NONE) {
+                    anyMethod = index;
+                }
+                return;
+            }
+            for (final var method : route.methods()) {
+                byMethod.putIfAbsent(method, index);
+            }
+        }
+
+        private int first(final String upperMethod) {
+            if (upperMethod == null) {
+                return NONE;
+            }
+            if (byMethod.isEmpty()) {
+                return anyMethod;
+            }
+            final var index = byMethod.get(upperMethod);
+            return index == null ? anyMethod : Math.min(index, anyMethod);
+        }
+    }
+
+    private static final class PrefixNode {
+        private char[] labels = new char[0]; // sorted
+        private PrefixNode[] children = new PrefixNode[0];
+        private MethodIndex routes;
+
+        private void add(final Route route, final int index) {
+            var node = this;
+            final var path = route.path();
+            for (int i = 0; i < path.length(); i++) {
+                node = node.child(path.charAt(i));
+            }
+            if (node.routes == null) {
+                node.routes = new MethodIndex();
+            }
+            node.routes.add(route, index);
+        }
+
+        private PrefixNode child(final char c) {
+            final int existing = Arrays.binarySearch(labels, c);
+            if (existing >= 0) {
+                return children[existing];
+            }
+            final int insertion = -existing - 1;
+            final var newLabels = new char[labels.length + 1];
+            final var newChildren = new PrefixNode[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertion);
+            System.arraycopy(children, 0, newChildren, 0, insertion);
+            System.arraycopy(labels, insertion, newLabels, insertion + 1, labels.length - insertion);
+            System.arraycopy(children, insertion, newChildren, insertion + 1, children.length - insertion);
+            newLabels[insertion] = c;
+            newChildren[insertion] = new PrefixNode();
+            labels = newLabels;
+            children = newChildren;
+            return newChildren[insertion];
+        }
+
+        // walks the path once, every node ending a prefix on the way is a candidate
+        private int first(final String path, final String upperMethod, final int best) {
+            int result = best;
+            var node = this;
+            int i = 0;
+            while (true) {
+                if (node.routes != null) {
+                    result = Math.min(result, node.routes.first(upperMethod));
+                }
+                if (i == path.length()) {
+                    return result;
+                }
+                final int child = Arrays.binarySearch(node.labels, path.charAt(i++));
+                if (child < 0) {
+                    return result;
+                }
+                node = node.children[child];
+            }
+        }
+    }
+}
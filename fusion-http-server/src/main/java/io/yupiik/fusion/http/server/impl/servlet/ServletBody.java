@@ -17,19 +17,16 @@ package io.yupiik.fusion.http.server.impl.servlet;
 
 import io.yupiik.fusion.http.server.api.Body;
 import io.yupiik.fusion.http.server.impl.flow.ServletInputStreamSubscription;
+import io.yupiik.fusion.http.server.impl.io.BytesAggregator;
 import jakarta.servlet.http.HttpServletRequest;
 
 import java.io.IOException;
-import java.net.http.HttpResponse;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
-import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Flow;
 
-import static java.net.http.HttpResponse.BodySubscribers.ofByteArray;
-import static java.net.http.HttpResponse.BodySubscribers.ofString;
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Optional.ofNullable;
 
@@ -51,15 +48,26 @@ public class ServletBody implements Body {
         }
         subscribed = true;
         try {
-            final var pool = request.getAttribute(ByteBufferPool.class.getName());
             subscriber.onSubscribe(new ServletInputStreamSubscription(
-                    pool instanceof ByteBufferPool b ? b : NoCacheByteBufferPool.INSTANCE,
-                    request.getInputStream(), subscriber));
+                    pool(), request.getInputStream(), subscriber, request.getContentLengthLong()));
         } catch (final IOException e) {
             subscriber.onError(e);
         }
     }
 
+    // request attribute to customize it per request, else the server one (see TomcatWebServerConfiguration#setRequestBufferPool)
+    private ByteBufferPool pool() {
+        final var pool = request.getAttribute(ByteBufferPool.class.getName());
+        if (pool instanceof ByteBufferPool b) {
+            return b;
+        }
+        final var context = request.getServletContext();
+        if (context != null && context.getAttribute(ByteBufferPool.class.getName()) instanceof ByteBufferPool b) {
+            return b;
+        }
+        return NoCacheByteBufferPool.INSTANCE;
+    }
+
     @Override
     public Body cached() {
         cached = true;
@@ -68,17 +76,8 @@ public class ServletBody implements Body {
 
     @Override
     public CompletionStage<String> string() {
-        if (cached && body != null) {
-            return body.thenApply(b -> new String(b, UTF_8));
-        }
-        final var subscriber = ofString(ofNullable(request.getCharacterEncoding()).map(Charset::forName).orElse(UTF_8));
-        doSubscribe(subscriber);
-        if (cached) {
-            final var result = subscriber.getBody();
-            body = result.toCompletableFuture().thenApply(s -> s.getBytes(UTF_8));
-            return result;
-        }
-        return subscriber.getBody();
+        final var charset = ofNullable(request.getCharacterEncoding()).map(Charset::forName).orElse(UTF_8);
+        return bytes().thenApply(b -> new String(b, charset));
     }
 
     @Override
@@ -86,41 +85,17 @@ public class ServletBody implements Body {
         if (cached && body != null) {
             return body;
         }
-        final var subscriber = ofByteArray();
-        doSubscribe(subscriber);
+        final var subscriber = new BytesAggregator(request.getContentLengthLong());
+        subscribe(subscriber);
         if (cached) {
-            body = subscriber.getBody().toCompletableFuture();
+            body = subscriber.promise().toCompletableFuture();
             return body;
         }
-        return subscriber.getBody();
+        return subscriber.promise();
     }
 
     @Override
     public String parameter(final String name) {
         return request.getParameter(name);
     }
-
-    private <T> void doSubscribe(final HttpResponse.BodySubscriber<T> subscriber) {
-        subscribe(new Flow.Subscriber<>() {
-            @Override
-            public void onSubscribe(final Flow.Subscription subscription) {
-                subscriber.onSubscribe(subscription);
-            }
-
-            @Override
-            public void onNext(final ByteBuffer item) {
-                subscriber.onNext(List.of(item));
-            }
-
-            @Override
-            public void onError(final Throwable throwable) {
-                subscriber.onError(throwable);
-            }
-
-            @Override
-            public void onComplete() {
-                subscriber.onComplete();
-            }
-        });
-    }
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Bounded multiple producers/single consumer ring buffer: producers claim a slot with a CAS on the tail and never block,
+ * {@link #offer(Object)} just fails when the buffer is full.
+ * A slot is readable by the consumer once the producer published its value, the consumer releases it before moving the head.
+ *
+ * @param <T> the element type.
+ */
+class AccessLogRingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    AccessLogRingBuffer(final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        final int size = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    int capacity() {
+        return slots.length();
+    }
+
+    boolean isEmpty() {
+        return head.get() == tail.get();
+    }
+
+    boolean offer(final T value) {
+        long current;
+        do {
+            current = tail.get();
+            if (current - head.get() >= slots.length()) {
+                return false;
+            }
+        } while (!tail.compareAndSet(current, current + 1));
+        slots.set((int) (current & mask), value);
+        return true;
+    }
+
+    // single consumer
+    int drain(final Consumer<T> consumer, final int max) {
+        long current = head.get();
+        int drained = 0;
+        while (drained < max) {
+            final int index = (int) (current & mask);
+            final var value = slots.get(index);
+            if (value == null) { // empty or claimed but not yet published
+                break;
+            }
+            slots.set(index, null);
+            head.lazySet(++current);
+            consumer.accept(value);
+            drained++;
+        }
+        return drained;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Asynchronous access log: the request thread only captures the data of the access log line into a bounded ring buffer,
+ * a single background thread formats and writes them by batches.
+ * When the buffer is full, the lines are dropped (and counted) instead of slowing down the requests.
+ */
+public class AsyncAccessLogConfiguration {
+    private int bufferSize = 8 * 1_024;
+    private int batchSize = 512;
+    private long flushInterval = 50; // ms
+    private Path file;
+    private long maxFileSize = 100 * 1_024 * 1_024;
+    private int maxFiles = 10;
+    private List<String> headers = List.of();
+    private MetricsRegistry metricsRegistry;
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @param bufferSize the maximum number of pending lines (rounded to the next power of two).
+     * @return this.
+     */
+    public AsyncAccessLogConfiguration setBufferSize(final int bufferSize) {
+        this.bufferSize = bufferSize;
+        return this;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param batchSize the maximum number of lines formatted and written at once.
+     * @return this.
+     */
+    public AsyncAccessLogConfiguration setBatchSize(final int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    public long getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * @param flushInterval how long (in milliseconds) the writer waits when there is no pending line.
+     * @return this.
+     */
+    public AsyncAccessLogConfiguration setFlushInterval(final long flushInterval) {
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @param file the file to write the access log into, {@code null} (default) uses the JUL access logger.
+     * @return this.
+     */
+    public AsyncAccessLogConfiguration setFile(final Path file) {
+        this.file = file;
+        return this;
+    }
+
+    public long getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    /**
+     * @param maxFileSize the size (in bytes) triggering a rotation of {@link #getFile()}, a negative or zero value disables the rotation.
+     * @return this.
+     */
+    public AsyncAccessLogConfiguration setMaxFileSize(final long maxFileSize) {
+        this.maxFileSize = maxFileSize;
+        return this;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    /**
+     * @param maxFiles the number of rotated files ({@code <file>.1} being the most recent) to keep.
+     * @return this.
+     */
+    public AsyncAccessLogConfiguration setMaxFiles(final int maxFiles) {
+        this.maxFiles = maxFiles;
+        return this;
+    }
+
+    public List<String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @param headers request headers appended (quoted) to each line, for example a correlation identifier.
+     * @return this.
+     */
+    public AsyncAccessLogConfiguration setHeaders(final List<String> headers) {
+        this.headers = headers;
+        return this;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * @param metricsRegistry if set, the registry exposing the dropped lines counter.
+     * @return this.
+     */
+    public AsyncAccessLogConfiguration setMetricsRegistry(final MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        return this;
+    }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import jakarta.servlet.ServletException;
+import org.apache.catalina.AccessLog;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.LifecycleState;
+import org.apache.catalina.connector.Request;
+import org.apache.catalina.connector.Response;
+import org.apache.catalina.valves.ValveBase;
+import org.apache.juli.logging.LogFactory;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Access log valve which does not format nor write anything on the request thread.
+ * It supports the {@code common} and {@code combined} patterns - plus {@link AsyncAccessLogConfiguration#getHeaders()} -
+ * since the request is recycled once logged so the data must be captured upfront.
+ * Lines are written in the JUL {@code fusion.webserver.tomcat.access.log} logger (as {@link TomcatWebServer.JULAccessLogValve})
+ * or in {@link AsyncAccessLogConfiguration#getFile()}.
+ */
+public class AsyncAccessLogValve extends ValveBase implements AccessLog {
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("dd/MMM/yyyy:HH:mm:ss Z", Locale.ENGLISH);
+
+    private final AsyncAccessLogConfiguration configuration;
+    private final boolean combined;
+    private final String[] headers;
+    private final AccessLogRingBuffer<Entry> buffer;
+    private final LongAdder dropped;
+    private final StringBuilder batch = new StringBuilder(); // writer thread only
+    private final ZoneId zone = ZoneId.systemDefault();
+    private String condition;
+    private boolean requestAttributesEnabled;
+    private volatile boolean running;
+    private Thread writer;
+
+    // formatting cache, writer thread only
+    private long lastSecond = -1;
+    private String lastDate;
+
+    public AsyncAccessLogValve(final String pattern, final AsyncAccessLogConfiguration configuration) {
+        super(true);
+        if (!isSupported(pattern)) {
+            throw new IllegalArgumentException("Unsupported asynchronous access log pattern '" + pattern + "', use 'common' or 'combined'");
+        }
+        this.configuration = configuration;
+        this.combined = "combined".equals(pattern);
+        this.headers = configuration.getHeaders() == null ? new String[0] : configuration.getHeaders().toArray(String[]::new);
+        this.buffer = new AccessLogRingBuffer<>(Math.max(1, configuration.getBufferSize()));
+        this.dropped = configuration.getMetricsRegistry() == null ?
+                new LongAdder() :
+                configuration.getMetricsRegistry().getOrCreateCounter("fusion_http_server_access_log_dropped_total", null);
+    }
+
+    public static boolean isSupported(final String pattern) {
+        return "common".equals(pattern) || "combined".equals(pattern);
+    }
+
+    /**
+     * @param condition the request attribute name which skips the logging of the request when set.
+     * @return this.
+     */
+    public AsyncAccessLogValve setCondition(final String condition) {
+        this.condition = condition;
+        return this;
+    }
+
+    /**
+     * @return the number of lines dropped because the buffer was full.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void setRequestAttributesEnabled(final boolean requestAttributesEnabled) {
+        this.requestAttributesEnabled = requestAttributesEnabled;
+    }
+
+    @Override
+    public boolean getRequestAttributesEnabled() {
+        return requestAttributesEnabled;
+    }
+
+    @Override
+    public void invoke(final Request request, final Response response) throws IOException, ServletException {
+        getNext().invoke(request, response);
+    }
+
+    @Override
+    public void log(final Request request, final Response response, final long time) {
+        if (!running || (condition != null && request.getAttribute(condition) != null)) {
+            return;
+        }
+
+        final int extra = (combined ? 2 : 0) + headers.length;
+        final var values = extra == 0 ? null : new String[extra];
+        int index = 0;
+        if (combined) {
+            values[index++] = request.getHeader("referer");
+            values[index++] = request.getHeader("user-agent");
+        }
+        for (final var header : headers) {
+            values[index++] = request.getHeader(header);
+        }
+
+        final var remoteAddr = requestAttributesEnabled && request.getAttribute(REMOTE_ADDR_ATTRIBUTE) instanceof String attr ?
+                attr : request.getRemoteAddr();
+        if (!buffer.offer(new Entry(
+                request.getCoyoteRequest().getStartTime(), response.getStatus(), response.getBytesWritten(false),
+                remoteAddr, request.getRemoteUser(), request.getMethod(), request.getRequestURI(), request.getQueryString(),
+                request.getProtocol(), values))) {
+            dropped.increment();
+        }
+    }
+
+    @Override
+    protected synchronized void startInternal() throws LifecycleException {
+        final Sink sink;
+        try {
+            sink = configuration.getFile() == null ? new JULSink() : new FileSink(
+                    configuration.getFile(), configuration.getMaxFileSize(), configuration.getMaxFiles());
+        } catch (final IOException e) {
+            throw new LifecycleException(e);
+        }
+
+        running = true;
+        writer = new Thread(() -> write(sink), "fusion-access-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+        setState(LifecycleState.STARTING);
+    }
+
+    @Override
+    protected synchronized void stopInternal() throws LifecycleException {
+        setState(LifecycleState.STOPPING);
+        running = false;
+        if (writer != null) {
+            LockSupport.unpark(writer);
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(30));
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writer = null;
+        }
+    }
+
+    private void write(final Sink sink) {
+        final var parkNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1, configuration.getFlushInterval()));
+        final int batchSize = Math.max(1, configuration.getBatchSize());
+        try {
+            while (running) {
+                if (writeBatch(sink, batchSize) == 0) {
+                    LockSupport.parkNanos(this, parkNanos);
+                }
+            }
+            while (!buffer.isEmpty() && writeBatch(sink, batchSize) > 0) {
+                // flush pending lines
+            }
+        } finally {
+            try {
+                sink.close();
+            } catch (final IOException e) {
+                LogFactory.getLog(getClass()).warn(e.getMessage(), e);
+            }
+        }
+    }
+
+    private int writeBatch(final Sink sink, final int max) {
+        batch.setLength(0);
+        final int count = buffer.drain(this::format, max);
+        if (count > 0) {
+            try {
+                sink.write(batch);
+            } catch (final IOException | RuntimeException e) {
+                LogFactory.getLog(getClass()).warn("Can't write access log: " + e.getMessage(), e);
+            }
+        }
+        return count;
+    }
+
+    // %h %l %u %t "%r" %s %b (+ "%{Referer}i" "%{User-Agent}i" for combined) + headers
+    private void format(final Entry entry) {
+        batch.append(entry.remoteAddr()).append(" - ").append(entry.remoteUser() == null ? "-" : entry.remoteUser())
+                .append(" [").append(date(entry.start())).append("] \"")
+                .append(entry.method()).append(' ').append(entry.uri());
+        if (entry.query() != null) {
+            batch.append('?').append(entry.query());
+        }
+        batch.append(' ').append(entry.protocol()).append("\" ").append(entry.status()).append(' ');
+        if (entry.bytes() <= 0) {
+            batch.append('-');
+        } else {
+            batch.append(entry.bytes());
+        }
+        if (entry.values() != null) {
+            for (final var value : entry.values()) {
+                batch.append(" \"").append(value == null ? "-" : value).append('"');
+            }
+        }
+        batch.append('\n');
+    }
+
+    private String date(final long start) {
+        final long second = start / 1_000;
+        if (second != lastSecond) {
+            lastSecond = second;
+            lastDate = DATE_FORMATTER.format(Instant.ofEpochSecond(second).atZone(zone));
+        }
+        return lastDate;
+    }
+
+    private record Entry(long start, int status, long bytes,
+                         String remoteAddr, String remoteUser, String method, String uri, String query, String protocol,
+                         String[] values) {
+    }
+
+    private interface Sink extends AutoCloseable {
+        void write(CharSequence lines) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    private static class JULSink implements Sink {
+        private final Logger logger = Logger.getLogger("fusion.webserver.tomcat.access.log");
+
+        @Override
+        public void write(final CharSequence lines) {
+            int start = 0;
+            for (int i = 0; i < lines.length(); i++) {
+                if (lines.charAt(i) == '\n') {
+                    logger.info(lines.subSequence(start, i).toString());
+                    start = i + 1;
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            // no-op
+        }
+    }
+
+    private static class FileSink implements Sink {
+        private final Path file;
+        private final long maxFileSize;
+        private final int maxFiles;
+        private FileChannel channel;
+        private long size;
+
+        private FileSink(final Path file, final long maxFileSize, final int maxFiles) throws IOException {
+            this.file = file;
+            this.maxFileSize = maxFileSize;
+            this.maxFiles = maxFiles;
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            open();
+        }
+
+        @Override
+        public void write(final CharSequence lines) throws IOException {
+            final var bytes = UTF_8.encode(CharBuffer.wrap(lines));
+            if (maxFileSize > 0 && size > 0 && size + bytes.remaining() > maxFileSize) {
+                rotate();
+            }
+            size += bytes.remaining();
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+
+        private void open() throws IOException {
+            channel = FileChannel.open(file, CREATE, WRITE, APPEND);
+            size = channel.size();
+        }
+
+        private void rotate() throws IOException {
+            channel.close();
+            if (maxFiles <= 0) {
+                Files.delete(file);
+            } else {
+                Files.deleteIfExists(rotated(maxFiles));
+                for (int i = maxFiles - 1; i > 0; i--) {
+                    final var from = rotated(i);
+                    if (Files.exists(from)) {
+                        Files.move(from, rotated(i + 1), REPLACE_EXISTING);
+                    }
+                }
+                Files.move(file, rotated(1), REPLACE_EXISTING);
+            }
+            open();
+        }
+
+        private Path rotated(final int index) {
+            return file.resolveSibling(file.getFileName() + "." + index);
+        }
+    }
+}
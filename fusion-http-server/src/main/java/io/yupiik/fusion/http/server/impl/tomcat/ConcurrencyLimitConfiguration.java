@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
+
+/**
+ * Adaptive concurrency limit (AIMD) of the fusion endpoints: the limit grows by one while the requests complete under
+ * {@link #getLatencyThreshold()} and is multiplied by {@link #getBackoffRatio()} when they do not.
+ * Requests exceeding the limit are rejected with a HTTP 503 and a {@code Retry-After} header instead of being queued.
+ */
+public class ConcurrencyLimitConfiguration {
+    private boolean perEndpoint;
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 1000;
+    private long latencyThreshold = 500; // ms
+    private double backoffRatio = 0.9;
+    private int retryAfter = 1; // s
+    private MetricsRegistry metricsRegistry;
+
+    public boolean isPerEndpoint() {
+        return perEndpoint;
+    }
+
+    /**
+     * @param perEndpoint if each endpoint has its own limit, default is a global limit shared by all endpoints.
+     * @return this.
+     */
+    public ConcurrencyLimitConfiguration setPerEndpoint(final boolean perEndpoint) {
+        this.perEndpoint = perEndpoint;
+        return this;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public ConcurrencyLimitConfiguration setInitialLimit(final int initialLimit) {
+        this.initialLimit = initialLimit;
+        return this;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public ConcurrencyLimitConfiguration setMinLimit(final int minLimit) {
+        this.minLimit = minLimit;
+        return this;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public ConcurrencyLimitConfiguration setMaxLimit(final int maxLimit) {
+        this.maxLimit = maxLimit;
+        return this;
+    }
+
+    public long getLatencyThreshold() {
+        return latencyThreshold;
+    }
+
+    /**
+     * @param latencyThreshold the latency (in milliseconds) above which a request is considered as an overload signal.
+     * @return this.
+     */
+    public ConcurrencyLimitConfiguration setLatencyThreshold(final long latencyThreshold) {
+        this.latencyThreshold = latencyThreshold;
+        return this;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public ConcurrencyLimitConfiguration setBackoffRatio(final double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+        return this;
+    }
+
+    public int getRetryAfter() {
+        return retryAfter;
+    }
+
+    /**
+     * @param retryAfter the {@code Retry-After} value (seconds) of rejected requests.
+     * @return this.
+     */
+    public ConcurrencyLimitConfiguration setRetryAfter(final int retryAfter) {
+        this.retryAfter = retryAfter;
+        return this;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * @param metricsRegistry if set, the registry exposing the current limit(s) and the rejected requests.
+     * @return this.
+     */
+    public ConcurrencyLimitConfiguration setMetricsRegistry(final MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        return this;
+    }
+}
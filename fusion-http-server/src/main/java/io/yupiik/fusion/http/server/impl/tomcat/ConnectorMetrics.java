@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
+import org.apache.catalina.connector.Connector;
+import org.apache.coyote.AbstractProtocol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+// read-only metrics on the connector runtime state, values are read when the metrics are rendered so nothing is sampled
+final class ConnectorMetrics implements AutoCloseable {
+    private final MetricsRegistry registry;
+    private final List<String> gauges = new ArrayList<>();
+    private final List<String> counters = new ArrayList<>();
+
+    ConnectorMetrics(final MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    ConnectorMetrics register(final String connectorName, final Connector connector) {
+        if (!(connector.getProtocolHandler() instanceof AbstractProtocol<?> protocol)) {
+            return this;
+        }
+        final var labels = "{connector=\"" + connectorName + "\"}";
+        gauge("fusion_http_server_connections" + labels, protocol::getConnectionCount);
+        gauge("fusion_http_server_connections_max" + labels, protocol::getMaxConnections);
+        gauge("fusion_http_server_accept_count" + labels, protocol::getAcceptCount);
+        // processors parked until their next event (async requests, upgraded connections) and checked for timeouts
+        gauge("fusion_http_server_processors_waiting" + labels, protocol::getWaitingProcessorCount);
+
+        // the executor is created when the connector starts and it is not a pool with virtual threads
+        final var executor = protocol.getExecutor();
+        if (executor instanceof org.apache.tomcat.util.threads.ThreadPoolExecutor pool) {
+            threads(labels, pool::getActiveCount, pool::getPoolSize, pool::getMaximumPoolSize, () -> pool.getQueue().size(), pool::getCompletedTaskCount);
+        } else if (executor instanceof java.util.concurrent.ThreadPoolExecutor pool) {
+            threads(labels, pool::getActiveCount, pool::getPoolSize, pool::getMaximumPoolSize, () -> pool.getQueue().size(), pool::getCompletedTaskCount);
+        }
+        return this;
+    }
+
+    ConnectorMetrics gauge(final String name, final LongSupplier supplier) {
+        registry.unregisterGauge(name); // the server can be recreated with the same registry, the gauge then tracks the new one
+        registry.registerReadOnlyGauge(name, null, supplier);
+        gauges.add(name);
+        return this;
+    }
+
+    ConnectorMetrics counter(final String name, final LongSupplier supplier) {
+        registry.unregisterCounter(name);
+        registry.registerReadOnlyCounter(name, null, supplier);
+        counters.add(name);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        gauges.forEach(registry::unregisterGauge);
+        gauges.clear();
+        counters.forEach(registry::unregisterCounter);
+        counters.clear();
+    }
+
+    private void threads(final String labels, final LongSupplier active, final LongSupplier size, final LongSupplier max,
+                         final LongSupplier queue, final LongSupplier completed) {
+        gauge("fusion_http_server_threads_active" + labels, active);
+        gauge("fusion_http_server_threads" + labels, size);
+        gauge("fusion_http_server_threads_max" + labels, max);
+        gauge("fusion_http_server_threads_queue_size" + labels, queue);
+        counter("fusion_http_server_threads_completed_tasks_total" + labels, completed);
+    }
+}
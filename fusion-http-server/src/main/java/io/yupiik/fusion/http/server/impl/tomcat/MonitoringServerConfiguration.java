@@ -22,6 +22,8 @@ import java.util.List;
 public class MonitoringServerConfiguration {
     private int port = 8081;
     private List<MonitoringEndpoint> endpoints;
+    private String unixDomainSocketPath;
+    private String unixDomainSocketPermissions;
 
     public int getPort() {
         return port;
@@ -40,4 +42,30 @@ public class MonitoringServerConfiguration {
         this.endpoints = endpoints;
         return this;
     }
+
+    public String getUnixDomainSocketPath() {
+        return unixDomainSocketPath;
+    }
+
+    /**
+     * @param unixDomainSocketPath if set, the Unix domain socket the monitoring server listens on instead of {@link #getPort()}.
+     * @return this.
+     */
+    public MonitoringServerConfiguration setUnixDomainSocketPath(final String unixDomainSocketPath) {
+        this.unixDomainSocketPath = unixDomainSocketPath;
+        return this;
+    }
+
+    public String getUnixDomainSocketPermissions() {
+        return unixDomainSocketPermissions;
+    }
+
+    /**
+     * @param unixDomainSocketPermissions the POSIX permissions of the socket file ({@code rw-rw----} for example), {@code null} to use the process umask.
+     * @return this.
+     */
+    public MonitoringServerConfiguration setUnixDomainSocketPermissions(final String unixDomainSocketPermissions) {
+        this.unixDomainSocketPermissions = unixDomainSocketPermissions;
+        return this;
+    }
 }
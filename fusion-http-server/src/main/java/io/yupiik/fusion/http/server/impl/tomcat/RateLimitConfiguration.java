@@ -0,0 +1,223 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+
+import java.util.Base64;
+import java.util.function.Function;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Per client rate limit of the fusion endpoints: each key (see {@link #getKeyExtractor()}) has a token bucket of
+ * {@link #getBurst()} tokens refilled with {@link #getPermits()} tokens per {@link #getPeriod()}.
+ * Requests without token are rejected with {@link #getStatus()} and a {@code Retry-After} header.
+ * <p>
+ * At most {@link #getMaxKeys()} buckets are kept in memory, buckets which refilled completely are evicted first and when
+ * there is nothing to evict the new keys share a single bucket.
+ */
+public class RateLimitConfiguration {
+    private int permits = 100;
+    private long period = 1_000; // ms
+    private int burst; // 0 = permits
+    private int maxKeys = 100_000;
+    private int status = 429;
+    private Function<Request, String> keyExtractor = remoteAddress();
+    private MetricsRegistry metricsRegistry;
+
+    public int getPermits() {
+        return permits;
+    }
+
+    /**
+     * @param permits the number of requests a client can do per {@link #getPeriod()}.
+     * @return this.
+     */
+    public RateLimitConfiguration setPermits(final int permits) {
+        this.permits = permits;
+        return this;
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    /**
+     * @param period the period (in milliseconds) {@link #getPermits()} applies to.
+     * @return this.
+     */
+    public RateLimitConfiguration setPeriod(final long period) {
+        this.period = period;
+        return this;
+    }
+
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * @param burst the size of the buckets, i.e. the number of requests a client can do at once, {@code 0} to use {@link #getPermits()}.
+     * @return this.
+     */
+    public RateLimitConfiguration setBurst(final int burst) {
+        this.burst = burst;
+        return this;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * @param maxKeys the maximum number of buckets kept in memory.
+     * @return this.
+     */
+    public RateLimitConfiguration setMaxKeys(final int maxKeys) {
+        this.maxKeys = maxKeys;
+        return this;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @param status the HTTP status of the rejected requests, {@code 429} by default.
+     * @return this.
+     */
+    public RateLimitConfiguration setStatus(final int status) {
+        this.status = status;
+        return this;
+    }
+
+    public Function<Request, String> getKeyExtractor() {
+        return keyExtractor;
+    }
+
+    /**
+     * @param keyExtractor computes the client key of a request, a {@code null} key means the request is not limited.
+     * @return this.
+     */
+    public RateLimitConfiguration setKeyExtractor(final Function<Request, String> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+        return this;
+    }
+
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * @param metricsRegistry if set, the registry exposing the rejected requests and the number of buckets.
+     * @return this.
+     */
+    public RateLimitConfiguration setMetricsRegistry(final MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+        return this;
+    }
+
+    /**
+     * IMPORTANT: behind a proxy it is the proxy address, ensure Tomcat {@code RemoteIpValve} is set up in such a case.
+     *
+     * @return a key extractor using the client address.
+     */
+    public static Function<Request, String> remoteAddress() {
+        return request -> request.unwrap(HttpServletRequest.class).getRemoteAddr();
+    }
+
+    /**
+     * @param name the header to use as key (an API key for example).
+     * @return a key extractor using a request header value.
+     */
+    public static Function<Request, String> header(final String name) {
+        return request -> request.header(name);
+    }
+
+    /**
+     * @param name the attribute to use as key, typically the authenticated subject set by a security layer.
+     * @return a key extractor using a request attribute.
+     */
+    public static Function<Request, String> attribute(final String name) {
+        return request -> {
+            final var value = request.attribute(name, Object.class);
+            return value == null ? null : value.toString();
+        };
+    }
+
+    /**
+     * IMPORTANT: the token is <b>not</b> validated (it is cheaper to reject a request before it is) so a client can
+     * forge subjects, prefer {@link #attribute(String)} when a security layer validates the token before.
+     *
+     * @return a key extractor using the {@code sub} claim of the {@code Authorization: Bearer} JWT.
+     */
+    public static Function<Request, String> jwtSubject() {
+        return request -> {
+            final var authorization = request.header("authorization");
+            if (authorization == null || authorization.length() < 7 || !authorization.regionMatches(true, 0, "bearer ", 0, 7)) {
+                return null;
+            }
+            final int payloadStart = authorization.indexOf('.', 7) + 1;
+            final int payloadEnd = payloadStart == 0 ? -1 : authorization.indexOf('.', payloadStart);
+            if (payloadEnd < 0) {
+                return null;
+            }
+            try {
+                return subject(new String(Base64.getUrlDecoder().decode(authorization.substring(payloadStart, payloadEnd)), UTF_8));
+            } catch (final IllegalArgumentException iae) { // not base64
+                return null;
+            }
+        };
+    }
+
+    // minimal lookup of the "sub" string claim, no need of a JSON mapper (and its allocations) for a key
+    private static String subject(final String payload) {
+        int from = 0;
+        while (true) {
+            final int key = payload.indexOf("\"sub\"", from);
+            if (key < 0) {
+                return null;
+            }
+            int i = key + 5;
+            while (i < payload.length() && Character.isWhitespace(payload.charAt(i))) {
+                i++;
+            }
+            if (i >= payload.length() || payload.charAt(i) != ':') { // "sub" was a value
+                from = key + 5;
+                continue;
+            }
+            i++;
+            while (i < payload.length() && Character.isWhitespace(payload.charAt(i))) {
+                i++;
+            }
+            if (i >= payload.length() || payload.charAt(i) != '"') {
+                return null;
+            }
+            final int start = i + 1;
+            for (int end = start; end < payload.length(); end++) {
+                final char c = payload.charAt(end);
+                if (c == '\\') { // escaped chars are kept as they are, it is only a key
+                    end++;
+                } else if (c == '"') {
+                    return payload.substring(start, end);
+                }
+            }
+            return null;
+        }
+    }
+}
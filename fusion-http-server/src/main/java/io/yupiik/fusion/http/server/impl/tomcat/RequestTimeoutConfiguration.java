@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import java.util.Map;
+
+/**
+ * Deadline of the fusion endpoints: when an endpoint does not provide its response in time, the request is completed
+ * with {@link #getStatus()} and the endpoint {@link java.util.concurrent.CompletionStage} is cancelled.
+ * The timeout of an endpoint is, by priority, the one of {@link #getEndpoints()}, {@link io.yupiik.fusion.http.server.spi.BaseEndpoint#timeout()}
+ * then {@link #getTimeout()}.
+ * <p>
+ * IMPORTANT: it only covers the response computation, not the writing of (streaming) bodies, and the connector async
+ * timeout (30s by default) still applies so keep the deadlines under it.
+ */
+public class RequestTimeoutConfiguration {
+    private long timeout; // ms
+    private int status = 504;
+    private Map<String, Long> endpoints = Map.of();
+
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @param timeout the default timeout (in milliseconds) of the endpoints, {@code 0} or negative for no timeout.
+     * @return this.
+     */
+    public RequestTimeoutConfiguration setTimeout(final long timeout) {
+        this.timeout = timeout;
+        return this;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * @param status the HTTP status of the requests timing out, {@code 504} by default ({@code 503} is the common alternative).
+     * @return this.
+     */
+    public RequestTimeoutConfiguration setStatus(final int status) {
+        this.status = status;
+        return this;
+    }
+
+    public Map<String, Long> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * @param endpoints timeouts (in milliseconds) per endpoint name ({@link io.yupiik.fusion.http.server.spi.BaseEndpoint#name()}), {@code 0} disables the timeout of an endpoint.
+     * @return this.
+     */
+    public RequestTimeoutConfiguration setEndpoints(final Map<String, Long> endpoints) {
+        this.endpoints = endpoints;
+        return this;
+    }
+}
@@ -16,7 +16,12 @@
 package io.yupiik.fusion.http.server.impl.tomcat;
 
 import io.yupiik.fusion.http.server.api.WebServer;
+import io.yupiik.fusion.http.server.impl.VirtualThreads;
+import io.yupiik.fusion.http.server.impl.servlet.ByteBufferPool;
 import io.yupiik.fusion.http.server.impl.servlet.FusionServlet;
+import io.yupiik.fusion.http.server.impl.servlet.PooledByteBufferPool;
+import io.yupiik.fusion.http.server.impl.websocket.WebSocketServlet;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
 import io.yupiik.fusion.http.server.spi.MonitoringEndpoint;
 import jakarta.servlet.annotation.HandlesTypes;
 import org.apache.catalina.LifecycleException;
@@ -39,8 +44,13 @@ import org.apache.tomcat.SimpleInstanceManager;
 import org.apache.tomcat.util.modeler.Registry;
 
 import java.io.CharArrayWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
@@ -73,6 +83,12 @@ public class TomcatWebServer implements WebServer {
      */
     protected volatile FusionServlet fusionServlet;
 
+    /**
+     * The virtual thread executor running the endpoints when {@link TomcatWebServerConfiguration#isVirtualThreads()} is enabled.
+     */
+    protected volatile ExecutorService requestExecutor;
+    private ConnectorMetrics connectorMetrics;
+
     public TomcatWebServer(final TomcatWebServerConfiguration configuration) {
         this.configuration = configuration;
 
@@ -97,6 +113,9 @@ public class TomcatWebServer implements WebServer {
         if (configuration.getPort() == 0) {
             configuration.setPort(getPort());
         }
+        if (configuration.getEndpointMetrics() != null) {
+            registerConnectorMetrics(configuration.getEndpointMetrics());
+        }
     }
 
     public Tomcat tomcat() {
@@ -112,6 +131,10 @@ public class TomcatWebServer implements WebServer {
         if (tomcat == null) {
             return;
         }
+        if (connectorMetrics != null) {
+            connectorMetrics.close();
+            connectorMetrics = null;
+        }
         try {
             final var server = tomcat.getServer();
             // release the responses which are still streaming - a SSE channel for example - else stopping the context
@@ -121,6 +144,9 @@ public class TomcatWebServer implements WebServer {
             }
             tomcat.stop();
             tomcat.destroy();
+            if (requestExecutor != null) { // nothing pooled with virtual threads, the pending tasks just end
+                requestExecutor.shutdown();
+            }
             if (server != null) { // give a change to stop the utility executor otherwise it just leaks and stop later
                 final var utilityExecutor = server.getUtilityExecutor();
                 if (utilityExecutor != null) {
@@ -159,8 +185,17 @@ public class TomcatWebServer implements WebServer {
         host.setName(configuration.getDefaultHost());
         tomcat.getEngine().addChild(host);
 
-        if (configuration.getCompression() != null && !configuration.getCompression().isBlank()) {
-            tomcat.getConnector().setProperty("compression", configuration.getCompression());
+        configureConnector(tomcat.getConnector());
+
+        if (configuration.getUnixDomainSocketPath() != null) {
+            if (configuration.isUnixDomainSocketOnly()) {
+                bindUnixDomainSocket(tomcat.getConnector(), configuration.getUnixDomainSocketPath(), configuration.getUnixDomainSocketPermissions());
+            } else { // a connector binds either a port or a socket
+                final var connector = new Connector();
+                configureConnector(connector);
+                bindUnixDomainSocket(connector, configuration.getUnixDomainSocketPath(), configuration.getUnixDomainSocketPermissions());
+                tomcat.getService().addConnector(connector);
+            }
         }
 
         if (configuration.getMonitoringServerConfiguration() != null) {
@@ -201,6 +236,48 @@ public class TomcatWebServer implements WebServer {
         return tomcat;
     }
 
+    // helps to size maxThreads, acceptCount and maxConnections from the observed load
+    protected void registerConnectorMetrics(final MetricsRegistry registry) {
+        connectorMetrics = new ConnectorMetrics(registry)
+                .register("main", tomcat.getConnector())
+                .gauge("fusion_http_server_active_streams", () -> {
+                    final var servlet = fusionServlet;
+                    return servlet == null ? 0 : servlet.activeStreams();
+                });
+        for (final var connector : tomcat.getService().findConnectors()) {
+            if (connector != tomcat.getConnector()) {
+                connectorMetrics.register("unix", connector);
+            }
+        }
+        final var monitoring = tomcat.getServer().findService("Monitoring");
+        if (monitoring != null) {
+            for (final var connector : monitoring.findConnectors()) {
+                connectorMetrics.register("monitoring", connector);
+            }
+        }
+    }
+
+    protected void configureConnector(final Connector connector) {
+        if (configuration.getCompression() != null && !configuration.getCompression().isBlank()) {
+            connector.setProperty("compression", configuration.getCompression());
+        }
+
+        if (configuration.isVirtualThreads() && configuration.isVirtualThreadsConnector() && VirtualThreads.isSupported()) {
+            connector.setProperty("useVirtualThreads", "true");
+        }
+    }
+
+    protected ExecutorService createRequestExecutor() {
+        if (!configuration.isVirtualThreads()) {
+            return null;
+        }
+        if (!VirtualThreads.isSupported()) {
+            LogFactory.getLog(getClass()).warn("Virtual threads require Java 21, endpoints will use the container threads");
+            return null;
+        }
+        return VirtualThreads.newExecutor();
+    }
+
     private void addMonitoring(final Tomcat tomcat) {
         // do not recreate a tomcat tree, reuse the main one, just add a monitoring context and a connector
         final var tomcatServer = tomcat.getServer();
@@ -236,6 +313,11 @@ public class TomcatWebServer implements WebServer {
             }
         });
         connector.setPort(configuration.getMonitoringServerConfiguration().getPort());
+        if (configuration.getMonitoringServerConfiguration().getUnixDomainSocketPath() != null) {
+            bindUnixDomainSocket(
+                    connector, configuration.getMonitoringServerConfiguration().getUnixDomainSocketPath(),
+                    configuration.getMonitoringServerConfiguration().getUnixDomainSocketPermissions());
+        }
 
         final var service = new StandardService();
         service.setName("Monitoring");
@@ -245,6 +327,24 @@ public class TomcatWebServer implements WebServer {
         tomcatServer.addService(service);
     }
 
+    // NIO connector only, it removes the TCP stack from local hops (sidecar, proxy on the same host)
+    private static void bindUnixDomainSocket(final Connector connector, final String path, final String permissions) {
+        final var socket = Path.of(path);
+        try { // a process which crashed leaves the socket file and the bind would fail, never delete a regular file though
+            if (Files.exists(socket) && Files.readAttributes(socket, BasicFileAttributes.class).isOther()) {
+                Files.delete(socket);
+            }
+        } catch (final IOException e) {
+            throw new IllegalStateException("Can't delete stale socket '" + path + "'", e);
+        }
+        if (!connector.setProperty("unixDomainSocketPath", path)) {
+            throw new IllegalArgumentException("Unix domain sockets require the NIO connector, can't bind '" + path + "'");
+        }
+        if (permissions != null) {
+            connector.setProperty("unixDomainSocketPathPermissions", permissions);
+        }
+    }
+
     protected StandardContext createContext() {
         final var ctx = createBaseContext(newContext(), configuration);
 
@@ -252,7 +352,15 @@ public class TomcatWebServer implements WebServer {
                 configuration.getFusionServletMapping() != null &&
                 !"-".equals(configuration.getFusionServletMapping())) {
             ctx.addServletContainerInitializer((ignored, servletContext) -> {
-                fusionServlet = new FusionServlet(configuration.getEndpoints());
+                requestExecutor = createRequestExecutor();
+                fusionServlet = new FusionServlet(configuration, requestExecutor);
+                final var bufferPool = configuration.getRequestBufferPool();
+                if (bufferPool != null) {
+                    servletContext.setAttribute(ByteBufferPool.class.getName(), bufferPool);
+                    if (bufferPool instanceof PooledByteBufferPool pooled && configuration.getEndpointMetrics() != null) {
+                        pooled.registerMetrics(configuration.getEndpointMetrics());
+                    }
+                }
                 final var fusion = servletContext.addServlet("fusion", fusionServlet);
                 fusion.setAsyncSupported(true);
                 fusion.setLoadOnStartup(1);
@@ -260,6 +368,15 @@ public class TomcatWebServer implements WebServer {
             }, Set.of());
         }
 
+        if (configuration.getWebSocketEndpoints() != null && !configuration.getWebSocketEndpoints().isEmpty()) {
+            ctx.addServletContainerInitializer((ignored, servletContext) -> {
+                final var servlet = new WebSocketServlet(configuration.getWebSocketEndpoints());
+                final var webSocket = servletContext.addServlet("fusion-websocket", servlet);
+                webSocket.setLoadOnStartup(1);
+                webSocket.addMapping(servlet.paths().toArray(String[]::new));
+            }, Set.of());
+        }
+
         configuration.getInitializers().forEach(sci -> ctx.addServletContainerInitializer(
                 sci, ofNullable(sci.getClass().getAnnotation(HandlesTypes.class))
                         .map(HandlesTypes::value)
@@ -295,12 +412,23 @@ public class TomcatWebServer implements WebServer {
         errorReportValve.setShowServerInfo(false);
 
         if (configuration.getAccessLogPattern() != null && !configuration.getAccessLogPattern().isBlank()) {
-            final var logValve = new JULAccessLogValve();
-            logValve.setPattern(configuration.getAccessLogPattern());
-            if (configuration.getSkipAccessLogAttribute() != null && !configuration.getSkipAccessLogAttribute().isBlank()) {
-                logValve.setCondition(configuration.getSkipAccessLogAttribute());
+            final var skipAttribute = configuration.getSkipAccessLogAttribute() != null && !configuration.getSkipAccessLogAttribute().isBlank() ?
+                    configuration.getSkipAccessLogAttribute() : null;
+            if (configuration.getAsyncAccessLog() != null && AsyncAccessLogValve.isSupported(configuration.getAccessLogPattern())) {
+                ctx.getPipeline().addValve(new AsyncAccessLogValve(configuration.getAccessLogPattern(), configuration.getAsyncAccessLog())
+                        .setCondition(skipAttribute));
+            } else {
+                if (configuration.getAsyncAccessLog() != null) {
+                    LogFactory.getLog(TomcatWebServer.class).warn(
+                            "Asynchronous access log only supports 'common' and 'combined' patterns, using a synchronous access log");
+                }
+                final var logValve = new JULAccessLogValve();
+                logValve.setPattern(configuration.getAccessLogPattern());
+                if (skipAttribute != null) {
+                    logValve.setCondition(skipAttribute);
+                }
+                ctx.getPipeline().addValve(logValve);
             }
-            ctx.getPipeline().addValve(logValve);
         }
 
         ctx.getPipeline().addValve(errorReportValve);
@@ -19,7 +19,12 @@ import jakarta.servlet.ServletContainerInitializer;
 import org.apache.catalina.core.StandardContext;
 import org.apache.catalina.startup.Tomcat;
 import io.yupiik.fusion.http.server.api.WebServer;
+import io.yupiik.fusion.http.server.impl.servlet.ByteBufferPool;
+import io.yupiik.fusion.http.server.impl.servlet.PooledByteBufferPool;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
 import io.yupiik.fusion.http.server.spi.Endpoint;
+import io.yupiik.fusion.http.server.spi.RouteTable;
+import io.yupiik.fusion.http.server.websocket.WebSocketEndpoint;
 
 import java.util.List;
 import java.util.function.Consumer;
@@ -36,10 +41,24 @@ public class TomcatWebServerConfiguration implements WebServer.Configuration {
     private String compression = "on";
     private String skipAccessLogAttribute = "skip-access-log";
     private List<Endpoint> endpoints = List.of();
+    private List<RouteTable> routeTables = List.of();
+    private List<WebSocketEndpoint> webSocketEndpoints = List.of();
     private List<ServletContainerInitializer> initializers = List.of();
     private List<Consumer<Tomcat>> tomcatCustomizers = List.of(Tomcat::getConnector); // force init
     private List<Consumer<StandardContext>> contextCustomizers = List.of();
     private MonitoringServerConfiguration monitoringServerConfiguration;
+    private boolean virtualThreads;
+    private boolean virtualThreadsConnector;
+    private int maxInFlightRequests;
+    private MetricsRegistry endpointMetrics;
+    private ConcurrencyLimitConfiguration concurrencyLimit;
+    private ByteBufferPool requestBufferPool = new PooledByteBufferPool();
+    private AsyncAccessLogConfiguration asyncAccessLog;
+    private RequestTimeoutConfiguration requestTimeout;
+    private RateLimitConfiguration rateLimit;
+    private String unixDomainSocketPath;
+    private String unixDomainSocketPermissions;
+    private boolean unixDomainSocketOnly;
 
     public MonitoringServerConfiguration getMonitoringServerConfiguration() {
         return monitoringServerConfiguration;
@@ -59,6 +78,173 @@ public class TomcatWebServerConfiguration implements WebServer.Configuration {
         return this;
     }
 
+    public List<RouteTable> getRouteTables() {
+        return routeTables;
+    }
+
+    public TomcatWebServerConfiguration setRouteTables(final List<RouteTable> routeTables) {
+        this.routeTables = routeTables;
+        return this;
+    }
+
+    public List<WebSocketEndpoint> getWebSocketEndpoints() {
+        return webSocketEndpoints;
+    }
+
+    /**
+     * @param webSocketEndpoints the WebSocket endpoints, they are mapped on their exact path.
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setWebSocketEndpoints(final List<WebSocketEndpoint> webSocketEndpoints) {
+        this.webSocketEndpoints = webSocketEndpoints;
+        return this;
+    }
+
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public void setVirtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * @return if the connector itself (request parsing, servlets) should also use virtual threads, it requires {@link #isVirtualThreads()}.
+     */
+    public boolean isVirtualThreadsConnector() {
+        return virtualThreadsConnector;
+    }
+
+    public void setVirtualThreadsConnector(final boolean virtualThreadsConnector) {
+        this.virtualThreadsConnector = virtualThreadsConnector;
+    }
+
+    public int getMaxInFlightRequests() {
+        return maxInFlightRequests;
+    }
+
+    public void setMaxInFlightRequests(final int maxInFlightRequests) {
+        this.maxInFlightRequests = maxInFlightRequests;
+    }
+
+    public MetricsRegistry getEndpointMetrics() {
+        return endpointMetrics;
+    }
+
+    /**
+     * @param endpointMetrics the registry to record per endpoint metrics into (active requests, status classes, latency), {@code null} to disable it (default).
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setEndpointMetrics(final MetricsRegistry endpointMetrics) {
+        this.endpointMetrics = endpointMetrics;
+        return this;
+    }
+
+    public ConcurrencyLimitConfiguration getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    /**
+     * @param concurrencyLimit the adaptive concurrency limit of the fusion endpoints, {@code null} to disable it (default).
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setConcurrencyLimit(final ConcurrencyLimitConfiguration concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+        return this;
+    }
+
+    public RequestTimeoutConfiguration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    /**
+     * @param requestTimeout the default and per endpoint deadlines, {@code null} to only use {@link Endpoint#timeout()} (default).
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setRequestTimeout(final RequestTimeoutConfiguration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+        return this;
+    }
+
+    public RateLimitConfiguration getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * @param rateLimit the per client rate limit of the fusion endpoints, {@code null} to disable it (default).
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setRateLimit(final RateLimitConfiguration rateLimit) {
+        this.rateLimit = rateLimit;
+        return this;
+    }
+
+    public String getUnixDomainSocketPath() {
+        return unixDomainSocketPath;
+    }
+
+    /**
+     * @param unixDomainSocketPath the Unix domain socket the server also listens on (a sidecar for example), {@code null} to disable it (default).
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setUnixDomainSocketPath(final String unixDomainSocketPath) {
+        this.unixDomainSocketPath = unixDomainSocketPath;
+        return this;
+    }
+
+    public String getUnixDomainSocketPermissions() {
+        return unixDomainSocketPermissions;
+    }
+
+    /**
+     * @param unixDomainSocketPermissions the POSIX permissions of the socket file ({@code rw-rw----} for example), {@code null} to use the process umask.
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setUnixDomainSocketPermissions(final String unixDomainSocketPermissions) {
+        this.unixDomainSocketPermissions = unixDomainSocketPermissions;
+        return this;
+    }
+
+    public boolean isUnixDomainSocketOnly() {
+        return unixDomainSocketOnly;
+    }
+
+    /**
+     * @param unixDomainSocketOnly if the main connector listens on {@link #getUnixDomainSocketPath()} instead of the TCP port,
+     *                             default adds a connector for the socket and keeps the TCP one.
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setUnixDomainSocketOnly(final boolean unixDomainSocketOnly) {
+        this.unixDomainSocketOnly = unixDomainSocketOnly;
+        return this;
+    }
+
+    public ByteBufferPool getRequestBufferPool() {
+        return requestBufferPool;
+    }
+
+    /**
+     * @param requestBufferPool the pool of the buffers reading the request bodies, {@code null} to allocate a buffer per read.
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setRequestBufferPool(final ByteBufferPool requestBufferPool) {
+        this.requestBufferPool = requestBufferPool;
+        return this;
+    }
+
+    public AsyncAccessLogConfiguration getAsyncAccessLog() {
+        return asyncAccessLog;
+    }
+
+    /**
+     * @param asyncAccessLog if set, the access log lines are formatted and written by a background thread, {@code null} logs synchronously (default).
+     * @return this.
+     */
+    public TomcatWebServerConfiguration setAsyncAccessLog(final AsyncAccessLogConfiguration asyncAccessLog) {
+        this.asyncAccessLog = asyncAccessLog;
+        return this;
+    }
+
     public String getFusionServletMapping() {
         return fusionServletMapping;
     }
@@ -199,6 +385,18 @@ public class TomcatWebServerConfiguration implements WebServer.Configuration {
         return this;
     }
 
+    @Override
+    public WebServer.Configuration virtualThreads(final boolean enabled) {
+        setVirtualThreads(enabled);
+        return this;
+    }
+
+    @Override
+    public WebServer.Configuration maxInFlightRequests(final int max) {
+        setMaxInFlightRequests(max);
+        return this;
+    }
+
     @Override
     public String host() {
         return defaultHost;
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.websocket;
+
+import java.io.IOException;
+
+// RFC 6455 client frame decoder, payloads are unmasked in a buffer reused for the next frame
+final class FrameDecoder {
+    static final int CONTINUATION = 0x0;
+    static final int TEXT = 0x1;
+    static final int BINARY = 0x2;
+    static final int CLOSE = 0x8;
+    static final int PING = 0x9;
+    static final int PONG = 0xA;
+
+    private static final int HEADER = 0;
+    private static final int LENGTH = 1;
+    private static final int MASK = 2;
+    private static final int PAYLOAD = 3;
+
+    private final int maxFrameSize;
+    private final Listener listener;
+    private final byte[] mask = new byte[4];
+    private int state = HEADER;
+    private int headerRead;
+    private boolean fin;
+    private int opcode;
+    private int lengthBytes;
+    private long length;
+    private int maskRead;
+    private byte[] payload = new byte[128];
+    private int payloadRead;
+
+    FrameDecoder(final int maxFrameSize, final Listener listener) {
+        this.maxFrameSize = maxFrameSize;
+        this.listener = listener;
+    }
+
+    // RFC 3629 well-formed sequences: no overlong encoding, no surrogate, nothing above U+10FFFF
+    static boolean isUtf8(final byte[] data, final int offset, final int length) {
+        int i = offset;
+        final int end = offset + length;
+        while (i < end) {
+            final int b = data[i];
+            if (b >= 0) { // ascii
+                i++;
+                continue;
+            }
+            final int lead = b & 0xFF;
+            final int continuations;
+            int min = 0x80;
+            int max = 0xBF;
+            if (lead >= 0xC2 && lead <= 0xDF) {
+                continuations = 1;
+            } else if (lead >= 0xE0 && lead <= 0xEF) {
+                continuations = 2;
+                if (lead == 0xE0) {
+                    min = 0xA0;
+                } else if (lead == 0xED) {
+                    max = 0x9F;
+                }
+            } else if (lead >= 0xF0 && lead <= 0xF4) {
+                continuations = 3;
+                if (lead == 0xF0) {
+                    min = 0x90;
+                } else if (lead == 0xF4) {
+                    max = 0x8F;
+                }
+            } else {
+                return false;
+            }
+            if (i + continuations >= end) {
+                return false;
+            }
+            final int second = data[i + 1] & 0xFF;
+            if (second < min || second > max) {
+                return false;
+            }
+            for (int c = 2; c <= continuations; c++) {
+                if ((data[i + c] & 0xC0) != 0x80) {
+                    return false;
+                }
+            }
+            i += continuations + 1;
+        }
+        return true;
+    }
+
+    void decode(final byte[] data, final int offset, final int len) throws IOException {
+        int i = offset;
+        final int end = offset + len;
+        while (i < end) {
+            switch (state) {
+                case HEADER -> {
+                    final int b = data[i++] & 0xFF;
+                    if (headerRead++ == 0) {
+                        if ((b & 0x70) != 0) {
+                            throw new ProtocolException(1002, "Unsupported extension");
+                        }
+                        fin = (b & 0x80) != 0;
+                        opcode = b & 0x0F;
+                        if (opcode > BINARY && opcode < CLOSE || opcode > PONG) {
+                            throw new ProtocolException(1002, "Invalid opcode " + opcode);
+                        }
+                        if (opcode >= CLOSE && !fin) {
+                            throw new ProtocolException(1002, "Fragmented control frame");
+                        }
+                    } else {
+                        if ((b & 0x80) == 0) {
+                            throw new ProtocolException(1002, "Client frames must be masked");
+                        }
+                        final int len7 = b & 0x7F;
+                        length = 0;
+                        lengthBytes = len7 == 126 ? 2 : (len7 == 127 ? 8 : 0);
+                        if (lengthBytes == 0) {
+                            length = len7;
+                            onLength();
+                        } else {
+                            if (opcode >= CLOSE) {
+                                throw new ProtocolException(1002, "Control frame payload too long");
+                            }
+                            state = LENGTH;
+                        }
+                    }
+                }
+                case LENGTH -> {
+                    length = (length << 8) | (data[i++] & 0xFF);
+                    if (--lengthBytes == 0) {
+                        onLength();
+                    }
+                }
+                case MASK -> {
+                    mask[maskRead++] = data[i++];
+                    if (maskRead == 4) {
+                        if (length == 0) {
+                            emit();
+                        } else {
+                            state = PAYLOAD;
+                        }
+                    }
+                }
+                default -> {
+                    final int count = (int) Math.min(end - i, length - payloadRead);
+                    for (int j = 0; j < count; j++) {
+                        payload[payloadRead] = (byte) (data[i + j] ^ mask[payloadRead & 3]);
+                        payloadRead++;
+                    }
+                    i += count;
+                    if (payloadRead == length) {
+                        emit();
+                    }
+                }
+            }
+        }
+    }
+
+    private void onLength() {
+        if (length < 0 || length > maxFrameSize) {
+            throw new ProtocolException(1009, "Frame bigger than " + maxFrameSize + " bytes");
+        }
+        if (payload.length < length) {
+            payload = new byte[(int) length];
+        }
+        maskRead = 0;
+        state = MASK;
+    }
+
+    private void emit() throws IOException {
+        final int size = payloadRead;
+        state = HEADER;
+        headerRead = 0;
+        payloadRead = 0;
+        listener.onFrame(fin, opcode, payload, size);
+    }
+
+    interface Listener {
+        void onFrame(boolean fin, int opcode, byte[] payload, int length) throws IOException;
+    }
+
+    static class ProtocolException extends RuntimeException {
+        private final int code;
+
+        ProtocolException(final int code, final String message) {
+            super(message);
+            this.code = code;
+        }
+
+        int code() {
+            return code;
+        }
+    }
+}
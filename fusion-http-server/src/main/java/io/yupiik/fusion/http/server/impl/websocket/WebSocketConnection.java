@@ -0,0 +1,554 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.websocket;
+
+import io.yupiik.fusion.http.server.websocket.WebSocketEndpoint;
+import io.yupiik.fusion.http.server.websocket.WebSocketMessage;
+import io.yupiik.fusion.http.server.websocket.WebSocketSession;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpUpgradeHandler;
+import jakarta.servlet.http.WebConnection;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.logging.Level.FINEST;
+import static java.util.logging.Level.SEVERE;
+
+/**
+ * Server side of an upgraded WebSocket connection, reads and writes are non-blocking.
+ * Outgoing frames are queued and the writer copies the consecutive small ones in a single buffer to batch the writes.
+ */
+public class WebSocketConnection implements HttpUpgradeHandler, WebSocketSession {
+    private static final Logger LOGGER = Logger.getLogger(WebSocketConnection.class.getName());
+    private static final int BATCH_SIZE = 16 * 1_024;
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ArrayDeque<byte[]> queue = new ArrayDeque<>();
+    private final AtomicBoolean closeNotified = new AtomicBoolean();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private final byte[] batch = new byte[BATCH_SIZE];
+
+    private WebSocketEndpoint endpoint;
+    private String id;
+    private String path;
+    private String subprotocol;
+    private Map<String, List<String>> headers;
+    private Map<String, String[]> parameters;
+    private ScheduledExecutorService timer;
+
+    private WebConnection connection;
+    private ServletInputStream input;
+    private ServletOutputStream output;
+    private FrameDecoder decoder;
+    private byte[] message; // fragmented message being received
+    private int messageLength;
+    private int messageOpcode;
+
+    // guarded by writeLock
+    private boolean closeQueued;
+    private boolean closeWritten;
+    private boolean dirty;
+    private volatile ScheduledFuture<?> closeTimeout;
+    private volatile boolean closeReceived;
+    private volatile boolean open;
+
+    void configure(final WebSocketEndpoint endpoint, final String id, final String path, final String subprotocol,
+                   final Map<String, List<String>> headers, final Map<String, String[]> parameters,
+                   final ScheduledExecutorService timer) {
+        this.endpoint = endpoint;
+        this.id = id;
+        this.path = path;
+        this.subprotocol = subprotocol;
+        this.headers = headers;
+        this.parameters = parameters;
+        this.timer = timer;
+    }
+
+    @Override
+    public void init(final WebConnection connection) {
+        this.connection = connection;
+        this.decoder = new FrameDecoder(endpoint.maxMessageSize(), this::onFrame);
+        try {
+            this.input = connection.getInputStream();
+            this.output = connection.getOutputStream();
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        open = true;
+        output.setWriteListener(new Writes()); // before onOpen which can send messages
+        try {
+            endpoint.onOpen(this);
+        } catch (final RuntimeException re) {
+            onError(re);
+            return;
+        }
+        input.setReadListener(new Reads());
+    }
+
+    @Override
+    public void destroy() {
+        open = false;
+        cancelCloseTimeout();
+        notifyClose(1006, "");
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String path() {
+        return path;
+    }
+
+    @Override
+    public String subprotocol() {
+        return subprotocol;
+    }
+
+    @Override
+    public String header(final String name) {
+        final var values = headers.get(name.toLowerCase(Locale.ROOT));
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    @Override
+    public Map<String, List<String>> headers() {
+        return headers;
+    }
+
+    @Override
+    public String parameter(final String name) {
+        final var values = parameters.get(name);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public Map<String, Object> attributes() {
+        return attributes;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open && !closeQueued;
+    }
+
+    @Override
+    public int pendingMessages() {
+        writeLock.lock();
+        try {
+            return queue.size();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean send(final String message) {
+        final var bytes = message.getBytes(UTF_8);
+        return enqueue(frame(FrameDecoder.TEXT, bytes, 0, bytes.length), false);
+    }
+
+    @Override
+    public boolean send(final ByteBuffer message) {
+        final var bytes = new byte[message.remaining()];
+        message.duplicate().get(bytes);
+        return enqueue(frame(FrameDecoder.BINARY, bytes, 0, bytes.length), false);
+    }
+
+    @Override
+    public boolean sendText(final Consumer<Writer> writer) {
+        final var frame = new FrameOutputStream();
+        try (final var out = new OutputStreamWriter(frame, UTF_8)) {
+            writer.accept(out);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return enqueue(frame.toFrame(FrameDecoder.TEXT), false);
+    }
+
+    @Override
+    public void close(final int code, final String reason) {
+        final var reasonBytes = reason == null ? new byte[0] : reason.getBytes(UTF_8);
+        final var payload = new byte[2 + Math.min(123, reasonBytes.length)];
+        payload[0] = (byte) (code >> 8);
+        payload[1] = (byte) code;
+        System.arraycopy(reasonBytes, 0, payload, 2, payload.length - 2);
+        enqueue(frame(FrameDecoder.CLOSE, payload, 0, payload.length), true);
+        notifyClose(code, reason == null ? "" : reason);
+    }
+
+    private boolean enqueue(final byte[] frame, final boolean control) {
+        writeLock.lock();
+        try {
+            if (!open || closeQueued || (!control && queue.size() >= endpoint.sendQueueSize())) {
+                return false;
+            }
+            if (frame[0] == (byte) (0x80 | FrameDecoder.CLOSE)) {
+                closeQueued = true;
+                scheduleCloseTimeout();
+            }
+            queue.add(frame);
+        } finally {
+            writeLock.unlock();
+        }
+        flush();
+        return true;
+    }
+
+    private void flush() {
+        boolean close = false;
+        writeLock.lock();
+        try {
+            if (output == null) { // not yet initialized, the write listener will flush
+                return;
+            }
+            while (output.isReady()) {
+                if (queue.isEmpty()) {
+                    if (dirty) {
+                        dirty = false;
+                        output.flush();
+                        continue;
+                    }
+                    break;
+                }
+
+                final var first = queue.poll();
+                dirty = true;
+                if (first.length >= BATCH_SIZE || queue.isEmpty() || queue.peek().length + first.length > BATCH_SIZE) {
+                    output.write(first);
+                    closeWritten |= isClose(first);
+                    continue;
+                }
+
+                System.arraycopy(first, 0, batch, 0, first.length);
+                int length = first.length;
+                closeWritten |= isClose(first);
+                while (!queue.isEmpty() && queue.peek().length + length <= BATCH_SIZE) {
+                    final var next = queue.poll();
+                    System.arraycopy(next, 0, batch, length, next.length);
+                    length += next.length;
+                    closeWritten |= isClose(next);
+                }
+                output.write(batch, 0, length);
+            }
+            close = closeWritten && closeReceived && queue.isEmpty() && !dirty;
+        } catch (final IOException | RuntimeException e) {
+            LOGGER.log(FINEST, e, e::getMessage);
+            close = true;
+        } finally {
+            writeLock.unlock();
+        }
+        if (close) {
+            closeConnection();
+        }
+    }
+
+    // a client not answering our close frame (or not reading anymore) must not keep the session forever
+    private void scheduleCloseTimeout() {
+        if (timer == null || endpoint.closeTimeout() <= 0) {
+            return;
+        }
+        try {
+            closeTimeout = timer.schedule(this::onCloseTimeout, endpoint.closeTimeout(), MILLISECONDS);
+        } catch (final RejectedExecutionException ree) { // server stopping, connections are closed anyway
+            LOGGER.log(FINEST, ree, ree::getMessage);
+        }
+    }
+
+    // the upgraded streams are closed from the timer thread so the container drops the socket on its next event
+    // instead of reading frames of a session which is over
+    private void onCloseTimeout() {
+        writeLock.lock();
+        try {
+            queue.clear();
+        } finally {
+            writeLock.unlock();
+        }
+        closeReceived = true;
+        closeConnection();
+    }
+
+    private void cancelCloseTimeout() {
+        final var timeout = closeTimeout;
+        if (timeout != null) {
+            closeTimeout = null;
+            timeout.cancel(false);
+        }
+    }
+
+    private boolean isClose(final byte[] frame) {
+        return frame[0] == (byte) (0x80 | FrameDecoder.CLOSE);
+    }
+
+    private void onFrame(final boolean fin, final int opcode, final byte[] payload, final int length) {
+        switch (opcode) {
+            case FrameDecoder.CLOSE -> {
+                closeReceived = true;
+                if (length == 1) {
+                    throw new FrameDecoder.ProtocolException(1002, "Invalid close frame");
+                }
+                final int code = length >= 2 ? ((payload[0] & 0xFF) << 8) | (payload[1] & 0xFF) : 1005;
+                if (length > 2 && !FrameDecoder.isUtf8(payload, 2, length - 2)) {
+                    throw new FrameDecoder.ProtocolException(1007, "Invalid UTF-8 close reason");
+                }
+                final var reason = length > 2 ? new String(payload, 2, length - 2, UTF_8) : "";
+                notifyClose(code, reason);
+                if (!enqueueEcho(code)) {
+                    flush(); // our close was already queued/written, close the connection once done
+                }
+            }
+            case FrameDecoder.PING -> enqueue(frame(FrameDecoder.PONG, payload, 0, length), true);
+            case FrameDecoder.PONG -> {
+                // no-op, we don't send pings
+            }
+            case FrameDecoder.CONTINUATION -> {
+                if (messageOpcode == 0) {
+                    throw new FrameDecoder.ProtocolException(1002, "Unexpected continuation frame");
+                }
+                append(payload, length);
+                if (fin) {
+                    final int type = messageOpcode;
+                    messageOpcode = 0;
+                    deliver(type == FrameDecoder.TEXT, message, messageLength);
+                    messageLength = 0;
+                }
+            }
+            default -> {
+                if (messageOpcode != 0) {
+                    throw new FrameDecoder.ProtocolException(1002, "Expected a continuation frame");
+                }
+                if (fin) { // common case, no copy
+                    deliver(opcode == FrameDecoder.TEXT, payload, length);
+                } else {
+                    messageOpcode = opcode;
+                    messageLength = 0;
+                    append(payload, length);
+                }
+            }
+        }
+    }
+
+    private boolean enqueueEcho(final int code) {
+        writeLock.lock();
+        try {
+            if (closeQueued) {
+                return false;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+        final var echo = code == 1005 ? new byte[0] : new byte[]{(byte) (code >> 8), (byte) code};
+        return enqueue(frame(FrameDecoder.CLOSE, echo, 0, echo.length), true);
+    }
+
+    private void append(final byte[] payload, final int length) {
+        if ((long) messageLength + length > endpoint.maxMessageSize()) {
+            throw new FrameDecoder.ProtocolException(1009, "Message bigger than " + endpoint.maxMessageSize() + " bytes");
+        }
+        if (message == null || message.length < messageLength + length) {
+            message = message == null ? new byte[Math.max(1_024, length)] : Arrays.copyOf(message, Math.max(message.length * 2, messageLength + length));
+        }
+        System.arraycopy(payload, 0, message, messageLength, length);
+        messageLength += length;
+    }
+
+    private void deliver(final boolean text, final byte[] payload, final int length) {
+        if (text && !FrameDecoder.isUtf8(payload, 0, length)) {
+            throw new FrameDecoder.ProtocolException(1007, "Invalid UTF-8 text message");
+        }
+        try {
+            endpoint.onMessage(this, new Message(text, payload, length));
+        } catch (final RuntimeException re) {
+            onError(re);
+        }
+    }
+
+    private void onError(final Throwable error) {
+        try {
+            endpoint.onError(this, error);
+        } catch (final RuntimeException re) {
+            LOGGER.log(SEVERE, re, re::getMessage);
+        }
+        close(1011, "");
+    }
+
+    private void notifyClose(final int code, final String reason) {
+        if (closeNotified.compareAndSet(false, true)) {
+            try {
+                endpoint.onClose(this, code, reason);
+            } catch (final RuntimeException re) {
+                LOGGER.log(SEVERE, re, re::getMessage);
+            }
+        }
+    }
+
+    private void closeConnection() {
+        open = false;
+        cancelCloseTimeout();
+        try {
+            connection.close();
+        } catch (final Exception e) {
+            LOGGER.log(FINEST, e, e::getMessage);
+        }
+        notifyClose(1006, "");
+    }
+
+    static byte[] frame(final int opcode, final byte[] payload, final int offset, final int length) {
+        final int header = headerSize(length);
+        final var frame = new byte[header + length];
+        writeHeader(frame, 0, opcode, length);
+        System.arraycopy(payload, offset, frame, header, length);
+        return frame;
+    }
+
+    private static int headerSize(final int length) {
+        return length < 126 ? 2 : (length <= 0xFFFF ? 4 : 10);
+    }
+
+    private static void writeHeader(final byte[] frame, final int offset, final int opcode, final int length) {
+        frame[offset] = (byte) (0x80 | opcode);
+        if (length < 126) {
+            frame[offset + 1] = (byte) length;
+        } else if (length <= 0xFFFF) {
+            frame[offset + 1] = 126;
+            frame[offset + 2] = (byte) (length >> 8);
+            frame[offset + 3] = (byte) length;
+        } else {
+            frame[offset + 1] = 127;
+            for (int i = 0; i < 8; i++) {
+                frame[offset + 2 + i] = (byte) (i < 4 ? 0 : (length >> (8 * (7 - i))));
+            }
+        }
+    }
+
+    // reserves the largest frame header so the payload is written in place
+    private static class FrameOutputStream extends ByteArrayOutputStream {
+        private FrameOutputStream() {
+            super(256);
+            count = 10;
+        }
+
+        private byte[] toFrame(final int opcode) {
+            final int length = count - 10;
+            final int header = headerSize(length);
+            final int start = 10 - header;
+            writeHeader(buf, start, opcode, length);
+            return start == 0 && buf.length == count ? buf : Arrays.copyOfRange(buf, start, count);
+        }
+    }
+
+    private record Message(boolean isText, byte[] payload, int size) implements WebSocketMessage {
+        @Override
+        public ByteBuffer buffer() {
+            return ByteBuffer.wrap(payload, 0, size).asReadOnlyBuffer();
+        }
+
+        @Override
+        public byte[] bytes() {
+            return Arrays.copyOf(payload, size);
+        }
+
+        @Override
+        public String text() {
+            return new String(payload, 0, size, UTF_8);
+        }
+
+        @Override
+        public Reader reader() {
+            return new InputStreamReader(stream(), UTF_8);
+        }
+
+        @Override
+        public InputStream stream() {
+            return new ByteArrayInputStream(payload, 0, size);
+        }
+    }
+
+    private class Reads implements ReadListener {
+        private final byte[] buffer = new byte[8 * 1_024];
+
+        @Override
+        public void onDataAvailable() throws IOException {
+            try {
+                while (!closeReceived && input.isReady()) {
+                    final int read = input.read(buffer);
+                    if (read < 0) {
+                        break;
+                    }
+                    decoder.decode(buffer, 0, read);
+                }
+            } catch (final FrameDecoder.ProtocolException pe) {
+                closeReceived = true; // stop reading, the connection is closed once our close frame is written
+                close(pe.code(), pe.getMessage());
+                flush();
+            }
+        }
+
+        @Override
+        public void onAllDataRead() {
+            closeReceived = true;
+            closeConnection();
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            LOGGER.log(FINEST, throwable, throwable::getMessage);
+            closeConnection();
+        }
+    }
+
+    private class Writes implements WriteListener {
+        @Override
+        public void onWritePossible() {
+            flush();
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            LOGGER.log(FINEST, throwable, throwable::getMessage);
+            closeConnection();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.websocket;
+
+import io.yupiik.fusion.http.server.impl.servlet.ServletRequest;
+import io.yupiik.fusion.http.server.websocket.WebSocketEndpoint;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.util.stream.Collectors.toMap;
+
+/**
+ * Handles the WebSocket handshake (RFC 6455) of the endpoints mapped on their exact path
+ * and upgrades the connection to a {@link WebSocketConnection}.
+ */
+public class WebSocketServlet extends HttpServlet {
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final Map<String, WebSocketEndpoint> endpoints;
+    private ScheduledThreadPoolExecutor timer; // close timeouts
+
+    public WebSocketServlet(final List<WebSocketEndpoint> endpoints) {
+        this.endpoints = endpoints.stream().collect(toMap(WebSocketEndpoint::path, e -> e));
+    }
+
+    @Override
+    public void init() throws ServletException {
+        super.init();
+        timer = new ScheduledThreadPoolExecutor(1, r -> {
+            final var thread = new Thread(r, "fusion-websocket-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true); // most closes complete before their timeout
+    }
+
+    @Override
+    public void destroy() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        super.destroy();
+    }
+
+    public Collection<String> paths() {
+        return endpoints.keySet();
+    }
+
+    @Override
+    protected void service(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+        final var endpoint = endpoints.get(req.getServletPath() + (req.getPathInfo() == null ? "" : req.getPathInfo()));
+        if (endpoint == null) {
+            resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (!"GET".equals(req.getMethod()) ||
+                !contains(req.getHeader("upgrade"), "websocket") || !contains(req.getHeader("connection"), "upgrade")) {
+            resp.setStatus(426); // upgrade required
+            resp.setHeader("Upgrade", "websocket");
+            return;
+        }
+        final var key = req.getHeader("sec-websocket-key");
+        if (!"13".equals(req.getHeader("sec-websocket-version")) || key == null || key.isBlank()) {
+            resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            resp.setHeader("Sec-WebSocket-Version", "13");
+            return;
+        }
+        if (!isAllowedOrigin(endpoint, req.getHeader("origin"), req.getHeader("host")) || !endpoint.onHandshake(new ServletRequest(req))) {
+            resp.setStatus(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+
+        final var subprotocol = selectSubprotocol(endpoint, req.getHeader("sec-websocket-protocol"));
+        resp.setHeader("Upgrade", "websocket");
+        resp.setHeader("Connection", "Upgrade");
+        resp.setHeader("Sec-WebSocket-Accept", accept(key.strip()));
+        if (subprotocol != null) {
+            resp.setHeader("Sec-WebSocket-Protocol", subprotocol);
+        }
+
+        final var connection = req.upgrade(WebSocketConnection.class);
+        connection.configure(endpoint, UUID.randomUUID().toString(), endpoint.path(), subprotocol, headers(req), Map.copyOf(req.getParameterMap()), timer);
+    }
+
+    private boolean isAllowedOrigin(final WebSocketEndpoint endpoint, final String origin, final String host) {
+        if (origin == null) { // not a browser
+            return true;
+        }
+        final var allowed = endpoint.allowedOrigins();
+        if (allowed.isEmpty()) { // same origin
+            try {
+                final var authority = URI.create(origin.strip()).getAuthority();
+                return authority != null && authority.equalsIgnoreCase(host);
+            } catch (final IllegalArgumentException iae) { // "null" or invalid origin
+                return false;
+            }
+        }
+        return allowed.contains("*") || allowed.stream().anyMatch(origin.strip()::equalsIgnoreCase);
+    }
+
+    private String selectSubprotocol(final WebSocketEndpoint endpoint, final String requested) {
+        if (requested == null || endpoint.subprotocols().isEmpty()) {
+            return null;
+        }
+        return Stream.of(requested.split(","))
+                .map(String::strip)
+                .filter(endpoint.subprotocols()::contains)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private Map<String, List<String>> headers(final HttpServletRequest req) {
+        final var headers = new HashMap<String, List<String>>();
+        for (final var name : Collections.list(req.getHeaderNames())) {
+            headers.computeIfAbsent(name.toLowerCase(Locale.ROOT), k -> new ArrayList<>()).addAll(Collections.list(req.getHeaders(name)));
+        }
+        return Map.copyOf(headers);
+    }
+
+    private static boolean contains(final String header, final String token) {
+        return header != null && Stream.of(header.split(",")).anyMatch(it -> it.strip().equalsIgnoreCase(token));
+    }
+
+    static String accept(final String key) {
+        try {
+            return Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-1").digest((key + GUID).getBytes(ISO_8859_1)));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
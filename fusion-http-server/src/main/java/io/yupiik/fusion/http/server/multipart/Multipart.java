@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.multipart;
+
+import io.yupiik.fusion.http.server.api.HttpException;
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.api.Response;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+
+import static java.util.concurrent.CompletableFuture.failedStage;
+
+/**
+ * Parsed {@code multipart/form-data} body.
+ * The body is parsed while it is read, without ever holding it fully in memory: small parts stay in memory,
+ * the ones bigger than {@link Configuration#getSpillThreshold()} are written to temporary files and the size limits
+ * are enforced while streaming (HTTP 413).
+ * <p>
+ * IMPORTANT: close it once the parts are consumed to delete the temporary files.
+ */
+public final class Multipart implements AutoCloseable {
+    private final List<Part> parts;
+
+    Multipart(final List<Part> parts) {
+        this.parts = parts;
+    }
+
+    /**
+     * Same as {@link #parse(Request, Configuration)} with the default configuration.
+     *
+     * @param request the request to read the body of.
+     * @return the parts once the body is read.
+     */
+    public static CompletionStage<Multipart> parse(final Request request) {
+        return parse(request, new Configuration());
+    }
+
+    /**
+     * @param request       the request to read the body of, it must be a {@code multipart/form-data} one with a boundary.
+     * @param configuration the limits and spill configuration.
+     * @return the parts once the body is read, it fails with a {@link HttpException} for invalid or too big bodies.
+     */
+    public static CompletionStage<Multipart> parse(final Request request, final Configuration configuration) {
+        final var contentType = request.header("content-type");
+        if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("multipart/")) {
+            return failedStage(new HttpException("Not a multipart request", Response.of().status(415).build()));
+        }
+        final var boundary = boundary(contentType);
+        if (boundary == null) {
+            return failedStage(new HttpException("No multipart boundary", Response.of().status(400).build()));
+        }
+        final var parser = new MultipartParser(boundary, configuration);
+        request.fullBody().subscribe(parser);
+        return parser.promise();
+    }
+
+    public List<Part> parts() {
+        return parts;
+    }
+
+    /**
+     * @param name the form field name.
+     * @return the first part with this name.
+     */
+    public Optional<Part> part(final String name) {
+        return parts.stream().filter(it -> name.equals(it.name())).findFirst();
+    }
+
+    /**
+     * @param name the form field name.
+     * @return all the parts with this name (multiple files for example).
+     */
+    public List<Part> parts(final String name) {
+        return parts.stream().filter(it -> name.equals(it.name())).toList();
+    }
+
+    /**
+     * Deletes the temporary files which were not transferred.
+     */
+    @Override
+    public void close() {
+        parts.forEach(Part::delete);
+    }
+
+    static String boundary(final String contentType) {
+        for (final var segment : contentType.split(";")) {
+            final var param = segment.strip();
+            if (param.regionMatches(true, 0, "boundary=", 0, "boundary=".length())) {
+                var value = param.substring("boundary=".length()).strip();
+                if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\"")) {
+                    value = value.substring(1, value.length() - 1);
+                }
+                return value.isEmpty() || value.length() > 70 ? null : value; // RFC 2046 limit
+            }
+        }
+        return null;
+    }
+
+    public static class Configuration {
+        private int spillThreshold = 64 * 1_024;
+        private long maxPartSize = 256 * 1_024 * 1_024;
+        private long maxTotalSize = 512 * 1_024 * 1_024;
+        private int maxHeaderSize = 16 * 1_024;
+        private int maxParts = 1_000;
+        private Path tempDirectory;
+
+        public int getSpillThreshold() {
+            return spillThreshold;
+        }
+
+        /**
+         * @param spillThreshold the size (in bytes) above which a part content is written to a temporary file.
+         * @return this.
+         */
+        public Configuration setSpillThreshold(final int spillThreshold) {
+            this.spillThreshold = spillThreshold;
+            return this;
+        }
+
+        public long getMaxPartSize() {
+            return maxPartSize;
+        }
+
+        /**
+         * @param maxPartSize the maximum size (in bytes) of a part content, a negative value means no limit.
+         * @return this.
+         */
+        public Configuration setMaxPartSize(final long maxPartSize) {
+            this.maxPartSize = maxPartSize;
+            return this;
+        }
+
+        public long getMaxTotalSize() {
+            return maxTotalSize;
+        }
+
+        /**
+         * @param maxTotalSize the maximum size (in bytes) of the whole body, a negative value means no limit.
+         * @return this.
+         */
+        public Configuration setMaxTotalSize(final long maxTotalSize) {
+            this.maxTotalSize = maxTotalSize;
+            return this;
+        }
+
+        public int getMaxHeaderSize() {
+            return maxHeaderSize;
+        }
+
+        /**
+         * @param maxHeaderSize the maximum size (in bytes) of the headers of a part.
+         * @return this.
+         */
+        public Configuration setMaxHeaderSize(final int maxHeaderSize) {
+            this.maxHeaderSize = maxHeaderSize;
+            return this;
+        }
+
+        public int getMaxParts() {
+            return maxParts;
+        }
+
+        public Configuration setMaxParts(final int maxParts) {
+            this.maxParts = maxParts;
+            return this;
+        }
+
+        public Path getTempDirectory() {
+            return tempDirectory;
+        }
+
+        /**
+         * @param tempDirectory where to write the spilled parts, {@code null} (default) uses {@code java.io.tmpdir}.
+         * @return this.
+         */
+        public Configuration setTempDirectory(final Path tempDirectory) {
+            this.tempDirectory = tempDirectory;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,424 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.multipart;
+
+import io.yupiik.fusion.http.server.api.HttpException;
+import io.yupiik.fusion.http.server.api.Response;
+import io.yupiik.fusion.http.server.impl.servlet.ByteBufferPool;
+
+import java.io.IOException;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Incremental {@code multipart/form-data} parser: the delimiter is searched with a KMP automaton so it can span
+ * several buffers without keeping them, the request buffers are copied so pooled ones are recycled immediately.
+ * Spilled parts are written from the reading thread, it is a plain file append.
+ */
+final class MultipartParser implements Flow.Subscriber<ByteBuffer>, ByteBufferPool.CopyingSubscriber {
+    private static final int BODY = 0;
+    private static final int AFTER_DELIMITER = 1;
+    private static final int CLOSE_DELIMITER = 2;
+    private static final int DELIMITER_LINE_END = 3;
+    private static final int HEADERS = 4;
+    private static final int EPILOGUE = 5;
+
+    private final CompletableFuture<Multipart> promise = new CompletableFuture<>();
+    private final Lock lock = new ReentrantLock();
+    private final Multipart.Configuration configuration;
+    private final byte[] delimiter; // CRLF--boundary
+    private final int[] failure;
+    private final List<Part> parts = new ArrayList<>();
+    private final byte[] staging = new byte[8 * 1_024];
+    private Flow.Subscription subscription;
+    private int state = BODY;
+    private int matched = 2; // the first delimiter can omit the leading CRLF
+    private int staged;
+    private long total;
+    private byte[] headers = new byte[256];
+    private int headersLength;
+    private PartSink current; // null in the preamble
+    private boolean done;
+
+    MultipartParser(final String boundary, final Multipart.Configuration configuration) {
+        this.configuration = configuration;
+        this.delimiter = ("\r\n--" + boundary).getBytes(ISO_8859_1);
+        this.failure = failure(delimiter);
+    }
+
+    CompletionStage<Multipart> promise() {
+        return promise;
+    }
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(final ByteBuffer item) {
+        lock.lock();
+        try {
+            if (done) {
+                return;
+            }
+            total += item.remaining();
+            if (configuration.getMaxTotalSize() >= 0 && total > configuration.getMaxTotalSize()) {
+                throw tooLarge("Multipart body is bigger than " + configuration.getMaxTotalSize() + " bytes");
+            }
+            while (item.hasRemaining() && state != EPILOGUE) {
+                consume(item.get());
+            }
+            item.position(item.limit()); // epilogue is ignored
+        } catch (final RuntimeException | IOException e) {
+            fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        lock.lock();
+        try {
+            if (!done) {
+                fail(throwable);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        lock.lock();
+        try {
+            if (done) {
+                return;
+            }
+            if (state != EPILOGUE) {
+                fail(new HttpException("Truncated multipart body", Response.of().status(400).build()));
+                return;
+            }
+            done = true;
+            promise.complete(new Multipart(List.copyOf(parts)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void consume(final byte b) throws IOException {
+        switch (state) {
+            case BODY -> body(b);
+            case AFTER_DELIMITER -> {
+                switch (b) {
+                    case '-' -> state = CLOSE_DELIMITER;
+                    case '\r' -> state = DELIMITER_LINE_END;
+                    case '\n' -> startHeaders();
+                    case ' ', '\t' -> {
+                        // transport padding
+                    }
+                    default -> throw malformed();
+                }
+            }
+            case CLOSE_DELIMITER -> {
+                if (b != '-') {
+                    throw malformed();
+                }
+                state = EPILOGUE;
+            }
+            case DELIMITER_LINE_END -> {
+                if (b != '\n') {
+                    throw malformed();
+                }
+                startHeaders();
+            }
+            case HEADERS -> header(b);
+            default -> {
+                // epilogue
+            }
+        }
+    }
+
+    private void body(final byte b) throws IOException {
+        if (b == delimiter[matched]) {
+            if (++matched == delimiter.length) {
+                endPart();
+                matched = 0;
+                state = AFTER_DELIMITER;
+            }
+            return;
+        }
+        while (matched > 0) { // the matched bytes are a delimiter prefix, emit the ones which can't start a delimiter
+            final int fallback = failure[matched - 1];
+            emit(delimiter, matched - fallback);
+            matched = fallback;
+            if (b == delimiter[matched]) {
+                matched++;
+                return;
+            }
+        }
+        if (current != null) {
+            if (staged == staging.length) {
+                current.write(staging, staged);
+                staged = 0;
+            }
+            staging[staged++] = b;
+        }
+    }
+
+    private void emit(final byte[] bytes, final int length) throws IOException {
+        if (current == null) { // preamble
+            return;
+        }
+        for (int i = 0; i < length; i++) {
+            if (staged == staging.length) {
+                current.write(staging, staged);
+                staged = 0;
+            }
+            staging[staged++] = bytes[i];
+        }
+    }
+
+    private void startHeaders() {
+        if (parts.size() >= configuration.getMaxParts()) {
+            throw tooLarge("Multipart body has more than " + configuration.getMaxParts() + " parts");
+        }
+        headersLength = 0;
+        state = HEADERS;
+    }
+
+    private void header(final byte b) throws IOException {
+        if (headersLength == configuration.getMaxHeaderSize()) {
+            throw tooLarge("Multipart part headers are bigger than " + configuration.getMaxHeaderSize() + " bytes");
+        }
+        if (headersLength == headers.length) {
+            headers = Arrays.copyOf(headers, Math.min(headers.length * 2, configuration.getMaxHeaderSize()));
+        }
+        headers[headersLength++] = b;
+        if (b == '\n' && headersLength >= 2 && headers[headersLength - 2] == '\r' && (headersLength == 2 || (headersLength >= 4 && // no header or end of headers
+                headers[headersLength - 3] == '\n' && headers[headersLength - 4] == '\r'))) {
+            current = newPart(new String(headers, 0, headersLength, UTF_8));
+            staged = 0;
+            matched = 0;
+            state = BODY;
+        }
+    }
+
+    private void endPart() throws IOException {
+        if (current == null) { // end of the preamble
+            return;
+        }
+        if (staged > 0) {
+            current.write(staging, staged);
+            staged = 0;
+        }
+        parts.add(current.toPart());
+        current = null;
+    }
+
+    private PartSink newPart(final String rawHeaders) {
+        final var values = new HashMap<String, String>();
+        for (final var line : rawHeaders.split("\r\n")) {
+            final int sep = line.indexOf(':');
+            if (sep > 0) {
+                values.merge(line.substring(0, sep).strip().toLowerCase(Locale.ROOT), line.substring(sep + 1).strip(), (a, b) -> a + ", " + b);
+            }
+        }
+
+        String name = null;
+        String filename = null;
+        final var disposition = values.get("content-disposition");
+        if (disposition != null) {
+            final var params = parameters(disposition);
+            name = params.get("name");
+            filename = params.get("filename*");
+            if (filename != null) { // RFC 5987, charset'lang'encoded
+                final int start = filename.indexOf('\'');
+                final int end = start < 0 ? -1 : filename.indexOf('\'', start + 1);
+                if (end > 0) {
+                    try {
+                        filename = URLDecoder.decode(filename.substring(end + 1).replace("+", "%2B"), Charset.forName(filename.substring(0, start)));
+                    } catch (final RuntimeException e) {
+                        filename = null;
+                    }
+                }
+            }
+            if (filename == null) {
+                filename = params.get("filename");
+            }
+        }
+        return new PartSink(name, filename, values.get("content-type"), Map.copyOf(values));
+    }
+
+    private void fail(final Throwable error) {
+        done = true;
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        if (current != null) {
+            current.discard();
+            current = null;
+        }
+        parts.forEach(Part::delete);
+        promise.completeExceptionally(error);
+    }
+
+    private HttpException malformed() {
+        return new HttpException("Malformed multipart body", Response.of().status(400).build());
+    }
+
+    private static HttpException tooLarge(final String message) {
+        return new HttpException(message, Response.of().status(413).build());
+    }
+
+    // ;-separated key=value pairs, values can be quoted
+    private static Map<String, String> parameters(final String header) {
+        final var params = new HashMap<String, String>();
+        int i = header.indexOf(';');
+        while (i >= 0 && i < header.length()) {
+            final int eq = header.indexOf('=', i);
+            if (eq < 0) {
+                break;
+            }
+            final var key = header.substring(i + 1, eq).strip().toLowerCase(Locale.ROOT);
+            int j = eq + 1;
+            while (j < header.length() && header.charAt(j) == ' ') {
+                j++;
+            }
+            final var value = new StringBuilder();
+            if (j < header.length() && header.charAt(j) == '"') {
+                j++;
+                while (j < header.length() && header.charAt(j) != '"') {
+                    if (header.charAt(j) == '\\' && j + 1 < header.length()) {
+                        j++;
+                    }
+                    value.append(header.charAt(j++));
+                }
+                i = header.indexOf(';', j);
+            } else {
+                final int end = header.indexOf(';', j);
+                value.append(header.substring(j, end < 0 ? header.length() : end).strip());
+                i = end;
+            }
+            params.putIfAbsent(key, value.toString());
+        }
+        return params;
+    }
+
+    private static int[] failure(final byte[] pattern) {
+        final var table = new int[pattern.length];
+        int k = 0;
+        for (int i = 1; i < pattern.length; i++) {
+            while (k > 0 && pattern[i] != pattern[k]) {
+                k = table[k - 1];
+            }
+            if (pattern[i] == pattern[k]) {
+                k++;
+            }
+            table[i] = k;
+        }
+        return table;
+    }
+
+    private final class PartSink {
+        private final String name;
+        private final String filename;
+        private final String contentType;
+        private final Map<String, String> headers;
+        private byte[] memory = new byte[0];
+        private long size;
+        private Path file;
+        private FileChannel channel;
+
+        private PartSink(final String name, final String filename, final String contentType, final Map<String, String> headers) {
+            this.name = name;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.headers = headers;
+        }
+
+        private void write(final byte[] bytes, final int length) throws IOException {
+            size += length;
+            if (configuration.getMaxPartSize() >= 0 && size > configuration.getMaxPartSize()) {
+                throw tooLarge("Multipart part '" + name + "' is bigger than " + configuration.getMaxPartSize() + " bytes");
+            }
+            if (channel == null && size <= configuration.getSpillThreshold()) {
+                final int offset = (int) (size - length);
+                if (memory.length < size) {
+                    memory = Arrays.copyOf(memory, (int) Math.min(configuration.getSpillThreshold(), Math.max(size, memory.length * 2L)));
+                }
+                System.arraycopy(bytes, 0, memory, offset, length);
+                return;
+            }
+            if (channel == null) { // spill
+                file = configuration.getTempDirectory() == null ?
+                        Files.createTempFile("fusion-multipart-", ".part") :
+                        Files.createTempFile(configuration.getTempDirectory(), "fusion-multipart-", ".part");
+                channel = FileChannel.open(file, WRITE);
+                write(ByteBuffer.wrap(memory, 0, (int) (size - length)));
+                memory = null;
+            }
+            write(ByteBuffer.wrap(bytes, 0, length));
+        }
+
+        private void write(final ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        private Part toPart() throws IOException {
+            if (channel != null) {
+                channel.close();
+                return new Part(name, filename, contentType, headers, size, null, file);
+            }
+            return new Part(name, filename, contentType, headers, size, memory.length == size ? memory : Arrays.copyOf(memory, (int) size), null);
+        }
+
+        private void discard() {
+            if (channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (final IOException e) {
+                // no-op, temp directory
+            }
+        }
+    }
+}
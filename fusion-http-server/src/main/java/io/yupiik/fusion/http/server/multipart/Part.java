@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.multipart;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A part of a {@code multipart/form-data} body, its content is either in memory or in a temporary file
+ * (see {@link Multipart.Configuration#setSpillThreshold(int)}).
+ */
+public final class Part {
+    private final String name;
+    private final String filename;
+    private final String contentType;
+    private final Map<String, String> headers;
+    private final long size;
+    private final byte[] content;
+    private volatile Path file;
+
+    Part(final String name, final String filename, final String contentType, final Map<String, String> headers,
+         final long size, final byte[] content, final Path file) {
+        this.name = name;
+        this.filename = filename;
+        this.contentType = contentType;
+        this.headers = headers;
+        this.size = size;
+        this.content = content;
+        this.file = file;
+    }
+
+    /**
+     * @return the form field name.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the uploaded file name, {@code null} for a plain form field.
+     */
+    public String filename() {
+        return filename;
+    }
+
+    /**
+     * @return the part content type, {@code null} if not set.
+     */
+    public String contentType() {
+        return contentType;
+    }
+
+    /**
+     * @return the part headers, names are lowercased.
+     */
+    public Map<String, String> headers() {
+        return headers;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @return {@code true} if the content is in memory, {@code false} if it was spilled to a temporary file.
+     */
+    public boolean isInMemory() {
+        return content != null;
+    }
+
+    /**
+     * @return a new stream on the part content.
+     * @throws IOException if the temporary file can't be read.
+     */
+    public InputStream open() throws IOException {
+        if (content != null) {
+            return new ByteArrayInputStream(content);
+        }
+        return Files.newInputStream(requireFile());
+    }
+
+    /**
+     * IMPORTANT: it loads the content in memory, prefer {@link #open()} or {@link #transferTo(Path)} for files.
+     *
+     * @return the part content.
+     */
+    public byte[] bytes() {
+        if (content != null) {
+            return content.clone();
+        }
+        try {
+            return Files.readAllBytes(requireFile());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return the part content decoded with the content type charset (UTF-8 by default).
+     */
+    public String string() {
+        final var charset = charset();
+        return content != null ? new String(content, charset) : new String(bytes(), charset);
+    }
+
+    /**
+     * Moves (temporary file) or writes (memory) the content to {@code target}, it replaces any existing file.
+     *
+     * @param target the destination.
+     * @throws IOException if the content can't be written.
+     */
+    public void transferTo(final Path target) throws IOException {
+        if (content != null) {
+            Files.write(target, content);
+            return;
+        }
+        final var current = requireFile();
+        Files.move(current, target, REPLACE_EXISTING);
+        file = null;
+    }
+
+    /**
+     * Deletes the temporary file if any, it is done for all parts by {@link Multipart#close()}.
+     */
+    public void delete() {
+        final var current = file;
+        if (current == null) {
+            return;
+        }
+        file = null;
+        try {
+            Files.deleteIfExists(current);
+        } catch (final IOException e) {
+            // no-op, temp directory
+        }
+    }
+
+    private Path requireFile() {
+        final var current = file;
+        if (current == null) {
+            throw new IllegalStateException("Part '" + name + "' content was already transferred or deleted");
+        }
+        return current;
+    }
+
+    private Charset charset() {
+        if (contentType != null) {
+            final int idx = contentType.toLowerCase(Locale.ROOT).indexOf("charset=");
+            if (idx >= 0) {
+                var value = contentType.substring(idx + "charset=".length());
+                final int end = value.indexOf(';');
+                if (end >= 0) {
+                    value = value.substring(0, end);
+                }
+                try {
+                    return Charset.forName(value.strip().replace("\"", ""));
+                } catch (final RuntimeException re) {
+                    // fallback on default
+                }
+            }
+        }
+        return UTF_8;
+    }
+
+    @Override
+    public String toString() {
+        return "Part[name=" + name + (filename != null ? ", filename=" + filename : "") + ", size=" + size + ']';
+    }
+}
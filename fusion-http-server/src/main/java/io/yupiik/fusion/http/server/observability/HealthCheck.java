@@ -15,6 +15,7 @@
  */
 package io.yupiik.fusion.http.server.observability;
 
+import java.time.Duration;
 import java.util.concurrent.CompletionStage;
 
 /**
@@ -33,6 +34,28 @@ public interface HealthCheck {
         return "live";
     }
 
+    /**
+     * @return how long a result is reused by {@link HealthRegistry#check(HealthCheck)}, {@link Duration#ZERO} (default) evaluates the check on each call.
+     */
+    default Duration cacheTtl() {
+        return Duration.ZERO;
+    }
+
+    /**
+     * @return the maximum duration of the check, it is then considered {@link Status#KO}, {@code null} (default) means no timeout.
+     */
+    default Duration timeout() {
+        return null;
+    }
+
+    /**
+     * @return if positive, the check is evaluated in background with this delay between two evaluations
+     * and {@link HealthRegistry#check(HealthCheck)} returns the last known result.
+     */
+    default Duration refreshInterval() {
+        return Duration.ZERO;
+    }
+
     /**
      * IMPORTANT: ensure to implement some consistent timeouts and error handling if you deploy in kubernetes to avoid to hang any healthcheck or require fusion to cancel them.
      *
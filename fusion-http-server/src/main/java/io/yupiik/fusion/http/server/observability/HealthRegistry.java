@@ -15,30 +15,182 @@
  */
 package io.yupiik.fusion.http.server.observability;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.util.concurrent.CompletableFuture.failedFuture;
 
 /**
  * Registry of {@link HealthCheck} instances rendered by the {@code /health} monitoring endpoint.
+ * <p>
+ * {@link #check(HealthCheck)} applies the check policies ({@link HealthCheck#cacheTtl()}, {@link HealthCheck#timeout()},
+ * {@link HealthCheck#refreshInterval()}) and concurrent calls share the same evaluation so a flood of probes does not
+ * multiply the backend checks.
+ * Background refreshes run on a single scheduler thread, checks doing blocking work should use their own executor.
  */
-public class HealthRegistry {
+public class HealthRegistry implements AutoCloseable {
     private final List<HealthCheck> healthChecks;
+    private final MetricsRegistry metrics;
+    private final Map<HealthCheck, State> states = new ConcurrentHashMap<>();
+    private volatile ScheduledExecutorService scheduler;
+    private volatile boolean closed;
 
     public HealthRegistry(final List<HealthCheck> healthChecks) {
+        this(healthChecks, null);
+    }
+
+    /**
+     * @param healthChecks the checks.
+     * @param metrics      if not {@code null}, records the check durations ({@code fusion_http_server_health_check_duration_seconds}).
+     */
+    public HealthRegistry(final List<HealthCheck> healthChecks, final MetricsRegistry metrics) {
         this.healthChecks = healthChecks == null ? null : new CopyOnWriteArrayList<>(healthChecks);
+        this.metrics = metrics;
+        if (this.healthChecks != null) {
+            this.healthChecks.forEach(this::scheduleRefresh);
+        }
     }
 
     public Removable register(final HealthCheck check) {
         healthChecks.add(check);
-        return () -> healthChecks.remove(check);
+        scheduleRefresh(check);
+        return () -> {
+            healthChecks.remove(check);
+            final var state = states.remove(check);
+            if (state != null && state.refresh != null) {
+                state.refresh.cancel(false);
+            }
+        };
     }
 
     public List<HealthCheck> healthChecks() {
         return healthChecks;
     }
 
+    /**
+     * @param check the check to evaluate.
+     * @return the check result, it can be a cached one depending the check policies, cancelling it does not cancel the check.
+     */
+    public CompletionStage<HealthCheck.Result> check(final HealthCheck check) {
+        final var state = state(check);
+        final var last = state.last;
+        if (last != null && (state.refresh != null || System.nanoTime() - state.completedAt < state.ttl)) {
+            return last.copy();
+        }
+        return evaluate(state).copy();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        final var current = scheduler;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    private State state(final HealthCheck check) {
+        return states.computeIfAbsent(check, State::new);
+    }
+
+    private void scheduleRefresh(final HealthCheck check) {
+        final var interval = check.refreshInterval();
+        if (interval == null || interval.isZero() || interval.isNegative() || closed) {
+            return;
+        }
+        final var state = state(check);
+        state.refresh = scheduler().scheduleWithFixedDelay(() -> evaluate(state), 0, interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    private ScheduledExecutorService scheduler() {
+        var current = scheduler;
+        if (current == null) {
+            synchronized (this) {
+                current = scheduler;
+                if (current == null) {
+                    current = scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+                        final var thread = new Thread(r, "fusion-health-check-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return current;
+    }
+
+    private CompletableFuture<HealthCheck.Result> evaluate(final State state) {
+        final var promise = new CompletableFuture<HealthCheck.Result>();
+        final var pending = state.inFlight.compareAndExchange(null, promise);
+        if (pending != null) { // single flight
+            return pending;
+        }
+
+        final long start = System.nanoTime();
+        CompletableFuture<HealthCheck.Result> future;
+        try {
+            future = state.check.check().toCompletableFuture();
+        } catch (final RuntimeException re) {
+            future = failedFuture(re);
+        }
+
+        final var check = future;
+        final var timed = state.timeout == null ? check : check.copy().completeOnTimeout(
+                new HealthCheck.Result(HealthCheck.Status.KO, "Timeout after " + state.timeout.toMillis() + "ms"),
+                state.timeout.toNanos(), TimeUnit.NANOSECONDS);
+        timed.whenComplete((result, error) -> {
+            if (!check.isDone()) { // timeout
+                check.cancel(true);
+            }
+            if (state.duration != null) {
+                state.duration.recordNanosSince(start);
+            }
+            if (error != null) {
+                promise.completeExceptionally(error);
+            } else {
+                promise.complete(result);
+            }
+            state.completedAt = System.nanoTime();
+            state.last = promise;
+            state.inFlight.set(null);
+        });
+        return promise;
+    }
+
     public interface Removable extends AutoCloseable {
         @Override
         void close();
     }
-}
\ No newline at end of file
+
+    private final class State {
+        private final HealthCheck check;
+        private final long ttl;
+        private final Duration timeout;
+        private final Histogram duration;
+        private final AtomicReference<CompletableFuture<HealthCheck.Result>> inFlight = new AtomicReference<>();
+        private volatile CompletableFuture<HealthCheck.Result> last;
+        private volatile long completedAt;
+        private volatile ScheduledFuture<?> refresh;
+
+        private State(final HealthCheck check) {
+            this.check = check;
+            final var cacheTtl = check.cacheTtl();
+            this.ttl = cacheTtl == null || cacheTtl.isNegative() ? 0 : cacheTtl.toNanos();
+            final var checkTimeout = check.timeout();
+            this.timeout = checkTimeout == null || checkTimeout.isZero() || checkTimeout.isNegative() ? null : checkTimeout;
+            this.duration = metrics == null ? null : metrics.getOrCreateTimer(
+                    "fusion_http_server_health_check_duration_seconds{check=\"" +
+                            MetricsRegistry.escapeLabelValue(check.name()) + "\"}");
+        }
+    }
+}
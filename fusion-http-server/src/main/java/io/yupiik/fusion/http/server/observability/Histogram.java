@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.observability;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram with fixed buckets, rendered as an OpenMetrics {@code histogram}.
+ * <p>
+ * Recording only touches the stripe of the current thread (one per core, rounded to a power of two) so concurrent
+ * requests do not contend on the same counters, the stripes are merged when the histogram is read (scraping).
+ * <p>
+ * Values are {@code long} like the rest of the registry, {@code scale} converts them to the rendered unit
+ * - a timer records nanoseconds and is rendered in seconds with a {@code 1e-9} scale for example.
+ */
+public class Histogram {
+    private final long[] upperBounds;
+    private final double scale;
+    private final AtomicLongArray[] stripes;
+    private final int mask;
+    private final int sumIndex;
+
+    /**
+     * @param scale       the factor to apply to the recorded values when rendering them.
+     * @param upperBounds the inclusive upper bounds of the buckets in ascending order, an implicit {@code +Inf} bucket is added.
+     */
+    public Histogram(final double scale, final long... upperBounds) {
+        if (upperBounds.length == 0) {
+            throw new IllegalArgumentException("No bucket");
+        }
+        for (int i = 1; i < upperBounds.length; i++) {
+            if (upperBounds[i] <= upperBounds[i - 1]) {
+                throw new IllegalArgumentException("Buckets must be sorted and distinct: " + Arrays.toString(upperBounds));
+            }
+        }
+
+        this.upperBounds = upperBounds.clone();
+        this.scale = scale;
+        this.sumIndex = upperBounds.length + 1; // after +Inf
+
+        final int stripeCount = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+        this.mask = stripeCount - 1;
+        this.stripes = new AtomicLongArray[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new AtomicLongArray(sumIndex + 1);
+        }
+    }
+
+    public void record(final long value) {
+        int bucket = Arrays.binarySearch(upperBounds, value);
+        if (bucket < 0) { // insertion point is the first bound greater than the value, i.e. upperBounds.length for +Inf
+            bucket = -bucket - 1;
+        }
+
+        final var stripe = stripes[(int) Thread.currentThread().getId() & mask];
+        stripe.incrementAndGet(bucket);
+        stripe.addAndGet(sumIndex, value);
+    }
+
+    /**
+     * Convenient for timers: records the nanoseconds elapsed since {@code start}.
+     *
+     * @param start the {@link System#nanoTime()} value when the measured operation started.
+     */
+    public void recordNanosSince(final long start) {
+        record(System.nanoTime() - start);
+    }
+
+    public double scale() {
+        return scale;
+    }
+
+    /**
+     * @return the merged stripes, buckets are cumulative as in OpenMetrics and the count is the {@code +Inf} bucket.
+     */
+    public Snapshot snapshot() {
+        final var counts = new long[upperBounds.length + 1];
+        long sum = 0;
+        for (final var stripe : stripes) {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] += stripe.get(i);
+            }
+            sum += stripe.get(sumIndex);
+        }
+        for (int i = 1; i < counts.length; i++) {
+            counts[i] += counts[i - 1];
+        }
+        return new Snapshot(upperBounds.clone(), counts, sum, counts[counts.length - 1]);
+    }
+
+    /**
+     * @param start  first upper bound.
+     * @param factor growth factor between two buckets (greater than 1).
+     * @param count  number of buckets.
+     * @return exponential bucket upper bounds.
+     */
+    public static long[] exponentialBuckets(final long start, final double factor, final int count) {
+        if (start <= 0 || factor <= 1 || count <= 0) {
+            throw new IllegalArgumentException("Invalid exponential buckets: start=" + start + ", factor=" + factor + ", count=" + count);
+        }
+        final var bounds = new long[count];
+        double current = start;
+        for (int i = 0; i < count; i++) {
+            bounds[i] = i == 0 ? start : Math.max(bounds[i - 1] + 1, Math.round(current));
+            current *= factor;
+        }
+        return bounds;
+    }
+
+    /**
+     * @param upperBounds  the bucket upper bounds (without {@code +Inf}).
+     * @param bucketCounts the cumulative count per bucket, last one being {@code +Inf}.
+     * @param sum          the sum of the recorded values (not scaled).
+     * @param count        the number of recorded values.
+     */
+    public record Snapshot(long[] upperBounds, long[] bucketCounts, long sum, long count) {
+    }
+}
@@ -17,7 +17,9 @@ package io.yupiik.fusion.http.server.observability;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
 import java.util.function.LongSupplier;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -28,57 +30,190 @@ import static java.util.Objects.requireNonNull;
  * Simple in-memory OpenMetrics registry rendered by the {@code /metrics} monitoring endpoint.
  */
 public class MetricsRegistry {
+    /**
+     * Default timer buckets: 1ms to ~33s (nanoseconds), doubling each time.
+     */
+    public static final long[] DEFAULT_TIMER_BUCKETS = Histogram.exponentialBuckets(1_000_000L, 2, 16);
+
     private final Map<String, RegisteredMetric> counters = new ConcurrentHashMap<>();
     private final Map<String, RegisteredMetric> gauges = new ConcurrentHashMap<>();
+    private final Map<String, RegisteredMetric> histograms = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
 
     public boolean isEmpty() {
-        return counters.isEmpty() && gauges.isEmpty();
+        return counters.isEmpty() && gauges.isEmpty() && histograms.isEmpty();
     }
 
     public int getStatisticsSize() {
-        return counters.size() + gauges.size();
+        return counters.size() + gauges.size() + histograms.size();
+    }
+
+    /**
+     * @return a value changing each time a metric is registered or unregistered, enables renderers to cache the metric list.
+     */
+    public long version() {
+        return version.get();
     }
 
     public Stream<Map.Entry<String, RegisteredMetric>> entries() {
-        return Stream.concat(
-                counters.entrySet().stream(),
-                gauges.entrySet().stream());
+        return Stream.of(counters, gauges, histograms).flatMap(it -> it.entrySet().stream());
+    }
+
+    /**
+     * @param name        the metric name, can have labels ({@code name{label="value"}}).
+     * @param unit        the unit of the rendered values (optional).
+     * @param scale       the factor applied to the recorded values when rendering them, {@code 1} to render them as recorded.
+     * @param upperBounds the bucket upper bounds in recorded values unit, see {@link Histogram#exponentialBuckets(long, double, int)}.
+     * @return the histogram to record values into.
+     */
+    public Histogram registerHistogram(final String name, final String unit, final double scale, final long... upperBounds) {
+        ensureAvailable(name, histograms);
+        final var histogram = new Histogram(scale, upperBounds);
+        final var previous = histograms.put(name, new RegisteredMetric(name, "histogram", histogram, unit));
+        version.incrementAndGet();
+        if (previous != null) {
+            throw new IllegalArgumentException("'" + name + "' histogram already registered");
+        }
+        return histogram;
+    }
+
+    /**
+     * Registers a histogram recording nanoseconds (see {@link Histogram#recordNanosSince(long)}) rendered in seconds
+     * with {@link #DEFAULT_TIMER_BUCKETS}.
+     *
+     * @param name the metric name, can have labels ({@code name{label="value"}}).
+     * @return the timer.
+     */
+    public Histogram registerTimer(final String name) {
+        return registerHistogram(name, "seconds", 1e-9, DEFAULT_TIMER_BUCKETS);
     }
 
     public MetricsRegistry registerReadOnlyGauge(final String name, final String unit, final LongSupplier supplier) {
-        if (counters.containsKey(name) || gauges.put(name, new RegisteredMetric(name, "gauge", null, supplier, unit)) != null) {
+        ensureAvailable(name, gauges);
+        final var previous = gauges.put(name, new RegisteredMetric(name, "gauge", null, supplier, unit));
+        version.incrementAndGet();
+        if (previous != null) {
             throw new IllegalArgumentException("'" + name + "' gauge already registered");
         }
         return this;
     }
 
     public LongAdder getOrCreateMovingGauge(final String name, final String unit) {
-        if (counters.containsKey(name)) {
-            throw new IllegalArgumentException("'" + name + "' gauge already registered");
-        }
-        return requireNonNull(gauges.computeIfAbsent(name, k -> {
+        ensureAvailable(name, gauges);
+        return requireNonNull(getOrCreate(gauges, name, k -> {
             final var longAdder = new LongAdder();
             return new RegisteredMetric(name, "gauge", longAdder, new LongAdderEvaluator(longAdder), unit);
         }).adder(), "Can't use getOrCreateMovingGauge on a read only gauge");
     }
 
     public LongAdder registerCounter(final String name, final String unit) {
-        if (gauges.containsKey(name)) {
-            throw new IllegalArgumentException("'" + name + "' counter already registered");
-        }
+        ensureAvailable(name, counters);
         final var adder = new LongAdder();
-        if (counters.put(name, new RegisteredMetric(name, "counter", adder, new LongAdderEvaluator(adder), unit)) != null) {
+        final var previous = counters.put(name, new RegisteredMetric(name, "counter", adder, new LongAdderEvaluator(adder), unit));
+        version.incrementAndGet();
+        if (previous != null) {
             throw new IllegalArgumentException("'" + name + "' counter already registered");
         }
         return adder;
     }
 
+    /**
+     * Registers a counter whose value is owned by another component (a thread pool completed tasks for example),
+     * it is read when the metrics are rendered.
+     *
+     * @param name     the counter name, it should end with {@code _total}.
+     * @param unit     the counter unit (optional).
+     * @param supplier the monotonic value provider.
+     * @return this registry.
+     */
+    public MetricsRegistry registerReadOnlyCounter(final String name, final String unit, final LongSupplier supplier) {
+        ensureAvailable(name, counters);
+        final var previous = counters.put(name, new RegisteredMetric(name, "counter", null, supplier, unit));
+        version.incrementAndGet();
+        if (previous != null) {
+            throw new IllegalArgumentException("'" + name + "' counter already registered");
+        }
+        return this;
+    }
+
+    /**
+     * Same as {@link #registerCounter(String, String)} but returns the existing counter if already registered.
+     *
+     * @param name the counter name.
+     * @param unit the counter unit (optional).
+     * @return the counter.
+     */
+    public LongAdder getOrCreateCounter(final String name, final String unit) {
+        ensureAvailable(name, counters);
+        return getOrCreate(counters, name, k -> {
+            final var adder = new LongAdder();
+            return new RegisteredMetric(name, "counter", adder, new LongAdderEvaluator(adder), unit);
+        }).adder();
+    }
+
+    /**
+     * Same as {@link #registerTimer(String)} but returns the existing timer if already registered.
+     *
+     * @param name the timer name.
+     * @return the timer.
+     */
+    public Histogram getOrCreateTimer(final String name) {
+        ensureAvailable(name, histograms);
+        return getOrCreate(histograms, name, k -> new RegisteredMetric(name, "histogram", new Histogram(1e-9, DEFAULT_TIMER_BUCKETS), "seconds"))
+                .histogram();
+    }
+
     public void unregisterCounter(final String name) {
-        counters.remove(name);
+        if (counters.remove(name) != null) {
+            version.incrementAndGet();
+        }
     }
 
     public void unregisterGauge(final String name) {
-        gauges.remove(name);
+        if (gauges.remove(name) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    public void unregisterHistogram(final String name) {
+        if (histograms.remove(name) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param value a label value.
+     * @return the value escaped to be written between the quotes of a label ({@code name{label="value"}}).
+     */
+    public static String escapeLabelValue(final String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // the version changes once the metric is visible so a renderer never caches a list missing it under the new version
+    private RegisteredMetric getOrCreate(final Map<String, RegisteredMetric> metrics, final String name,
+                                         final Function<String, RegisteredMetric> factory) {
+        final var existing = metrics.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        final var metric = metrics.computeIfAbsent(name, factory);
+        version.incrementAndGet(); // spurious on a registration race, it only invalidates the renderer caches
+        return metric;
+    }
+
+    // a name identifies a single metric whatever its kind, the error reports the kind already using it
+    private void ensureAvailable(final String name, final Map<String, RegisteredMetric> target) {
+        final String kind;
+        if (target != counters && counters.containsKey(name)) {
+            kind = "counter";
+        } else if (target != gauges && gauges.containsKey(name)) {
+            kind = "gauge";
+        } else if (target != histograms && histograms.containsKey(name)) {
+            kind = "histogram";
+        } else {
+            return;
+        }
+        throw new IllegalArgumentException("'" + name + "' " + kind + " already registered");
     }
 
     private static class LongAdderEvaluator implements LongSupplier, Supplier<LongAdder> {
@@ -99,7 +234,25 @@ public class MetricsRegistry {
         }
     }
 
-    public record RegisteredMetric(LongAdder adder, LongSupplier supplier, String typeLine, String unitLine) {
+    /**
+     * @param adder     the counter or moving gauge value, {@code null} for read only gauges and histograms.
+     * @param supplier  the current value (count for histograms).
+     * @param typeLine  the OpenMetrics {@code TYPE} line.
+     * @param unitLine  the OpenMetrics {@code UNIT} line if any.
+     * @param histogram the histogram for {@code histogram} metrics, {@code null} otherwise.
+     */
+    public record RegisteredMetric(LongAdder adder, LongSupplier supplier, String typeLine, String unitLine, Histogram histogram) {
+        public RegisteredMetric(final LongAdder adder, final LongSupplier supplier, final String typeLine, final String unitLine) {
+            this(adder, supplier, typeLine, unitLine, null);
+        }
+
+        private RegisteredMetric(final String name, final String type, final Histogram histogram, final String unit) {
+            this(null, () -> histogram.snapshot().count(),
+                    "# TYPE " + getMetaName(name) + " " + type,
+                    unit == null ? null : "# UNIT " + getMetaName(name) + " " + unit,
+                    histogram);
+        }
+
         private RegisteredMetric(final String name,
                                  final String type,
                                  final LongAdder adder,
@@ -107,7 +260,8 @@ public class MetricsRegistry {
                                  final String unit) {
             this(adder, supplier,
                     "# TYPE " + getMetaName(name) + " " + type,
-                    unit == null ? null : "# UNIT " + getMetaName(name) + " " + unit);
+                    unit == null ? null : "# UNIT " + getMetaName(name) + " " + unit,
+                    null);
         }
 
         private static String getMetaName(final String name) {
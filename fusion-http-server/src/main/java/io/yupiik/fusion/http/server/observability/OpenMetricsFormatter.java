@@ -15,30 +15,205 @@
  */
 package io.yupiik.fusion.http.server.observability;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
 import java.util.Map;
-import java.util.Objects;
 import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Stream;
 
-import static java.util.stream.Collectors.joining;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * Renders the {@link MetricsRegistry} content in OpenMetrics text format.
+ * <p>
+ * {@link #write(MetricsRegistry, OutputStream)} is the scraping path: the sorted series and their encoded
+ * name/type/unit lines are cached until a metric is (un)registered so a scrape only formats the values.
+ * <p>
+ * Series are grouped by metric family (name without labels): the {@code TYPE}/{@code UNIT} lines are written once
+ * per family, before all its samples, as required by OpenMetrics parsers.
  */
 public class OpenMetricsFormatter implements Function<Stream<Map.Entry<String, MetricsRegistry.RegisteredMetric>>, String> {
+    private static final byte[] EOF = "# EOF".getBytes(UTF_8);
+
+    private volatile Cache cache;
+
     @Override
     public String apply(final Stream<Map.Entry<String, MetricsRegistry.RegisteredMetric>> entries) {
-        return entries
-                .sorted(Map.Entry.comparingByKey())
-                .flatMap(it -> toOpenMetrics(it.getKey(), it.getValue()))
-                .collect(joining("\n", "", "\n# EOF"));
+        final var series = toSeries(entries);
+        final var out = new ByteArrayOutputStream();
+        try {
+            if (series.length == 0) { // historical output
+                out.write('\n');
+            }
+            write(series, out);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toString(UTF_8);
+    }
+
+    /**
+     * @param registry the registry to render.
+     * @param out      where to write the OpenMetrics payload.
+     * @throws IOException if the output fails.
+     */
+    public void write(final MetricsRegistry registry, final OutputStream out) throws IOException {
+        var current = cache;
+        if (current == null || current.registry() != registry || current.version() != registry.version()) {
+            final long version = registry.version(); // read before the entries so a concurrent change invalidates it
+            current = new Cache(registry, version, toSeries(registry.entries()));
+            cache = current;
+        }
+        write(current.series(), out);
+    }
+
+    private void write(final Series[] series, final OutputStream out) throws IOException {
+        final var scratch = new byte[20]; // enough for any long
+        for (final var it : series) {
+            it.write(out, scratch);
+        }
+        out.write(EOF);
+    }
+
+    private Series[] toSeries(final Stream<Map.Entry<String, MetricsRegistry.RegisteredMetric>> entries) {
+        final var sorted = entries
+                .sorted(Comparator.comparing((Map.Entry<String, MetricsRegistry.RegisteredMetric> it) -> family(it.getKey()))
+                        .thenComparing(Map.Entry::getKey))
+                .toList();
+        final var series = new Series[sorted.size()];
+        String previousFamily = null;
+        for (int i = 0; i < series.length; i++) {
+            final var entry = sorted.get(i);
+            final var family = family(entry.getKey());
+            final boolean firstOfFamily = !family.equals(previousFamily);
+            previousFamily = family;
+            series[i] = entry.getValue().histogram() != null ?
+                    new HistogramSeries(entry.getKey(), entry.getValue(), entry.getValue().histogram(), firstOfFamily) :
+                    new ValueSeries(entry.getKey(), entry.getValue(), firstOfFamily);
+        }
+        return series;
+    }
+
+    private static String family(final String name) {
+        final int labelsStart = name.indexOf('{');
+        return labelsStart > 0 ? name.substring(0, labelsStart) : name;
+    }
+
+    private static byte[] encodeHeader(final MetricsRegistry.RegisteredMetric metric, final boolean firstOfFamily,
+                                       final String firstLinePrefix) {
+        if (!firstOfFamily) {
+            return firstLinePrefix.getBytes(UTF_8);
+        }
+        return ((metric.typeLine() == null ? "" : metric.typeLine() + '\n') +
+                (metric.unitLine() == null ? "" : metric.unitLine() + '\n') +
+                firstLinePrefix).getBytes(UTF_8);
+    }
+
+    private static void writeLong(final OutputStream out, final long value, final byte[] scratch) throws IOException {
+        if (value == Long.MIN_VALUE) {
+            out.write(Long.toString(value).getBytes(UTF_8));
+            return;
+        }
+        long remaining = Math.abs(value);
+        int position = scratch.length;
+        do {
+            scratch[--position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            scratch[--position] = '-';
+        }
+        out.write(scratch, position, scratch.length - position);
+    }
+
+    private static String format(final long value, final double scale) {
+        return scale == 1 ? Long.toString(value) : Double.toString(value * scale);
+    }
+
+    private record Cache(MetricsRegistry registry, long version, Series[] series) {
+    }
+
+    private interface Series {
+        void write(OutputStream out, byte[] scratch) throws IOException;
+    }
+
+    private record ValueSeries(byte[] header, LongSupplier supplier) implements Series {
+        private ValueSeries(final String name, final MetricsRegistry.RegisteredMetric metric, final boolean firstOfFamily) {
+            this(encodeHeader(metric, firstOfFamily, name + ' '), metric.supplier());
+        }
+
+        @Override
+        public void write(final OutputStream out, final byte[] scratch) throws IOException {
+            out.write(header);
+            writeLong(out, supplier.getAsLong(), scratch);
+            out.write('\n');
+        }
     }
 
-    private Stream<String> toOpenMetrics(final String name, final MetricsRegistry.RegisteredMetric metric) {
-        return Stream.of(
-                        metric.typeLine(),
-                        metric.unitLine(),
-                        name + " " + metric.supplier().getAsLong())
-                .filter(Objects::nonNull);
+    // name{labels} -> name_bucket{labels,le="x"}, name_sum{labels} and name_count{labels}
+    private record HistogramSeries(byte[] header, byte[][] buckets, byte[] sum, byte[] count, Histogram histogram) implements Series {
+        private HistogramSeries(final String name, final MetricsRegistry.RegisteredMetric metric, final Histogram histogram,
+                                final boolean firstOfFamily) {
+            this(name, metric, histogram, firstOfFamily, name.indexOf('{'));
+        }
+
+        private HistogramSeries(final String name, final MetricsRegistry.RegisteredMetric metric, final Histogram histogram,
+                                final boolean firstOfFamily, final int labelsStart) {
+            this(
+                    encodeHeader(metric, firstOfFamily, ""),
+                    buckets(
+                            labelsStart > 0 ? name.substring(0, labelsStart) : name,
+                            labelsStart > 0 ? name.substring(labelsStart + 1, name.length() - 1) : "",
+                            histogram),
+                    suffixed(name, labelsStart, "_sum"),
+                    suffixed(name, labelsStart, "_count"),
+                    histogram);
+        }
+
+        @Override
+        public void write(final OutputStream out, final byte[] scratch) throws IOException {
+            out.write(header);
+
+            final var snapshot = histogram.snapshot();
+            final var counts = snapshot.bucketCounts();
+            for (int i = 0; i < counts.length; i++) {
+                out.write(buckets[i]);
+                writeLong(out, counts[i], scratch);
+                out.write('\n');
+            }
+
+            out.write(sum);
+            if (histogram.scale() == 1) {
+                writeLong(out, snapshot.sum(), scratch);
+            } else {
+                out.write(format(snapshot.sum(), histogram.scale()).getBytes(UTF_8));
+            }
+            out.write('\n');
+
+            out.write(count);
+            writeLong(out, snapshot.count(), scratch);
+            out.write('\n');
+        }
+
+        private static byte[][] buckets(final String baseName, final String labels, final Histogram histogram) {
+            final var upperBounds = histogram.snapshot().upperBounds();
+            final var labelsPrefix = labels.isBlank() ? "" : labels + ',';
+            final var buckets = new byte[upperBounds.length + 1][];
+            for (int i = 0; i < upperBounds.length; i++) {
+                buckets[i] = (baseName + "_bucket{" + labelsPrefix + "le=\"" + format(upperBounds[i], histogram.scale()) + "\"} ").getBytes(UTF_8);
+            }
+            buckets[upperBounds.length] = (baseName + "_bucket{" + labelsPrefix + "le=\"+Inf\"} ").getBytes(UTF_8);
+            return buckets;
+        }
+
+        private static byte[] suffixed(final String name, final int labelsStart, final String suffix) {
+            return ((labelsStart > 0 ?
+                    name.substring(0, labelsStart) + suffix + name.substring(labelsStart) :
+                    name + suffix) + ' ').getBytes(UTF_8);
+        }
     }
-}
\ No newline at end of file
+}
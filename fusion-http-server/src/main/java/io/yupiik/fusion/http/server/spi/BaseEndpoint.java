@@ -18,6 +18,7 @@ package io.yupiik.fusion.http.server.spi;
 import io.yupiik.fusion.http.server.api.Request;
 import io.yupiik.fusion.http.server.api.Response;
 
+import java.time.Duration;
 import java.util.concurrent.CompletionStage;
 
 public interface BaseEndpoint {
@@ -27,5 +28,29 @@ public interface BaseEndpoint {
 
     boolean matches(Request request);
 
+    /**
+     * @return the declarative description of {@link #matches(Request)} if it can be expressed as a {@link Route}
+     * - it must then be strictly equivalent - or {@code null} when the matching is opaque.
+     * Endpoints with a route are indexed by the server, the others are tested one by one.
+     */
+    default Route route() {
+        return null;
+    }
+
+    /**
+     * @return a stable name identifying the endpoint (metrics for example), generated endpoints use {@code <class>#<method>}.
+     */
+    default String name() {
+        return getClass().getName();
+    }
+
+    /**
+     * @return the maximum duration to compute the response, {@code null} to use the server default, {@link Duration#ZERO} for no timeout.
+     * On expiry the server answers with a timeout status and cancels the {@link #handle(Request)} result.
+     */
+    default Duration timeout() {
+        return null;
+    }
+
     CompletionStage<Response> handle(Request request);
 }
@@ -40,4 +40,16 @@ public interface Endpoint extends BaseEndpoint {
     static Endpoint of(final Predicate<Request> matcher, final Function<Request, CompletionStage<Response>> handler) {
         return of(matcher, handler, 1000);
     }
+
+    /**
+     * Same as {@link #of(Predicate, Function, int)} but with a declarative matcher the server can index.
+     *
+     * @param route    the route selecting the endpoint for usage.
+     * @param handler  the endpoint implementation.
+     * @param priority the endpoint priority.
+     * @return the endpoint.
+     */
+    static Endpoint of(final Route route, final Function<Request, CompletionStage<Response>> handler, final int priority) {
+        return new DefaultEndpoint(priority, route, handler);
+    }
 }
@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.spi;
+
+import io.yupiik.fusion.http.server.api.Request;
+
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static java.util.Objects.requireNonNull;
+import static java.util.stream.Collectors.toUnmodifiableSet;
+
+/**
+ * Declarative description of what an endpoint matches.
+ * Unlike an opaque {@link BaseEndpoint#matches(Request)} predicate, it enables the server to index the endpoints
+ * (hash lookup for exact paths, prefix tree for {@link PathMatching#STARTS_WITH}) instead of testing them one by one.
+ */
+public final class Route {
+    private final Set<String> methods;
+    private final PathMatching matching;
+    private final String path;
+    private final Pattern pattern;
+
+    /**
+     * @param methods  the accepted HTTP methods (case insensitive), empty to accept any method.
+     * @param matching how the request path is compared to {@code path}.
+     * @param path     the path or its prefix/suffix/regex depending {@code matching}, ignored for {@link PathMatching#IGNORED}.
+     */
+    public Route(final Set<String> methods, final PathMatching matching, final String path) {
+        this.methods = methods.stream().map(it -> it.toUpperCase(Locale.ROOT)).collect(toUnmodifiableSet());
+        this.matching = requireNonNull(matching, "matching can't be null");
+        this.path = matching == PathMatching.IGNORED ? null : requireNonNull(path, "path can't be null");
+        this.pattern = matching == PathMatching.REGEX ? Pattern.compile(path) : null;
+    }
+
+    public Set<String> methods() {
+        return methods;
+    }
+
+    public PathMatching matching() {
+        return matching;
+    }
+
+    public String path() {
+        return path;
+    }
+
+    public boolean matches(final Request request) {
+        if (!methods.isEmpty() && !matchesMethod(request.method())) {
+            return false;
+        }
+        if (matching == PathMatching.IGNORED) {
+            return true;
+        }
+
+        final var value = request.path();
+        if (value == null) {
+            return false;
+        }
+        return switch (matching) {
+            case EXACT -> path.equals(value);
+            case STARTS_WITH -> value.startsWith(path);
+            case ENDS_WITH -> value.endsWith(path);
+            case REGEX -> {
+                final var matcher = pattern.matcher(value);
+                if (matcher.matches()) {
+                    request.setAttribute("fusion.http.matcher", matcher);
+                    yield true;
+                }
+                yield false;
+            }
+            case IGNORED -> true;
+        };
+    }
+
+    public boolean matchesMethod(final String method) {
+        return method != null && (methods.isEmpty() || methods.contains(method.toUpperCase(Locale.ROOT)));
+    }
+
+    @Override
+    public String toString() {
+        return "Route[methods=" + methods + ", matching=" + matching + ", path=" + path + ']';
+    }
+
+    public enum PathMatching {
+        IGNORED,
+        EXACT,
+        STARTS_WITH,
+        ENDS_WITH,
+        REGEX
+    }
+}
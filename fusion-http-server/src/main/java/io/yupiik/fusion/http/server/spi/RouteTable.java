@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.spi;
+
+import java.util.List;
+
+/**
+ * Routing table generated at build time for the {@link Route.PathMatching#EXACT} endpoints of a module.
+ * The server merges the tables it finds with the runtime endpoints: the paths a table knows are resolved by its
+ * compiled {@code switch} and no longer need to be indexed at startup.
+ * <p>
+ * Endpoints are identified by their {@link BaseEndpoint#name()} so decorated endpoints are still resolved by the table
+ * and a stale table (endpoint removed, incremental build) is harmless: unknown or ambiguous names and routes which no longer
+ * match the endpoint are ignored, endpoints not covered by any table are still indexed by the server.
+ */
+public interface RouteTable {
+    /**
+     * @return the endpoint names, the index in this list is the route identifier {@link #match(String, String)} returns.
+     */
+    List<String> endpoints();
+
+    /**
+     * @param method the uppercased HTTP method.
+     * @param path   the request path.
+     * @return the identifiers (ascending) of the endpoints matching the request, an empty array when none matches.
+     */
+    int[] match(String method, String path);
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.sse;
+
+/**
+ * What an {@link SseEmitter} does when its client does not read the events fast enough and its queue is full.
+ */
+public enum SlowConsumerPolicy {
+    /**
+     * Drops the oldest queued event, the client gets the most recent ones (live data).
+     */
+    DROP_OLDEST,
+
+    /**
+     * Drops the new event.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Ends the stream, the client reconnects with its {@code Last-Event-ID} and gets the replayable events.
+     */
+    DISCONNECT
+}
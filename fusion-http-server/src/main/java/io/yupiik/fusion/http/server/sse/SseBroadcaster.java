@@ -0,0 +1,336 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.sse;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.api.Response;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Fans out server-sent events to a set of clients: each event is encoded once and the same read-only buffer is queued
+ * for all the connected {@link SseEmitter}s.
+ * <p>
+ * The last events are kept in a ring buffer so a reconnecting client ({@code Last-Event-ID} header) gets the ones it missed
+ * and an optional heartbeat (SSE comment) is sent to all clients from a single timer to keep the connections alive.
+ * <p>
+ * Only the id generation and the ring buffer update are done under the broadcaster lock, the events are then sent in order
+ * by a single thread at a time (the first broadcasting one drains what the others queued) so a slow client does not
+ * block the producers.
+ */
+public class SseBroadcaster implements AutoCloseable {
+    private static final ByteBuffer HEARTBEAT = ByteBuffer.wrap(":\n\n".getBytes(UTF_8)).asReadOnlyBuffer();
+
+    private final Configuration configuration;
+    private static final SseEmitter[] NO_CLIENT = new SseEmitter[0];
+
+    private final ReentrantLock lock = new ReentrantLock(); // orders the events, replay included
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>(); // events to send, in id order
+    private final AtomicInteger draining = new AtomicInteger();
+    private volatile SseEmitter[] clients = NO_CLIENT; // copy on write under the lock, a broadcast just keeps the current array
+    private final String[] replayIds;
+    private final ByteBuffer[] replayEvents;
+    private final ScheduledExecutorService ownedTimer;
+    private final ScheduledFuture<?> heartbeat;
+    private long sequence; // generated ids
+    private long replayed; // events written in the ring buffer
+    private volatile boolean closed;
+
+    public SseBroadcaster() {
+        this(new Configuration());
+    }
+
+    public SseBroadcaster(final Configuration configuration) {
+        this.configuration = configuration;
+        this.replayIds = new String[Math.max(0, configuration.getReplaySize())];
+        this.replayEvents = new ByteBuffer[replayIds.length];
+
+        final var period = configuration.getHeartbeat();
+        if (period == null || period.isZero() || period.isNegative()) {
+            this.ownedTimer = null;
+            this.heartbeat = null;
+        } else {
+            final var timer = configuration.getTimer();
+            this.ownedTimer = timer == null ? Executors.newSingleThreadScheduledExecutor(r -> {
+                final var thread = new Thread(r, "fusion-sse-heartbeat");
+                thread.setDaemon(true);
+                return thread;
+            }) : null;
+            this.heartbeat = (timer == null ? ownedTimer : timer).scheduleAtFixedRate(
+                    this::sendHeartbeat, period.toMillis(), period.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @param request the client request, its {@code Last-Event-ID} header selects the events to replay.
+     * @return the response streaming the events to the client.
+     */
+    public Response connect(final Request request) {
+        return connect(request.header("Last-Event-ID")).toResponse();
+    }
+
+    /**
+     * @param lastEventId the last event the client got, {@code null} to not replay anything.
+     * @return a new emitter registered to this broadcaster.
+     */
+    public SseEmitter connect(final String lastEventId) {
+        final var emitter = new SseEmitter(configuration.getQueueSize(), configuration.getSlowConsumerPolicy());
+        if (closed) {
+            emitter.close();
+            return emitter;
+        }
+        lock.lock();
+        try { // replay and registration are atomic so no event is missed or duplicated
+            if (closed) { // close() took its client snapshot already
+                emitter.close();
+                return emitter;
+            }
+            if (lastEventId != null && replayIds.length > 0) {
+                replay(emitter, lastEventId);
+            }
+            final var current = clients;
+            final var next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = emitter;
+            clients = next;
+        } finally {
+            lock.unlock();
+        }
+        emitter.onClose(() -> remove(emitter));
+        return emitter;
+    }
+
+    /**
+     * @param data the event payload.
+     * @return the generated event id.
+     */
+    public String broadcast(final String data) {
+        return broadcast(null, data);
+    }
+
+    /**
+     * @param event the event type, {@code null} for the default one.
+     * @param data  the event payload.
+     * @return the generated event id.
+     */
+    public String broadcast(final String event, final String data) {
+        final String id;
+        lock.lock();
+        try {
+            id = Long.toString(++sequence);
+            enqueue(id, new SseEvent(id, event, data).encode());
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        return id;
+    }
+
+    /**
+     * @param event the event to send to all clients, it is replayable only if it has an id.
+     */
+    public void broadcast(final SseEvent event) {
+        final var encoded = event.encode(); // once for all clients
+        lock.lock();
+        try {
+            enqueue(event.id(), encoded);
+        } finally {
+            lock.unlock();
+        }
+        drain();
+    }
+
+    /**
+     * @return the number of connected clients.
+     */
+    public int size() {
+        return clients.length;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        if (heartbeat != null) {
+            heartbeat.cancel(false);
+        }
+        if (ownedTimer != null) {
+            ownedTimer.shutdownNow();
+        }
+        final SseEmitter[] connected;
+        lock.lock();
+        try {
+            connected = clients;
+            clients = NO_CLIENT;
+        } finally {
+            lock.unlock();
+        }
+        for (final var client : connected) {
+            client.close();
+        }
+    }
+
+    private void remove(final SseEmitter emitter) {
+        lock.lock();
+        try {
+            final var current = clients;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == emitter) {
+                    final var next = new SseEmitter[current.length - 1];
+                    System.arraycopy(current, 0, next, 0, i);
+                    System.arraycopy(current, i + 1, next, i, next.length - i);
+                    clients = next;
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // called under the lock: the queue order is the id order and the client snapshot is the one matching the replay
+    private void enqueue(final String id, final ByteBuffer encoded) {
+        if (id != null && replayIds.length > 0) {
+            final int slot = (int) (replayed++ % replayIds.length);
+            replayIds[slot] = id;
+            replayEvents[slot] = encoded;
+        }
+        pending.add(new Pending(encoded, clients));
+    }
+
+    // a single thread sends at a time, the others just queue their event and leave
+    private void drain() {
+        if (draining.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            Pending next;
+            while ((next = pending.poll()) != null) {
+                for (final var client : next.clients()) {
+                    client.send(next.event());
+                }
+            }
+            missed = draining.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void replay(final SseEmitter emitter, final String lastEventId) {
+        final int available = (int) Math.min(replayed, replayIds.length);
+        for (int i = 0; i < available; i++) { // newest to oldest to find the last event the client got
+            if (lastEventId.equals(replayIds[slot(i)])) {
+                for (int j = Math.min(i, configuration.getQueueSize()) - 1; j >= 0; j--) { // what the client queue can hold
+                    emitter.send(replayEvents[slot(j)]);
+                }
+                return;
+            }
+        }
+        // unknown id (too old or another server instance): nothing to replay
+    }
+
+    // i-th newest event of the ring buffer
+    private int slot(final int i) {
+        return (int) ((replayed - 1 - i) % replayIds.length);
+    }
+
+    private void sendHeartbeat() {
+        for (final var client : clients) {
+            client.send(HEARTBEAT);
+        }
+    }
+
+    private record Pending(ByteBuffer event, SseEmitter[] clients) {
+    }
+
+    public static class Configuration {
+        private int queueSize = 256;
+        private SlowConsumerPolicy slowConsumerPolicy = SlowConsumerPolicy.DROP_OLDEST;
+        private int replaySize = 128;
+        private Duration heartbeat = Duration.ofSeconds(30);
+        private ScheduledExecutorService timer;
+
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        /**
+         * @param queueSize the maximum number of events waiting to be written per client.
+         * @return this.
+         */
+        public Configuration setQueueSize(final int queueSize) {
+            this.queueSize = queueSize;
+            return this;
+        }
+
+        public SlowConsumerPolicy getSlowConsumerPolicy() {
+            return slowConsumerPolicy;
+        }
+
+        public Configuration setSlowConsumerPolicy(final SlowConsumerPolicy slowConsumerPolicy) {
+            this.slowConsumerPolicy = slowConsumerPolicy;
+            return this;
+        }
+
+        public int getReplaySize() {
+            return replaySize;
+        }
+
+        /**
+         * @param replaySize the number of events kept to be replayed to reconnecting clients, {@code 0} to disable the replay.
+         * @return this.
+         */
+        public Configuration setReplaySize(final int replaySize) {
+            this.replaySize = replaySize;
+            return this;
+        }
+
+        public Duration getHeartbeat() {
+            return heartbeat;
+        }
+
+        /**
+         * @param heartbeat the period of the keep-alive comments sent to the clients, {@code null} or zero to disable them.
+         * @return this.
+         */
+        public Configuration setHeartbeat(final Duration heartbeat) {
+            this.heartbeat = heartbeat;
+            return this;
+        }
+
+        public ScheduledExecutorService getTimer() {
+            return timer;
+        }
+
+        /**
+         * @param timer the scheduler running the heartbeats, if not set the broadcaster starts (and stops) its own thread.
+         * @return this.
+         */
+        public Configuration setTimer(final ScheduledExecutorService timer) {
+            this.timer = timer;
+            return this;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.sse;
+
+import io.yupiik.fusion.http.server.api.Response;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A server-sent events channel to a single client, used as the response body.
+ * <p>
+ * Events are queued (bounded) until the client can receive them, the {@link SlowConsumerPolicy} decides what happens
+ * when the queue is full. The same (read-only) buffer can be sent to multiple emitters, it is never modified.
+ */
+public class SseEmitter implements Flow.Publisher<ByteBuffer>, AutoCloseable {
+    private final int capacity;
+    private final SlowConsumerPolicy policy;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ArrayDeque<ByteBuffer> queue;
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile Runnable onClose;
+
+    private Flow.Subscriber<? super ByteBuffer> subscriber;
+    private long demand;
+    private volatile boolean closed;
+    private boolean completed;
+    private long dropped;
+
+    public SseEmitter() {
+        this(256, SlowConsumerPolicy.DROP_OLDEST);
+    }
+
+    /**
+     * @param capacity the maximum number of events waiting to be written to the client.
+     * @param policy   what to do when the client does not read fast enough and the queue is full.
+     */
+    public SseEmitter(final int capacity, final SlowConsumerPolicy policy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        this.capacity = capacity;
+        this.policy = policy;
+        this.queue = new ArrayDeque<>(Math.min(capacity, 16));
+    }
+
+    /**
+     * @return a {@code text/event-stream} response streaming this emitter.
+     */
+    public Response toResponse() {
+        return Response.of()
+                .status(200)
+                .header("content-type", "text/event-stream;charset=utf-8")
+                .header("cache-control", "no-cache")
+                .header("x-accel-buffering", "no") // proxies must not buffer the events
+                .body(this)
+                .build();
+    }
+
+    public boolean send(final SseEvent event) {
+        return send(event.encode());
+    }
+
+    /**
+     * @param encodedEvent an encoded event (see {@link SseEvent#encode()}), it is not modified so it can be shared.
+     * @return {@code false} if the event was not queued (closed emitter or full queue).
+     */
+    public boolean send(final ByteBuffer encodedEvent) {
+        lock.lock();
+        try {
+            if (closed) {
+                return false;
+            }
+            if (queue.size() >= capacity) {
+                dropped++;
+                switch (policy) {
+                    case DROP_NEWEST -> {
+                        return false;
+                    }
+                    case DROP_OLDEST -> queue.poll();
+                    case DISCONNECT -> {
+                        queue.clear(); // do not even try to send the pending events, the client is too late anyway
+                        closed = true;
+                    }
+                }
+            }
+            if (!closed) {
+                queue.add(encodedEvent);
+            }
+        } finally {
+            lock.unlock();
+        }
+        drain();
+        return !closed;
+    }
+
+    /**
+     * @return the number of events dropped because the queue was full.
+     */
+    public long dropped() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Ends the stream once the queued events are sent.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        drain();
+    }
+
+    // the broadcaster unregisters the emitter this way whatever ends the stream (client, server, slow consumer)
+    void onClose(final Runnable onClose) {
+        this.onClose = onClose;
+        if (closed && completed) {
+            onClose.run();
+        }
+    }
+
+    @Override
+    public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+        lock.lock();
+        try {
+            if (this.subscriber != null) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(final long n) {
+                        // no-op
+                    }
+
+                    @Override
+                    public void cancel() {
+                        // no-op
+                    }
+                });
+                subscriber.onError(new IllegalStateException("Already subscribed"));
+                return;
+            }
+            this.subscriber = subscriber;
+        } finally {
+            lock.unlock();
+        }
+        subscriber.onSubscribe(new Subscription());
+        drain();
+    }
+
+    // single thread emits at a time (serialized signals), other callers just mark there is more work
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            while (true) {
+                final ByteBuffer next;
+                final Flow.Subscriber<? super ByteBuffer> downstream;
+                boolean complete = false;
+                lock.lock();
+                try {
+                    downstream = subscriber;
+                    if (downstream == null || completed) {
+                        break;
+                    }
+                    if (demand > 0 && !queue.isEmpty()) {
+                        next = queue.poll();
+                        demand--;
+                    } else {
+                        next = null;
+                        if (closed && queue.isEmpty()) {
+                            completed = true;
+                            complete = true;
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+                if (next != null) {
+                    downstream.onNext(next.duplicate()); // own position/limit, the shared buffer is untouched
+                } else {
+                    if (complete) {
+                        downstream.onComplete();
+                        fireOnClose();
+                    }
+                    break;
+                }
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void fireOnClose() {
+        final var callback = onClose;
+        if (callback != null) {
+            callback.run();
+        }
+    }
+
+    private class Subscription implements Flow.Subscription {
+        @Override
+        public void request(final long n) {
+            if (n <= 0) {
+                throw new IllegalArgumentException("Invalid request: " + n + ", should be > 0");
+            }
+            lock.lock();
+            try {
+                demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+            } finally {
+                lock.unlock();
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            final boolean fire;
+            lock.lock();
+            try {
+                closed = true;
+                queue.clear();
+                fire = !completed;
+                completed = true;
+            } finally {
+                lock.unlock();
+            }
+            if (fire) {
+                fireOnClose();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.sse;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A server-sent event.
+ *
+ * @param id    the event identifier (sent as {@code id}, used by the clients as {@code Last-Event-ID} when reconnecting), can be {@code null}.
+ * @param event the event type ({@code event} field), {@code null} for the default {@code message} type.
+ * @param data  the event payload, multiline values are sent as multiple {@code data} lines.
+ */
+public record SseEvent(String id, String event, String data) {
+    public SseEvent {
+        // a line break would end the field and let the value inject other fields (or events) in the stream
+        requireSingleLine("id", id);
+        requireSingleLine("event", event);
+    }
+
+    public static SseEvent of(final String data) {
+        return new SseEvent(null, null, data);
+    }
+
+    public static SseEvent of(final String event, final String data) {
+        return new SseEvent(null, event, data);
+    }
+
+    /**
+     * @return the event encoded in the {@code text/event-stream} format, as a read-only buffer which can be shared by all clients.
+     */
+    public ByteBuffer encode() {
+        final var out = new StringBuilder(32 + (data == null ? 0 : data.length()));
+        if (id != null) {
+            field(out, "id", id);
+        }
+        if (event != null) {
+            field(out, "event", event);
+        }
+        if (data != null) {
+            int start = 0;
+            for (int i = 0; i < data.length(); i++) {
+                final char c = data.charAt(i);
+                if (c == '\n' || c == '\r') {
+                    field(out, "data", data.substring(start, i));
+                    if (c == '\r' && i + 1 < data.length() && data.charAt(i + 1) == '\n') {
+                        i++;
+                    }
+                    start = i + 1;
+                }
+            }
+            field(out, "data", data.substring(start));
+        }
+        return ByteBuffer.wrap(out.append('\n').toString().getBytes(UTF_8)).asReadOnlyBuffer();
+    }
+
+    private static void requireSingleLine(final String name, final String value) {
+        if (value != null && (value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0)) {
+            throw new IllegalArgumentException("SSE " + name + " can't contain a line break");
+        }
+    }
+
+    private static void field(final StringBuilder out, final String name, final String value) {
+        out.append(name).append(": ").append(value).append('\n');
+    }
+}
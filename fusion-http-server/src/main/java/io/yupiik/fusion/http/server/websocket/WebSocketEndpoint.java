@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.websocket;
+
+import io.yupiik.fusion.http.server.api.Request;
+
+import java.util.List;
+
+/**
+ * A WebSocket endpoint, registered in {@code TomcatWebServerConfiguration#setWebSocketEndpoints} or as a bean.
+ * <p>
+ * Callbacks are invoked from the connection reading thread (one at a time per session), they must not block:
+ * offload slow work and reply with {@link WebSocketSession#send(String)} which never blocks.
+ */
+public interface WebSocketEndpoint {
+    /**
+     * @return the exact path of the endpoint, for example {@code /ws/chat}.
+     */
+    String path();
+
+    /**
+     * @return the supported subprotocols, the first one requested by the client is selected.
+     */
+    default List<String> subprotocols() {
+        return List.of();
+    }
+
+    /**
+     * Browsers send the cookies of the target site with a handshake whatever the page opening it so a session must
+     * not be opened from any origin (cross-site WebSocket hijacking).
+     *
+     * @return the origins ({@code scheme://host[:port]}) allowed to open a session, {@code *} allows any origin.
+     * When empty, only same origin handshakes and the ones without {@code Origin} header (non browser clients) are accepted.
+     */
+    default List<String> allowedOrigins() {
+        return List.of();
+    }
+
+    /**
+     * Validates the handshake request, for example to authenticate it, before the connection is upgraded.
+     *
+     * @param request the handshake request.
+     * @return {@code false} to reject the handshake with a HTTP 403.
+     */
+    default boolean onHandshake(final Request request) {
+        return true;
+    }
+
+    /**
+     * @return the maximum size (in bytes) of an incoming message, bigger ones close the session with a {@code 1009} code.
+     */
+    default int maxMessageSize() {
+        return 64 * 1_024;
+    }
+
+    /**
+     * @return the maximum number of messages waiting to be sent to the client, see {@link WebSocketSession#send(String)}.
+     */
+    default int sendQueueSize() {
+        return 256;
+    }
+
+    /**
+     * @return how long (in milliseconds) the server waits for the connection to end once the session is closing
+     * (client close frame not received or close frame not yet written), then it drops the connection.
+     */
+    default int closeTimeout() {
+        return 5_000;
+    }
+
+    default void onOpen(final WebSocketSession session) {
+        // no-op
+    }
+
+    /**
+     * @param session the session which received the message.
+     * @param message the message, its content is only valid during this call, a text one is valid UTF-8 (else the session is closed with a {@code 1007} code).
+     */
+    void onMessage(WebSocketSession session, WebSocketMessage message);
+
+    /**
+     * Called once per session, whatever the way it closes.
+     *
+     * @param session the closed session.
+     * @param code    the close code ({@code 1006} when the connection was lost without a close frame).
+     * @param reason  the close reason, can be empty.
+     */
+    default void onClose(final WebSocketSession session, final int code, final String reason) {
+        // no-op
+    }
+
+    /**
+     * @param session the session which failed, it is then closed with a {@code 1011} code.
+     * @param error   the failure.
+     */
+    default void onError(final WebSocketSession session, final Throwable error) {
+        // no-op
+    }
+}
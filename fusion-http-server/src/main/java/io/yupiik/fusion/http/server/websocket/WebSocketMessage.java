@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.websocket;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+/**
+ * An incoming (complete) WebSocket message.
+ * Its content is only valid during {@link WebSocketEndpoint#onMessage(WebSocketSession, WebSocketMessage)},
+ * {@link #bytes()} and {@link #text()} return copies which can be kept.
+ */
+public interface WebSocketMessage {
+    /**
+     * @return {@code true} for a text message, {@code false} for a binary one.
+     */
+    boolean isText();
+
+    int size();
+
+    /**
+     * @return a read-only view of the message content.
+     */
+    ByteBuffer buffer();
+
+    byte[] bytes();
+
+    /**
+     * @return the message content decoded as UTF-8.
+     */
+    String text();
+
+    /**
+     * Enables to decode a message without intermediate string, for example {@code jsonMapper.read(type, message.reader())}.
+     *
+     * @return a UTF-8 reader on the message content.
+     */
+    Reader reader();
+
+    InputStream stream();
+}
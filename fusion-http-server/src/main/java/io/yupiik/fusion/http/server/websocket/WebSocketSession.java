@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.websocket;
+
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A WebSocket connection to a client.
+ * <p>
+ * Sending never blocks: messages are queued (bounded by {@link WebSocketEndpoint#sendQueueSize()}) and written
+ * when the connection is writable, small queued messages being written together.
+ * When the queue is full the send methods return {@code false} and the caller decides what to do
+ * (drop the message or {@link #close(int, String)} the slow client for example).
+ */
+public interface WebSocketSession {
+    String id();
+
+    String path();
+
+    /**
+     * @return the selected subprotocol, {@code null} if none.
+     */
+    String subprotocol();
+
+    /**
+     * @param name the header name (case insensitive).
+     * @return the first value of the header in the handshake request.
+     */
+    String header(String name);
+
+    /**
+     * @return the handshake request headers, names are lowercased.
+     */
+    Map<String, List<String>> headers();
+
+    /**
+     * @param name the query parameter name.
+     * @return the first value of the query parameter in the handshake request.
+     */
+    String parameter(String name);
+
+    /**
+     * @return a mutable map to store data related to this session.
+     */
+    Map<String, Object> attributes();
+
+    boolean isOpen();
+
+    /**
+     * @return the number of messages waiting to be written.
+     */
+    int pendingMessages();
+
+    /**
+     * @param message the text message.
+     * @return {@code false} if the message was not queued (session closed or queue full).
+     */
+    boolean send(String message);
+
+    /**
+     * @param message the binary message, it is copied so the buffer can be reused after this call.
+     * @return {@code false} if the message was not queued (session closed or queue full).
+     */
+    boolean send(ByteBuffer message);
+
+    /**
+     * Sends a text message written directly in the frame buffer, without intermediate string,
+     * for example {@code session.sendText(writer -> jsonMapper.write(payload, writer))}.
+     *
+     * @param writer the message writer.
+     * @return {@code false} if the message was not queued (session closed or queue full).
+     */
+    boolean sendText(Consumer<Writer> writer);
+
+    /**
+     * Closes the session with a normal ({@code 1000}) code.
+     */
+    default void close() {
+        close(1000, "");
+    }
+
+    /**
+     * @param code   the close code.
+     * @param reason the close reason (max 123 bytes).
+     */
+    void close(int code, String reason);
+}
@@ -18,36 +18,74 @@ package io.yupiik.fusion.http.server;
 import io.yupiik.fusion.http.server.api.Request;
 import io.yupiik.fusion.http.server.api.Response;
 import io.yupiik.fusion.http.server.api.WebServer;
+import io.yupiik.fusion.http.server.impl.VirtualThreads;
+import io.yupiik.fusion.http.server.impl.io.RequestBodyAggregator;
+import io.yupiik.fusion.http.server.impl.observability.Metrics;
+import io.yupiik.fusion.http.server.impl.servlet.PooledByteBufferPool;
 import io.yupiik.fusion.http.server.impl.tomcat.MonitoringServerConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.ConcurrencyLimitConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.RateLimitConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.AsyncAccessLogConfiguration;
+import io.yupiik.fusion.http.server.impl.tomcat.RequestTimeoutConfiguration;
 import io.yupiik.fusion.http.server.impl.tomcat.TomcatWebServerConfiguration;
+import io.yupiik.fusion.http.server.multipart.Multipart;
+import io.yupiik.fusion.http.server.websocket.WebSocketEndpoint;
+import io.yupiik.fusion.http.server.websocket.WebSocketMessage;
+import io.yupiik.fusion.http.server.websocket.WebSocketSession;
+import io.yupiik.fusion.http.server.observability.MetricsRegistry;
 import io.yupiik.fusion.http.server.spi.Endpoint;
+import io.yupiik.fusion.http.server.spi.Route;
 import io.yupiik.fusion.http.server.spi.MonitoringEndpoint;
+import io.yupiik.fusion.http.server.sse.SseBroadcaster;
 import jakarta.servlet.http.HttpServlet;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestInfo;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.net.Socket;
+import java.net.StandardProtocolFamily;
 import java.net.URI;
+import java.net.UnixDomainSocketAddress;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.net.http.WebSocket;
 import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Flow;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Stream;
 
 import static java.lang.Thread.sleep;
 import static java.net.http.HttpResponse.BodyHandlers.ofString;
 import static java.util.concurrent.CompletableFuture.completedStage;
+import static java.util.concurrent.CompletableFuture.failedFuture;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class WebServerTest {
     @Test
@@ -118,6 +156,36 @@ class WebServerTest {
         }
     }
 
+    @Test
+    void pooledRequestBody() throws IOException, InterruptedException {
+        final var pool = new PooledByteBufferPool();
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setRequestBufferPool(pool)
+                .setEndpoints(List.of(
+                        Endpoint.of(new Route(Set.of("POST"), Route.PathMatching.EXACT, "/bytes"), request -> request.fullBody().bytes()
+                                .thenApply(bytes -> Response.of().body(Integer.toString(bytes.length)).build()), 1000),
+                        Endpoint.of(new Route(Set.of("POST"), Route.PathMatching.EXACT, "/chars"), request -> new RequestBodyAggregator(request.fullBody()).promise()
+                                .thenApply(chars -> Response.of().body(new String(chars)).build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var http = HttpClient.newHttpClient();
+            final var large = "abcdefghij".repeat(5_000); // several reads
+            for (int i = 0; i < 3; i++) {
+                assertEquals(Integer.toString(large.length()), http.send(HttpRequest.newBuilder()
+                                .POST(HttpRequest.BodyPublishers.ofString(large))
+                                .uri(URI.create("http://localhost:" + configuration.port() + "/bytes"))
+                                .build(),
+                        ofString()).body());
+                assertEquals("{\"small\":true}", http.send(HttpRequest.newBuilder()
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"small\":true}"))
+                                .uri(URI.create("http://localhost:" + configuration.port() + "/chars"))
+                                .build(),
+                        ofString()).body());
+            }
+        }
+        assertTrue(pool.hits() > 0, () -> "hits=" + pool.hits() + ", misses=" + pool.misses());
+    }
+
     @Test
     void inputStreamRequestAndBytesBodyResponse() throws IOException, InterruptedException {
         final var value = "e\u00e9\u00e8 \u4f60\u597d \ud83d\ude00"; // non-ASCII to validate the byte paths end to end
@@ -223,6 +291,686 @@ class WebServerTest {
         }
     }
 
+    @Test
+    void virtualThreads() throws IOException, InterruptedException {
+        final var configuration = WebServer.Configuration.of().port(0).virtualThreads(true);
+        configuration.unwrap(TomcatWebServerConfiguration.class).setEndpoints(List.of(Endpoint.of(
+                request -> "/thread".equals(request.path()),
+                request -> completedStage(Response.of().body(Boolean.toString(isVirtual(Thread.currentThread()))).build()))));
+        try (final var server = WebServer.of(configuration)) {
+            final var res = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                            .GET()
+                            .uri(URI.create("http://localhost:" + configuration.port() + "/thread"))
+                            .build(),
+                    ofString());
+            assertEquals(200, res.statusCode(), res::body);
+            assertEquals(Boolean.toString(VirtualThreads.isSupported()), res.body());
+        }
+    }
+
+    @Test
+    void maxInFlightRequests() throws IOException, InterruptedException {
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var configuration = WebServer.Configuration.of().port(0).maxInFlightRequests(1);
+        configuration.unwrap(TomcatWebServerConfiguration.class).setEndpoints(List.of(Endpoint.of(
+                request -> "/slow".equals(request.path()),
+                request -> {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return completedStage(Response.of().body("done").build());
+                })));
+        try (final var server = WebServer.of(configuration)) {
+            final var http = HttpClient.newHttpClient();
+            final var request = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(URI.create("http://localhost:" + configuration.port() + "/slow"))
+                    .build();
+            final var first = http.sendAsync(request, ofString());
+            assertTrue(started.await(1, MINUTES));
+
+            assertEquals(503, http.send(request, ofString()).statusCode());
+
+            release.countDown();
+            assertEquals("done", first.join().body());
+
+            // permit released on completion
+            assertEquals(200, http.send(request, ofString()).statusCode());
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void concurrencyLimit() throws IOException, InterruptedException {
+        final var started = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final var registry = new MetricsRegistry();
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setConcurrencyLimit(new ConcurrencyLimitConfiguration()
+                        .setInitialLimit(1)
+                        .setMaxLimit(1)
+                        .setRetryAfter(3)
+                        .setMetricsRegistry(registry))
+                .setEndpoints(List.of(Endpoint.of(
+                        request -> "/slow".equals(request.path()),
+                        request -> {
+                            started.countDown();
+                            try {
+                                release.await();
+                            } catch (final InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return completedStage(Response.of().body("done").build());
+                        })));
+        try (final var server = WebServer.of(configuration)) {
+            final var http = HttpClient.newHttpClient();
+            final var request = HttpRequest.newBuilder()
+                    .GET()
+                    .uri(URI.create("http://localhost:" + configuration.port() + "/slow"))
+                    .build();
+            final var first = http.sendAsync(request, ofString());
+            assertTrue(started.await(1, MINUTES));
+
+            final var rejected = http.send(request, ofString());
+            assertEquals(503, rejected.statusCode());
+            assertEquals("3", rejected.headers().firstValue("Retry-After").orElseThrow());
+
+            release.countDown();
+            assertEquals("done", first.join().body());
+            assertEquals(200, http.send(request, ofString()).statusCode());
+        } finally {
+            release.countDown();
+        }
+
+        final var values = registry.entries().collect(toMap(Map.Entry::getKey, e -> e.getValue().supplier().getAsLong()));
+        assertEquals(1L, values.get("fusion_http_server_concurrency_limit"));
+        assertEquals(1L, values.get("fusion_http_server_requests_rejected_total"));
+    }
+
+    @Test
+    void concurrencyLimitIgnoresStreams() throws IOException, InterruptedException {
+        final var broadcaster = new SseBroadcaster(new SseBroadcaster.Configuration().setHeartbeat(null));
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setConcurrencyLimit(new ConcurrencyLimitConfiguration()
+                        .setInitialLimit(1)
+                        .setMaxLimit(1))
+                .setEndpoints(List.of(
+                        Endpoint.of(
+                                new Route(Set.of("GET"), Route.PathMatching.EXACT, "/events"),
+                                request -> completedStage(broadcaster.connect(request)), 1000),
+                        Endpoint.of(
+                                new Route(Set.of("GET"), Route.PathMatching.EXACT, "/ok"),
+                                request -> completedStage(Response.of().body("ok").build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var http = HttpClient.newHttpClient();
+            final var events = http.sendAsync(HttpRequest.newBuilder()
+                            .GET()
+                            .uri(URI.create("http://localhost:" + configuration.port() + "/events"))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofLines());
+            for (int i = 0; i < 100 && broadcaster.size() == 0; i++) {
+                sleep(50);
+            }
+            assertEquals(1, broadcaster.size());
+
+            // the open stream does not hold the only permit
+            final var ok = http.send(HttpRequest.newBuilder()
+                    .GET()
+                    .uri(URI.create("http://localhost:" + configuration.port() + "/ok"))
+                    .build(), ofString());
+            assertEquals(200, ok.statusCode());
+            assertEquals("ok", ok.body());
+
+            broadcaster.close();
+            assertEquals(200, events.join().statusCode());
+        }
+    }
+
+    @Test
+    void rateLimit() throws IOException, InterruptedException {
+        final var registry = new MetricsRegistry();
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setRateLimit(new RateLimitConfiguration()
+                        .setPermits(2)
+                        .setPeriod(60_000)
+                        .setKeyExtractor(RateLimitConfiguration.header("x-api-key"))
+                        .setMetricsRegistry(registry))
+                .setEndpoints(List.of(Endpoint.of(
+                        new Route(Set.of("GET"), Route.PathMatching.EXACT, "/limited"),
+                        request -> completedStage(Response.of().body("ok").build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var http = HttpClient.newHttpClient();
+            final var uri = URI.create("http://localhost:" + configuration.port() + "/limited");
+            final var first = HttpRequest.newBuilder().GET().uri(uri).header("x-api-key", "first").build();
+            assertEquals(200, http.send(first, ofString()).statusCode());
+            assertEquals(200, http.send(first, ofString()).statusCode());
+
+            final var rejected = http.send(first, ofString());
+            assertEquals(429, rejected.statusCode());
+            assertEquals("30", rejected.headers().firstValue("Retry-After").orElseThrow()); // 2 permits per minute
+
+            assertEquals(200, http.send(HttpRequest.newBuilder().GET().uri(uri).header("x-api-key", "second").build(), ofString()).statusCode());
+            assertEquals(200, http.send(HttpRequest.newBuilder().GET().uri(uri).build(), ofString()).statusCode()); // no key, not limited
+        }
+
+        final var values = registry.entries().collect(toMap(Map.Entry::getKey, e -> e.getValue().supplier().getAsLong()));
+        assertEquals(1L, values.get("fusion_http_server_rate_limited_total"));
+        assertEquals(2L, values.get("fusion_http_server_rate_limit_keys"));
+    }
+
+    @Test
+    void connectorMetrics() throws IOException, InterruptedException {
+        final var registry = new MetricsRegistry();
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setEndpointMetrics(registry)
+                .setEndpoints(List.of(Endpoint.of(
+                        new Route(Set.of("GET"), Route.PathMatching.EXACT, "/ok"),
+                        request -> completedStage(Response.of().body("ok").build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var response = HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                    .GET()
+                    .uri(URI.create("http://localhost:" + configuration.port() + "/ok"))
+                    .build(), ofString());
+            assertEquals(200, response.statusCode());
+
+            final var values = registry.entries().collect(toMap(Map.Entry::getKey, e -> e.getValue().supplier().getAsLong()));
+            assertEquals(8192L, values.get("fusion_http_server_connections_max{connector=\"main\"}"));
+            assertEquals(200L, values.get("fusion_http_server_threads_max{connector=\"main\"}"));
+            assertTrue(values.get("fusion_http_server_connections{connector=\"main\"}") >= 1); // keep-alive
+            assertTrue(values.containsKey("fusion_http_server_threads_completed_tasks_total{connector=\"main\"}")); // updated once the response is sent
+            assertEquals("# TYPE fusion_http_server_threads_completed_tasks_total counter", registry.entries()
+                    .filter(e -> e.getKey().equals("fusion_http_server_threads_completed_tasks_total{connector=\"main\"}"))
+                    .findFirst()
+                    .orElseThrow()
+                    .getValue().typeLine());
+            assertEquals(0L, values.get("fusion_http_server_threads_queue_size{connector=\"main\"}"));
+            final var activeStreams = registry.entries()
+                    .filter(e -> e.getKey().equals("fusion_http_server_active_streams"))
+                    .findFirst()
+                    .orElseThrow()
+                    .getValue().supplier();
+            for (int i = 0; i < 100 && activeStreams.getAsLong() != 0; i++) { // released once the write completes
+                sleep(50);
+            }
+            assertEquals(0L, activeStreams.getAsLong());
+            assertTrue(values.containsKey("fusion_http_server_processors_waiting{connector=\"main\"}"));
+        }
+        assertTrue(registry.entries().noneMatch(e -> e.getKey().startsWith("fusion_http_server_threads")));
+    }
+
+    @Test
+    void unixDomainSocket(@TempDir final Path work) throws IOException, InterruptedException {
+        final var socket = work.resolve("fusion.sock");
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setUnixDomainSocketPath(socket.toString())
+                .setEndpoints(List.of(Endpoint.of(
+                        new Route(Set.of("GET"), Route.PathMatching.EXACT, "/uds"),
+                        request -> completedStage(Response.of().body("ok").build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var response = unixDomainSocketGet(socket, "/uds");
+            assertTrue(response.startsWith("HTTP/1.1 200"), response);
+            assertTrue(response.endsWith("\r\n\r\nok"), response);
+
+            // TCP is still there
+            assertEquals("ok", HttpClient.newHttpClient().send(HttpRequest.newBuilder()
+                    .GET()
+                    .uri(URI.create("http://localhost:" + configuration.port() + "/uds"))
+                    .build(), ofString()).body());
+        }
+        assertTrue(Files.notExists(socket));
+    }
+
+    @Test
+    void unixDomainSocketOnly(@TempDir final Path work) throws IOException {
+        final var socket = work.resolve("fusion.sock");
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setUnixDomainSocketPath(socket.toString())
+                .setUnixDomainSocketOnly(true)
+                .setEndpoints(List.of(Endpoint.of(
+                        new Route(Set.of("GET"), Route.PathMatching.EXACT, "/uds"),
+                        request -> completedStage(Response.of().body("only").build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            assertTrue(unixDomainSocketGet(socket, "/uds").endsWith("\r\n\r\nonly"));
+            assertEquals(-1, configuration.port());
+        }
+    }
+
+    private static String unixDomainSocketGet(final Path socket, final String path) throws IOException {
+        try (final var channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            // HTTP/1.0: the response is not chunked and the connection is closed after it
+            channel.write(ByteBuffer.wrap(("GET " + path + " HTTP/1.0\r\nHost: localhost\r\n\r\n").getBytes(StandardCharsets.UTF_8)));
+            final var out = new ByteArrayOutputStream();
+            final var buffer = ByteBuffer.allocate(1024);
+            while (channel.read(buffer) >= 0) {
+                out.write(buffer.array(), 0, buffer.position());
+                buffer.clear();
+            }
+            return out.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void serverSentEvents() throws InterruptedException {
+        final var broadcaster = new SseBroadcaster(new SseBroadcaster.Configuration().setHeartbeat(null));
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class).setEndpoints(List.of(Endpoint.of(
+                new Route(Set.of("GET"), Route.PathMatching.EXACT, "/events"), request -> completedStage(broadcaster.connect(request)), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            broadcaster.broadcast("before connection");
+            broadcaster.broadcast("replayed");
+
+            final var http = HttpClient.newHttpClient();
+            final var events = http.sendAsync(HttpRequest.newBuilder()
+                            .GET()
+                            .header("Last-Event-ID", "1")
+                            .uri(URI.create("http://localhost:" + configuration.port() + "/events"))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofLines());
+            for (int i = 0; i < 100 && broadcaster.size() == 0; i++) {
+                sleep(50);
+            }
+            broadcaster.broadcast("update", "live");
+            broadcaster.close(); // ends the streams
+
+            final var response = events.join();
+            assertEquals("text/event-stream;charset=utf-8", response.headers().firstValue("content-type").orElseThrow());
+            assertEquals(List.of("id: 2", "data: replayed", "", "id: 3", "event: update", "data: live", ""), response.body().toList());
+        }
+    }
+
+    @Test
+    void serverSentEventsOutliveTheAsyncTimeout() throws InterruptedException {
+        final var broadcaster = new SseBroadcaster(new SseBroadcaster.Configuration().setHeartbeat(null));
+        final var configuration = WebServer.Configuration.of().port(0);
+        final var tomcatConfiguration = configuration.unwrap(TomcatWebServerConfiguration.class);
+        tomcatConfiguration.setTomcatCustomizers(List.of(tomcat -> tomcat.getConnector().setAsyncTimeout(200)));
+        tomcatConfiguration.setEndpoints(List.of(Endpoint.of(
+                new Route(Set.of("GET"), Route.PathMatching.EXACT, "/events"), request -> completedStage(broadcaster.connect(request)), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var events = HttpClient.newHttpClient().sendAsync(HttpRequest.newBuilder()
+                            .GET()
+                            .uri(URI.create("http://localhost:" + configuration.port() + "/events"))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofLines());
+            for (int i = 0; i < 100 && broadcaster.size() == 0; i++) {
+                sleep(50);
+            }
+            sleep(1_500); // several async timeouts, tomcat checks them every second
+
+            broadcaster.broadcast("still there");
+            broadcaster.close();
+            assertEquals(List.of("id: 1", "data: still there", ""), events.join().body().toList());
+        }
+    }
+
+    @Test
+    void webSocket() throws Exception {
+        final var closed = new CompletableFuture<String>();
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class).setWebSocketEndpoints(List.of(new WebSocketEndpoint() {
+            @Override
+            public String path() {
+                return "/ws";
+            }
+
+            @Override
+            public void onOpen(final WebSocketSession session) {
+                session.send("hello " + session.parameter("name"));
+            }
+
+            @Override
+            public void onMessage(final WebSocketSession session, final WebSocketMessage message) {
+                if (message.isText()) {
+                    session.sendText(writer -> {
+                        try {
+                            message.reader().transferTo(writer);
+                        } catch (final IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    });
+                } else {
+                    session.send(ByteBuffer.wrap(new byte[]{(byte) message.size()}));
+                }
+            }
+
+            @Override
+            public void onClose(final WebSocketSession session, final int code, final String reason) {
+                closed.complete(code + ":" + reason);
+            }
+        }));
+        try (final var server = WebServer.of(configuration)) {
+            final var messages = new LinkedBlockingQueue<String>();
+            final var socket = HttpClient.newHttpClient().newWebSocketBuilder()
+                    .buildAsync(URI.create("ws://localhost:" + configuration.port() + "/ws?name=fusion"), new WebSocket.Listener() {
+                        private final StringBuilder text = new StringBuilder();
+
+                        @Override
+                        public CompletionStage<?> onText(final WebSocket webSocket, final CharSequence data, final boolean last) {
+                            text.append(data);
+                            if (last) {
+                                messages.add(text.toString());
+                                text.setLength(0);
+                            }
+                            webSocket.request(1);
+                            return null;
+                        }
+
+                        @Override
+                        public CompletionStage<?> onBinary(final WebSocket webSocket, final ByteBuffer data, final boolean last) {
+                            messages.add("binary:" + data.get());
+                            webSocket.request(1);
+                            return null;
+                        }
+                    })
+                    .get(10, TimeUnit.SECONDS);
+            assertEquals("hello fusion", messages.poll(10, TimeUnit.SECONDS));
+
+            final var big = "é".repeat(20_000); // multi-bytes chars, under the default 64KB message limit
+            socket.sendText("{\"json\":true}", true).get(10, TimeUnit.SECONDS);
+            socket.sendText(big, true).get(10, TimeUnit.SECONDS);
+            socket.sendBinary(ByteBuffer.wrap(new byte[]{1, 2, 3}), true).get(10, TimeUnit.SECONDS);
+            assertEquals("{\"json\":true}", messages.poll(10, TimeUnit.SECONDS));
+            assertEquals(big, messages.poll(10, TimeUnit.SECONDS));
+            assertEquals("binary:3", messages.poll(10, TimeUnit.SECONDS));
+
+            socket.sendClose(WebSocket.NORMAL_CLOSURE, "bye").get(10, TimeUnit.SECONDS);
+            assertEquals("1000:bye", closed.get(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void webSocketGuards() throws IOException, InterruptedException {
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class).setWebSocketEndpoints(List.of(new WebSocketEndpoint() {
+            @Override
+            public String path() {
+                return "/ws";
+            }
+
+            @Override
+            public boolean onHandshake(final Request request) {
+                return request.header("x-denied") == null;
+            }
+
+            @Override
+            public int closeTimeout() {
+                return 200;
+            }
+
+            @Override
+            public void onMessage(final WebSocketSession session, final WebSocketMessage message) {
+                session.close(1000, "bye");
+            }
+        }));
+        try (final var server = WebServer.of(configuration)) {
+            final int port = configuration.port();
+            webSocketHandshake(port, "Origin: http://evil.example\r\n", 403).close(); // cross-site
+            webSocketHandshake(port, "x-denied: true\r\n", 403).close(); // onHandshake veto
+
+            try (final var socket = webSocketHandshake(port, "Origin: http://localhost:" + port + "\r\n", 101)) { // same origin
+                sendText(socket, new byte[]{(byte) 0xC3, 0x28});
+                final var close = socket.getInputStream().readNBytes(4);
+                assertArrayEquals(new byte[]{(byte) 0x88, 28, 0x03, (byte) 0xEF}, close); // 1007 - invalid utf-8
+            }
+
+            try (final var socket = webSocketHandshake(port, "", 101)) {
+                sendText(socket, "close me".getBytes(StandardCharsets.UTF_8));
+                final var in = socket.getInputStream();
+                assertArrayEquals(new byte[]{(byte) 0x88, 5, 0x03, (byte) 0xE8, 'b', 'y', 'e'}, in.readNBytes(7));
+                // the client does not answer in time, the session is dropped and the connection is not read anymore
+                sleep(500);
+                sendText(socket, "late".getBytes(StandardCharsets.UTF_8));
+                assertEquals(-1, in.read());
+            }
+        }
+    }
+
+    private static Socket webSocketHandshake(final int port, final String headers, final int expectedStatus) throws IOException {
+        final var socket = new Socket("localhost", port);
+        socket.setSoTimeout(10_000);
+        socket.getOutputStream().write(("GET /ws HTTP/1.1\r\n" +
+                "Host: localhost:" + port + "\r\n" +
+                "Upgrade: websocket\r\n" +
+                "Connection: Upgrade\r\n" +
+                "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n" +
+                "Sec-WebSocket-Version: 13\r\n" +
+                headers +
+                "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        final var in = socket.getInputStream();
+        final var head = new StringBuilder();
+        while (head.indexOf("\r\n\r\n") < 0) {
+            final int c = in.read();
+            if (c < 0) {
+                break;
+            }
+            head.append((char) c);
+        }
+        assertTrue(head.toString().startsWith("HTTP/1.1 " + expectedStatus + " "), head::toString);
+        return socket;
+    }
+
+    private static void sendText(final Socket socket, final byte[] payload) throws IOException { // small masked frame, zero mask
+        final var out = socket.getOutputStream();
+        out.write(new byte[]{(byte) 0x81, (byte) (0x80 | payload.length), 0, 0, 0, 0});
+        out.write(payload);
+        out.flush();
+    }
+
+    @Test
+    void multipart() throws IOException, InterruptedException {
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class).setEndpoints(List.of(Endpoint.of(
+                new Route(Set.of("POST"), Route.PathMatching.EXACT, "/upload"),
+                r -> Multipart.parse(r).thenApply(multipart -> {
+                    try (multipart) {
+                        final var file = multipart.part("file").orElseThrow();
+                        return Response.of().body(file.filename() + "=" + file.size()).build();
+                    }
+                }), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var content = "x".repeat(200_000);
+            final var response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder()
+                            .POST(HttpRequest.BodyPublishers.ofString("--b\r\n" +
+                                    "Content-Disposition: form-data; name=\"file\"; filename=\"x.txt\"\r\n\r\n" +
+                                    content + "\r\n--b--\r\n"))
+                            .header("content-type", "multipart/form-data; boundary=b")
+                            .uri(URI.create("http://localhost:" + configuration.port() + "/upload"))
+                            .build(),
+                    ofString());
+            assertEquals(200, response.statusCode(), response::body);
+            assertEquals("x.txt=200000", response.body());
+        }
+    }
+
+    @Test
+    void requestTimeout() throws IOException, InterruptedException {
+        final var pending = new CompletableFuture<Response>();
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setRequestTimeout(new RequestTimeoutConfiguration().setTimeout(200))
+                .setEndpoints(List.of(
+                        Endpoint.of(new Route(Set.of("GET"), Route.PathMatching.EXACT, "/slow"), r -> pending, 1000),
+                        Endpoint.of(new Route(Set.of("GET"), Route.PathMatching.EXACT, "/own-timeout"), r -> failedFuture(new TimeoutException("downstream")), 1000),
+                        Endpoint.of(new Route(Set.of("GET"), Route.PathMatching.EXACT, "/late-own-timeout"), r -> CompletableFuture.<Response>supplyAsync(() -> {
+                            throw new CompletionException(new TimeoutException("downstream"));
+                        }, CompletableFuture.delayedExecutor(50, MILLISECONDS)), 1000),
+                        Endpoint.of(new Route(Set.of("GET"), Route.PathMatching.EXACT, "/deadline"), r -> completedStage(Response.of()
+                                .body(Boolean.toString(r.remainingTime().orElseThrow().toMillis() > 0))
+                                .build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var http = HttpClient.newHttpClient();
+            final var base = "http://localhost:" + configuration.port();
+
+            final var slow = http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/slow")).build(), ofString());
+            assertEquals(504, slow.statusCode());
+            assertTrue(pending.isCancelled());
+
+            // the endpoint failing with its own TimeoutException is an error, not the deadline
+            for (final var path : List.of("/own-timeout", "/late-own-timeout")) {
+                assertEquals(500, http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + path)).build(), ofString()).statusCode(), path);
+            }
+
+            assertEquals("true", http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/deadline")).build(), ofString()).body());
+        }
+    }
+
+    @Test
+    void asyncAccessLog(@TempDir final Path work) throws IOException, InterruptedException {
+        final var log = work.resolve("logs/access.log");
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class)
+                .setAsyncAccessLog(new AsyncAccessLogConfiguration().setFile(log).setHeaders(List.of("x-request-id")))
+                .setEndpoints(List.of(Endpoint.of(
+                        new Route(Set.of("GET"), Route.PathMatching.EXACT, "/logged"),
+                        r -> completedStage(Response.of().body("ok").build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder().GET().uri(URI.create("http://localhost:" + configuration.port() + "/logged?q=1"))
+                            .header("x-request-id", "abc")
+                            .build(),
+                    ofString());
+            assertEquals("ok", response.body());
+        } // stopping the server flushes the pending lines
+
+        final var lines = Files.readAllLines(log);
+        assertEquals(1, lines.size(), lines::toString);
+        assertTrue(lines.get(0).matches("[^ ]+ - - \\[[^]]+] \"GET /logged\\?q=1 HTTP/1.1\" 200 \\d+ \"abc\""), lines::toString);
+    }
+
+    @Test
+    void file(@TempDir final Path work) throws IOException, InterruptedException {
+        final var large = new byte[200_000]; // several transfer chunks
+        for (int i = 0; i < large.length; i++) {
+            large[i] = (byte) ('a' + i % 26);
+        }
+        final var largeFile = Files.write(work.resolve("large.txt"), large);
+        final var smallFile = Files.writeString(work.resolve("small.css"), "body{}");
+        Files.write(work.resolve("small.css.gz"), new byte[]{1, 2, 3}); // content does not matter, it is not decoded
+        final var configuration = WebServer.Configuration.of().port(0);
+        configuration.unwrap(TomcatWebServerConfiguration.class).setEndpoints(List.of(
+                Endpoint.of(new Route(Set.of("GET", "HEAD"), Route.PathMatching.EXACT, "/large"), r -> completedStage(Response.of().file(largeFile).build()), 1000),
+                Endpoint.of(new Route(Set.of("GET"), Route.PathMatching.EXACT, "/small"), r -> completedStage(Response.of().file(smallFile).build()), 1000),
+                Endpoint.of(new Route(Set.of("GET"), Route.PathMatching.EXACT, "/missing"), r -> completedStage(Response.of().file(work.resolve("missing")).build()), 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var http = HttpClient.newHttpClient();
+            final var base = "http://localhost:" + configuration.port();
+
+            final var full = http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/large")).build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, full.statusCode());
+            assertArrayEquals(large, full.body());
+            assertEquals("bytes", full.headers().firstValue("accept-ranges").orElseThrow());
+            final var etag = full.headers().firstValue("etag").orElseThrow();
+
+            final var range = http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/large"))
+                    .header("Range", "bytes=100000-100009").build(), ofString());
+            assertEquals(206, range.statusCode());
+            assertEquals("efghijklmn", range.body()); // 100000 % 26 = 4
+            assertEquals("bytes 100000-100009/200000", range.headers().firstValue("content-range").orElseThrow());
+
+            final var suffix = http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/large"))
+                    .header("Range", "bytes=-3").header("If-Range", etag).build(), ofString());
+            assertEquals(206, suffix.statusCode());
+            assertEquals(new String(large, large.length - 3, 3, StandardCharsets.US_ASCII), suffix.body());
+
+            assertEquals(200, http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/large")) // stale If-Range: full content
+                    .header("Range", "bytes=0-1").header("If-Range", "\"other\"").build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+            assertEquals(416, http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/large"))
+                    .header("Range", "bytes=300000-").build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+            final var invalidRange = http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/large")) // ignored
+                    .header("Range", "bytes=5-3").build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals(200, invalidRange.statusCode());
+            assertArrayEquals(large, invalidRange.body());
+            assertEquals(304, http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/large"))
+                    .header("If-None-Match", etag).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+
+            final var small = http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/small")).build(), ofString());
+            assertEquals("body{}", small.body());
+            assertTrue(small.headers().firstValue("content-type").orElseThrow().startsWith("text/css"));
+            final var gzip = http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/small"))
+                    .header("Accept-Encoding", "gzip, deflate").build(), HttpResponse.BodyHandlers.ofByteArray());
+            assertEquals("gzip", gzip.headers().firstValue("content-encoding").orElseThrow());
+            assertArrayEquals(new byte[]{1, 2, 3}, gzip.body());
+            for (final var refused : List.of("gzip;q=0, deflate", "deflate, gzip; q=0.0", "*;q=0", "*, gzip;q=0")) {
+                assertTrue(http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/small"))
+                        .header("Accept-Encoding", refused).build(), ofString()).headers().firstValue("content-encoding").isEmpty(), refused);
+            }
+            assertEquals("gzip", http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/small"))
+                    .header("Accept-Encoding", "br;q=1, *;q=0.5").build(), HttpResponse.BodyHandlers.discarding())
+                    .headers().firstValue("content-encoding").orElseThrow());
+
+            assertEquals(404, http.send(HttpRequest.newBuilder().GET().uri(URI.create(base + "/missing")).build(), HttpResponse.BodyHandlers.discarding()).statusCode());
+        }
+    }
+
+    @Test
+    void endpointMetrics() throws IOException, InterruptedException {
+        final var registry = new MetricsRegistry();
+        final var configuration = WebServer.Configuration.of().port(0);
+        final var tomcat = configuration.unwrap(TomcatWebServerConfiguration.class);
+        tomcat
+                .setMonitoringServerConfiguration(new MonitoringServerConfiguration()
+                        .setPort(0)
+                        .setEndpoints(List.of(new Metrics(registry))))
+                .setEndpointMetrics(registry)
+                .setEndpoints(List.of(
+                        Endpoint.of(new Route(Set.of("GET"), Route.PathMatching.EXACT, "/ok"), r -> completedStage(Response.of().status(201).build()), 1000),
+                        Endpoint.of(new Route(Set.of(), Route.PathMatching.STARTS_WITH, "/fail"), r -> {
+                            throw new IllegalStateException("intended error for tests");
+                        }, 1000)));
+        try (final var server = WebServer.of(configuration)) {
+            final var http = HttpClient.newHttpClient();
+            for (final var path : List.of("/ok", "/ok", "/fail/1", "/missing")) {
+                http.send(HttpRequest.newBuilder()
+                                .GET()
+                                .uri(URI.create("http://localhost:" + configuration.port() + path))
+                                .build(),
+                        ofString());
+            }
+
+            // labelled series of a family share a single metadata block
+            final var scrape = http.send(HttpRequest.newBuilder()
+                            .GET()
+                            .uri(URI.create("http://localhost:" + tomcat.getMonitoringServerConfiguration().getPort() + "/metrics"))
+                            .build(),
+                    ofString());
+            assertEquals(200, scrape.statusCode(), scrape::body);
+            final var typeLines = scrape.body().lines()
+                    .filter(it -> it.startsWith("# TYPE "))
+                    .collect(groupingBy(it -> it.split(" ")[2], counting()));
+            for (final var family : List.of(
+                    "fusion_http_server_responses_total", "fusion_http_server_requests_active", "fusion_http_server_request_duration_seconds")) {
+                assertEquals(1L, typeLines.get(family), () -> family + ":\n" + scrape.body());
+            }
+            assertTrue(typeLines.values().stream().allMatch(it -> it == 1L), scrape::body);
+        }
+
+        final var values = registry.entries()
+                .filter(e -> e.getValue().histogram() == null)
+                .collect(toMap(Map.Entry::getKey, e -> e.getValue().supplier().getAsLong()));
+        assertEquals(2L, values.get("fusion_http_server_responses_total{endpoint=\"GET /ok\",status=\"2xx\"}"));
+        assertEquals(1L, values.get("fusion_http_server_responses_total{endpoint=\"* /fail*\",status=\"5xx\"}"));
+        assertEquals(0L, values.get("fusion_http_server_responses_total{endpoint=\"GET /ok\",status=\"5xx\"}"));
+        assertEquals(0L, values.get("fusion_http_server_requests_active{endpoint=\"GET /ok\"}"));
+        assertEquals(2, registry.entries()
+                .filter(e -> e.getKey().equals("fusion_http_server_request_duration_seconds{endpoint=\"GET /ok\"}"))
+                .findFirst()
+                .orElseThrow()
+                .getValue().histogram().snapshot().count());
+    }
+
     @Test
     void runEmpty() {
         try (final var server = WebServer.of(WebServer.Configuration.of().port(0))) {
@@ -278,6 +1026,16 @@ class WebServerTest {
         result.get();
     }
 
+    private static boolean isVirtual(final Thread thread) { // Java 17 build
+        try {
+            return (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (final NoSuchMethodException e) {
+            return false;
+        } catch (final ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private Thread[] listThreads(final ThreadGroup group) {
         final var threads = new Thread[Thread.activeCount()];
         Thread.enumerate(threads);
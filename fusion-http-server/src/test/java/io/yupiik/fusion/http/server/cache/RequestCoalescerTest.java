@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.cache;
+
+import io.yupiik.fusion.http.server.api.Cookie;
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.api.Response;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+import static io.yupiik.fusion.http.server.test.Requests.body;
+import static io.yupiik.fusion.http.server.test.Requests.request;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestCoalescerTest {
+    private final List<CompletableFuture<Response>> calls = new ArrayList<>();
+    private final Function<Request, CompletionStage<Response>> handler = request -> {
+        final var promise = new CompletableFuture<Response>();
+        calls.add(promise);
+        return promise;
+    };
+
+    @Test
+    void coalesce() {
+        final var coalescer = new RequestCoalescer(List.of("accept"));
+        final var responses = new ArrayList<CompletableFuture<Response>>();
+        for (int i = 0; i < 5; i++) {
+            responses.add(coalescer.handle(request("GET", "/a", Map.of("accept", "text/plain")), handler).toCompletableFuture());
+        }
+        final var json = coalescer.handle(request("GET", "/a", Map.of("accept", "json")), handler).toCompletableFuture();
+        coalescer.handle(request("POST", "/a", Map.of("accept", "text/plain")), handler);
+        assertEquals(3, calls.size()); // text/plain, json, POST
+        assertEquals(2, coalescer.inFlight());
+
+        calls.get(0).complete(Response.of().status(201).header("content-type", "text/plain").body("shared").build());
+        for (final var response : responses) {
+            final var value = response.join();
+            assertEquals(201, value.status());
+            assertEquals(List.of("text/plain"), value.headers().get("content-type"));
+            assertEquals("shared", body(value));
+        }
+        assertEquals(1, coalescer.inFlight());
+        calls.get(1).complete(Response.of().body("json").build());
+        assertEquals("json", body(json.join()));
+        assertEquals(0, coalescer.inFlight());
+
+        // nothing is kept once the response is computed
+        coalescer.handle(request("GET", "/a", Map.of("accept", "text/plain")), handler);
+        assertEquals(4, calls.size());
+    }
+
+    @Test
+    void authenticatedRequestsAreNotCoalesced() {
+        final var coalescer = new RequestCoalescer(List.of());
+        final var alice = coalescer.handle(request("GET", "/me", Map.of("Authorization", "Bearer alice")), handler).toCompletableFuture();
+        final var bob = coalescer.handle(request("GET", "/me", Map.of("Authorization", "Bearer bob")), handler).toCompletableFuture();
+        coalescer.handle(request("GET", "/me", Map.of("Cookie", "session=alice")), handler);
+        assertEquals(3, calls.size());
+        assertEquals(0, coalescer.inFlight());
+
+        calls.get(0).complete(Response.of().body("alice").build());
+        calls.get(1).complete(Response.of().body("bob").build());
+        assertEquals("alice", body(alice.join()));
+        assertEquals("bob", body(bob.join()));
+    }
+
+    @Test
+    void failure() {
+        final var coalescer = new RequestCoalescer(List.of());
+        final var first = coalescer.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture();
+        final var second = coalescer.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture();
+        calls.get(0).completeExceptionally(new IllegalStateException("oops"));
+        assertEquals("oops", assertThrows(CompletionException.class, first::join).getCause().getMessage());
+        assertEquals("oops", assertThrows(CompletionException.class, second::join).getCause().getMessage());
+        assertEquals(1, calls.size());
+        assertEquals(0, coalescer.inFlight());
+    }
+
+    @Test
+    void streamsAreNotShared(@TempDir final Path work) throws IOException {
+        final var coalescer = new RequestCoalescer(List.of());
+        final Flow.Publisher<ByteBuffer> stream = subscriber -> { // never completes, like a SSE channel
+        };
+        final var file = Files.writeString(work.resolve("file.txt"), "file");
+        for (final var response : List.of(Response.of().body(stream).build(), Response.of().file(file).build())) {
+            calls.clear();
+            final var first = coalescer.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture();
+            final var second = coalescer.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture();
+            calls.get(0).complete(response);
+            assertSame(response, first.join()); // passed through, not buffered
+            assertEquals(2, calls.size()); // the waiting request calls the handler
+            calls.get(1).complete(response);
+            assertSame(response, second.join());
+            assertEquals(0, coalescer.inFlight());
+        }
+    }
+
+    @Test
+    void responsesWithCookiesAreNotShared() {
+        final var coalescer = new RequestCoalescer(List.of());
+        final var first = coalescer.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture();
+        final var second = coalescer.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture();
+        calls.get(0).complete(Response.of().cookie(Cookie.of().name("session").value("1").build()).body("1").build());
+        assertEquals("1", body(first.join()));
+        assertEquals(2, calls.size()); // the waiting request calls the handler
+        calls.get(1).complete(Response.of().cookie(Cookie.of().name("session").value("2").build()).body("2").build());
+        assertEquals("2", body(second.join()));
+    }
+}
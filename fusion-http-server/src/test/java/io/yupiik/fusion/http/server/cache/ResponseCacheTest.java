@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.cache;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.api.Response;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static io.yupiik.fusion.http.server.test.Requests.body;
+import static io.yupiik.fusion.http.server.test.Requests.request;
+import static java.util.concurrent.CompletableFuture.completedStage;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class ResponseCacheTest {
+    private final AtomicInteger calls = new AtomicInteger();
+    private final Function<Request, CompletionStage<Response>> handler = request -> {
+        calls.incrementAndGet();
+        return completedStage(Response.of()
+                .header("content-type", "text/plain")
+                .body(request.path() + "#" + request.header("accept"))
+                .build());
+    };
+
+    @Test
+    void cacheAndEtag() {
+        final var cache = new ResponseCache(1024, Duration.ofMinutes(1), List.of("accept"));
+        final var first = cache.handle(request("GET", "/a", Map.of("accept", "text/plain")), handler).toCompletableFuture().join();
+        assertEquals(200, first.status());
+        assertEquals("/a#text/plain", body(first));
+        final var etag = first.headers().get("ETag").get(0);
+        assertNotNull(etag);
+
+        final var second = cache.handle(request("GET", "/a", Map.of("accept", "text/plain")), handler).toCompletableFuture().join();
+        assertEquals("/a#text/plain", body(second)); // body can be read multiple times
+        assertEquals(etag, second.headers().get("ETag").get(0));
+        assertEquals(List.of("text/plain"), second.headers().get("content-type"));
+        assertEquals(1, calls.get());
+
+        final var notModified = cache.handle(request("GET", "/a", Map.of("accept", "text/plain", "If-None-Match", "\"x\", W/" + etag)), handler)
+                .toCompletableFuture().join();
+        assertEquals(304, notModified.status());
+        assertEquals(1, calls.get());
+
+        // vary header and method
+        assertEquals("/a#json", body(cache.handle(request("GET", "/a", Map.of("accept", "json")), handler).toCompletableFuture().join()));
+        assertEquals(2, calls.get());
+        cache.handle(request("POST", "/a", Map.of("accept", "json")), handler).toCompletableFuture().join();
+        cache.handle(request("POST", "/a", Map.of("accept", "json")), handler).toCompletableFuture().join();
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void authenticatedRequestsBypassTheCache() {
+        final var cache = new ResponseCache(1024, Duration.ofMinutes(1), List.of());
+        final Function<Request, CompletionStage<Response>> whoAmI = request -> {
+            calls.incrementAndGet();
+            return completedStage(Response.of().body(String.valueOf(request.header("authorization"))).build());
+        };
+        assertEquals("Bearer alice", body(cache.handle(request("GET", "/me", Map.of("Authorization", "Bearer alice")), whoAmI).toCompletableFuture().join()));
+        assertEquals("Bearer bob", body(cache.handle(request("GET", "/me", Map.of("Authorization", "Bearer bob")), whoAmI).toCompletableFuture().join()));
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+
+        cache.handle(request("GET", "/me", Map.of("Cookie", "session=alice")), whoAmI).toCompletableFuture().join();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void ttl() {
+        final var now = new AtomicInteger();
+        final var clock = new Clock() {
+            @Override
+            public ZoneId getZone() {
+                return ZoneId.of("UTC");
+            }
+
+            @Override
+            public Clock withZone(final ZoneId zone) {
+                return this;
+            }
+
+            @Override
+            public Instant instant() {
+                return Instant.ofEpochMilli(now.get());
+            }
+        };
+        final var cache = new ResponseCache(1024, Duration.ofMillis(10), List.of(), clock);
+        cache.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture().join();
+        now.set(9);
+        cache.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture().join();
+        assertEquals(1, calls.get());
+        now.set(10);
+        cache.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture().join();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void lruBoundedBySize() {
+        final var cache = new ResponseCache(20, Duration.ofMinutes(1), List.of());
+        for (final var path : List.of("/a", "/b", "/a", "/c")) { // 7 bytes per body: /c evicts /b, /a was used more recently
+            cache.handle(request("GET", path, Map.of()), handler).toCompletableFuture().join();
+        }
+        assertEquals(3, calls.get());
+        assertEquals(14, cache.size());
+
+        cache.handle(request("GET", "/a", Map.of()), handler).toCompletableFuture().join();
+        assertEquals(3, calls.get());
+        cache.handle(request("GET", "/b", Map.of()), handler).toCompletableFuture().join();
+        assertEquals(4, calls.get());
+    }
+
+    @Test
+    void skipNonCacheableResponses() {
+        final var cache = new ResponseCache(1024, Duration.ofMinutes(1), List.of());
+        final Function<Request, CompletionStage<Response>> noStore = request -> {
+            calls.incrementAndGet();
+            return completedStage(Response.of().header("Cache-Control", "no-store").body("x").build());
+        };
+        cache.handle(request("GET", "/a", Map.of()), noStore).toCompletableFuture().join();
+        cache.handle(request("GET", "/a", Map.of()), noStore).toCompletableFuture().join();
+        assertEquals(2, calls.get());
+        assertEquals(0, cache.size());
+
+        final var stream = Response.of().body((Flow.Publisher<ByteBuffer>) subscriber -> { // never completes, like a SSE channel
+        }).build();
+        assertSame(stream, cache.handle(request("GET", "/stream", Map.of()), r -> completedStage(stream)).toCompletableFuture().join());
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.io;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BytesAggregatorTest {
+    @Test
+    void contentLengthDoesNotPreallocate() throws Exception {
+        // a client announcing ~2GB must not get them allocated before sending anything
+        final var aggregator = new BytesAggregator(Integer.MAX_VALUE - 16L);
+        final var chunk = "x".repeat(40 * 1024);
+        for (int i = 0; i < 3; i++) { // grows past the preallocated size
+            aggregator.onNext(ByteBuffer.wrap(chunk.getBytes(UTF_8)));
+        }
+        aggregator.onComplete();
+        assertEquals(chunk.repeat(3), new String(aggregator.promise().toCompletableFuture().get(1, TimeUnit.MINUTES), UTF_8));
+    }
+}
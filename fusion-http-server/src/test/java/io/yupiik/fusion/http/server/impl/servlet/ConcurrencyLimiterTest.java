@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import org.junit.jupiter.api.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConcurrencyLimiterTest {
+    @Test
+    void rejectsOverLimit() {
+        final var limiter = new ConcurrencyLimiter(2, 1, 10, 100, 0.5);
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.cancel();
+        assertEquals(1, limiter.inFlight());
+        assertEquals(2, limiter.limit()); // cancel does not sample
+        assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    void additiveIncrease() {
+        final var limiter = new ConcurrencyLimiter(2, 1, 3, 100, 0.5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire());
+            assertTrue(limiter.tryAcquire());
+            limiter.release(MILLISECONDS.toNanos(1), false);
+            limiter.cancel();
+        }
+        assertEquals(3, limiter.limit()); // capped by the max
+    }
+
+    @Test
+    void noIncreaseWhenUnused() {
+        final var limiter = new ConcurrencyLimiter(10, 1, 100, 100, 0.5);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(MILLISECONDS.toNanos(1), false);
+        }
+        assertEquals(10, limiter.limit());
+    }
+
+    @Test
+    void multiplicativeDecrease() {
+        final var limiter = new ConcurrencyLimiter(8, 1, 100, 100, 0.5);
+        assertTrue(limiter.tryAcquire());
+        limiter.release(MILLISECONDS.toNanos(200), false);
+        assertEquals(4, limiter.limit());
+
+        assertTrue(limiter.tryAcquire());
+        limiter.release(MILLISECONDS.toNanos(1), true); // timeout
+        assertEquals(2, limiter.limit());
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(MILLISECONDS.toNanos(200), false);
+        }
+        assertEquals(1, limiter.limit()); // floored by the min
+        assertEquals(0, limiter.inFlight());
+    }
+}
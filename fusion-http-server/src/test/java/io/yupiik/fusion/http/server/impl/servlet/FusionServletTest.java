@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import io.yupiik.fusion.http.server.impl.tomcat.TomcatWebServerConfiguration;
+import org.junit.jupiter.api.Test;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class FusionServletTest {
+    @Test
+    void executorTasksRunWithTheDispatchingLoader() throws Exception {
+        final var executor = Executors.newSingleThreadExecutor();
+        try (final var loader = new URLClassLoader(new URL[0])) {
+            final var poolLoader = executor.submit(() -> Thread.currentThread().getContextClassLoader()).get(5, TimeUnit.SECONDS);
+
+            final var servlet = new FusionServlet(new TomcatWebServerConfiguration(), executor);
+            final var seen = new CompletableFuture<ClassLoader>();
+            final var thread = Thread.currentThread();
+            final var previous = thread.getContextClassLoader();
+            thread.setContextClassLoader(loader); // what the container does before calling the servlet
+            try {
+                servlet.doExecute(null, () -> seen.complete(Thread.currentThread().getContextClassLoader()));
+            } finally {
+                thread.setContextClassLoader(previous);
+            }
+
+            assertSame(loader, seen.get(5, TimeUnit.SECONDS));
+            // pooled threads are restored, the next task does not inherit the context of another request
+            assertSame(poolLoader, executor.submit(() -> Thread.currentThread().getContextClassLoader()).get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PooledByteBufferPoolTest {
+    @Test
+    void sizeClasses() {
+        final var pool = new PooledByteBufferPool(8 * 1_024, 4, false);
+        assertEquals(512, pool.get(1).capacity());
+        assertEquals(512, pool.get(512).capacity());
+        assertEquals(1_024, pool.get(513).capacity());
+        assertEquals(8 * 1_024, pool.get(100_000).capacity());
+        assertEquals(8 * 1_024, pool.get().capacity());
+        assertEquals(0, pool.hits());
+        assertEquals(5, pool.misses());
+    }
+
+    @Test
+    void recycle() {
+        final var pool = new PooledByteBufferPool(4 * 1_024, 1, true);
+        final var first = pool.get();
+        final var second = pool.get();
+        assertTrue(first.isDirect());
+        first.put((byte) 1).flip();
+        pool.release(first); // thread cache
+        pool.release(second); // shared queue
+        assertEquals(4 * 1_024, pool.pooledBytes()); // thread caches are not counted
+
+        final var reused = pool.get();
+        assertSame(first, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertSame(second, pool.get());
+        assertNotSame(first, pool.get()); // empty pool, allocates
+
+        pool.release(ByteBuffer.allocate(4 * 1_024)); // not a pool buffer (heap), ignored
+        assertEquals(0, pool.pooledBytes());
+    }
+}
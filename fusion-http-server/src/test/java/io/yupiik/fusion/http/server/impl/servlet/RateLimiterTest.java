@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RateLimiterTest {
+    private final AtomicLong clock = new AtomicLong(Long.MAX_VALUE - SECONDS.toNanos(5)); // ensure nanoTime overflow is handled
+
+    @Test
+    void burstThenRefill() {
+        final var limiter = new RateLimiter(10, SECONDS.toNanos(1), 3, 100, clock::get);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(SECONDS.toNanos(1) / 10, limiter.tryAcquire("a")); // next token in 100ms
+        assertEquals(0, limiter.tryAcquire("b")); // independent buckets
+
+        clock.addAndGet(SECONDS.toNanos(1) / 10);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(SECONDS.toNanos(1) / 10, limiter.tryAcquire("a"));
+
+        clock.addAndGet(SECONDS.toNanos(10)); // a long idle period does not give more than the burst
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a"));
+        }
+        assertEquals(SECONDS.toNanos(1) / 10, limiter.tryAcquire("a"));
+    }
+
+    @Test
+    void bounded() {
+        final var limiter = new RateLimiter(1, SECONDS.toNanos(1), 1, 1, clock::get);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertEquals(1, limiter.size());
+
+        // "a" is not full, "b" and "c" share the overflow bucket
+        assertEquals(0, limiter.tryAcquire("b"));
+        assertEquals(SECONDS.toNanos(1), limiter.tryAcquire("c"));
+        assertEquals(1, limiter.size());
+
+        // once "a" refilled it is evicted for "c"
+        clock.addAndGet(SECONDS.toNanos(1));
+        assertEquals(0, limiter.tryAcquire("c"));
+        assertEquals(SECONDS.toNanos(1), limiter.tryAcquire("c"));
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void concurrentAcquisitions() throws InterruptedException {
+        final var limiter = new RateLimiter(1_000, SECONDS.toNanos(1), 1_000, 100, clock::get);
+        final var accepted = new AtomicLong();
+        final var threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 500; j++) {
+                    if (limiter.tryAcquire("key") == 0) {
+                        accepted.incrementAndGet();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (final var thread : threads) {
+            thread.join();
+        }
+        assertEquals(1_000, accepted.get());
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimiter(0, 1, 1, 1, clock::get));
+    }
+}
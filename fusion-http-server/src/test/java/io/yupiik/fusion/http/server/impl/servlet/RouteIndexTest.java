@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.servlet;
+
+import io.yupiik.fusion.http.server.cache.CachingEndpoint;
+import io.yupiik.fusion.http.server.cache.ResponseCache;
+import io.yupiik.fusion.http.server.impl.DefaultEndpoint;
+import io.yupiik.fusion.http.server.spi.BaseEndpoint;
+import io.yupiik.fusion.http.server.spi.Route;
+import io.yupiik.fusion.http.server.spi.RouteTable;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+import static io.yupiik.fusion.http.server.spi.Route.PathMatching.ENDS_WITH;
+import static io.yupiik.fusion.http.server.spi.Route.PathMatching.EXACT;
+import static io.yupiik.fusion.http.server.spi.Route.PathMatching.IGNORED;
+import static io.yupiik.fusion.http.server.spi.Route.PathMatching.REGEX;
+import static io.yupiik.fusion.http.server.spi.Route.PathMatching.STARTS_WITH;
+import static io.yupiik.fusion.http.server.test.Requests.request;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class RouteIndexTest {
+    @Test
+    void sameResultAsLinearScan() {
+        final var endpoints = List.of(
+                endpoint(Set.of("GET"), EXACT, "/api/users"),
+                endpoint(Set.of("post", "PUT"), EXACT, "/api/users"),
+                new DefaultEndpoint(1000, r -> "/opaque".equals(r.path()), null),
+                endpoint(Set.of(), STARTS_WITH, "/api/"),
+                endpoint(Set.of("GET"), STARTS_WITH, "/api/users/"),
+                endpoint(Set.of("GET"), REGEX, "/api/items/([0-9]+)"),
+                endpoint(Set.of("DELETE"), ENDS_WITH, ".json"),
+                endpoint(Set.of(), EXACT, "/api/users"),
+                endpoint(Set.of("OPTIONS"), IGNORED, null),
+                endpoint(Set.of(), STARTS_WITH, ""));
+        final var index = new RouteIndex(endpoints);
+        for (final var method : List.of("GET", "get", "POST", "PUT", "DELETE", "OPTIONS", "PATCH")) {
+            for (final var path : List.of("", "/", "/api", "/api/", "/api/users", "/api/users/", "/api/users/1",
+                    "/api/items/12", "/api/items/x", "/opaque", "/other.json", "/api/x.json")) {
+                final var request = request(method, path);
+                final var expected = endpoints.stream().filter(e -> e.matches(request)).findFirst().orElse(null);
+                assertEquals(expected, index.find(request(method, path)), () -> method + " " + path);
+            }
+        }
+    }
+
+    @Test
+    void routeTable() {
+        final var endpoints = List.of(
+                new GetA(),
+                endpoint(Set.of(), STARTS_WITH, "/a"),
+                new AnyA(),
+                endpoint(Set.of("GET"), EXACT, "/b"));
+        final var table = new RouteTable() { // what the processor generates, including a stale entry
+            @Override
+            public List<String> endpoints() {
+                return List.of("test.Routes#removed", "test.Routes#anyA", "test.Routes#getA");
+            }
+
+            @Override
+            public int[] match(final String method, final String path) {
+                return switch (path) {
+                    case "/a" -> "GET".equals(method) ? new int[]{0, 1, 2} : new int[]{0, 1};
+                    case "/removed" -> new int[]{0};
+                    default -> new int[0];
+                };
+            }
+        };
+        final var index = new RouteIndex(endpoints, List.of(table));
+        for (final var method : List.of("GET", "get", "POST")) {
+            for (final var path : List.of("/a", "/a/", "/b", "/removed", "/c")) {
+                final var request = request(method, path);
+                final var expected = endpoints.stream().filter(e -> e.matches(request)).findFirst().orElse(null);
+                assertEquals(expected, index.find(request(method, path)), () -> method + " " + path);
+            }
+        }
+        assertInstanceOf(GetA.class, index.find(request("GET", "/a")));
+        assertEquals(STARTS_WITH, index.find(request("POST", "/a")).route().matching());
+    }
+
+    @Test
+    void routeTableMatchesDecoratedEndpoints() {
+        final var getA = new CachingEndpoint(new GetA(), new ResponseCache(1024, Duration.ofMinutes(1), List.of()));
+        final var endpoints = List.of(endpoint(Set.of("GET"), EXACT, "/b"), getA);
+        final var index = new RouteIndex(endpoints, List.of(new RouteTable() {
+            @Override
+            public List<String> endpoints() {
+                return List.of("test.Routes#getA");
+            }
+
+            @Override
+            public int[] match(final String method, final String path) {
+                return "/a".equals(path) && "GET".equals(method) ? new int[]{0} : new int[0];
+            }
+        }));
+        assertSame(getA, index.find(request("GET", "/a")));
+        assertNull(index.find(request("POST", "/a")));
+    }
+
+    @Test
+    void routeTableIgnoresAmbiguousOrStaleRoutes() {
+        final var endpoints = List.of(
+                new GetA(),
+                new DefaultEndpoint(1000, new Route(Set.of("GET"), EXACT, "/other"), null) { // same name, another route
+                    @Override
+                    public String name() {
+                        return "test.Routes#getA";
+                    }
+                },
+                new AnyA());
+        final var index = new RouteIndex(endpoints, List.of(new RouteTable() {
+            @Override
+            public List<String> endpoints() {
+                return List.of("test.Routes#getA", "test.Routes#anyA");
+            }
+
+            @Override
+            public int[] match(final String method, final String path) { // anyA moved to /b since the table was generated
+                return switch (path) {
+                    case "/a" -> new int[]{0};
+                    case "/b" -> new int[]{1};
+                    default -> new int[0];
+                };
+            }
+        }));
+        for (final var method : List.of("GET", "POST")) {
+            for (final var path : List.of("/a", "/b", "/other")) {
+                final var request = request(method, path);
+                final var expected = endpoints.stream().filter(e -> e.matches(request)).findFirst().orElse(null);
+                assertSame(expected, index.find(request(method, path)), () -> method + " " + path);
+            }
+        }
+    }
+
+    @Test
+    void notFound() {
+        final var index = new RouteIndex(List.of(endpoint(Set.of("GET"), EXACT, "/a"), endpoint(Set.of("GET"), STARTS_WITH, "/b/")));
+        assertNull(index.find(request("POST", "/a")));
+        assertNull(index.find(request("GET", "/b")));
+        assertNull(index.find(request("GET", "/c")));
+    }
+
+    @Test
+    void regexMatcherAttribute() {
+        final var index = new RouteIndex(List.of(endpoint(Set.of("GET"), EXACT, "/a"), endpoint(Set.of("GET"), REGEX, "/items/([0-9]+)")));
+        final var request = request("GET", "/items/12");
+        assertEquals(REGEX, index.find(request).route().matching());
+        final var matcher = assertInstanceOf(Matcher.class, request.attribute("fusion.http.matcher", Matcher.class));
+        assertEquals("12", matcher.group(1));
+    }
+
+    private static BaseEndpoint endpoint(final Set<String> methods, final Route.PathMatching matching, final String path) {
+        return new DefaultEndpoint(1000, new Route(methods, matching, path), null) {
+            @Override
+            public String toString() {
+                return route().toString();
+            }
+        };
+    }
+
+    private static class GetA extends DefaultEndpoint {
+        private GetA() {
+            super(1000, new Route(Set.of("GET"), EXACT, "/a"), null);
+        }
+
+        @Override
+        public String name() {
+            return "test.Routes#getA";
+        }
+    }
+
+    private static class AnyA extends DefaultEndpoint {
+        private AnyA() {
+            super(1000, new Route(Set.of(), EXACT, "/a"), null);
+        }
+
+        @Override
+        public String name() {
+            return "test.Routes#anyA";
+        }
+    }
+}
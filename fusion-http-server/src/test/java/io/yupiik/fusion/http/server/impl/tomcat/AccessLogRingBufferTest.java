@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AccessLogRingBufferTest {
+    @Test
+    void boundedFifo() {
+        final var buffer = new AccessLogRingBuffer<Integer>(3);
+        assertEquals(4, buffer.capacity());
+        assertTrue(buffer.isEmpty());
+        IntStream.range(0, 4).forEach(i -> assertTrue(buffer.offer(i)));
+        assertFalse(buffer.offer(4));
+
+        final var drained = new ArrayList<Integer>();
+        assertEquals(3, buffer.drain(drained::add, 3));
+        assertEquals(List.of(0, 1, 2), drained);
+        assertTrue(buffer.offer(5));
+        assertEquals(2, buffer.drain(drained::add, 10));
+        assertEquals(List.of(0, 1, 2, 3, 5), drained);
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    void concurrentProducers() throws InterruptedException {
+        final var buffer = new AccessLogRingBuffer<Integer>(1_024);
+        final var start = new CountDownLatch(1);
+        final var rejected = new AtomicInteger();
+        final var producers = IntStream.range(0, 4)
+                .mapToObj(p -> new Thread(() -> {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                    for (int i = 0; i < 10_000; i++) {
+                        if (!buffer.offer(i)) {
+                            rejected.incrementAndGet();
+                        }
+                    }
+                }))
+                .toList();
+        producers.forEach(Thread::start);
+        start.countDown();
+
+        final var consumed = new AtomicInteger();
+        while (producers.stream().anyMatch(Thread::isAlive) || !buffer.isEmpty()) {
+            consumed.addAndGet(buffer.drain(i -> {
+            }, 128));
+        }
+        for (final var producer : producers) {
+            producer.join();
+        }
+        consumed.addAndGet(buffer.drain(i -> {
+        }, Integer.MAX_VALUE));
+        assertEquals(40_000, consumed.get() + rejected.get());
+    }
+}
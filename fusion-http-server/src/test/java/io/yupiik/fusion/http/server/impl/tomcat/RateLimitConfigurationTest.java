@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.tomcat;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.test.Requests;
+import org.junit.jupiter.api.Test;
+
+import java.util.Base64;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RateLimitConfigurationTest {
+    @Test
+    void jwtSubject() {
+        final var extractor = RateLimitConfiguration.jwtSubject();
+        assertEquals("user1", extractor.apply(request("Bearer " + jwt("{\"iss\":\"sub\",\"sub\" : \"user1\",\"exp\":1}"))));
+        assertEquals("a\\\"b", extractor.apply(request("bearer " + jwt("{\"sub\":\"a\\\"b\"}"))));
+        assertNull(extractor.apply(request("Bearer " + jwt("{\"iss\":\"x\"}"))));
+        assertNull(extractor.apply(request("Bearer not-a-jwt")));
+        assertNull(extractor.apply(request("Bearer a.%%%.c")));
+        assertNull(extractor.apply(request("Basic dXNlcjpwYXNz")));
+        assertNull(extractor.apply(request(null)));
+    }
+
+    private static String jwt(final String payload) {
+        final var encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString("{\"alg\":\"none\"}".getBytes(UTF_8)) + '.' + encoder.encodeToString(payload.getBytes(UTF_8)) + ".sig";
+    }
+
+    private static Request request(final String authorization) {
+        return Requests.request("GET", "/", authorization == null ? Map.of() : Map.of("authorization", authorization));
+    }
+}
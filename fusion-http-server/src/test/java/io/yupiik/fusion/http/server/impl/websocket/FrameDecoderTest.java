@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.impl.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FrameDecoderTest {
+    @Test
+    void accept() {
+        // RFC 6455 sample
+        assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", WebSocketServlet.accept("dGhlIHNhbXBsZSBub25jZQ=="));
+    }
+
+    @Test
+    void maskedFramesAnyChunking() throws IOException {
+        final var data = concat(
+                clientFrame(0x01, false, "Hel".getBytes(UTF_8)),
+                clientFrame(0x09, true, new byte[0]), // control frame between fragments
+                clientFrame(0x00, true, "lo".getBytes(UTF_8)),
+                clientFrame(0x02, true, new byte[300])); // 16 bits length
+        for (int chunk = 1; chunk <= data.length; chunk++) {
+            final var frames = new ArrayList<String>();
+            final var decoder = new FrameDecoder(1_024, (fin, opcode, payload, length) ->
+                    frames.add(opcode + ":" + fin + ":" + (opcode == FrameDecoder.BINARY ? Integer.toString(length) : new String(payload, 0, length, UTF_8))));
+            for (int i = 0; i < data.length; i += chunk) {
+                decoder.decode(data, i, Math.min(chunk, data.length - i));
+            }
+            assertEquals(List.of("1:false:Hel", "9:true:", "0:true:lo", "2:true:300"), frames, "chunk=" + chunk);
+        }
+    }
+
+    @Test
+    void protocolErrors() {
+        assertCode(1002, new byte[]{(byte) 0x81, 0x00}); // not masked
+        assertCode(1002, new byte[]{(byte) 0xC1, (byte) 0x80}); // rsv bit
+        assertCode(1002, new byte[]{(byte) 0x83, (byte) 0x80}); // reserved opcode
+        assertCode(1002, new byte[]{(byte) 0x09, (byte) 0x80}); // fragmented control frame
+        assertCode(1009, clientFrame(0x02, true, new byte[2_000]));
+    }
+
+    @Test
+    void utf8() {
+        for (final var valid : List.of("", "ascii", "é", "€", "\uD83D\uDE00", "a\u0000b")) {
+            final var bytes = valid.getBytes(UTF_8);
+            assertTrue(FrameDecoder.isUtf8(bytes, 0, bytes.length), valid);
+        }
+        for (final var invalid : List.of(
+                new byte[]{(byte) 0xC3, 0x28}, // bad continuation
+                new byte[]{(byte) 0xC0, (byte) 0xAF}, // overlong
+                new byte[]{(byte) 0xE0, (byte) 0x80, (byte) 0xAF}, // overlong
+                new byte[]{(byte) 0xED, (byte) 0xA0, (byte) 0x80}, // surrogate
+                new byte[]{(byte) 0xF4, (byte) 0x90, (byte) 0x80, (byte) 0x80}, // > U+10FFFF
+                new byte[]{(byte) 0xE2, (byte) 0x82}, // truncated
+                new byte[]{(byte) 0xFF})) {
+            assertFalse(FrameDecoder.isUtf8(invalid, 0, invalid.length), () -> Arrays.toString(invalid));
+        }
+        final var euro = "x€".getBytes(UTF_8);
+        assertFalse(FrameDecoder.isUtf8(euro, 0, 3)); // offset/length are honored
+        assertTrue(FrameDecoder.isUtf8(euro, 1, 3));
+    }
+
+    @Test
+    void serverFrame() {
+        final var frame = WebSocketConnection.frame(FrameDecoder.TEXT, new byte[70_000], 0, 70_000);
+        assertEquals((byte) 0x81, frame[0]);
+        assertEquals(127, frame[1]);
+        assertEquals(70_000, ((frame[7] & 0xFF) << 16) | ((frame[8] & 0xFF) << 8) | (frame[9] & 0xFF));
+        assertEquals(10 + 70_000, frame.length);
+    }
+
+    private void assertCode(final int code, final byte[] data) {
+        final var decoder = new FrameDecoder(1_024, (fin, opcode, payload, length) -> {
+        });
+        assertEquals(code, assertThrows(FrameDecoder.ProtocolException.class, () -> decoder.decode(data, 0, data.length)).code());
+    }
+
+    private static byte[] clientFrame(final int opcode, final boolean fin, final byte[] payload) {
+        final byte[] mask = {1, 2, 3, 4};
+        final int header = payload.length < 126 ? 2 : 4;
+        final var frame = new byte[header + 4 + payload.length];
+        frame[0] = (byte) ((fin ? 0x80 : 0) | opcode);
+        if (header == 2) {
+            frame[1] = (byte) (0x80 | payload.length);
+        } else {
+            frame[1] = (byte) (0x80 | 126);
+            frame[2] = (byte) (payload.length >> 8);
+            frame[3] = (byte) payload.length;
+        }
+        System.arraycopy(mask, 0, frame, header, 4);
+        for (int i = 0; i < payload.length; i++) {
+            frame[header + 4 + i] = (byte) (payload[i] ^ mask[i & 3]);
+        }
+        return frame;
+    }
+
+    private static byte[] concat(final byte[]... arrays) {
+        var out = new byte[0];
+        for (final var array : arrays) {
+            final int length = out.length;
+            out = Arrays.copyOf(out, length + array.length);
+            System.arraycopy(array, 0, out, length, array.length);
+        }
+        return out;
+    }
+}
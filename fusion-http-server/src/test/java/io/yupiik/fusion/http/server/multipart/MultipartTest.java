@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.multipart;
+
+import io.yupiik.fusion.http.server.api.HttpException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultipartTest {
+    private static final String BODY = "preamble\r\n" +
+            "--xyz\r\n" +
+            "Content-Disposition: form-data; name=\"title\"\r\n" +
+            "\r\n" +
+            "hello\r\n--xy world\r\n" + // looks like a delimiter but is not
+            "--xyz\r\n" +
+            "Content-Disposition: form-data; name=\"file\"; filename=\"a;b.txt\"; filename*=UTF-8''%C3%A9t%C3%A9.txt\r\n" +
+            "Content-Type: text/plain; charset=UTF-8\r\n" +
+            "\r\n" +
+            "été\r\n" +
+            "--xyz--\r\n" +
+            "epilogue";
+
+    @Test
+    void boundary() {
+        assertEquals("xyz", Multipart.boundary("multipart/form-data; boundary=xyz"));
+        assertEquals("a b", Multipart.boundary("multipart/form-data; charset=utf-8; boundary=\"a b\""));
+        assertNull(Multipart.boundary("multipart/form-data"));
+    }
+
+    @Test
+    void parseWithAnyChunking() {
+        final var bytes = BODY.getBytes(UTF_8);
+        for (int chunk = 1; chunk <= bytes.length; chunk++) {
+            try (final var multipart = parse(new Multipart.Configuration(), bytes, chunk)) {
+                assertEquals(2, multipart.parts().size());
+
+                final var title = multipart.part("title").orElseThrow();
+                assertEquals("hello\r\n--xy world", title.string(), "chunk=" + chunk);
+                assertNull(title.filename());
+
+                final var file = multipart.part("file").orElseThrow();
+                assertEquals("été.txt", file.filename());
+                assertEquals("text/plain; charset=UTF-8", file.contentType());
+                assertEquals("été", file.string());
+                assertTrue(file.isInMemory());
+            }
+        }
+    }
+
+    @Test
+    void spill(@TempDir final Path work) throws IOException {
+        final var content = "0123456789".repeat(1_000);
+        final var body = ("--xyz\r\n" +
+                "Content-Disposition: form-data; name=\"file\"; filename=\"big.txt\"\r\n" +
+                "\r\n" +
+                content + "\r\n" +
+                "--xyz--").getBytes(UTF_8);
+        final Path spilled;
+        try (final var multipart = parse(new Multipart.Configuration().setSpillThreshold(1_024).setTempDirectory(work), body, 4_096)) {
+            final var part = multipart.part("file").orElseThrow();
+            assertFalse(part.isInMemory());
+            assertEquals(content.length(), part.size());
+            try (final var stream = part.open()) {
+                assertArrayEquals(content.getBytes(UTF_8), stream.readAllBytes());
+            }
+            try (final var files = Files.list(work)) {
+                spilled = files.findFirst().orElseThrow();
+            }
+        }
+        assertFalse(Files.exists(spilled)); // closing the multipart deletes it
+    }
+
+    @Test
+    void limits(@TempDir final Path work) throws IOException {
+        final var body = BODY.getBytes(UTF_8);
+        assertStatus(413, new Multipart.Configuration().setMaxTotalSize(10), body);
+        assertStatus(413, new Multipart.Configuration().setMaxPartSize(3).setSpillThreshold(1).setTempDirectory(work), body);
+        assertStatus(413, new Multipart.Configuration().setMaxParts(1), body);
+        assertStatus(400, new Multipart.Configuration(), BODY.substring(0, 100).getBytes(UTF_8)); // truncated
+        try (final var files = Files.list(work)) {
+            assertEquals(0, files.count()); // failures delete the spilled parts
+        }
+    }
+
+    private void assertStatus(final int status, final Multipart.Configuration configuration, final byte[] body) {
+        final var error = assertThrows(CompletionException.class, () -> parse(configuration, body, 7));
+        assertEquals(status, assertInstanceOf(HttpException.class, error.getCause()).getResponse().status());
+    }
+
+    private Multipart parse(final Multipart.Configuration configuration, final byte[] body, final int chunk) {
+        final var parser = new MultipartParser("xyz", configuration);
+        final var cancelled = new AtomicBoolean();
+        parser.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(final long n) {
+                // no-op
+            }
+
+            @Override
+            public void cancel() {
+                cancelled.set(true);
+            }
+        });
+        for (int i = 0; i < body.length && !cancelled.get(); i += chunk) {
+            parser.onNext(ByteBuffer.wrap(body, i, Math.min(chunk, body.length - i)));
+        }
+        if (!cancelled.get()) {
+            parser.onComplete();
+        }
+        return parser.promise().toCompletableFuture().join();
+    }
+}
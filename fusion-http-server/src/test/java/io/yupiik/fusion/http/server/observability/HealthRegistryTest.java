@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static io.yupiik.fusion.http.server.observability.HealthCheck.Status.KO;
+import static io.yupiik.fusion.http.server.observability.HealthCheck.Status.OK;
+import static java.util.concurrent.CompletableFuture.completedFuture;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HealthRegistryTest {
+    @Test
+    void cacheTtl() {
+        final var calls = new AtomicInteger();
+        final var check = new Check(Duration.ofMinutes(1), null, Duration.ZERO,
+                () -> completedFuture(new HealthCheck.Result(OK, Integer.toString(calls.incrementAndGet()))));
+        try (final var registry = new HealthRegistry(List.of(check))) {
+            assertEquals("1", registry.check(check).toCompletableFuture().join().message());
+            assertEquals("1", registry.check(check).toCompletableFuture().join().message());
+            assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    void singleFlight() {
+        final var calls = new AtomicInteger();
+        final var pending = new CompletableFuture<HealthCheck.Result>();
+        final var check = new Check(Duration.ZERO, null, Duration.ZERO, () -> {
+            calls.incrementAndGet();
+            return pending;
+        });
+        try (final var registry = new HealthRegistry(List.of(check))) {
+            final var first = registry.check(check).toCompletableFuture();
+            final var second = registry.check(check).toCompletableFuture();
+            second.cancel(true); // does not cancel the shared evaluation
+            assertFalse(pending.isCancelled());
+            pending.complete(new HealthCheck.Result(OK, null));
+            assertEquals(OK, first.join().status());
+            assertEquals(1, calls.get());
+        }
+    }
+
+    @Test
+    void timeout() {
+        final var pending = new CompletableFuture<HealthCheck.Result>();
+        final var check = new Check(Duration.ZERO, Duration.ofMillis(50), Duration.ZERO, () -> pending);
+        final var metrics = new MetricsRegistry();
+        try (final var registry = new HealthRegistry(List.of(check), metrics)) {
+            final var result = registry.check(check).toCompletableFuture().join();
+            assertEquals(new HealthCheck.Result(KO, "Timeout after 50ms"), result);
+            assertTrue(pending.isCancelled());
+            assertEquals(1, metrics.getOrCreateTimer("fusion_http_server_health_check_duration_seconds{check=\"check\"}").snapshot().count());
+        }
+    }
+
+    @Test
+    void backgroundRefresh() throws InterruptedException {
+        final var calls = new AtomicInteger();
+        final var check = new Check(Duration.ZERO, null, Duration.ofMillis(20),
+                () -> completedFuture(new HealthCheck.Result(OK, Integer.toString(calls.incrementAndGet()))));
+        try (final var registry = new HealthRegistry(List.of(check))) {
+            while (calls.get() < 3) {
+                Thread.sleep(10);
+            }
+            final int before = calls.get();
+            assertEquals(OK, registry.check(check).toCompletableFuture().join().status());
+            assertTrue(calls.get() - before <= 1, "only the scheduler evaluates the check"); // can refresh meanwhile
+        }
+    }
+
+    private record Check(Duration cacheTtl, Duration timeout, Duration refreshInterval,
+                         Supplier<CompletionStage<Result>> impl) implements HealthCheck {
+        @Override
+        public String name() {
+            return "check";
+        }
+
+        @Override
+        public CompletionStage<Result> check() {
+            return impl.get();
+        }
+    }
+}
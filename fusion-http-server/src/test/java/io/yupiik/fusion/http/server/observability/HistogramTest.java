@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HistogramTest {
+    @Test
+    void buckets() {
+        final var histogram = new Histogram(1, 10, 100);
+        Stream.of(-1L, 10L, 11L, 100L, 101L, 5_000L).forEach(histogram::record);
+
+        final var snapshot = histogram.snapshot();
+        assertArrayEquals(new long[]{10, 100}, snapshot.upperBounds());
+        assertArrayEquals(new long[]{2, 4, 6}, snapshot.bucketCounts());
+        assertEquals(6, snapshot.count());
+        assertEquals(5_221, snapshot.sum());
+    }
+
+    @Test
+    void concurrentRecording() throws InterruptedException {
+        final var histogram = new Histogram(1, 1, 2, 3);
+        final var start = new CountDownLatch(1);
+        final var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 8; t++) {
+            final var thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i % 4);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (final var thread : threads) {
+            thread.join();
+        }
+
+        final var snapshot = histogram.snapshot();
+        assertArrayEquals(new long[]{40_000, 60_000, 80_000}, Arrays.copyOf(snapshot.bucketCounts(), 3));
+        assertEquals(80_000, snapshot.count());
+        assertEquals(8 * 2_500 * (0 + 1 + 2 + 3), snapshot.sum());
+    }
+
+    @Test
+    void exponentialBuckets() {
+        assertArrayEquals(new long[]{1, 2, 4, 8}, Histogram.exponentialBuckets(1, 2, 4));
+        assertArrayEquals(new long[]{1, 2, 3, 4}, Histogram.exponentialBuckets(1, 1.1, 4)); // always increasing
+        assertThrows(IllegalArgumentException.class, () -> new Histogram(1, 2, 1));
+    }
+
+    @Test
+    void nameClashReportsTheRegisteredKind() {
+        final var registry = new MetricsRegistry();
+        registry.registerCounter("requests", null);
+        registry.registerReadOnlyGauge("connections", null, () -> 0);
+        assertEquals("'requests' counter already registered",
+                assertThrows(IllegalArgumentException.class, () -> registry.registerTimer("requests")).getMessage());
+        assertEquals("'connections' gauge already registered",
+                assertThrows(IllegalArgumentException.class, () -> registry.getOrCreateTimer("connections")).getMessage());
+        registry.registerTimer("latency");
+        assertEquals("'latency' histogram already registered",
+                assertThrows(IllegalArgumentException.class, () -> registry.getOrCreateCounter("latency", null)).getMessage());
+    }
+
+    @Test
+    void openMetrics() throws IOException {
+        final var registry = new MetricsRegistry();
+        final var histogram = registry.registerHistogram("size{route=\"/a\"}", "bytes", 1, 10, 100);
+        histogram.record(5);
+        histogram.record(50);
+        final var timer = registry.registerTimer("latency");
+        timer.record(1_500_000); // 1.5ms
+        registry.registerCounter("requests", null).add(2);
+
+        final var formatter = new OpenMetricsFormatter();
+        final var output = formatter.apply(registry.entries());
+        final var written = new ByteArrayOutputStream();
+        formatter.write(registry, written);
+        assertEquals(output, written.toString(UTF_8));
+        assertEquals("""
+                # TYPE latency histogram
+                # UNIT latency seconds
+                latency_bucket{le="0.001"} 0
+                latency_bucket{le="0.002"} 1
+                latency_bucket{le="0.004"} 1
+                latency_bucket{le="0.008"} 1
+                latency_bucket{le="0.016"} 1
+                latency_bucket{le="0.032"} 1
+                latency_bucket{le="0.064"} 1
+                latency_bucket{le="0.128"} 1
+                latency_bucket{le="0.256"} 1
+                latency_bucket{le="0.512"} 1
+                latency_bucket{le="1.024"} 1
+                latency_bucket{le="2.048"} 1
+                latency_bucket{le="4.096"} 1
+                latency_bucket{le="8.192"} 1
+                latency_bucket{le="16.384"} 1
+                latency_bucket{le="32.768"} 1
+                latency_bucket{le="+Inf"} 1
+                latency_sum 0.0015
+                latency_count 1
+                # TYPE requests counter
+                requests 2
+                # TYPE size histogram
+                # UNIT size bytes
+                size_bucket{route="/a",le="10"} 1
+                size_bucket{route="/a",le="100"} 2
+                size_bucket{route="/a",le="+Inf"} 2
+                size_sum{route="/a"} 55
+                size_count{route="/a"} 2
+                # EOF""", output);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.observability;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OpenMetricsFormatterTest {
+    @Test
+    void cacheFollowsRegistrations() throws IOException {
+        final var registry = new MetricsRegistry();
+        final var formatter = new OpenMetricsFormatter();
+        final var counter = registry.registerCounter("b_total", null);
+        counter.add(-42);
+        assertEquals("""
+                # TYPE b_total counter
+                b_total -42
+                # EOF""", render(formatter, registry));
+
+        counter.add(50); // values are read at each scrape
+        registry.registerReadOnlyGauge("a{x=\"1\"}", "bytes", () -> Long.MAX_VALUE);
+        assertEquals("""
+                # TYPE a gauge
+                # UNIT a bytes
+                a{x="1"} 9223372036854775807
+                # TYPE b_total counter
+                b_total 8
+                # EOF""", render(formatter, registry));
+
+        registry.unregisterCounter("b_total");
+        assertEquals("""
+                # TYPE a gauge
+                # UNIT a bytes
+                a{x="1"} 9223372036854775807
+                # EOF""", render(formatter, registry));
+        assertEquals(formatter.apply(registry.entries()), render(formatter, registry));
+    }
+
+    @Test
+    void oneHeaderPerFamily() throws IOException {
+        final var registry = new MetricsRegistry();
+        final var formatter = new OpenMetricsFormatter();
+        registry.registerCounter("requests_total{endpoint=\"b\"}", null).add(2);
+        registry.registerCounter("requests_total{endpoint=\"a\"}", null).add(1);
+        registry.registerCounter("requests_total_other", null); // sorted between the labelled series by name only
+        registry.registerTimer("duration{endpoint=\"a\"}");
+        registry.registerTimer("duration{endpoint=\"b\"}");
+
+        final var output = render(formatter, registry);
+        assertFamilies(output);
+        assertEquals("""
+                # TYPE requests_total counter
+                requests_total{endpoint="a"} 1
+                requests_total{endpoint="b"} 2
+                # TYPE requests_total_other counter
+                requests_total_other 0
+                # EOF""", output.substring(output.indexOf("# TYPE requests_total ")));
+        assertEquals(formatter.apply(registry.entries()), output);
+    }
+
+    // minimal OpenMetrics parsing: a family is declared once and its samples follow its metadata
+    private static void assertFamilies(final String output) {
+        final var declared = new HashSet<String>();
+        String family = null;
+        for (final var line : output.split("\n")) {
+            if (line.equals("# EOF")) {
+                break;
+            }
+            if (line.startsWith("# TYPE ")) {
+                family = line.split(" ")[2];
+                assertTrue(declared.add(family), () -> "duplicated family in:\n" + output);
+                continue;
+            }
+            if (line.startsWith("#")) {
+                assertEquals(family, line.split(" ")[2], line);
+                continue;
+            }
+            final var name = line.substring(0, line.indexOf(line.indexOf('{') > 0 ? '{' : ' '));
+            assertNotNull(family, line);
+            assertTrue(name.equals(family) || name.startsWith(family + '_'), () -> line + " not in family " + declared);
+        }
+        assertTrue(output.endsWith("# EOF"), output);
+    }
+
+    private String render(final OpenMetricsFormatter formatter, final MetricsRegistry registry) throws IOException {
+        final var out = new ByteArrayOutputStream();
+        formatter.write(registry, out);
+        return out.toString(UTF_8);
+    }
+}
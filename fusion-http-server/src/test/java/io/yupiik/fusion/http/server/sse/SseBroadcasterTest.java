@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.sse;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SseBroadcasterTest {
+    @Test
+    void encode() {
+        assertEquals("id: 1\nevent: update\ndata: a\ndata: b\ndata: c\n\n", string(new SseEvent("1", "update", "a\nb\r\nc").encode()));
+        assertEquals("data: x\n\n", string(SseEvent.of("x").encode()));
+        assertThrows(IllegalArgumentException.class, () -> new SseEvent("1\ndata: injected", null, "x"));
+        assertThrows(IllegalArgumentException.class, () -> SseEvent.of("update\r", "x"));
+    }
+
+    @Test
+    void aBlockedClientDoesNotBlockTheProducers() throws Exception {
+        final var entered = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final Client client = new Client() {
+            @Override
+            public void onNext(final ByteBuffer item) {
+                super.onNext(item);
+                entered.countDown();
+                try { // a subscriber writing synchronously to a stuck socket for example
+                    release.await();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        try (final var broadcaster = new SseBroadcaster(new SseBroadcaster.Configuration().setHeartbeat(null))) {
+            broadcaster.connect((String) null).subscribe(client);
+            final var first = new Thread(() -> broadcaster.broadcast("1"));
+            first.start();
+            assertTrue(entered.await(1, MINUTES));
+
+            // the first producer is stuck sending, this one only queues its event
+            assertEquals("2", CompletableFuture.supplyAsync(() -> broadcaster.broadcast("2")).get(1, MINUTES));
+
+            release.countDown();
+            first.join(MINUTES.toMillis(1));
+            assertEquals(List.of("id: 1\ndata: 1\n\n", "id: 2\ndata: 2\n\n"), client.events); // sent in order by the first one
+        }
+    }
+
+    @Test
+    void fanOutSharesTheEncodedEvent() {
+        final var buffers = new ArrayList<ByteBuffer>();
+        try (final var broadcaster = new SseBroadcaster(new SseBroadcaster.Configuration().setHeartbeat(null))) {
+            final var clients = List.of(new Client(), new Client(), new Client());
+            clients.forEach(c -> broadcaster.connect((String) null).subscribe(c));
+            assertEquals(3, broadcaster.size());
+
+            broadcaster.broadcast("tick", "1");
+            for (final var client : clients) {
+                assertEquals(List.of("id: 1\nevent: tick\ndata: 1\n\n"), client.events);
+                buffers.add(client.buffers.get(0));
+            }
+            // views of the shared encoded event, it can't be modified by a client
+            assertTrue(buffers.stream().allMatch(ByteBuffer::isReadOnly));
+            assertNotSame(buffers.get(0), buffers.get(1));
+
+            clients.get(0).subscription.cancel();
+            assertEquals(2, broadcaster.size());
+        }
+    }
+
+    @Test
+    void replay() {
+        try (final var broadcaster = new SseBroadcaster(new SseBroadcaster.Configuration().setHeartbeat(null).setReplaySize(2))) {
+            broadcaster.broadcast("a");
+            broadcaster.broadcast("b");
+            broadcaster.broadcast("c");
+
+            final var client = new Client();
+            broadcaster.connect("2").subscribe(client);
+            assertEquals(List.of("id: 3\ndata: c\n\n"), client.events);
+
+            final var tooOld = new Client();
+            broadcaster.connect("1").subscribe(tooOld);
+            assertEquals(List.of(), tooOld.events);
+
+            broadcaster.broadcast("d");
+            assertEquals(List.of("id: 3\ndata: c\n\n", "id: 4\ndata: d\n\n"), client.events);
+            assertEquals(List.of("id: 4\ndata: d\n\n"), tooOld.events);
+        }
+    }
+
+    @Test
+    void slowConsumer() {
+        final var dropOldest = new SseEmitter(2, SlowConsumerPolicy.DROP_OLDEST);
+        final var dropNewest = new SseEmitter(2, SlowConsumerPolicy.DROP_NEWEST);
+        final var disconnect = new SseEmitter(2, SlowConsumerPolicy.DISCONNECT);
+        final var clients = List.of(new Client(0), new Client(0), new Client(0));
+        dropOldest.subscribe(clients.get(0));
+        dropNewest.subscribe(clients.get(1));
+        disconnect.subscribe(clients.get(2));
+        for (final var data : List.of("1", "2", "3")) {
+            final var event = SseEvent.of(data).encode();
+            dropOldest.send(event);
+            dropNewest.send(event);
+            disconnect.send(event);
+        }
+        assertTrue(disconnect.isClosed());
+        assertTrue(clients.get(2).completed);
+        assertEquals(1, dropOldest.dropped());
+        assertFalse(dropNewest.send(SseEvent.of("4")));
+
+        clients.forEach(c -> c.subscription.request(10));
+        assertEquals(List.of("data: 2\n\n", "data: 3\n\n"), clients.get(0).events);
+        assertEquals(List.of("data: 1\n\n", "data: 2\n\n"), clients.get(1).events);
+        assertEquals(List.of(), clients.get(2).events);
+    }
+
+    private static String string(final ByteBuffer buffer) {
+        final var bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    private static class Client implements Flow.Subscriber<ByteBuffer> {
+        private final long initialRequest;
+        private final List<String> events = new ArrayList<>();
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private boolean completed;
+
+        Client() {
+            this(Long.MAX_VALUE);
+        }
+
+        private Client(final long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(final Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (initialRequest > 0) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(final ByteBuffer item) {
+            buffers.add(item);
+            events.add(string(item));
+        }
+
+        @Override
+        public void onError(final Throwable throwable) {
+            throw new IllegalStateException(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.http.server.test;
+
+import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.api.Response;
+import io.yupiik.fusion.http.server.impl.io.RequestBodyAggregator;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static java.lang.String.CASE_INSENSITIVE_ORDER;
+
+/**
+ * Test fixtures for the code working on the {@link Request} API without a server.
+ */
+public final class Requests {
+    private Requests() {
+        // no-op
+    }
+
+    public static String body(final Response response) {
+        return new String(new RequestBodyAggregator(response.body()).promise().toCompletableFuture().join());
+    }
+
+    public static Request request(final String method, final String path) {
+        return request(method, path, Map.of());
+    }
+
+    /**
+     * @param method  the HTTP method.
+     * @param path    the request path.
+     * @param headers the request headers, looked up ignoring the case as on a real request.
+     * @return a request supporting the method, path, query (always {@code null}), headers and attributes.
+     */
+    public static Request request(final String method, final String path, final Map<String, String> headers) {
+        final var normalizedHeaders = new TreeMap<String, String>(CASE_INSENSITIVE_ORDER);
+        normalizedHeaders.putAll(headers);
+        final var attributes = new HashMap<String, Object>();
+        return (Request) Proxy.newProxyInstance(
+                Thread.currentThread().getContextClassLoader(), new Class<?>[]{Request.class},
+                (proxy, m, args) -> switch (m.getName()) {
+                    case "method" -> method;
+                    case "path" -> path;
+                    case "query" -> null;
+                    case "header" -> normalizedHeaders.get((String) args[0]);
+                    case "setAttribute" -> attributes.put((String) args[0], args[1]);
+                    case "attribute" -> attributes.get((String) args[0]);
+                    case "toString" -> method + " " + path;
+                    default -> throw new UnsupportedOperationException(m.toString());
+                });
+    }
+}
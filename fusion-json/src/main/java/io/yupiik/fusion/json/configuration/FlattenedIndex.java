@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.json.configuration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// immutable flattened configuration: keys are sorted and front coded - each key only stores the suffix it does not
+// share with the previous one - in a single char[] so deep configurations do not hold thousands of redundant prefixes.
+// Every RESTART_INTERVAL keys a full key is stored, it is what the lookup binary searches before scanning its block.
+final class FlattenedIndex {
+    private static final int RESTART_INTERVAL = 16;
+
+    private final char[] suffixes;
+    private final int[] suffixOffsets; // one more than the number of keys, the last one is the end of the last suffix
+    private final int[] sharedPrefixes;
+    private final String[] values;
+
+    private FlattenedIndex(final char[] suffixes, final int[] suffixOffsets, final int[] sharedPrefixes, final String[] values) {
+        this.suffixes = suffixes;
+        this.suffixOffsets = suffixOffsets;
+        this.sharedPrefixes = sharedPrefixes;
+        this.values = values;
+    }
+
+    static FlattenedIndex of(final Map<String, String> entries) {
+        final var builder = new Builder();
+        entries.forEach(builder::put);
+        return builder.build(Function.identity());
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    String get(final String key) {
+        final int size = values.length;
+        if (size == 0) {
+            return null;
+        }
+
+        // greatest restart key lower or equal to the looked up key
+        int low = 0;
+        int high = (size - 1) / RESTART_INTERVAL;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (compareRestartKey(mid * RESTART_INTERVAL, key) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int index = low * RESTART_INTERVAL;
+        final int keyLength = key.length();
+        int matched = 0; // common prefix length between the key and the current entry which is lower than the key
+        int from = suffixOffsets[index];
+        int to = suffixOffsets[index + 1];
+        final int end = Math.min(size, index + RESTART_INTERVAL);
+        while (true) {
+            while (from < to && matched < keyLength && suffixes[from] == key.charAt(matched)) {
+                from++;
+                matched++;
+            }
+            if (from == to && matched == keyLength) {
+                return values[index];
+            }
+            if (from < to && (matched == keyLength || suffixes[from] > key.charAt(matched))) {
+                return null; // current entry is greater than the key, keys are sorted so it is not there
+            }
+
+            // skip the entries which still differ from the key at the same position
+            do {
+                index++;
+                if (index == end) {
+                    return null;
+                }
+            } while (sharedPrefixes[index] > matched);
+            if (sharedPrefixes[index] < matched) { // diverges from the previous entry before, with a greater char
+                return null;
+            }
+            from = suffixOffsets[index];
+            to = suffixOffsets[index + 1];
+        }
+    }
+
+    private int compareRestartKey(final int index, final String key) {
+        final int from = suffixOffsets[index];
+        final int length = suffixOffsets[index + 1] - from;
+        final int max = Math.min(length, key.length());
+        for (int i = 0; i < max; i++) {
+            final char c = suffixes[from + i];
+            final char k = key.charAt(i);
+            if (c != k) {
+                return c - k;
+            }
+        }
+        return length - key.length();
+    }
+
+    private static int commonPrefix(final String previous, final String key) {
+        final int max = Math.min(previous.length(), key.length());
+        int i = 0;
+        while (i < max && previous.charAt(i) == key.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    // collects the entries in document order, a key put twice keeps its last value like a map would
+    static final class Builder {
+        private final List<String> keys = new ArrayList<>();
+        private final List<String> values = new ArrayList<>();
+
+        void put(final String key, final String value) {
+            keys.add(key);
+            values.add(value);
+        }
+
+        int size() {
+            return keys.size();
+        }
+
+        // removes the entries put since from and returns them as key/value pairs, used to re-key them
+        List<String> removeFrom(final int from) {
+            final int size = keys.size();
+            final var removed = new ArrayList<String>((size - from) * 2);
+            for (int i = from; i < size; i++) {
+                removed.add(keys.get(i));
+                removed.add(values.get(i));
+            }
+            keys.subList(from, size).clear();
+            values.subList(from, size).clear();
+            return removed;
+        }
+
+        FlattenedIndex build(final Function<String, String> keyNormalizer) {
+            keys.replaceAll(keyNormalizer::apply);
+
+            final var order = new Integer[keys.size()];
+            for (int i = 0; i < order.length; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, (a, b) -> keys.get(a).compareTo(keys.get(b))); // stable so duplicates stay in put order
+
+            int size = 0;
+            for (int i = 0; i < order.length; i++) {
+                if (i + 1 == order.length || !keys.get(order[i]).equals(keys.get(order[i + 1]))) {
+                    order[size++] = order[i];
+                }
+            }
+
+            final var sharedPrefixes = new int[size];
+            final var suffixOffsets = new int[size + 1];
+            final var sortedValues = new String[size];
+            final var suffixes = new StringBuilder(size * 8);
+            var previous = "";
+            for (int i = 0; i < size; i++) {
+                final var key = keys.get(order[i]);
+                final int shared = i % RESTART_INTERVAL == 0 ? 0 : commonPrefix(previous, key);
+                sharedPrefixes[i] = shared;
+                suffixOffsets[i] = suffixes.length();
+                suffixes.append(key, shared, key.length());
+                sortedValues[i] = values.get(order[i]);
+                previous = key;
+            }
+            suffixOffsets[size] = suffixes.length();
+
+            final var chars = new char[suffixes.length()];
+            suffixes.getChars(0, chars.length, chars, 0);
+            return new FlattenedIndex(chars, suffixOffsets, sharedPrefixes, sortedValues);
+        }
+    }
+}
@@ -17,37 +17,74 @@ package io.yupiik.fusion.json.configuration;
 
 import io.yupiik.fusion.framework.api.configuration.impl.MapConfigSource;
 import io.yupiik.fusion.framework.api.io.ReaderSupplier;
-import io.yupiik.fusion.json.internal.JsonMapperImpl;
+import io.yupiik.fusion.json.deserialization.AvailableCharArrayReader;
+import io.yupiik.fusion.json.internal.io.FastUtf8Reader;
+import io.yupiik.fusion.json.internal.parser.BufferProvider;
+import io.yupiik.fusion.json.internal.parser.JsonParser;
+import io.yupiik.fusion.json.spi.Parser;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringWriter;
 import java.io.UncheckedIOException;
-import java.util.Collection;
-import java.util.LinkedHashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Properties;
 import java.util.function.Function;
+import java.util.zip.CRC32C;
 
-import static java.util.Optional.empty;
+import static io.yupiik.fusion.json.spi.Parser.Event.END_ARRAY;
+import static io.yupiik.fusion.json.spi.Parser.Event.END_OBJECT;
+import static io.yupiik.fusion.json.spi.Parser.Event.KEY_NAME;
+import static io.yupiik.fusion.json.spi.Parser.Event.START_ARRAY;
+import static io.yupiik.fusion.json.spi.Parser.Event.START_OBJECT;
+import static io.yupiik.fusion.json.spi.Parser.Event.VALUE_TRUE;
 import static java.util.function.Function.identity;
 import static java.util.stream.Collectors.joining;
 
 // do not use JsonMapper injection since this one will depend on the configuration
 public class JsonConfigurationSource extends MapConfigSource {
+    private static final int MAX_STRING_LENGTH = 8 * 1024; // JsonMapper default
+
     private final Function<String, String> keyNormalizer;
+    private final Path file; // when set the source can be reloaded and its size/last modified date are checked first
+    private final ReaderSupplier supplier; // when set (and no file) the source can be reloaded, only the checksum is checked
+    private volatile Snapshot snapshot;
+
+    public JsonConfigurationSource(final Path file, final Function<String, String> keyNormalizer) {
+        super(Map.of()); // entries are in the snapshot index
+        this.keyNormalizer = keyNormalizer;
+        this.file = file;
+        this.supplier = null;
+        final var content = readFile(file);
+        this.snapshot = load(FastUtf8Reader.toChars(content), checksum(content), content.length, stat(file));
+    }
 
     public JsonConfigurationSource(final ReaderSupplier supplier, final Function<String, String> keyNormalizer) {
-        super(flatten(supplier, true, keyNormalizer));
+        super(Map.of());
         this.keyNormalizer = keyNormalizer;
+        this.file = null;
+        this.supplier = supplier;
+        final var content = read(supplier, true);
+        this.snapshot = load(content, checksum(content), content.length, null);
     }
 
     public JsonConfigurationSource(final Reader reader, final Function<String, String> keyNormalizer) {
-        super(flatten(() -> reader, false, keyNormalizer));
+        super(Map.of());
         this.keyNormalizer = keyNormalizer;
+        this.file = null;
+        this.supplier = null;
+        final var content = read(() -> reader, false);
+        this.snapshot = load(content, 0, content.length, null);
+    }
+
+    public JsonConfigurationSource(final Path file) {
+        this(file, identity());
     }
 
     public JsonConfigurationSource(final ReaderSupplier supplier) {
@@ -60,122 +97,310 @@ public class JsonConfigurationSource extends MapConfigSource {
 
     @Override
     public String get(final String key) {
-        return super.get(keyNormalizer.apply(key));
+        return snapshot.index().get(keyNormalizer.apply(key));
+    }
+
+    /**
+     * Re-reads the underlying JSON if it changed, it is a no-op for sources created from a {@link Reader}.
+     * For a file source, the size and last modified date are checked first then the content checksum so the document
+     * is only parsed and flattened again when its content actually changed.
+     *
+     * @return {@code true} if the configuration was reloaded.
+     */
+    public synchronized boolean reload() {
+        if (file == null && supplier == null) {
+            return false;
+        }
+
+        final var current = snapshot;
+        if (file != null) {
+            final var state = stat(file);
+            if (state.equals(current.fileState())) {
+                return false;
+            }
+            final var content = readFile(file);
+            final long checksum = checksum(content);
+            if (checksum == current.checksum() && content.length == current.length()) { // touched but same content
+                snapshot = new Snapshot(current.index(), checksum, content.length, state);
+                return false;
+            }
+            snapshot = load(FastUtf8Reader.toChars(content), checksum, content.length, state);
+            return true;
+        }
+
+        final var content = read(supplier, true);
+        final long checksum = checksum(content);
+        if (checksum == current.checksum() && content.length == current.length()) {
+            return false;
+        }
+        snapshot = load(content, checksum, content.length, null);
+        return true;
+    }
+
+    private Snapshot load(final char[] content, final long checksum, final int length, final FileState state) {
+        final var index = new FlattenedIndex.Builder();
+        try (final var parser = new JsonParser(
+                new AvailableCharArrayReader(content), MAX_STRING_LENGTH, new BufferProvider(MAX_STRING_LENGTH, -1), true)) {
+            if (parser.hasNext()) {
+                new Flattener(parser, index).value("", parser.next());
+            }
+        }
+        return new Snapshot(index.build(keyNormalizer), checksum, length, state);
+    }
+
+    private static long checksum(final byte[] content) {
+        final var crc = new CRC32C();
+        crc.update(content);
+        return crc.getValue();
     }
 
-    private static Map<String, String> flatten(final ReaderSupplier supplier, final boolean close,
-                                               final Function<String, String> keyNormalizer) {
-        try (final var mapper = new JsonMapperImpl(List.of(), key -> empty())) {
-            try(final var reader = close ? new BufferedReader(supplier.get()) : new BufferedReader(supplier.get()) {
-                @Override
-                public void close() {
-                    // no-op
+    private static long checksum(final char[] content) {
+        final var crc = new CRC32C();
+        final var bytes = new byte[Math.min(8 * 1024, content.length * 2)];
+        int i = 0;
+        while (i < content.length) {
+            int length = 0;
+            while (length < bytes.length && i < content.length) {
+                final char c = content[i++];
+                bytes[length++] = (byte) (c >>> 8);
+                bytes[length++] = (byte) c;
+            }
+            crc.update(bytes, 0, length);
+        }
+        return crc.getValue();
+    }
+
+    private static FileState stat(final Path file) {
+        try {
+            return new FileState(Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static byte[] readFile(final Path file) {
+        try {
+            return Files.readAllBytes(file);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // reads the chars as they come, the parser adopts the (exact size) array so there is no other copy
+    private static char[] read(final ReaderSupplier supplier, final boolean close) {
+        try {
+            final var reader = supplier.get();
+            try {
+                var chars = new char[8 * 1024];
+                int length = 0;
+                int read;
+                while ((read = reader.read(chars, length, chars.length - length)) >= 0) {
+                    length += read;
+                    if (length == chars.length) {
+                        chars = Arrays.copyOf(chars, length * 2);
+                    }
+                }
+                return Arrays.copyOf(chars, length);
+            } finally {
+                if (close) {
+                    reader.close();
                 }
-            }) {
-                final var raw = mapper.fromString(Object.class, reader.lines().collect(joining("\n")));
-                final var result = new LinkedHashMap<String, String>();
-                doFlatten("", raw, result, keyNormalizer);
-                return result;
             }
         } catch (final IOException e) {
             throw new UncheckedIOException(e);
         }
     }
 
-    private static String key(final String prefix, final String suffix,
-                              final Function<String, String> keyNormalizer) {
-        return keyNormalizer.apply(prefix.isEmpty() ? suffix : prefix + "." + suffix);
+    private static boolean isStructure(final Parser.Event event) {
+        return event == START_OBJECT || event == START_ARRAY;
+    }
+
+    private record FileState(long size, long lastModified) {
+    }
+
+    private record Snapshot(FlattenedIndex index, long checksum, int length, FileState fileState) {
     }
 
-    private static void doFlatten(final String prefix, final Object value, final Map<String, String> result,
-                                  final Function<String, String> keyNormalizer) {
-        if (value == null) {
-            return;
+    // flattens the parser events directly in the index (raw keys, they are normalized when the index is built),
+    // only the primitive items of the current array or $asList object are buffered since their output depends on
+    // the presence of a nested structure
+    private record Flattener(JsonParser parser, FlattenedIndex.Builder index) {
+        private void value(final String prefix, final Parser.Event event) {
+            switch (event) {
+                case VALUE_NULL -> {
+                }
+                case START_OBJECT -> object(prefix);
+                case START_ARRAY -> array(prefix);
+                default -> index.put(prefix, primitive(event));
+            }
         }
 
-        if (isPrimitive(value)) {
-            result.put(prefix, value.toString());
-            return;
+        private String primitive(final Parser.Event event) {
+            return switch (event) {
+                case VALUE_NULL -> null;
+                case VALUE_TRUE -> "true";
+                case VALUE_FALSE -> "false";
+                case VALUE_STRING -> parser.getString();
+                case VALUE_NUMBER -> parser.getBigDecimal().toString();
+                default -> throw new IllegalStateException("Invalid event: " + event);
+            };
         }
 
-        if (value instanceof Collection<?> collection) {
-            if (collection.isEmpty()) {
-                result.put(key(prefix, "length", keyNormalizer), "0");
-                return;
+        private void object(final String prefix) {
+            var event = parser.next();
+            if (event == KEY_NAME && "$asList".equals(parser.getString())) {
+                // this fake attribute enables to serialize in a format understood by the configuration factories
+                // for Map<String, Object> types else it will just look like nested objects
+                final var asList = parser.next();
+                if (asList == VALUE_TRUE) {
+                    asList(new ListEntries(prefix));
+                    return;
+                }
+                value(key(prefix, "$asList"), asList);
+                event = parser.next();
             }
 
-            final var allPrimitives = collection.stream().allMatch(JsonConfigurationSource::isPrimitive);
-            if (allPrimitives) {
-                result.put(prefix, collection.stream()
-                        .filter(Objects::nonNull)
-                        .map(Object::toString)
-                        .collect(joining(", ")));
-            } else {
-                result.put(key(prefix, "length", keyNormalizer), Integer.toString(collection.size()));
-                var index = 0;
-                for (final var item : collection) {
-                    doFlatten(key(prefix, Integer.toString(index), keyNormalizer), item, result, keyNormalizer);
-                    index++;
+            final int start = index.size();
+            final var attributes = new ArrayList<Attribute>();
+            while (event != END_OBJECT) {
+                final var name = parser.getString();
+                final var next = parser.next();
+                if (next == VALUE_TRUE && "$asList".equals(name)) { // late $asList, the attributes already flattened are re-keyed
+                    final var entries = new ListEntries(prefix);
+                    final var flattened = index.removeFrom(start);
+                    for (int i = 0; i < attributes.size(); i++) {
+                        final var attribute = attributes.get(i);
+                        final int from = 2 * (attribute.from() - start);
+                        final int to = i + 1 < attributes.size() ? 2 * (attributes.get(i + 1).from() - start) : flattened.size();
+                        if (!attribute.structure()) {
+                            entries.primitive(attribute.name(), from == to ? null : flattened.get(from + 1));
+                            continue;
+                        }
+                        final var valuePrefix = entries.structure(attribute.name());
+                        final int keyStart = key(prefix, attribute.name()).length();
+                        for (int entry = from; entry < to; entry += 2) {
+                            index.put(valuePrefix + flattened.get(entry).substring(keyStart), flattened.get(entry + 1));
+                        }
+                    }
+                    asList(entries);
+                    return;
                 }
+                attributes.add(new Attribute(name, index.size(), isStructure(next)));
+                value(key(prefix, name), next);
+                event = parser.next();
             }
-            return;
         }
 
-        if (value instanceof Map<?, ?> map) {
-            @SuppressWarnings("unchecked") final var stringMap = (Map<String, Object>) map;
-
-            // this fake attribute enables to serialize in a format understood by the configurationfactories
-            // for Map<String, Object> types else it will just look like nested objects
-            final var asListRaw = stringMap.get("$asList");
-            final var asList = asListRaw instanceof Boolean b && b;
-
-            if (asList) {
-                final var entries = new LinkedHashMap<>(stringMap);
-                entries.remove("$asList");
+        private void asList(final ListEntries entries) {
+            Parser.Event event;
+            while ((event = parser.next()) != END_OBJECT) {
+                final var name = parser.getString();
+                final var next = parser.next();
+                if (isStructure(next)) {
+                    value(entries.structure(name), next);
+                } else {
+                    entries.primitive(name, primitive(next));
+                }
+            }
+            entries.end();
+        }
 
-                final var allPrimitives = entries.values().stream()
-                        .allMatch(v -> v == null || v instanceof Boolean || v instanceof String || v instanceof Number);
-                if (allPrimitives) {
-                    final var props = new Properties();
-                    for (final var e : entries.entrySet()) {
-                        final var v = e.getValue();
-                        if (v != null) {
-                            props.setProperty(e.getKey(), v.toString());
+        private void array(final String prefix) {
+            List<String> primitives = new ArrayList<>(); // until a structure is met, then items are indexed
+            int count = 0;
+            Parser.Event event;
+            while ((event = parser.next()) != END_ARRAY) {
+                if (primitives != null && !isStructure(event)) {
+                    primitives.add(primitive(event));
+                } else {
+                    if (primitives != null) {
+                        for (int i = 0; i < primitives.size(); i++) {
+                            final var primitive = primitives.get(i);
+                            if (primitive != null) {
+                                index.put(key(prefix, Integer.toString(i)), primitive);
+                            }
                         }
+                        primitives = null;
                     }
-                    try (final var sw = new StringWriter()) {
-                        props.store(sw, null);
-                        result.put(prefix, sw.toString());
-                    } catch (final IOException e) {
-                        throw new UncheckedIOException(e);
-                    }
+                    value(key(prefix, Integer.toString(count)), event);
+                }
+                count++;
+            }
+
+            if (primitives == null || count == 0) {
+                index.put(key(prefix, "length"), Integer.toString(count));
+            } else {
+                index.put(prefix, primitives.stream().filter(Objects::nonNull).collect(joining(", ")));
+            }
+        }
+
+        private String key(final String prefix, final String suffix) {
+            return prefix.isEmpty() ? suffix : prefix + "." + suffix;
+        }
+
+        private record Attribute(String name, int from, boolean structure) {
+        }
+
+        // the entries of a $asList object, primitives are buffered until a structure is met
+        private final class ListEntries {
+            private final String prefix;
+            private List<String> primitives = new ArrayList<>(); // name/value pairs
+            private int count;
+
+            private ListEntries(final String prefix) {
+                this.prefix = prefix;
+            }
+
+            private void primitive(final String name, final String value) {
+                if (primitives != null) {
+                    primitives.add(name);
+                    primitives.add(value);
                 } else {
-                    result.put(key(prefix, "length", keyNormalizer), Integer.toString(entries.size()));
-                    var index = 0;
-                    for (final var entry : entries.entrySet()) {
-                        doFlatten(key(prefix, index + ".key", keyNormalizer), entry.getKey(), result, keyNormalizer);
-                        doFlatten(key(prefix, index + ".value", keyNormalizer), entry.getValue(), result, keyNormalizer);
-                        index++;
+                    index.put(key(prefix, count + ".key"), name);
+                    if (value != null) {
+                        index.put(key(prefix, count + ".value"), value);
                     }
                 }
-            } else {
-                for (final var entry : stringMap.entrySet()) {
-                    final var entryKey = entry.getKey();
-                    final var entryValue = entry.getValue();
-                    if (entryValue == null) {
-                        continue;
+                count++;
+            }
+
+            // returns the prefix of the entry value
+            private String structure(final String name) {
+                if (primitives != null) {
+                    for (int i = 0; i < primitives.size(); i += 2) {
+                        final int entry = i / 2;
+                        index.put(key(prefix, entry + ".key"), primitives.get(i));
+                        final var primitive = primitives.get(i + 1);
+                        if (primitive != null) {
+                            index.put(key(prefix, entry + ".value"), primitive);
+                        }
                     }
-                    if (isPrimitive(entryValue)) {
-                        result.put(key(prefix, entryKey, keyNormalizer), entryValue.toString());
-                    } else {
-                        doFlatten(key(prefix, entryKey, keyNormalizer), entryValue, result, keyNormalizer);
+                    primitives = null;
+                }
+                index.put(key(prefix, count + ".key"), name);
+                return key(prefix, count++ + ".value");
+            }
+
+            private void end() {
+                if (primitives == null) {
+                    index.put(key(prefix, "length"), Integer.toString(count));
+                    return;
+                }
+
+                final var props = new Properties();
+                for (int i = 0; i < primitives.size(); i += 2) {
+                    final var v = primitives.get(i + 1);
+                    if (v != null) {
+                        props.setProperty(primitives.get(i), v);
                     }
                 }
+                try (final var sw = new StringWriter()) {
+                    props.store(sw, null);
+                    index.put(prefix, sw.toString());
+                } catch (final IOException e) {
+                    throw new UncheckedIOException(e);
+                }
             }
         }
     }
-
-    private static boolean isPrimitive(final Object v) {
-        return v == null || v instanceof Boolean || v instanceof String || v instanceof Number;
-    }
 }
@@ -153,7 +153,7 @@ public class JsonMapperImpl implements JsonMapper {
 
     @Override
     public <A> A fromBytes(final Type type, final byte[] bytes) {
-        try (final var reader = new AvailableCharArrayReader(utf8ToChars(bytes))) {
+        try (final var reader = new AvailableCharArrayReader(FastUtf8Reader.toChars(bytes))) {
             return read(type, reader);
         }
     }
@@ -474,30 +474,6 @@ public class JsonMapperImpl implements JsonMapper {
         return writer instanceof ExtendedWriter ew ? ew : new ExtendedWriter(writer);
     }
 
-    // JSON payloads are mostly ASCII so inflate bytes directly, only the (rare) non ASCII tail
-    // goes through the JDK UTF-8 decoder - way cheaper than an InputStreamReader/StreamDecoder chain
-    private static char[] utf8ToChars(final byte[] bytes) {
-        final int length = bytes.length;
-        final var chars = new char[length];
-        for (int i = 0; i < length; i++) {
-            final byte b = bytes[i];
-            if (b < 0) {
-                final var suffix = new String(bytes, i, length - i, UTF_8);
-                final int suffixLength = suffix.length();
-                if (i + suffixLength == length) {
-                    suffix.getChars(0, suffixLength, chars, i);
-                    return chars;
-                }
-                final var exact = new char[i + suffixLength];
-                System.arraycopy(chars, 0, exact, 0, i);
-                suffix.getChars(0, suffixLength, exact, i);
-                return exact;
-            }
-            chars[i] = (char) b;
-        }
-        return chars;
-    }
-
     private static int maxStringLength(final Configuration configuration) {
         return configuration.get("fusion.json.maxStringLength")
                 .map(Integer::parseInt)
@@ -519,8 +495,11 @@ public class JsonMapperImpl implements JsonMapper {
         final boolean autoAdjust = configuration.get("fusion.json.bufferAutoAdjust")
                 .map(Boolean::parseBoolean)
                 .orElse(true);
+        final boolean lenientSkip = configuration.get("fusion.json.lenientSkip")
+                .map(Boolean::parseBoolean)
+                .orElse(false);
         final var bufferFactory = createBufferProvider(configuration);
-        return reader -> new JsonParser(reader, maxStringLength, bufferFactory, autoAdjust);
+        return reader -> new JsonParser(reader, maxStringLength, bufferFactory, autoAdjust, lenientSkip);
     }
 
     private static class ConfiguringImpl implements Configuring {
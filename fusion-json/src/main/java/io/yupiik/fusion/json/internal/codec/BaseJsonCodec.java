@@ -16,6 +16,7 @@
 package io.yupiik.fusion.json.internal.codec;
 
 import io.yupiik.fusion.json.internal.JsonStrings;
+import io.yupiik.fusion.json.internal.parser.ReplayingParser;
 import io.yupiik.fusion.json.serialization.ExtendedWriter;
 import io.yupiik.fusion.json.serialization.JsonCodec;
 import io.yupiik.fusion.json.spi.Parser;
@@ -180,7 +181,7 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
     }
 
     // digits are written from the context scratch buffer to avoid an allocation per numeric attribute
-    private static void writeLong(final ExtendedWriter writer, final long value, final SerializationContext context) throws IOException {
+    static void writeLong(final ExtendedWriter writer, final long value, final SerializationContext context) throws IOException {
         if (value == Long.MIN_VALUE) { // can't be negated
             writer.write(LONG_MIN_VALUE);
             return;
@@ -546,6 +547,95 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
         return instance;
     }
 
+    // reads a polymorphic model: when the discriminator is the first attribute the parser is just rewound on START_OBJECT
+    // and the subtype codec reads the rest of the object in place, else the attributes preceding it are buffered as events
+    // and replayed to the subtype codec (no intermediate Map<String, Object> nor second parsing)
+    protected <A> A readPolymorphic(final DeserializationContext context,
+                                    final char[][] discriminator, final IntUnaryOperator discriminatorLength,
+                                    final char[][] values, final IntUnaryOperator valueLengths,
+                                    final boolean requireFirst, final SubtypeReader<A> subtypes) throws IOException {
+        final var parser = context.parser();
+        parser.enforceNext(Parser.Event.START_OBJECT);
+
+        var event = nextEvent(parser);
+        if (event == Parser.Event.KEY_NAME && parser.matchString(discriminator, discriminatorLength) == 0) {
+            final int index = readDiscriminatorValue(parser, values, valueLengths);
+            parser.rewind(Parser.Event.START_OBJECT);
+            return subtypes.read(index, context);
+        }
+        if (requireFirst) {
+            throw new IllegalArgumentException("Expected discriminator '" + new String(discriminator[0]) + "' as first attribute");
+        }
+
+        final var replay = new ReplayingParser(parser);
+        replay.append(Parser.Event.START_OBJECT, null);
+        int depth = 0;
+        while (true) {
+            switch (event) {
+                case KEY_NAME -> {
+                    if (depth == 0 && parser.matchString(discriminator, discriminatorLength) == 0) {
+                        final int index = readDiscriminatorValue(parser, values, valueLengths);
+                        return subtypes.read(index, new DeserializationContext(replay, context::codec));
+                    }
+                    replay.append(event, parser.getString());
+                }
+                case VALUE_STRING, VALUE_NUMBER -> replay.append(event, parser.getString());
+                case START_OBJECT, START_ARRAY -> {
+                    depth++;
+                    replay.append(event, null);
+                }
+                case END_ARRAY -> {
+                    depth--;
+                    replay.append(event, null);
+                }
+                case END_OBJECT -> {
+                    if (depth == 0) {
+                        throw new IllegalArgumentException("Missing discriminator '" + new String(discriminator[0]) + "'");
+                    }
+                    depth--;
+                    replay.append(event, null);
+                }
+                default -> replay.append(event, null);
+            }
+            event = nextEvent(parser);
+        }
+    }
+
+    private static Parser.Event nextEvent(final Parser parser) {
+        if (!parser.hasNext()) {
+            throw new IllegalArgumentException("Object didn't end (missing END_OBJECT)");
+        }
+        return parser.next();
+    }
+
+    private static int readDiscriminatorValue(final Parser parser, final char[][] values,
+                                              final IntUnaryOperator valueLengths) {
+        final var event = nextEvent(parser);
+        if (event != Parser.Event.VALUE_STRING) {
+            throw new IllegalArgumentException("Expected a string discriminator but got " + event);
+        }
+        final int index = parser.matchString(values, valueLengths);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown discriminator value '" + parser.getString() + "'");
+        }
+        return index;
+    }
+
+    @SuppressWarnings("unchecked")
+    protected <A> void writePolymorphic(final A instance, final SerializationContext context) throws IOException {
+        final var codec = (JsonCodec<A>) context.codec(instance.getClass());
+        if (codec == null) {
+            throw new IllegalArgumentException("No codec for '" + instance.getClass().getName() + "'");
+        }
+        codec.write(instance, context); // subtype codecs write the discriminator
+    }
+
+    // subtypes are known at build time so the generated implementation is a switch on the discriminator value index
+    @FunctionalInterface
+    protected interface SubtypeReader<A> {
+        A read(int index, DeserializationContext context) throws IOException;
+    }
+
     public enum ContainerKind {
         VALUE, LIST, SET, MAP, MAP_LIST
     }
@@ -575,6 +665,13 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
     // no String allocation, no map usage, no runtime search, no sparse table
     protected <A> A readObject(final DeserializationContext context, final char[][] keys, final IntUnaryOperator keyLengths,
                                final FieldMeta<A>[] fields, final Function<Object[], A> factory) throws IOException {
+        return readObject(context, keys, keyLengths, fields, factory, null, null);
+    }
+
+    // ignoredKeys are known attributes without a record member (polymorphic discriminator), they must not land in @JsonOthers
+    protected <A> A readObject(final DeserializationContext context, final char[][] keys, final IntUnaryOperator keyLengths,
+                               final FieldMeta<A>[] fields, final Function<Object[], A> factory,
+                               final char[][] ignoredKeys, final IntUnaryOperator ignoredKeyLengths) throws IOException {
         final var parser = context.parser();
         parser.enforceNext(Parser.Event.START_OBJECT);
 
@@ -610,7 +707,8 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
                 case KEY_NAME -> {
                     key = parser.matchString(keys, keyLengths);
                     if (othersSlot >= 0 && key < 0) {
-                        fallbackKey = parser.getString();
+                        fallbackKey = ignoredKeys != null && parser.matchString(ignoredKeys, ignoredKeyLengths) >= 0 ?
+                                null : parser.getString();
                     }
                 }
                 case VALUE_STRING -> {
@@ -619,7 +717,7 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
                         if (value != null) {
                             slots[fields[key].slotIndex()] = value;
                         }
-                    } else if (others != null) {
+                    } else if (others != null && fallbackKey != null) {
                         others.put(fallbackKey, parser.getString());
                     }
                     key = -1;
@@ -630,7 +728,7 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
                         if (value != null) {
                             slots[fields[key].slotIndex()] = value;
                         }
-                    } else if (others != null) {
+                    } else if (others != null && fallbackKey != null) {
                         others.put(fallbackKey, parser.getBigDecimal());
                     }
                     key = -1;
@@ -641,7 +739,7 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
                         if (field.valueKind() == ValueKind.BOOLEAN || field.valueKind() == ValueKind.GENERIC_OBJECT) {
                             slots[field.slotIndex()] = event == Parser.Event.VALUE_TRUE;
                         }
-                    } else if (others != null) {
+                    } else if (others != null && fallbackKey != null) {
                         others.put(fallbackKey, event == Parser.Event.VALUE_TRUE);
                     }
                     key = -1;
@@ -670,7 +768,7 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
                             }
                             default -> parser.skipObject();
                         }
-                    } else if (others != null) {
+                    } else if (others != null && fallbackKey != null) {
                         parser.rewind(event);
                         others.put(fallbackKey, context.codec(Object.class).read(context));
                     } else {
@@ -694,7 +792,7 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
                             }
                             default -> parser.skipArray();
                         }
-                    } else if (others != null) {
+                    } else if (others != null && fallbackKey != null) {
                         parser.rewind(event);
                         others.put(fallbackKey, context.codec(Object.class).read(context));
                     } else {
@@ -705,7 +803,7 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
                 case VALUE_NULL -> {
                     if (key >= 0) {
                         slots[fields[key].slotIndex()] = null;
-                    } else if (others != null) {
+                    } else if (others != null && fallbackKey != null) {
                         others.put(fallbackKey, null);
                     }
                     key = -1;
@@ -751,9 +849,19 @@ public abstract class BaseJsonCodec<A> implements JsonCodec<A> {
 
     protected <A> void writeObject(final A instance, final SerializationContext context,
                                    final FieldMeta<A>[] fields) throws IOException {
+        writeObject(instance, context, fields, null);
+    }
+
+    // discriminator is the already encoded "name":"value" pair of a polymorphic subtype, always written first
+    protected <A> void writeObject(final A instance, final SerializationContext context,
+                                   final FieldMeta<A>[] fields, final char[] discriminator) throws IOException {
         final var writer = context.writer();
         writer.write('{');
         boolean first = true;
+        if (discriminator != null) {
+            writer.write(discriminator);
+            first = false;
+        }
         for (final var field : fields) {
             first = writeField(first, instance, field, context);
         }
@@ -64,6 +64,11 @@ public class MapJsonCodec<A> implements JsonCodec<Map<String, A>> {
 
     @Override
     public void write(final Map<String, A> value, final SerializationContext context) throws IOException {
+        if (delegate instanceof ObjectJsonCodec generic) { // Map<String, Object>, use the inline generic writer
+            generic.write(value, context);
+            return;
+        }
+
         final var writer = context.writer();
         final var it = value.entrySet().iterator();
         writer.write('{');
@@ -16,17 +16,25 @@
 package io.yupiik.fusion.json.internal.codec;
 
 import io.yupiik.fusion.json.internal.JsonStrings;
+import io.yupiik.fusion.json.serialization.ExtendedWriter;
 import io.yupiik.fusion.json.serialization.JsonCodec;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Type;
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
 
 // used to handle unknown structures
 public class ObjectJsonCodec implements JsonCodec<Object> {
+    private static final char[] NULL = "null".toCharArray();
     private static final char[] TRUE = "true".toCharArray();
     private static final char[] FALSE = "false".toCharArray();
 
@@ -68,46 +76,164 @@ public class ObjectJsonCodec implements JsonCodec<Object> {
     // note: this only handles the symmetric types of the read() method so booleans, bigdecimals, strings,
     //        arrays of these types and maps of these types
     @Override
-    @SuppressWarnings({"unchecked", "rawtypes"})
     public void write(final Object value, final SerializationContext context) throws IOException {
-        final var writer = context.writer();
-        if (value == null) {
-            writer.write("null");
-            return;
-        }
-        if (value instanceof String s) {
-            JsonStrings.escapeCharsTo(s, writer);
-            return;
+        new GenericWriter(context).write(value); // a single writer for the whole tree
+    }
+
+    // generic structures writer, common JDK types are handled inline (exact class checks first since it is
+    // the most common case and the cheapest test) and the codec lookup is only done for user types.
+    // It is also the map entry visitor so maps are iterated with forEach (no iterator, no entry view)
+    // and a single instance serves all the nested maps of a write.
+    private static final class GenericWriter implements BiConsumer<Object, Object> {
+        private final SerializationContext context;
+        private final ExtendedWriter writer;
+        private boolean firstEntry;
+
+        private GenericWriter(final SerializationContext context) {
+            this.context = context;
+            this.writer = context.writer();
         }
-        if (value instanceof Boolean b) {
-            if (b) {
-                writer.write(TRUE);
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void write(final Object value) throws IOException {
+            if (value == null) {
+                writer.write(NULL);
+                return;
+            }
+
+            final var type = value.getClass();
+            if (type == String.class) {
+                JsonStrings.escapeCharsTo((String) value, writer);
+            } else if (type == Boolean.class) {
+                writer.write((Boolean) value ? TRUE : FALSE);
+            } else if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+                BaseJsonCodec.writeLong(writer, ((Number) value).longValue(), context);
+            } else if (type == BigDecimal.class || type == Double.class || type == Float.class) {
+                writer.write(value.toString());
+            } else if (type == ArrayList.class) {
+                writeList((List<?>) value);
+            } else if (type == LinkedHashMap.class || type == HashMap.class) {
+                writeMap((Map<?, ?>) value);
+            } else if (value instanceof CharSequence s) {
+                JsonStrings.escapeCharsTo(s, writer);
+            } else if (value instanceof Number) {
+                writer.write(String.valueOf(value));
+            } else if (value instanceof List<?> list && value instanceof RandomAccess) {
+                writeList(list);
+            } else if (value instanceof Collection<?> collection) {
+                writeCollection(collection);
+            } else if (value instanceof Map<?, ?> map) {
+                writeMap(map);
+            } else if (type.isArray()) {
+                writeArray(value);
             } else {
-                writer.write(FALSE);
+                // tolerance to support serialization of Object mapping properly
+                // /!\ this is NOT symmetric, deserialization stays on a close set of classes to let caller handling it properly
+                final JsonCodec delegating = context.codec(type);
+                if (delegating == null) {
+                    throw new IllegalStateException("Unsupported type: " + value);
+                }
+                delegating.write(value, context);
             }
-            return;
         }
-        if (value instanceof Number) {
-            writer.write(String.valueOf(value));
-            return;
+
+        private void writeMap(final Map<?, ?> map) throws IOException {
+            final boolean parentFirstEntry = firstEntry; // we can be nested in another map
+            firstEntry = true;
+            writer.write('{');
+            try {
+                map.forEach(this);
+            } catch (final UncheckedIOException uioe) {
+                throw uioe.getCause();
+            }
+            writer.write('}');
+            firstEntry = parentFirstEntry;
         }
-        if (value instanceof Collection<?> list) {
-            collectionCodec.write((Collection<Object>) list, context);
-            return;
+
+        @Override
+        public void accept(final Object key, final Object value) {
+            try {
+                if (firstEntry) {
+                    firstEntry = false;
+                } else {
+                    writer.write(',');
+                }
+                JsonStrings.escapeCharsTo((CharSequence) key, writer);
+                writer.write(':');
+                write(value);
+            } catch (final IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
         }
-        if (value instanceof Map<?, ?> map) {
-            mapCodec.write((Map) map, context);
-            return;
+
+        // indexed loop, no iterator
+        private void writeList(final List<?> list) throws IOException {
+            writer.write('[');
+            final int size = list.size();
+            for (int i = 0; i < size; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                write(list.get(i));
+            }
+            writer.write(']');
         }
 
-        // tolerance to support serialization of Object mapping properly
-        // /!\ this is NOT symmetric, deserialization stays on a close set of classes to let caller handling it properly
-        final JsonCodec delegating = context.codec(value.getClass());
-        if (delegating != null) {
-            delegating.write(value, context);
-            return;
+        private void writeCollection(final Collection<?> collection) throws IOException {
+            writer.write('[');
+            boolean first = true;
+            for (final var item : collection) {
+                if (first) {
+                    first = false;
+                } else {
+                    writer.write(',');
+                }
+                write(item);
+            }
+            writer.write(']');
         }
 
-        throw new IllegalStateException("Unsupported type: " + value);
+        private void writeArray(final Object array) throws IOException {
+            writer.write('[');
+            if (array instanceof Object[] values) {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    write(values[i]);
+                }
+            } else if (array instanceof int[] values) {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    BaseJsonCodec.writeLong(writer, values[i], context);
+                }
+            } else if (array instanceof long[] values) {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    BaseJsonCodec.writeLong(writer, values[i], context);
+                }
+            } else if (array instanceof double[] values) {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(String.valueOf(values[i]));
+                }
+            } else if (array instanceof boolean[] values) {
+                for (int i = 0; i < values.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write(values[i] ? TRUE : FALSE);
+                }
+            } else {
+                throw new IllegalStateException("Unsupported array type: " + array.getClass().getName());
+            }
+            writer.write(']');
+        }
     }
 }
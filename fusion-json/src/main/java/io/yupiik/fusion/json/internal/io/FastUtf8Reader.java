@@ -18,6 +18,11 @@ package io.yupiik.fusion.json.internal.io;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 // streaming UTF-8 decoder optimized for JSON: the structure of a JSON document is always ASCII so the
 // hot loop is a plain byte to char inflate, multi-byte sequences are decoded manually (surrogate pairs
@@ -25,6 +30,8 @@ import java.io.Reader;
 // Malformed input is replaced by U+FFFD like an InputStreamReader configured with REPLACE (the default).
 public class FastUtf8Reader extends Reader {
     private static final char REPLACEMENT = '\uFFFD';
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long HIGH_BITS = 0x8080_8080_8080_8080L;
 
     private final InputStream input;
     private final ByteBufferProvider bufferProvider;
@@ -63,18 +70,14 @@ public class FastUtf8Reader extends Reader {
                 fill();
                 continue;
             }
-            byte b = buffer[position];
-            if (b >= 0) { // ASCII fast loop
-                cbuf[out++] = (char) b;
-                position++;
-                while (out < end && position < limit && (b = buffer[position]) >= 0) {
-                    cbuf[out++] = (char) b;
-                    position++;
-                }
+            final int ascii = inflateAscii(buffer, position, Math.min(limit, position + end - out), cbuf, out);
+            if (ascii > 0) {
+                out += ascii;
+                position += ascii;
                 continue;
             }
 
-            final int lead = b & 0xFF;
+            final int lead = buffer[position] & 0xFF;
             final int needed = lead < 0xC2 || lead > 0xF4 ? -1 : (lead < 0xE0 ? 2 : (lead < 0xF0 ? 3 : 4));
             if (needed < 0) { // continuation byte as lead, overlong 0xC0/0xC1 or > 0xF4
                 cbuf[out++] = REPLACEMENT;
@@ -113,6 +116,55 @@ public class FastUtf8Reader extends Reader {
         return out == off ? -1 : out - off;
     }
 
+    // JSON payloads are mostly ASCII so inflate bytes directly, only the (rare) non ASCII tail
+    // goes through the JDK UTF-8 decoder - way cheaper than an InputStreamReader/StreamDecoder chain
+    public static char[] toChars(final byte[] bytes) {
+        final int length = bytes.length;
+        final var chars = new char[length];
+        final int i = FastUtf8Reader.inflateAscii(bytes, 0, length, chars, 0);
+        if (i == length) {
+            return chars;
+        }
+
+        final var suffix = new String(bytes, i, length - i, UTF_8);
+        final int suffixLength = suffix.length();
+        if (i + suffixLength == length) {
+            suffix.getChars(0, suffixLength, chars, i);
+            return chars;
+        }
+        final var exact = new char[i + suffixLength];
+        System.arraycopy(chars, 0, exact, 0, i);
+        suffix.getChars(0, suffixLength, exact, i);
+        return exact;
+    }
+
+    // inflates the leading ASCII bytes of [from, to) to chars, returns the number of inflated bytes,
+    // 8 bytes are read as a single long and checked at once (SWAR) until a non ASCII one is met
+    public static int inflateAscii(final byte[] bytes, final int from, final int to, final char[] chars, final int offset) {
+        int i = from;
+        int out = offset;
+        final int wideEnd = to - 7;
+        long word;
+        while (i < wideEnd && ((word = (long) LONGS.get(bytes, i)) & HIGH_BITS) == 0) {
+            chars[out] = (char) (word & 0x7F);
+            chars[out + 1] = (char) ((word >>> 8) & 0x7F);
+            chars[out + 2] = (char) ((word >>> 16) & 0x7F);
+            chars[out + 3] = (char) ((word >>> 24) & 0x7F);
+            chars[out + 4] = (char) ((word >>> 32) & 0x7F);
+            chars[out + 5] = (char) ((word >>> 40) & 0x7F);
+            chars[out + 6] = (char) ((word >>> 48) & 0x7F);
+            chars[out + 7] = (char) (word >>> 56);
+            i += 8;
+            out += 8;
+        }
+        byte b;
+        while (i < to && (b = bytes[i]) >= 0) {
+            chars[out++] = (char) b;
+            i++;
+        }
+        return i - from;
+    }
+
     // decodes needed bytes at position, returns the code point or -1 when the sequence is malformed
     private int decode(final int lead, final int needed) {
         final int b2 = buffer[position + 1] & 0xFF;
@@ -44,6 +44,7 @@ import static io.yupiik.fusion.json.spi.Parser.Event.VALUE_TRUE;
 // forked from Apache johnzon
 public class JsonParser implements Parser {
     private final boolean autoAdjust;
+    private final boolean lenientSkip;
     private final char[] buffer;
     private int bufferPos = Integer.MIN_VALUE;
     private int bufferLeft = 0;
@@ -85,7 +86,19 @@ public class JsonParser implements Parser {
     public JsonParser(final Reader reader, final int maxStringLength,
                       final BufferProvider bufferProvider,
                       final boolean autoAdjust) {
+        this(reader, maxStringLength, bufferProvider, autoAdjust, false);
+    }
+
+    /**
+     * @param lenientSkip when {@code true}, {@link #skipObject()} and {@link #skipArray()} do not tokenize the skipped subtree
+     *                    but only track the nesting and the string boundaries, it is faster but the skipped content is not validated.
+     */
+    public JsonParser(final Reader reader, final int maxStringLength,
+                      final BufferProvider bufferProvider,
+                      final boolean autoAdjust,
+                      final boolean lenientSkip) {
         this.autoAdjust = autoAdjust;
+        this.lenientSkip = lenientSkip;
         this.bufferProvider = bufferProvider;
         this.in = reader;
         if (reader instanceof AvailableCharArrayReader ar) {
@@ -443,9 +456,14 @@ public class JsonParser implements Parser {
                 startOfValueInBuffer = bufferPos;
                 endOfValueInBuffer = -1;
 
-                while ((n = readNextChar()) > '\u001F' && n != '\\' && n != '"') {
-                    // read fast
-                }
+                do {
+                    if (bufferLeft > 0) { // bulk skip the plain chars already in the buffer, readNextChar() then lands on the special one or refills
+                        final int from = bufferPos + 1;
+                        final int skipped = JsonStrings.indexOfEscapable(buffer, from, from + bufferLeft) - from;
+                        bufferPos += skipped;
+                        bufferLeft -= skipped;
+                    }
+                } while ((n = readNextChar()) > '\u001F' && n != '\\' && n != '"');
 
                 endOfValueInBuffer = bufferPos;
 
@@ -683,14 +701,22 @@ public class JsonParser implements Parser {
     @Override
     public void skipObject() {
         if (isInObject()) {
-            skip(START_OBJECT, END_OBJECT);
+            if (lenientSkip) {
+                lenientSkip(false);
+            } else {
+                skip(START_OBJECT, END_OBJECT);
+            }
         }
     }
 
     @Override
     public void skipArray() {
         if (isInArray()) {
-            skip(START_ARRAY, END_ARRAY);
+            if (lenientSkip) {
+                lenientSkip(true);
+            } else {
+                skip(START_ARRAY, END_ARRAY);
+            }
         }
     }
 
@@ -738,6 +764,63 @@ public class JsonParser implements Parser {
         } while (level > 0 && hasNext());
     }
 
+    // jumps to the end of the current structure only tracking brackets and strings (escaped quotes included),
+    // numbers, literals and separators are not tokenized nor validated and no value is ever copied
+    private void lenientSkip(final boolean array) {
+        rewindedEvent = null; // a rewinded start is the structure we are skipping
+        releaseBuffers();
+        startOfValueInBuffer = endOfValueInBuffer = -1;
+        fallBackCopyBufferLength = 0;
+
+        int depth = 1;
+        boolean inString = false;
+        while (depth > 0) {
+            if (inString && bufferLeft > 0) { // bulk skip plain string chars, same as readString()
+                final int from = bufferPos + 1;
+                final int skipped = JsonStrings.indexOfEscapable(buffer, from, from + bufferLeft) - from;
+                bufferPos += skipped;
+                bufferLeft -= skipped;
+            }
+
+            final char c = readNextChar();
+            if (c == Character.MIN_VALUE) {
+                throw unexpectedChar("End of file hit too early");
+            }
+            if (inString) {
+                if (c == '\\') {
+                    readNextChar(); // escaped char, can be a quote so don't interpret it
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> inString = true;
+                case '{', '[' -> depth++;
+                case '}', ']' -> depth--;
+                case '\n' -> {
+                    currentLine++;
+                    lastLineBreakPosition = pastBufferReadCount + bufferPos;
+                }
+                default -> {
+                    // no-op
+                }
+            }
+        }
+
+        if (buffer[bufferPos] != (array ? ']' : '}')) {
+            throw unexpectedChar(array ? "Expected ]" : "Expected }");
+        }
+        structureDepth--;
+        if (array) {
+            arrayDepth--;
+            previousEvent = (byte) END_ARRAY.ordinal();
+        } else {
+            objectDepth--;
+            previousEvent = (byte) END_OBJECT.ordinal();
+        }
+    }
+
     public boolean isIntegralNumber() {
         if (previousEvent != VALUE_NUMBER.ordinal()) {
             throw new IllegalStateException(EVT_MAP[previousEvent] + " doesn't support isIntegralNumber()");
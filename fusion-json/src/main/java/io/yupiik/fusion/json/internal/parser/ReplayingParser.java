@@ -0,0 +1,171 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.json.internal.parser;
+
+import io.yupiik.fusion.json.spi.Parser;
+
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.function.IntUnaryOperator;
+
+import static io.yupiik.fusion.json.spi.Parser.Event.END_ARRAY;
+import static io.yupiik.fusion.json.spi.Parser.Event.END_OBJECT;
+import static io.yupiik.fusion.json.spi.Parser.Event.START_ARRAY;
+import static io.yupiik.fusion.json.spi.Parser.Event.START_OBJECT;
+
+// replays a few buffered events (with their string value for keys, strings and numbers) then continues on the delegate,
+// used by polymorphic codecs when the discriminator is not the first attribute: only the attributes preceding it are buffered
+public class ReplayingParser implements Parser {
+    private final Parser delegate;
+    private Event[] events;
+    private String[] values;
+    private int size;
+    private int position;
+    private String current;
+    private boolean replaying = true;
+    private Event rewindedEvent;
+
+    public ReplayingParser(final Parser delegate) {
+        this.delegate = delegate;
+        this.events = new Event[16];
+        this.values = new String[16];
+    }
+
+    /**
+     * Appends an event to replay, must be called before any read.
+     *
+     * @param event the event.
+     * @param value its value for {@link Event#KEY_NAME}, {@link Event#VALUE_STRING} and {@link Event#VALUE_NUMBER}, {@code null} otherwise.
+     */
+    public void append(final Event event, final String value) {
+        if (size == events.length) {
+            events = Arrays.copyOf(events, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        events[size] = event;
+        values[size++] = value;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return rewindedEvent != null || (replaying && position < size) || delegate.hasNext();
+    }
+
+    @Override
+    public void rewind(final Event event) {
+        rewindedEvent = event;
+    }
+
+    @Override
+    public Event next() {
+        if (rewindedEvent != null) {
+            final var event = rewindedEvent;
+            rewindedEvent = null;
+            return event;
+        }
+        if (replaying) {
+            if (position < size) {
+                current = values[position];
+                return events[position++];
+            }
+            replaying = false;
+            current = null;
+            events = null;
+            values = null;
+        }
+        return delegate.next();
+    }
+
+    @Override
+    public String getString() {
+        return replaying ? current : delegate.getString();
+    }
+
+    @Override
+    public int matchString(final char[][] candidates, final IntUnaryOperator lengthOffsets) {
+        return replaying ? Parser.super.matchString(candidates, lengthOffsets) : delegate.matchString(candidates, lengthOffsets);
+    }
+
+    @Override
+    public CharBuffer getChars() {
+        return replaying ? CharBuffer.wrap(current) : delegate.getChars();
+    }
+
+    @Override
+    public void enforceNext(final Event event) {
+        if (!hasNext()) {
+            throw new IllegalStateException("Expected " + event + " stream is finished.");
+        }
+        final var next = next();
+        if (next != event) {
+            throw new IllegalStateException("Expected " + event + " but got " + next);
+        }
+    }
+
+    @Override
+    public boolean isInArray() {
+        return delegate.isInArray();
+    }
+
+    @Override
+    public boolean isInObject() {
+        return delegate.isInObject();
+    }
+
+    @Override
+    public void skipObject() {
+        skip(START_OBJECT, END_OBJECT);
+    }
+
+    @Override
+    public void skipArray() {
+        skip(START_ARRAY, END_ARRAY);
+    }
+
+    @Override
+    public int getInt() {
+        return replaying ? getBigDecimal().intValue() : delegate.getInt();
+    }
+
+    @Override
+    public long getLong() {
+        return replaying ? getBigDecimal().longValue() : delegate.getLong();
+    }
+
+    @Override
+    public double getDouble() {
+        return replaying ? Double.parseDouble(current) : delegate.getDouble();
+    }
+
+    @Override
+    public BigDecimal getBigDecimal() {
+        return replaying ? new BigDecimal(current) : delegate.getBigDecimal();
+    }
+
+    // the structure can start in the buffered events and end in the delegate so don't delegate it
+    private void skip(final Event start, final Event end) {
+        int level = 1;
+        do {
+            final var event = next();
+            if (event == start) {
+                level++;
+            } else if (event == end) {
+                level--;
+            }
+        } while (level > 0 && hasNext());
+    }
+}
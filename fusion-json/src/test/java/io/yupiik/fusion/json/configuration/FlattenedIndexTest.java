@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.json.configuration;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FlattenedIndexTest {
+    @Test
+    void empty() {
+        assertNull(FlattenedIndex.of(Map.of()).get("a"));
+    }
+
+    @Test
+    void prefixes() {
+        final var index = FlattenedIndex.of(Map.of("a", "1", "a.b", "2", "a.b.c", "3", "a.c", "4", "b", "5", "", "6"));
+        assertEquals("6", index.get(""));
+        assertEquals("1", index.get("a"));
+        assertEquals("2", index.get("a.b"));
+        assertEquals("3", index.get("a.b.c"));
+        assertEquals("4", index.get("a.c"));
+        assertEquals("5", index.get("b"));
+        for (final var missing : List.of("0", "a.", "a.a", "a.b.", "a.b.d", "a.bc", "a.d", "ab", "c", "b.a")) {
+            assertNull(index.get(missing), missing);
+        }
+    }
+
+    @Test
+    void matchesAMap() { // spans several restart blocks
+        final var random = new Random(1234);
+        final var entries = new HashMap<String, String>();
+        for (int i = 0; i < 2_000; i++) {
+            final var key = new StringBuilder("app");
+            final int depth = 1 + random.nextInt(5);
+            for (int d = 0; d < depth; d++) {
+                key.append('.').append((char) ('a' + random.nextInt(4))).append(random.nextInt(3));
+            }
+            entries.put(key.toString(), Integer.toString(i));
+        }
+        final var index = FlattenedIndex.of(entries);
+        assertEquals(entries.size(), index.size());
+        entries.forEach((key, value) -> {
+            assertEquals(value, index.get(key), key);
+            assertNull(index.get(key + "x"), key);
+            assertNull(index.get(key.substring(0, key.length() - 1) + "~"), key);
+        });
+        assertNull(index.get("app"));
+        assertNull(index.get("zzz"));
+    }
+}
@@ -16,13 +16,22 @@
 package io.yupiik.fusion.json.configuration;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class JsonConfigurationSourceTest {
     @Test
@@ -312,6 +321,43 @@ class JsonConfigurationSourceTest {
         assertEquals("8080", source.get("port"));
     }
 
+    @Test
+    void asListLast() {
+        final var json = "{\"outer\": {\"key1\": {\"name\": \"a\", \"tags\": [\"x\", \"y\"]}, \"key.2\": \"b\", \"skipped\": null, \"$asList\": true, \"key3\": {\"name\": \"c\"}}}";
+        final var source = new JsonConfigurationSource(() -> new StringReader(json));
+        assertEquals("4", source.get("outer.length"));
+        assertEquals("key1", source.get("outer.0.key"));
+        assertEquals("a", source.get("outer.0.value.name"));
+        assertEquals("x, y", source.get("outer.0.value.tags"));
+        assertEquals("key.2", source.get("outer.1.key"));
+        assertEquals("b", source.get("outer.1.value"));
+        assertEquals("skipped", source.get("outer.2.key"));
+        assertNull(source.get("outer.2.value"));
+        assertEquals("key3", source.get("outer.3.key"));
+        assertEquals("c", source.get("outer.3.value.name"));
+        assertNull(source.get("outer.key1.name"));
+        assertNull(source.get("outer.$asList"));
+    }
+
+    @Test
+    void asListLastAllPrimitives() {
+        final var last = new JsonConfigurationSource(() -> new StringReader("{\"conf\": {\"host\": \"localhost\", \"port\": 8080, \"$asList\": true}}"));
+        final var first = new JsonConfigurationSource(() -> new StringReader("{\"conf\": {\"$asList\": true, \"host\": \"localhost\", \"port\": 8080}}"));
+        assertEquals(properties(first.get("conf")), properties(last.get("conf")));
+        assertEquals("localhost", properties(last.get("conf")).getProperty("host"));
+        assertNull(last.get("conf.host"));
+    }
+
+    private static Properties properties(final String value) {
+        final var props = new Properties();
+        try (final var reader = new StringReader(value)) {
+            props.load(reader);
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return props;
+    }
+
     @Test
     void asListTrueNestedAsList() {
         final var json = "{\"outer\": {\"$asList\": true, \"key1\": {\"name\": \"a\"}, \"key2\": {\"name\": \"b\"}}}";
@@ -420,4 +466,42 @@ class JsonConfigurationSourceTest {
         final var source = new JsonConfigurationSource(reader, normalizer);
         assertEquals("true", source.get("test.flag"));
     }
+
+    @Test
+    void reloadFile(@TempDir final Path work) throws IOException {
+        final var file = Files.writeString(work.resolve("conf.json"), "{\"a\":{\"b\":\"1\"}}");
+        final var source = new JsonConfigurationSource(file);
+        assertEquals("1", source.get("a.b"));
+        assertFalse(source.reload());
+
+        // touched but same content
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 5_000));
+        assertFalse(source.reload());
+        assertEquals("1", source.get("a.b"));
+
+        Files.writeString(file, "{\"a\":{\"b\":\"2\",\"c\":\"3\"}}");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 10_000));
+        assertTrue(source.reload());
+        assertEquals("2", source.get("a.b"));
+        assertEquals("3", source.get("a.c"));
+        assertFalse(source.reload());
+    }
+
+    @Test
+    void reloadSupplier() {
+        final var content = new AtomicReference<>("{\"a\":\"1\"}");
+        final var source = new JsonConfigurationSource(() -> new StringReader(content.get()));
+        assertEquals("1", source.get("a"));
+        assertFalse(source.reload());
+        content.set("{\"a\":\"2\"}");
+        assertTrue(source.reload());
+        assertEquals("2", source.get("a"));
+    }
+
+    @Test
+    void readerCanNotReload() {
+        final var source = new JsonConfigurationSource(new StringReader("{\"a\":\"1\"}"));
+        assertFalse(source.reload());
+        assertEquals("1", source.get("a"));
+    }
 }
@@ -40,6 +40,20 @@ class JsonStringsTest {
         assertEquals("\"\\t\\t\\t\\t\\t\\t\\t\\t\\t\\t\\t\\t\\t\\t\\t\\t\"", escape("\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t\t"));
     }
 
+    @Test
+    void escapeAtEveryOffset() { // the scan works on 4 chars blocks, ensure the exact index is always found
+        for (int prefix = 0; prefix < 12; prefix++) {
+            for (final var special : new char[]{'"', '\\', '\n', '\u0001', '\u001f'}) {
+                final var value = "a".repeat(prefix) + special + "\u8000\uffff b";
+                assertEquals(prefix, JsonStrings.indexOfEscapable(value, 0, value.length()), value);
+                assertEquals(prefix, JsonStrings.indexOfEscapable(value.toCharArray(), 0, value.length()), value);
+            }
+        }
+        final var plain = " !#[]~\u007f\u0080\u2028\u8000\uffff";
+        assertEquals(plain.length(), JsonStrings.indexOfEscapable(plain, 0, plain.length()));
+        assertEquals(plain.length(), JsonStrings.indexOfEscapable(plain.toCharArray(), 0, plain.length()));
+    }
+
     private String escape(final String value) {
         final var chars = JsonStrings.escapeChars(value);
         return new String(chars.array(), 0, chars.limit());
@@ -24,6 +24,14 @@ import org.junit.jupiter.api.Test;
 import java.io.IOException;
 import java.io.StringReader;
 import java.io.StringWriter;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -38,6 +46,33 @@ class ObjectJsonCodecTest {
         assertCodec("[\"test\",\"ok\"]", "[test, ok]");
     }
 
+    @Test
+    void writeJdkTypes() throws IOException {
+        final var nested = new TreeMap<String, Object>();
+        nested.put("b", List.of(1L, (short) 2, new BigDecimal("3.5")));
+        nested.put("a", Set.of(false));
+        final var map = new LinkedHashMap<String, Object>();
+        map.put("string", "v\"1");
+        map.put("int", Integer.MIN_VALUE);
+        map.put("long", Long.MIN_VALUE);
+        map.put("double", 1.5);
+        map.put("bool", true);
+        map.put("null", null);
+        map.put("list", new ArrayList<>(List.of("x", new HashMap<>(Map.of("k", 1)))));
+        map.put("nested", nested);
+        map.put("empty", Map.of());
+        map.put("objects", new Object[]{"y", null});
+        map.put("ints", new int[]{1, -2});
+        map.put("booleans", new boolean[]{true});
+        map.put("builder", new StringBuilder("sb"));
+
+        final var out = new StringWriter();
+        new ObjectJsonCodec().write(map, new JsonCodec.SerializationContext(new ExtendedWriter(out), c -> null));
+        assertEquals("{\"string\":\"v\\\"1\",\"int\":-2147483648,\"long\":-9223372036854775808,\"double\":1.5,\"bool\":true," +
+                "\"null\":null,\"list\":[\"x\",{\"k\":1}],\"nested\":{\"a\":[false],\"b\":[1,2,3.5]},\"empty\":{}," +
+                "\"objects\":[\"y\",null],\"ints\":[1,-2],\"booleans\":[true],\"builder\":\"sb\"}", out.toString());
+    }
+
     private void assertCodec(final String json, final String toString) throws IOException {
         final var codec = new ObjectJsonCodec();
         try (final var parser = parser(json)) {
@@ -43,6 +43,16 @@ class FastUtf8ReaderTest {
         }
     }
 
+    @Test
+    void asciiRunsAroundMultiBytes() throws IOException { // 8 bytes blocks must stop exactly on the first non ASCII byte
+        for (int prefix = 0; prefix < 24; prefix++) {
+            final var value = "x".repeat(prefix) + "\u00e9" + "y".repeat(17 + prefix) + "\u4f60";
+            for (final int bufferSize : new int[]{8, 16, 4096}) {
+                assertEquals(value, decode(value, bufferSize), value);
+            }
+        }
+    }
+
     @Test
     void mixedContent() throws IOException {
         final var value = "{\"name\":\"e\u00e9\u00e8 \u4f60\u597d \ud83d\ude00 end\",\"count\":1234}";
@@ -32,6 +32,7 @@ import java.util.stream.Stream;
 import static java.util.stream.Collectors.joining;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class JsonParserTest {
@@ -184,6 +185,36 @@ class JsonParserTest {
         });
     }
 
+    @Test
+    void stringEscapesAtEveryOffset() { // bulk plain chars skipping must stop on escapes whatever the buffer (16) alignment
+        for (int prefix = 0; prefix < 40; prefix++) {
+            for (final var escape : new String[]{"\\n", "\\\"", "\\\\", "\\u00e9"}) {
+                final var json = "\"" + "a".repeat(prefix) + escape + "b".repeat(prefix % 7) + "\"";
+                final var expected = "a".repeat(prefix) + switch (escape) {
+                    case "\\n" -> "\n";
+                    case "\\\"" -> "\"";
+                    case "\\\\" -> "\\";
+                    default -> "\u00e9";
+                } + "b".repeat(prefix % 7);
+                for (final boolean provided : new boolean[]{true, false}) {
+                    try (final var reader = parser(json, provided)) {
+                        assertEquals(JsonParser.Event.VALUE_STRING, reader.next());
+                        assertEquals(expected, reader.getString(), json);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void stringUnescapedControlChar() {
+        for (int prefix = 0; prefix < 20; prefix++) {
+            try (final var reader = parser("\"" + "a".repeat(prefix) + '\u0001' + "a\"")) {
+                assertThrows(IllegalStateException.class, reader::next);
+            }
+        }
+    }
+
     @Test
     void objectEmpty() {
         try (final var reader = parser("{}")) {
@@ -266,6 +297,43 @@ class JsonParserTest {
         });
     }
 
+    @Test
+    void lenientSkip() {
+        final var json = "{\"a\":{\"x\":\"}\\\"]{[\",\"y\":[1,{\"z\":\"\\\\\"}," + "\"long\"".repeat(8).replace("\"\"", "\",\"") + "]}," +
+                "\"b\":[[],\"]\",{\"c\":[true,null]}],\"c\":1}";
+        for (final boolean provided : new boolean[]{true, false}) {
+            try (final var reader = new JsonParser(
+                    provided ? new AvailableCharArrayReader(json.toCharArray()) : new StringReader(json),
+                    16, new BufferProvider(16, -1), true, true)) {
+                assertEquals(JsonParser.Event.START_OBJECT, reader.next());
+                assertEquals(JsonParser.Event.KEY_NAME, reader.next());
+                assertEquals("a", reader.getString());
+                assertEquals(JsonParser.Event.START_OBJECT, reader.next());
+                reader.skipObject();
+                assertEquals(JsonParser.Event.KEY_NAME, reader.next());
+                assertEquals("b", reader.getString());
+                assertEquals(JsonParser.Event.START_ARRAY, reader.next());
+                reader.skipArray();
+                assertEquals(JsonParser.Event.KEY_NAME, reader.next());
+                assertEquals("c", reader.getString());
+                assertEquals(JsonParser.Event.VALUE_NUMBER, reader.next());
+                assertEquals(1, reader.getInt());
+                assertEquals(JsonParser.Event.END_OBJECT, reader.next());
+                assertFalse(reader.hasNext());
+            }
+        }
+    }
+
+    @Test
+    void lenientSkipTruncated() {
+        try (final var reader = new JsonParser(new StringReader("{\"a\":[1,\"]\""), 16, new BufferProvider(16, -1), true, true)) {
+            assertEquals(JsonParser.Event.START_OBJECT, reader.next());
+            assertEquals(JsonParser.Event.KEY_NAME, reader.next());
+            assertEquals(JsonParser.Event.START_ARRAY, reader.next());
+            assertThrows(IllegalStateException.class, reader::skipArray);
+        }
+    }
+
     private JsonParser parser(final String string) {
         return parser(string, false);
     }
@@ -54,8 +54,10 @@ import io.yupiik.fusion.framework.processor.internal.generator.ConfigurationFact
 import io.yupiik.fusion.framework.processor.internal.generator.CrdDescriptorGenerator;
 import io.yupiik.fusion.framework.processor.internal.generator.HttpEndpointGenerator;
 import io.yupiik.fusion.framework.processor.internal.generator.HttpJavaEndpointGenerator;
+import io.yupiik.fusion.framework.processor.internal.generator.HttpRouteTableGenerator;
 import io.yupiik.fusion.framework.processor.internal.generator.JsonCodecEnumBeanGenerator;
 import io.yupiik.fusion.framework.processor.internal.generator.JsonCodecGenerator;
+import io.yupiik.fusion.framework.processor.internal.generator.JsonCodecPolymorphicGenerator;
 import io.yupiik.fusion.framework.processor.internal.generator.JsonRpcEndpointGenerator;
 import io.yupiik.fusion.framework.processor.internal.generator.ListenerGenerator;
 import io.yupiik.fusion.framework.processor.internal.generator.MetadataContributorGenerator;
@@ -117,6 +119,7 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.Clock.systemUTC;
 import static java.util.Collections.list;
 import static java.util.Comparator.comparing;
+import static java.util.Locale.ROOT;
 import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static java.util.Optional.ofNullable;
@@ -132,10 +135,12 @@ import static javax.lang.model.element.ElementKind.ANNOTATION_TYPE;
 import static javax.lang.model.element.ElementKind.CLASS;
 import static javax.lang.model.element.ElementKind.ENUM;
 import static javax.lang.model.element.ElementKind.ENUM_CONSTANT;
+import static javax.lang.model.element.ElementKind.INTERFACE;
 import static javax.lang.model.element.ElementKind.METHOD;
 import static javax.lang.model.element.ElementKind.PACKAGE;
 import static javax.lang.model.element.ElementKind.RECORD;
 import static javax.lang.model.element.Modifier.PRIVATE;
+import static javax.lang.model.element.Modifier.SEALED;
 import static javax.tools.Diagnostic.Kind.ERROR;
 import static javax.tools.Diagnostic.Kind.NOTE;
 import static javax.tools.Diagnostic.Kind.WARNING;
@@ -168,10 +173,14 @@ import static javax.tools.StandardLocation.CLASS_OUTPUT;
         // CLI
         "io.yupiik.fusion.framework.build.api.cli.Command",
         // JSON
+        "io.yupiik.fusion.framework.build.api.json.JsonDiscriminator",
+        "io.yupiik.fusion.framework.build.api.json.JsonDiscriminatorValue",
         "io.yupiik.fusion.framework.build.api.json.JsonModel",
         "io.yupiik.fusion.framework.build.api.json.JsonOthers",
         "io.yupiik.fusion.framework.build.api.json.JsonProperty",
         // HTTP
+        "io.yupiik.fusion.framework.build.api.http.HttpCache",
+        "io.yupiik.fusion.framework.build.api.http.HttpCoalesce",
         "io.yupiik.fusion.framework.build.api.http.HttpJavaMatcher",
         "io.yupiik.fusion.framework.build.api.http.HttpMatcher",
         // JSON-RPC
@@ -254,6 +263,7 @@ public class InternalFusionProcessor extends AbstractProcessor {
     // just for perf
     private final Map<String, String> configurationEnumValueOfCache = new HashMap<>();
     private String module;
+    private int httpRouteTables; // a table per round with @HttpMatcher, in practise the first one only
     private Path outputRoot;
     private Path workdir;
     private TypeMirror objectType;
@@ -553,7 +563,7 @@ public class InternalFusionProcessor extends AbstractProcessor {
 
         // add jsonModels to known ones to ensure we can use incremental compilation (resolution/validation as json model works)
         knownJsonModels.addAll(jsonModels.stream()
-                .filter(it -> it.getKind() == RECORD || it.getKind() == ENUM)
+                .filter(it -> it.getKind() == RECORD || it.getKind() == ENUM || it.getKind() == INTERFACE)
                 .map(it -> ((TypeElement) it).getQualifiedName().toString())
                 .toList());
 
@@ -598,7 +608,11 @@ public class InternalFusionProcessor extends AbstractProcessor {
         debugEnd("  generateCli (#" + cliCommands.size() + ")", processingEnv, startCli);
 
         final var startHttp = debugStart();
-        httpEndpoints.forEach(this::generateHttpEndpoint);
+        final var exactRoutes = new ArrayList<HttpRouteTableGenerator.ExactRoute>();
+        httpEndpoints.forEach(it -> generateHttpEndpoint(it, exactRoutes));
+        if (!exactRoutes.isEmpty()) {
+            generateHttpRouteTable(httpEndpoints, exactRoutes);
+        }
         httpJavaEndpoints.forEach(this::generateHttpJavaEndpoint);
         debugEnd("  generateHttp (#" + httpEndpoints.size() + " and #"+httpJavaEndpoints.size() + " java matchers)", processingEnv, startHttp);
 
@@ -1024,13 +1038,31 @@ public class InternalFusionProcessor extends AbstractProcessor {
     }
 
     private void generateJsonCodec(final Element model) {
-        if (!(model instanceof TypeElement element) || (element.getKind() != RECORD && element.getKind() != ENUM)) {
-            processingEnv.getMessager().printMessage(ERROR, "'" + model + "' not a record.");
+        if (!(model instanceof TypeElement element) || (element.getKind() != RECORD && element.getKind() != ENUM &&
+                !(element.getKind() == INTERFACE && element.getModifiers().contains(SEALED)))) {
+            processingEnv.getMessager().printMessage(ERROR, "'" + model + "' not a record nor a sealed interface.");
             return;
         }
 
         final var names = ParsedName.of(element);
         try {
+            if (element.getKind() == INTERFACE) {
+                final var schemas = allJsonSchemas == null ? null : new HashMap<String, JsonSchema>();
+                final var generation = new JsonCodecPolymorphicGenerator(
+                        processingEnv, elements, metadataContributorRegistry, names.packageName(), names.className(), element, schemas,
+                        beanForJsonCodecs).get();
+                if (schemas != null && !schemas.isEmpty()) {
+                    allJsonSchemas.putAll(schemas.entrySet().stream()
+                            .collect(toMap(Map.Entry::getKey, e -> new GeneratedJsonSchema(e.getValue(), null))));
+                }
+                writeGeneratedClass(model, generation);
+                jsonModels.put(generation.name(), element);
+                if (beanForJsonCodecs) {
+                    allBeans.add(generation.name() + '.' + FusionBean.class.getSimpleName());
+                }
+                return;
+            }
+
             if (element.getKind() == ENUM) {
                 if (!beanForJsonCodecs) {
                     return;
@@ -1221,7 +1253,7 @@ public class InternalFusionProcessor extends AbstractProcessor {
         }
     }
 
-    private void generateHttpEndpoint(final ExecutableElement method) {
+    private void generateHttpEndpoint(final ExecutableElement method, final Collection<HttpRouteTableGenerator.ExactRoute> exactRoutes) {
         if (method.getEnclosingElement().getKind() != CLASS) {
             processingEnv.getMessager().printMessage(ERROR, "'" + method + "' is not enclosed by a class: '" + method.getEnclosingElement() + "'");
             return;
@@ -1229,16 +1261,41 @@ public class InternalFusionProcessor extends AbstractProcessor {
 
         final var names = ParsedName.of(method.getEnclosingElement());
         try {
-            final var generation = new HttpEndpointGenerator(
+            final var generator = new HttpEndpointGenerator(
                     processingEnv, elements, metadataContributorRegistry, beanForHttpEndpoints,
                     names.packageName(), names.className() + "$" + method.getSimpleName(), method,
-                    this::isJsonModelKnown).get();
+                    this::isJsonModelKnown);
+            final var generation = generator.get();
             writeGeneratedClass(method, generation.endpoint());
             // todo: openapi?
 
             if (generation.beanClassName() != null) { // the bean is nested in the generated class
                 allBeans.add(generation.beanClassName());
             }
+
+            final var matcher = method.getAnnotation(HttpMatcher.class);
+            if (matcher.pathMatching() == HttpMatcher.PathMatching.EXACT) { // matched by name() so decorated endpoints are resolved too
+                exactRoutes.add(new HttpRouteTableGenerator.ExactRoute(
+                        generator.endpointName(),
+                        Stream.of(matcher.methods()).map(m -> m.toUpperCase(ROOT)).collect(toSet()),
+                        matcher.path()));
+            }
+        } catch (final IOException | RuntimeException e) {
+            processingEnv.getMessager().printMessage(ERROR, e.getMessage());
+        }
+    }
+
+    // the table only lists the routes of the round, endpoints it does not know (incremental build) stay indexed at runtime
+    private void generateHttpRouteTable(final Collection<ExecutableElement> methods, final List<HttpRouteTableGenerator.ExactRoute> exactRoutes) {
+        final var names = ParsedName.of(findOrCreateModuleName());
+        final var suffix = httpRouteTables == 0 ? "" : Integer.toString(httpRouteTables);
+        httpRouteTables++;
+        try {
+            final var generation = new HttpRouteTableGenerator(
+                    processingEnv, elements, names.packageName(), "FusionGeneratedHttpRoutes" + suffix, exactRoutes).get();
+            doWriteGeneratedClass(generation.endpoint(), processingEnv.getFiler().createSourceFile(
+                    generation.endpoint().name(), methods.toArray(Element[]::new)));
+            allBeans.add(generation.beanClassName());
         } catch (final IOException | RuntimeException e) {
             processingEnv.getMessager().printMessage(ERROR, e.getMessage());
         }
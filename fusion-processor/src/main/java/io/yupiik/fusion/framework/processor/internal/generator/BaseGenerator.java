@@ -128,6 +128,31 @@ public abstract class BaseGenerator {
         return name.replace("\"", "\\\"").replace("\n", "\\n");
     }
 
+    /**
+     * @param value the string to embed in generated sources.
+     * @return the java literal (quoted and escaped) of the value.
+     */
+    protected static String javaString(final String value) {
+        final var out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+                case '"', '\\' -> out.append('\\').append(c);
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) { // octal escape, unicode escapes are unsafe since they are resolved before lexing
+                        out.append(String.format("\\%03o", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        return out.append('"').toString();
+    }
+
     protected String visibilityFrom(final Set<Modifier> modifiers) {
         if (modifiers.contains(PROTECTED)) {
             return "protected ";
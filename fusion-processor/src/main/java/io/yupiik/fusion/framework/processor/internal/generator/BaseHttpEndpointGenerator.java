@@ -15,11 +15,15 @@
  */
 package io.yupiik.fusion.framework.processor.internal.generator;
 
+import io.yupiik.fusion.framework.build.api.http.HttpCache;
+import io.yupiik.fusion.framework.build.api.http.HttpCoalesce;
 import io.yupiik.fusion.framework.build.api.json.JsonModel;
 import io.yupiik.fusion.framework.processor.internal.Elements;
 import io.yupiik.fusion.framework.processor.internal.ParsedType;
 import io.yupiik.fusion.framework.processor.internal.metadata.MetadataContributorRegistry;
 import io.yupiik.fusion.http.server.api.Request;
+import io.yupiik.fusion.http.server.cache.RequestCoalescer;
+import io.yupiik.fusion.http.server.cache.ResponseCache;
 import io.yupiik.fusion.http.server.impl.io.RequestBodyAggregator;
 import io.yupiik.fusion.json.JsonMapper;
 import io.yupiik.fusion.json.deserialization.AvailableCharArrayReader;
@@ -30,6 +34,7 @@ import javax.lang.model.element.VariableElement;
 import java.io.InputStream;
 import java.io.Reader;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
@@ -136,6 +141,44 @@ public abstract class BaseHttpEndpointGenerator extends BaseGenerator {
                         ") {\n"));
     }
 
+    // a name not depending on the generated class naming, used to identify the endpoint in metrics for example
+    protected String declareName(final String packagePrefix, final String enclosingClassName) {
+        return "\n" +
+                "  @Override\n" +
+                "  public String name() {\n" +
+                "    return " + javaString(endpointName(packagePrefix, enclosingClassName)) + ";\n" +
+                "  }\n";
+    }
+
+    // what the generated name() returns, the route table references the endpoints with it
+    protected String endpointName(final String packagePrefix, final String enclosingClassName) {
+        return packagePrefix + enclosingClassName + '#' + method.getSimpleName();
+    }
+
+    // @HttpCache: the handler is wrapped at construction time so each endpoint owns its cache
+    protected String cached(final String handler) {
+        final var cache = method.getAnnotation(HttpCache.class);
+        if (cache == null) {
+            return coalesced(handler);
+        }
+        return "new " + ResponseCache.class.getName() + "(" +
+                cache.maxBytes() + "L, " +
+                Duration.class.getName() + ".ofSeconds(" + cache.ttl() + "L), " +
+                Stream.of(cache.varyHeaders()).map(BaseGenerator::javaString).collect(joining(", ", List.class.getName() + ".of(", ")")) + ")\n" +
+                "        .wrap(" + coalesced(handler) + ")";
+    }
+
+    // @HttpCoalesce: applied before the cache so only one request computes an expired entry
+    private String coalesced(final String handler) {
+        final var coalesce = method.getAnnotation(HttpCoalesce.class);
+        if (coalesce == null) {
+            return handler;
+        }
+        return "new " + RequestCoalescer.class.getName() + "(" +
+                Stream.of(coalesce.varyHeaders()).map(BaseGenerator::javaString).collect(joining(", ", List.class.getName() + ".of(", ")")) + ")\n" +
+                "        .wrap(" + handler + ")";
+    }
+
     protected List<Param> prepareParams() {
         final var index = new AtomicInteger();
         return method.getParameters().stream()
@@ -24,18 +24,15 @@ import io.yupiik.fusion.framework.build.api.json.JsonModel;
 import io.yupiik.fusion.framework.processor.internal.Elements;
 import io.yupiik.fusion.framework.processor.internal.ParsedType;
 import io.yupiik.fusion.framework.processor.internal.metadata.MetadataContributorRegistry;
-import io.yupiik.fusion.http.server.api.Request;
 import io.yupiik.fusion.http.server.api.Response;
 import io.yupiik.fusion.http.server.impl.DefaultEndpoint;
-import io.yupiik.fusion.http.server.impl.matcher.CaseInsensitiveValuesMatcher;
-import io.yupiik.fusion.http.server.impl.matcher.PatternMatcher;
-import io.yupiik.fusion.http.server.impl.matcher.ValueMatcher;
+import io.yupiik.fusion.http.server.spi.Route;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.ExecutableElement;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
@@ -52,15 +49,21 @@ public class HttpEndpointGenerator extends BaseHttpEndpointGenerator implements
         super(processingEnv, elements, metadataContributorRegistry, generateBean, packageName, className, method, knownJsonModels);
     }
 
+    /**
+     * @return the {@code name()} of the generated endpoint.
+     */
+    public String endpointName() {
+        return endpointName(packagePrefix(), enclosingClassName());
+    }
+
     @Override
     public Generation get() {
-        final var packagePrefix = packageName == null || packageName.isBlank() ? "" : (packageName + '.');
+        final var packagePrefix = packagePrefix();
         final var packageLine = packagePrefix.isBlank() ? "" : ("package " + packageName + ";\n\n");
         final var matcher = method.getAnnotation(HttpMatcher.class);
         final var endpointClassName = className + SUFFIX;
 
-        // drop the method name to get the enclosing one
-        final var enclosingClassName = className.substring(0, className.lastIndexOf('$')).replace('$', '.');
+        final var enclosingClassName = enclosingClassName();
         final var returnType = ParsedType.of(method.getReturnType());
         final var params = prepareParams();
         final boolean isReturnTypeJson = isJson(returnType) || method.getReturnType().getAnnotation(JsonModel.class) != null;
@@ -76,15 +79,25 @@ public class HttpEndpointGenerator extends BaseHttpEndpointGenerator implements
                         declareConstructor(endpointClassName, enclosingClassName, params, isReturnTypeJson) +
                         "    super(\n" +
                         "      " + matcher.priority() + ",\n" +
-                        "      " + matcherOf(matcher) + ",\n" +
-                        "      " + handler(params, returnType, isReturnTypeJson) + ");\n" +
+                        "      " + routeOf(matcher) + ",\n" +
+                        "      " + cached(handler(params, returnType, isReturnTypeJson)) + ");\n" +
                         "  }\n" +
+                        declareName(packagePrefix, enclosingClassName) +
                         (nestedBean == null ? "" : nestedBean) +
                         "}\n" +
                         "\n"),
                 nestedBean == null ? null : packagePrefix + endpointClassName + '.' + FusionBean.class.getSimpleName());
     }
 
+    private String packagePrefix() {
+        return packageName == null || packageName.isBlank() ? "" : (packageName + '.');
+    }
+
+    // drop the method name to get the enclosing one
+    private String enclosingClassName() {
+        return className.substring(0, className.lastIndexOf('$')).replace('$', '.');
+    }
+
     private String handler(final List<Param> params, final ParsedType returnType, final boolean returnJson) {
         final var asyncParams = params.stream().filter(p -> p.promiseName() != null).toList();
         final var out = new StringBuilder();
@@ -115,33 +128,13 @@ public class HttpEndpointGenerator extends BaseHttpEndpointGenerator implements
         return requestParameterName(body) + " -> " + body;
     }
 
-    private String matcherOf(final HttpMatcher matcher) {
-        final var matchers = Stream.of(
-                        // optimised method matcher
-                        switch (matcher.methods().length) {
-                            case 0 -> null;
-                            case 1 -> "new " + ValueMatcher.class.getName() + "<>(" +
-                                    Request.class.getName() + "::method, \"" + matcher.methods()[0] + "\", String::equalsIgnoreCase)";
-                            default -> "new " + CaseInsensitiveValuesMatcher.class.getName() + "<>(" +
-                                    Request.class.getName() + "::method, " +
-                                    Stream.of(matcher.methods()).map(it -> "\"" + it + "\"").collect(joining(", ")) + ")";
-                        },
-                        // optimised path matcher
-                        switch (matcher.pathMatching()) {
-                            case IGNORED -> null;
-                            case EXACT -> "new " + ValueMatcher.class.getName() + "<>(" +
-                                    Request.class.getName() + "::path, \"" + matcher.path() + "\")";
-                            case REGEX -> "new " + PatternMatcher.class.getName() + "<>(" +
-                                    Request.class.getName() + "::path,  \"" + matcher.path() + "\", (req, matcher) -> req.setAttribute(\"fusion.http.matcher\", matcher))";
-                            case STARTS_WITH -> "new " + ValueMatcher.class.getName() + "<>(" +
-                                    Request.class.getName() + "::path, \"" + matcher.path() + "\", String::startsWith)";
-                            case ENDS_WITH -> "new " + ValueMatcher.class.getName() + "<>(" +
-                                    Request.class.getName() + "::path, \"" + matcher.path() + "\", String::endsWith)";
-                        })
-                .filter(Objects::nonNull)
-                .toList();
-        return matchers.isEmpty() ?
-                requestParameterName("true") + " -> true" :
-                matchers.stream().collect(joining(")\n          .and(", "(", ")"));
+    // a declarative route (vs a predicate) lets the server index the endpoint instead of testing it for each request
+    private String routeOf(final HttpMatcher matcher) {
+        return "new " + Route.class.getName() + "(" +
+                (matcher.methods().length == 0 ?
+                        Set.class.getName() + ".of()" :
+                        Stream.of(matcher.methods()).map(BaseGenerator::javaString).collect(joining(", ", Set.class.getName() + ".of(", ")"))) + ", " +
+                Route.PathMatching.class.getName().replace('$', '.') + "." + matcher.pathMatching().name() + ", " +
+                (matcher.pathMatching() == HttpMatcher.PathMatching.IGNORED ? "null" : javaString(matcher.path())) + ")";
     }
 }
@@ -77,8 +77,9 @@ public class HttpJavaEndpointGenerator extends BaseHttpEndpointGenerator impleme
                         "    super(\n" +
                         "      " + matcher.priority() + ",\n" +
                         "      req -> " + matcher.value() + ",\n" +
-                        "      " + handler(params, returnType, isReturnTypeJson) + ");\n" +
+                        "      " + cached(handler(params, returnType, isReturnTypeJson)) + ");\n" +
                         "  }\n" +
+                        declareName(packagePrefix, enclosingClassName) +
                         (nestedBean == null ? "" : nestedBean) +
                         "}\n" +
                         "\n"),
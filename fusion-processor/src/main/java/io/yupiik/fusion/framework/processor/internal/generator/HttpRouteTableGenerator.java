@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.framework.processor.internal.generator;
+
+import io.yupiik.fusion.framework.api.container.FusionBean;
+import io.yupiik.fusion.framework.api.scope.DefaultScoped;
+import io.yupiik.fusion.framework.processor.internal.Elements;
+import io.yupiik.fusion.http.server.spi.RouteTable;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Supplier;
+
+import static java.util.stream.Collectors.joining;
+
+// routing table of the exact @HttpMatcher routes of a compilation round: a switch on the path then on the method,
+// the server merges it with the runtime endpoints (see RouteTable) so these paths are not indexed at startup
+public class HttpRouteTableGenerator extends BaseGenerator implements Supplier<BaseHttpEndpointGenerator.Generation> {
+    private final String packageName;
+    private final String className;
+    private final List<ExactRoute> routes;
+
+    public HttpRouteTableGenerator(final ProcessingEnvironment processingEnv, final Elements elements,
+                                   final String packageName, final String className,
+                                   final List<ExactRoute> routes) {
+        super(processingEnv, elements, null);
+        this.packageName = packageName;
+        this.className = className;
+        this.routes = routes;
+    }
+
+    @Override
+    public BaseHttpEndpointGenerator.Generation get() {
+        final var packagePrefix = packageName == null || packageName.isBlank() ? "" : (packageName + '.');
+
+        // path -> method ("" for the default branch) -> ids, the route id is its index in endpoints()
+        final var byPath = new TreeMap<String, Map<String, Set<Integer>>>();
+        for (int id = 0; id < routes.size(); id++) {
+            final var route = routes.get(id);
+            final var byMethod = byPath.computeIfAbsent(route.path(), k -> new TreeMap<>());
+            if (route.methods().isEmpty()) {
+                byMethod.computeIfAbsent("", k -> new TreeSet<>()).add(id);
+            } else {
+                for (final var method : route.methods()) {
+                    byMethod.computeIfAbsent(method, k -> new TreeSet<>()).add(id);
+                }
+            }
+        }
+        byPath.values().forEach(byMethod -> { // any method routes match all explicit methods too
+            final var anyMethod = byMethod.get("");
+            if (anyMethod != null) {
+                byMethod.forEach((method, ids) -> ids.addAll(anyMethod));
+            }
+        });
+
+        // share the result arrays (often a single id)
+        final var constants = new LinkedHashMap<String, String>();
+        final var switchCases = new StringBuilder();
+        byPath.forEach((path, byMethod) -> {
+            final var anyMethod = byMethod.get("");
+            final var explicit = byMethod.entrySet().stream().filter(e -> !e.getKey().isEmpty()).toList();
+            final var defaultValue = anyMethod == null ? "NONE" : constant(constants, anyMethod);
+            switchCases.append("      case ").append(javaString(path)).append(" -> ");
+            if (explicit.isEmpty()) {
+                switchCases.append(defaultValue).append(";\n");
+            } else {
+                switchCases.append("switch (method) {\n");
+                for (final var entry : explicit) {
+                    switchCases.append("        case ").append(javaString(entry.getKey()))
+                            .append(" -> ").append(constant(constants, entry.getValue())).append(";\n");
+                }
+                switchCases.append("        default -> ").append(defaultValue).append(";\n");
+                switchCases.append("      };\n");
+            }
+        });
+
+        final var nestedBean = nestedBean(className, DefaultScoped.class.getName(), 1000, Map.class.getName() + ".of()",
+                "      return new " + className + "();\n");
+        return new BaseHttpEndpointGenerator.Generation(
+                new GeneratedClass(packagePrefix + className, (packagePrefix.isBlank() ? "" : "package " + packageName + ";\n\n") +
+                        generationVersion() +
+                        "public class " + className + " implements " + RouteTable.class.getName() + " {\n" +
+                        "  private static final int[] NONE = new int[0];\n" +
+                        constants.entrySet().stream()
+                                .map(e -> "  private static final int[] " + e.getValue() + " = {" + e.getKey() + "};\n")
+                                .collect(joining()) +
+                        "\n" +
+                        "  @Override\n" +
+                        "  public " + List.class.getName() + "<String> endpoints() {\n" +
+                        "    return " + List.class.getName() + ".of(\n" +
+                        routes.stream()
+                                .map(r -> "      " + javaString(r.endpoint()))
+                                .collect(joining(",\n")) + ");\n" +
+                        "  }\n" +
+                        "\n" +
+                        "  @Override\n" +
+                        "  public int[] match(final String method, final String path) {\n" +
+                        "    return switch (path) {\n" +
+                        switchCases +
+                        "      default -> NONE;\n" +
+                        "    };\n" +
+                        "  }\n" +
+                        nestedBean +
+                        "}\n" +
+                        "\n"),
+                packagePrefix + className + '.' + FusionBean.class.getSimpleName());
+    }
+
+    private String constant(final Map<String, String> constants, final Collection<Integer> ids) {
+        return constants.computeIfAbsent(
+                ids.stream().map(String::valueOf).collect(joining(", ")),
+                k -> "ROUTES_" + constants.size());
+    }
+
+    /**
+     * @param endpoint the generated endpoint {@code name()}.
+     * @param methods  the uppercased methods, empty for any method.
+     * @param path     the exact path.
+     */
+    public record ExactRoute(String endpoint, Set<String> methods, String path) {
+    }
+}
@@ -128,30 +128,39 @@ public class JsonCodecGenerator extends BaseGenerator implements Supplier<BaseGe
                         .toList())
                 .orElse(List.of());
 
-        final var out = generateCodec(modelClass, params);
+        final var discriminator = JsonCodecPolymorphicGenerator.findDiscriminator(element).orElse(null);
+        final var out = generateCodec(modelClass, params, discriminator);
         if (jsonSchemas != null) {
             // we are only responsible to generate the "self" schema since we assume relationships/other models
             // got their own generated schema using the same $id/$ref convention
             final var fqn = (packagePrefix + className).replace('$', '.');
-            jsonSchemas.put(fqn, generateSchema(fqn, params));
+            jsonSchemas.put(fqn, generateSchema(fqn, params, discriminator));
         }
         return new GeneratedClass(packagePrefix + className + SUFFIX, out.toString());
     }
 
-    private JsonSchema generateSchema(final String fqn, final List<Param> params) {
+    private JsonSchema generateSchema(final String fqn, final List<Param> params,
+                                      final JsonCodecPolymorphicGenerator.Discriminator discriminator) {
+        final var properties = params.stream().collect(toMap(Param::jsonName, Param::schema));
+        if (discriminator != null) {
+            properties.put(discriminator.name(), new JsonSchema(
+                    null, null, "string", false, null, null, null, null, null, null, null, List.of(discriminator.value())));
+        }
         return new JsonSchema(
                 null,
                 fqn,
                 "object",
                 null, null, null, null,
-                params.stream().collect(toMap(Param::jsonName, Param::schema)),
+                properties,
                 null,
                 fqn.substring(Math.max(fqn.lastIndexOf('$'), fqn.lastIndexOf('.')) + 1),
                 // todo: add a @JsonSchema annotation which can be set on params or record?
-                null, null);
+                null, null,
+                discriminator == null ? null : List.of(discriminator.name()));
     }
 
-    private StringBuilder generateCodec(final String modelClass, final List<Param> params) {
+    private StringBuilder generateCodec(final String modelClass, final List<Param> params,
+                                        final JsonCodecPolymorphicGenerator.Discriminator discriminator) {
         final var fallbacks = params.stream().filter(Param::others).toList();
         if (fallbacks.size() > 1) {
             throw new IllegalArgumentException("You can only get a single @JsonOthers per @JsonModel record");
@@ -275,6 +284,19 @@ public class JsonCodecGenerator extends BaseGenerator implements Supplier<BaseGe
         }
         out.append("  };\n\n");
 
+        // polymorphic subtype: the discriminator is written first and ignored when reading (not a record member)
+        if (discriminator != null) {
+            out.append("  private static final char[] DISCRIMINATOR__ = ")
+                    .append(JsonCodecPolymorphicGenerator.encodedDiscriminator(discriminator)).append(".toCharArray();\n\n");
+            if (!fallbacks.isEmpty()) { // else it is just an unknown key, skipped
+                out.append("  private static final char[][] DISCRIMINATOR_KEY__ = {\n")
+                        .append("    ").append(javaString(discriminator.name())).append(".toCharArray()\n")
+                        .append("  };\n\n");
+                out.append("  private static final ").append(IntUnaryOperator.class.getName())
+                        .append(" DISCRIMINATOR_LENGTH__ = length -> length == ").append(discriminator.name().length()).append(" ? 0 : -1;\n\n");
+            }
+        }
+
         // factory method with @SuppressWarnings("unchecked")
         final boolean hasUnchecked = params.stream().anyMatch(p -> p.type().toString().contains("<"));
         if (hasUnchecked) {
@@ -313,7 +335,11 @@ public class JsonCodecGenerator extends BaseGenerator implements Supplier<BaseGe
         out.append("  public ").append(modelClass.replace('$', '.')).append(" read(final ")
                 .append(JsonCodec.DeserializationContext.class.getName().replace('$', '.')).append(" context)")
                 .append(" throws ").append(IOException.class.getName()).append(" {\n");
-        out.append("    return readObject(context, KEYS__, KEYS_OFFSETS__, FIELDS__, FACTORY__);\n");
+        if (discriminator != null && !fallbacks.isEmpty()) {
+            out.append("    return readObject(context, KEYS__, KEYS_OFFSETS__, FIELDS__, FACTORY__, DISCRIMINATOR_KEY__, DISCRIMINATOR_LENGTH__);\n");
+        } else {
+            out.append("    return readObject(context, KEYS__, KEYS_OFFSETS__, FIELDS__, FACTORY__);\n");
+        }
         out.append("  }\n\n");
 
         // write()
@@ -321,7 +347,7 @@ public class JsonCodecGenerator extends BaseGenerator implements Supplier<BaseGe
         out.append("  public void write(final ").append(modelClass.replace('$', '.')).append(" instance, final ")
                 .append(JsonCodec.SerializationContext.class.getName().replace('$', '.')).append(" context")
                 .append(") throws ").append(IOException.class.getName()).append(" {\n");
-        out.append("    writeObject(instance, context, FIELDS_WRITE__);\n");
+        out.append("    writeObject(instance, context, FIELDS_WRITE__").append(discriminator != null ? ", DISCRIMINATOR__" : "").append(");\n");
         out.append("  }\n");
 
         // nested bean
@@ -598,7 +624,7 @@ public class JsonCodecGenerator extends BaseGenerator implements Supplier<BaseGe
                 case "java.time.ZonedDateTime" -> ZONED_DATE_TIME;
                 case "java.lang.Object", "java.util.Map<java.lang.String,java.lang.Object>" -> GENERIC_OBJECT;
                 default -> {
-                    if (type.getKind() == RECORD &&
+                    if ((type.getKind() == RECORD || type.getKind() == ElementKind.INTERFACE /* polymorphic */) &&
                             (type.getAnnotation(JsonModel.class) != null || models.contains(((TypeElement) type).getQualifiedName().toString()))) {
                         yield MODEL;
                     }
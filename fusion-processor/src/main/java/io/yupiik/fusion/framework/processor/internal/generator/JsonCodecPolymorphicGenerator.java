@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package io.yupiik.fusion.framework.processor.internal.generator;
+
+import io.yupiik.fusion.framework.api.scope.DefaultScoped;
+import io.yupiik.fusion.framework.build.api.json.JsonDiscriminator;
+import io.yupiik.fusion.framework.build.api.json.JsonDiscriminatorValue;
+import io.yupiik.fusion.framework.build.api.json.JsonModel;
+import io.yupiik.fusion.framework.processor.internal.Elements;
+import io.yupiik.fusion.framework.processor.internal.json.JsonStrings;
+import io.yupiik.fusion.framework.processor.internal.meta.JsonSchema;
+import io.yupiik.fusion.framework.processor.internal.metadata.MetadataContributorRegistry;
+import io.yupiik.fusion.json.internal.codec.BaseJsonCodec;
+import io.yupiik.fusion.json.serialization.JsonCodec;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Supplier;
+
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.joining;
+import static javax.lang.model.element.ElementKind.INTERFACE;
+import static javax.lang.model.element.ElementKind.RECORD;
+import static javax.lang.model.element.Modifier.SEALED;
+
+// codec of a @JsonModel sealed interface: a generated switch on the discriminator value dispatching to the subtype codecs
+public class JsonCodecPolymorphicGenerator extends BaseGenerator implements Supplier<BaseGenerator.GeneratedClass> {
+    private final String packageName;
+    private final String className;
+    private final TypeElement element;
+    private final Map<String, JsonSchema> jsonSchemas;
+    private final boolean generateBean;
+
+    public JsonCodecPolymorphicGenerator(final ProcessingEnvironment processingEnv, final Elements elements,
+                                         final MetadataContributorRegistry metadataContributorRegistry,
+                                         final String packageName, final String className, final TypeElement element,
+                                         final Map<String, JsonSchema> jsonSchemasCollector, final boolean generateBean) {
+        super(processingEnv, elements, metadataContributorRegistry);
+        this.packageName = packageName;
+        this.className = className;
+        this.element = element;
+        this.jsonSchemas = jsonSchemasCollector;
+        this.generateBean = generateBean;
+    }
+
+    @Override
+    public GeneratedClass get() {
+        final var packagePrefix = !packageName.isBlank() ? packageName + '.' : "";
+        final var modelClass = element.getQualifiedName().toString();
+        final var discriminator = ofNullable(element.getAnnotation(JsonDiscriminator.class))
+                .map(JsonDiscriminator::value)
+                .orElse("type");
+        final var requireFirst = ofNullable(element.getAnnotation(JsonDiscriminator.class))
+                .map(JsonDiscriminator::requireFirst)
+                .orElse(false);
+
+        // sorted by value length for Parser.matchString(char[][], IntUnaryOperator), see JsonCodecGenerator KEYS__
+        final var subtypes = element.getPermittedSubclasses().stream()
+                .map(it -> processingEnv.getTypeUtils().asElement(it))
+                .map(it -> {
+                    if (!(it instanceof TypeElement te) || te.getKind() != RECORD) {
+                        throw new IllegalArgumentException("'" + it + "' permitted by '" + modelClass + "' is not a record");
+                    }
+                    return new Subtype(te.getQualifiedName().toString(), discriminatorValue(te));
+                })
+                .sorted(Comparator.comparingInt(s -> s.value().length()))
+                .toList();
+        if (subtypes.isEmpty()) {
+            throw new IllegalArgumentException("No permitted subtype for '" + modelClass + "'");
+        }
+        if (subtypes.stream().map(Subtype::value).distinct().count() != subtypes.size()) {
+            throw new IllegalArgumentException("Ambiguous discriminator values for '" + modelClass + "': " + subtypes);
+        }
+
+        final var codecName = className + JsonCodecGenerator.SUFFIX;
+        final var out = new StringBuilder();
+        if (!packageName.isBlank()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        appendGenerationVersion(out);
+        out.append("public class ").append(codecName)
+                .append(" extends ").append(BaseJsonCodec.class.getName())
+                .append('<').append(modelClass).append("> {\n");
+
+        out.append("  private static final char[][] DISCRIMINATOR__ = {\n")
+                .append("    ").append(javaString(discriminator)).append(".toCharArray()\n")
+                .append("  };\n\n");
+        out.append("  private static final ").append(IntUnaryOperator.class.getName())
+                .append(" DISCRIMINATOR_LENGTH__ = length -> length == ").append(discriminator.length()).append(" ? 0 : -1;\n\n");
+
+        out.append("  private static final char[][] VALUES__ = {\n").append(subtypes.stream()
+                .map(s -> "    " + javaString(s.value()) + ".toCharArray()")
+                .collect(joining(",\n"))).append("\n  };\n\n");
+        out.append("  private static final ").append(IntUnaryOperator.class.getName()).append(" VALUES_OFFSETS__ = length -> switch (length) {\n");
+        for (int i = 0; i < subtypes.size(); i++) {
+            final var length = subtypes.get(i).value().length();
+            if (i == 0 || length != subtypes.get(i - 1).value().length()) {
+                out.append("    case ").append(length).append(" -> ").append(i).append(";\n");
+            }
+        }
+        out.append("    default -> -1;\n  };\n\n");
+
+        out.append("  private static final ").append(BaseJsonCodec.class.getName()).append(".SubtypeReader<").append(modelClass)
+                .append("> SUBTYPES__ = (index, context) -> switch (index) {\n");
+        for (int i = 0; i < subtypes.size(); i++) {
+            out.append("    case ").append(i).append(" -> context.codec(").append(subtypes.get(i).type()).append(".class).read(context);\n");
+        }
+        out.append("    default -> throw new IllegalArgumentException(\"Unknown subtype #\" + index);\n  };\n\n");
+
+        out.append("  public ").append(codecName).append("() {\n");
+        out.append("    super(").append(modelClass).append(".class);\n");
+        out.append("  }\n\n");
+
+        out.append("  @Override\n");
+        out.append("  public ").append(modelClass).append(" read(final ")
+                .append(JsonCodec.DeserializationContext.class.getName().replace('$', '.')).append(" context)")
+                .append(" throws ").append(IOException.class.getName()).append(" {\n");
+        out.append("    return readPolymorphic(context, DISCRIMINATOR__, DISCRIMINATOR_LENGTH__, VALUES__, VALUES_OFFSETS__, ")
+                .append(requireFirst).append(", SUBTYPES__);\n");
+        out.append("  }\n\n");
+
+        out.append("  @Override\n");
+        out.append("  public void write(final ").append(modelClass).append(" instance, final ")
+                .append(JsonCodec.SerializationContext.class.getName().replace('$', '.')).append(" context")
+                .append(") throws ").append(IOException.class.getName()).append(" {\n");
+        out.append("    writePolymorphic(instance, context);\n");
+        out.append("  }\n");
+
+        if (generateBean) {
+            out.append(nestedBean(codecName, DefaultScoped.class.getName(), 1000, Map.class.getName() + ".of()",
+                    "      return new " + codecName + "();\n"));
+        }
+        out.append("}\n\n");
+
+        if (jsonSchemas != null) {
+            final var fqn = (packagePrefix + className).replace('$', '.');
+            jsonSchemas.put(fqn, new JsonSchema(
+                    null, fqn, "object", null, null, null, null,
+                    Map.of(discriminator, new JsonSchema(
+                            null, null, "string", false, null, null, null, null, null, null, null,
+                            subtypes.stream().map(Subtype::value).sorted().toList())),
+                    null,
+                    fqn.substring(fqn.lastIndexOf('.') + 1),
+                    null, null, List.of(discriminator)));
+        }
+        return new GeneratedClass(packagePrefix + codecName, out.toString());
+    }
+
+    /**
+     * @param record the record to inspect.
+     * @return the discriminator of the record when it implements a polymorphic model (sealed interface marked with {@link JsonModel}).
+     */
+    public static Optional<Discriminator> findDiscriminator(final TypeElement record) {
+        final var parents = record.getInterfaces().stream()
+                .filter(DeclaredType.class::isInstance)
+                .map(it -> ((DeclaredType) it).asElement())
+                .filter(it -> it.getKind() == INTERFACE && it.getModifiers().contains(SEALED) && it.getAnnotation(JsonModel.class) != null)
+                .toList();
+        if (parents.isEmpty()) {
+            return Optional.empty();
+        }
+        if (parents.size() > 1) {
+            throw new IllegalArgumentException("'" + record + "' can only implement a single polymorphic @JsonModel: " + parents);
+        }
+        return Optional.of(new Discriminator(
+                ofNullable(parents.get(0).getAnnotation(JsonDiscriminator.class)).map(JsonDiscriminator::value).orElse("type"),
+                discriminatorValue(record)));
+    }
+
+    /**
+     * @param discriminator the discriminator of a record.
+     * @return the java literal of the encoded {@code "name":"value"} pair the record codec writes first.
+     */
+    static String encodedDiscriminator(final Discriminator discriminator) {
+        return javaString(JsonStrings.escape(discriminator.name()) + ':' + JsonStrings.escape(discriminator.value()));
+    }
+
+    private static String discriminatorValue(final TypeElement record) {
+        return ofNullable(record.getAnnotation(JsonDiscriminatorValue.class))
+                .map(JsonDiscriminatorValue::value)
+                .orElseGet(() -> record.getSimpleName().toString());
+    }
+
+    public record Discriminator(String name, String value) {
+    }
+
+    private record Subtype(String type, String value) {
+    }
+}
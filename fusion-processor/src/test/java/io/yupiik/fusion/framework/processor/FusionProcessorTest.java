@@ -44,6 +44,7 @@ import io.yupiik.fusion.http.server.api.Request;
 import io.yupiik.fusion.http.server.impl.flow.BytesPublisher;
 import io.yupiik.fusion.http.server.impl.io.RequestBodyAggregator;
 import io.yupiik.fusion.http.server.spi.Endpoint;
+import io.yupiik.fusion.http.server.spi.RouteTable;
 import io.yupiik.fusion.json.JsonMapper;
 import io.yupiik.fusion.json.internal.JsonMapperImpl;
 import io.yupiik.fusion.json.internal.codec.ObjectJsonCodec;
@@ -74,6 +75,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -90,6 +92,7 @@ import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.spi.ToolProvider;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
@@ -98,6 +101,7 @@ import static java.util.Optional.empty;
 import static java.util.Optional.of;
 import static java.util.stream.Collectors.joining;
 import static java.util.stream.Collectors.toMap;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -1585,6 +1589,41 @@ class FusionProcessorTest {
                         "OthersMiddle[first=a, others={fall=back}, count=3]");
     }
 
+    @Test
+    void jsonPolymorphic(@TempDir final Path work) throws IOException {
+        new Compiler(work, "json.Polymorphic").compileAndJsonAsserts((loader, mapper) -> {
+            final var root = loader.apply("test.p.json.Polymorphic");
+            final var envelope = loader.apply("test.p.json.Polymorphic$Envelope");
+
+            // discriminator first: dispatched in place
+            final var created = mapper.fromString(root, "{\"kind\":\"Created\",\"id\":\"a\",\"version\":2,\"tags\":[\"t\"]}");
+            assertEquals("Created[id=a, version=2, tags=[t]]", created.toString());
+            assertEquals("{\"kind\":\"Created\",\"id\":\"a\",\"tags\":[\"t\"],\"version\":2}", mapper.toString(created));
+
+            // discriminator last: preceding attributes (including nested structures) are replayed
+            final var deleted = mapper.fromString(root, "{\"id\":\"b\",\"extra\":{\"kind\":\"nested\",\"l\":[1,{}]},\"kind\":\"removed\"}");
+            assertEquals("Deleted[id=b, others={extra={kind=nested, l=[1, {}]}}]", deleted.toString());
+            assertEquals("{\"kind\":\"removed\",\"id\":\"b\",\"extra\":{\"kind\":\"nested\",\"l\":[1,{}]}}", mapper.toString(deleted));
+
+            // discriminator is not captured by @JsonOthers when reading the subtype directly
+            assertEquals("Deleted[id=c, others={}]", mapper.fromString(
+                    loader.apply("test.p.json.Polymorphic$Deleted"), "{\"kind\":\"removed\",\"id\":\"c\"}").toString());
+
+            // nested usage
+            final var json = "{\"event\":{\"kind\":\"removed\",\"id\":\"b\"},\"history\":[{\"kind\":\"Created\",\"id\":\"a\",\"version\":1}]}";
+            final var wrapper = mapper.fromString(envelope, "{\"history\":[{\"version\":1,\"id\":\"a\",\"kind\":\"Created\"}],\"event\":{\"kind\":\"removed\",\"id\":\"b\"}}");
+            assertEquals("Envelope[event=Deleted[id=b, others={}], history=[Created[id=a, version=1, tags=null]]]", wrapper.toString());
+            assertEquals(json, mapper.toString(wrapper));
+
+            // errors
+            assertThrows(IllegalArgumentException.class, () -> mapper.fromString(root, "{\"id\":\"a\"}"));
+            assertThrows(IllegalArgumentException.class, () -> mapper.fromString(root, "{\"kind\":\"unknown\"}"));
+            final var strict = loader.apply("test.p.json.Polymorphic$Strict");
+            assertEquals("Only[name=n]", mapper.fromString(strict, "{\"type\":\"Only\",\"name\":\"n\"}").toString());
+            assertThrows(IllegalArgumentException.class, () -> mapper.fromString(strict, "{\"name\":\"n\",\"type\":\"Only\"}"));
+        });
+    }
+
     @Test
     void jsonGeneratedCodec(@TempDir final Path work) throws IOException {
         // assert the exact generated codec: KEYS__ sorted by length, dense KEYS_OFFSETS__ switch driving
@@ -2523,6 +2562,68 @@ class FusionProcessorTest {
                                 .toList()));
     }
 
+    @Test
+    void httpRouteTable(@TempDir final Path work) throws IOException {
+        new Compiler(work, "HttpRoutes").compileAndAsserts((loader, container) -> {
+            try (final var instance = container.lookup(RouteTable.class)) {
+                final var table = instance.instance();
+                final var endpoints = table.endpoints();
+                final Function<int[], List<String>> names = ids -> {
+                    final var sorted = ids.clone();
+                    Arrays.sort(sorted);
+                    assertArrayEquals(sorted, ids);
+                    return Arrays.stream(ids)
+                            .mapToObj(endpoints::get)
+                            .map(it -> it.substring("test.p.HttpRoutes#".length()))
+                            .sorted()
+                            .toList();
+                };
+
+                // prefix routes are not in the table, the server indexes them at runtime
+                assertEquals(List.of("anyA", "getA", "quotedB", "writeA"), names.apply(IntStream.range(0, endpoints.size()).toArray()));
+                assertEquals(List.of("anyA", "getA"), names.apply(table.match("GET", "/a")));
+                assertEquals(List.of("anyA", "writeA"), names.apply(table.match("PUT", "/a")));
+                assertEquals(List.of("anyA"), names.apply(table.match("DELETE", "/a")));
+                assertEquals(List.of("quotedB"), names.apply(table.match("GET", "/\"b\"")));
+                assertEquals(List.of(), names.apply(table.match("GET", "/b")));
+                assertEquals(List.of(), names.apply(table.match("GET", "/a/b")));
+            }
+            try (final var endpoint = container.lookup(loader.apply("test.p.HttpRoutes$getA$FusionHttpEndpoint"))) {
+                assertEquals("test.p.HttpRoutes#getA", ((Endpoint) endpoint.instance()).name());
+            }
+        });
+    }
+
+    @Test
+    void httpCache(@TempDir final Path work) throws IOException {
+        new Compiler(work, "HttpCached").compileAndAsserts((loader, container) -> {
+            try (final var instance = container.lookup(loader.apply("test.p.HttpCached$get$FusionHttpEndpoint"))) {
+                final var endpoint = (Endpoint) instance.instance();
+                final var first = endpoint.handle(new SimpleRequest()).toCompletableFuture().join();
+                final var second = endpoint.handle(new SimpleRequest()).toCompletableFuture().join();
+                assertEquals(first.headers().get("ETag"), second.headers().get("ETag"));
+                assertEquals(1, ((AtomicInteger) loader.apply("test.p.HttpCached").getField("CALLS").get(null)).get());
+            } catch (final ReflectiveOperationException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    void httpCoalesce(@TempDir final Path work) throws IOException {
+        new Compiler(work, "HttpCoalesced").compileAndAsserts((loader, container) -> {
+            try (final var instance = container.lookup(loader.apply("test.p.HttpCoalesced$get$FusionHttpEndpoint"))) {
+                final var endpoint = (Endpoint) instance.instance();
+                // sequential requests are not coalesced (it is not a cache)
+                endpoint.handle(new SimpleRequest()).toCompletableFuture().join();
+                endpoint.handle(new SimpleRequest()).toCompletableFuture().join();
+                assertEquals(2, ((AtomicInteger) loader.apply("test.p.HttpCoalesced").getField("CALLS").get(null)).get());
+            } catch (final ReflectiveOperationException e) {
+                fail(e);
+            }
+        });
+    }
+
     @Test
     void command(@TempDir final Path work) throws IOException {
         final var compiler = new Compiler(work, "Commands");
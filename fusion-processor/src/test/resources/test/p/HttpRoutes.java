@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package test.p;
+
+import io.yupiik.fusion.framework.build.api.http.HttpMatcher;
+import io.yupiik.fusion.http.server.api.Response;
+
+import static io.yupiik.fusion.framework.build.api.http.HttpMatcher.PathMatching.EXACT;
+import static io.yupiik.fusion.framework.build.api.http.HttpMatcher.PathMatching.STARTS_WITH;
+
+public class HttpRoutes {
+    @HttpMatcher(methods = "GET", pathMatching = EXACT, path = "/a")
+    public Response getA() {
+        return Response.of().status(200).build();
+    }
+
+    @HttpMatcher(methods = {"POST", "put"}, pathMatching = EXACT, path = "/a")
+    public Response writeA() {
+        return Response.of().status(201).build();
+    }
+
+    @HttpMatcher(pathMatching = EXACT, path = "/a")
+    public Response anyA() {
+        return Response.of().status(202).build();
+    }
+
+    @HttpMatcher(pathMatching = EXACT, path = "/\"b\"")
+    public Response quotedB() {
+        return Response.of().status(203).build();
+    }
+
+    @HttpMatcher(methods = "GET", pathMatching = STARTS_WITH, path = "/a")
+    public Response prefixA() {
+        return Response.of().status(204).build();
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright (c) 2022 - present - Yupiik SAS - https://www.yupiik.com
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package test.p.json;
+
+import io.yupiik.fusion.framework.build.api.json.JsonDiscriminator;
+import io.yupiik.fusion.framework.build.api.json.JsonDiscriminatorValue;
+import io.yupiik.fusion.framework.build.api.json.JsonModel;
+import io.yupiik.fusion.framework.build.api.json.JsonOthers;
+
+import java.util.List;
+import java.util.Map;
+
+@JsonModel
+@JsonDiscriminator("kind")
+public sealed interface Polymorphic permits Polymorphic.Created, Polymorphic.Deleted {
+    @JsonModel
+    record Created(String id, int version, List<String> tags) implements Polymorphic {
+    }
+
+    @JsonModel
+    @JsonDiscriminatorValue("removed")
+    record Deleted(String id, @JsonOthers Map<String, Object> others) implements Polymorphic {
+    }
+
+    @JsonModel
+    record Envelope(Polymorphic event, List<Polymorphic> history) {
+    }
+
+    @JsonModel
+    @JsonDiscriminator(requireFirst = true)
+    sealed interface Strict permits Strict.Only {
+        @JsonModel
+        record Only(String name) implements Strict {
+        }
+    }
+}